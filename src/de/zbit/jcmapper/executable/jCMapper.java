@@ -1,8 +1,17 @@
 package de.zbit.jcmapper.executable;
 
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
@@ -16,32 +25,50 @@ import org.apache.commons.cli.ParseException;
 import de.zbit.jcmapper.distance.DistanceFactory;
 import de.zbit.jcmapper.distance.DistanceFactory.DistanceType;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
+import de.zbit.jcmapper.fingerprinters.FingerPrinterException;
 import de.zbit.jcmapper.fingerprinters.FingerPrinterFactory;
 import de.zbit.jcmapper.fingerprinters.FingerPrinterFactory.FingerprintType;
 import de.zbit.jcmapper.fingerprinters.geometrical.Encoding3D;
 import de.zbit.jcmapper.fingerprinters.topological.DepthFirstSearch;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2D;
+import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP;
+import de.zbit.jcmapper.io.reader.BlockGzipSDFile;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.SDFRecordHelper;
+import de.zbit.jcmapper.io.reader.StreamingMDLReader;
+import de.zbit.jcmapper.io.reader.SubsetMDLReader;
 import de.zbit.jcmapper.io.writer.ExporterFactory;
 import de.zbit.jcmapper.io.writer.ExporterHashLinear;
 import de.zbit.jcmapper.io.writer.ExporterHashWeka;
 import de.zbit.jcmapper.io.writer.ExporterLIBSVMMatrix;
+import de.zbit.jcmapper.io.writer.FingerprintFanOut;
+import de.zbit.jcmapper.io.writer.FingerprintPipeline;
 import de.zbit.jcmapper.io.writer.IExporter;
 import de.zbit.jcmapper.io.writer.ExporterFactory.ExporterType;
 import de.zbit.jcmapper.tools.moltyping.enumerations.EnumerationsAtomTypes.AtomLabelType;
 
 public class jCMapper {
 
+	private static final String STDIN = "-";
+
 	private String sdFileInputData = "";
 	private String sdTagForLabel = "?";
-	private EncodingFingerprint fingerprintEncoding = new DepthFirstSearch();
-	private FingerprintType fingerprintType = FingerprintType.DFS;
+	private EncodingFingerprint[] fingerprintEncodings = { new DepthFirstSearch() };
+	private FingerprintType[] fingerprintTypes = { FingerprintType.DFS };
+	private String[] fingerprintNames = { FingerprintType.DFS.toString() };
 	private String outFile;
 	private Integer labelThreshold=5; 
 	private ExporterType exporterType = ExporterType.LIBSVM_SPARSE;
 	private DistanceType distanceType = DistanceType.TANIMOTO;
 	private int hashSpaceSize = (int) Math.pow(2, 18);
 	private boolean useAromaticityFlag=false;
+	private String idListFile = null;
+	private String sdTagForId = null;
+	private boolean useFastParser = false;
+	private boolean useMoleculeStore = false;
+	private int threads = 1;
+	private int queueDepth = 0;
 
 	/**
 	 * @param args
@@ -75,43 +102,56 @@ public class jCMapper {
 	 * read compounds and export
 	 */
 	private void exportFingerprintFile() throws IOException {
-		RandomAccessMDLReader reader = null;
+		IMDLReader reader = null;
 		try {
-			reader = new RandomAccessMDLReader(new File(sdFileInputData));
+			reader = openReader(sdFileInputData);
 		} catch (Exception e) {
 			System.out.println("SD file " + sdFileInputData + " not found!");
 			System.exit(1);
 		}
-
-		IExporter exporter = ExporterFactory.getExporter(exporterType);
-
-		if (exporter instanceof ExporterLIBSVMMatrix) {
-			((ExporterLIBSVMMatrix) exporter).setDistanceMeasure(DistanceFactory.getDistance(distanceType));
+		reader.setFastParser(useFastParser);
+		if (useMoleculeStore) {
+			if (reader instanceof RandomAccessMDLReader) {
+				((RandomAccessMDLReader) reader).openMoleculeStore();
+			} else {
+				System.out.println("Molecule store needs an indexed SD file (plain or block compressed), ignoring -ms");
+			}
 		}
-		if (exporter instanceof ExporterHashLinear) {
-			((ExporterHashLinear) exporter).setHashSpace(this.hashSpaceSize);
+		if (idListFile != null) {
+			reader = selectIds(reader);
 		}
-		if (exporter instanceof ExporterHashWeka) {
-			((ExporterHashWeka) exporter).setLabelThreshold(this.labelThreshold);
+
+		FingerprintPipeline.setDefaultThreads(threads);
+		FingerprintPipeline.setDefaultQueueDepth(queueDepth);
+
+		if (fingerprintEncodings.length > 1) {
+			// one pass over the input for all fingerprints
+			IExporter[] exporters = new IExporter[fingerprintEncodings.length];
+			File[] fOuts = new File[fingerprintEncodings.length];
+			for (int i = 0; i < fingerprintEncodings.length; i++) {
+				exporters[i] = createExporter();
+				fOuts[i] = getOutputFile(fingerprintNames[i]);
+				if (!(ExporterType.BENCHMARKS == exporterType))
+					System.out.println("Output file (" + fingerprintNames[i] + ") = " + fOuts[i].getAbsolutePath());
+			}
+			new FingerprintFanOut(reader, fingerprintEncodings).export(exporters, sdTagForLabel, fOuts, useAromaticityFlag);
+			return;
 		}
-		
-		 
 
+		IExporter exporter = createExporter();
 		if (outFile == null) {
-			String outFileName = (new File(sdFileInputData)).getName().replaceAll(".sdf", "") + "." + fingerprintType
-					+ "." + exporterType;
-			File fOut = new File(outFileName);
+			File fOut = getOutputFile(fingerprintNames[0]);
 			if (!(ExporterType.BENCHMARKS == exporterType))
 				System.out.println("Output file = " + fOut.getAbsolutePath());
 
-			exporter.export(reader, fingerprintEncoding, sdTagForLabel, fOut,useAromaticityFlag);
+			exporter.export(reader, fingerprintEncodings[0], sdTagForLabel, fOut,useAromaticityFlag);
 		} else {
 			try {
 				File fOut = new File(outFile);
 				if (!(ExporterType.BENCHMARKS == exporterType))
 					System.out.println("Output file = " + fOut.getAbsolutePath());
 
-				exporter.export(reader, fingerprintEncoding, sdTagForLabel, fOut,useAromaticityFlag);
+				exporter.export(reader, fingerprintEncodings[0], sdTagForLabel, fOut,useAromaticityFlag);
 			} catch (Exception e) {
 				System.out.println("File " + outFile + " could not be created.");
 				System.exit(1);
@@ -119,23 +159,126 @@ public class jCMapper {
 		}
 	}
 
+	private IExporter createExporter() {
+		IExporter exporter = ExporterFactory.getExporter(exporterType);
+
+		if (exporter instanceof ExporterLIBSVMMatrix) {
+			((ExporterLIBSVMMatrix) exporter).setDistanceMeasure(DistanceFactory.getDistance(distanceType));
+		}
+		if (exporter instanceof ExporterHashLinear) {
+			((ExporterHashLinear) exporter).setHashSpace(this.hashSpaceSize);
+		}
+		if (exporter instanceof ExporterHashWeka) {
+			((ExporterHashWeka) exporter).setLabelThreshold(this.labelThreshold);
+		}
+		return exporter;
+	}
+
+	/**
+	 * the output file is named after the input, the fingerprint and the
+	 * format. With several fingerprints the fingerprint name is put before
+	 * the extension of the given output file.
+	 */
+	private File getOutputFile(String fingerprintName) {
+		if (outFile == null) {
+			String inFileName = STDIN.equals(sdFileInputData) ? "stdin" : (new File(sdFileInputData)).getName();
+			String outFileName = inFileName.replaceAll("\\.gz$", "").replaceAll("\\.sdf$", "") + "." + fingerprintName
+					+ "." + exporterType;
+			return new File(outFileName);
+		}
+		if (fingerprintEncodings.length == 1) {
+			return new File(outFile);
+		}
+		File out = new File(outFile);
+		String name = out.getName();
+		int dot = name.lastIndexOf('.');
+		name = dot > 0 ? name.substring(0, dot) + "." + fingerprintName + name.substring(dot) : name + "."
+				+ fingerprintName;
+		return new File(out.getParentFile(), name);
+	}
+
+	/**
+	 * stdin and gzip compressed files are streamed, plain and block compressed
+	 * (BGZF) files are indexed for random access
+	 */
+	private IMDLReader openReader(String input) throws IOException {
+		if (STDIN.equals(input)) {
+			return StreamingMDLReader.open(System.in);
+		}
+		File sdf = new File(input);
+		InputStream in = new BufferedInputStream(new FileInputStream(sdf));
+		boolean gzip = StreamingMDLReader.isGzip(in);
+		if (gzip && !BlockGzipSDFile.isBlockCompressed(sdf)) {
+			return StreamingMDLReader.open(in);
+		}
+		in.close();
+		return new RandomAccessMDLReader(sdf);
+	}
+
+	/**
+	 * restricts the reader to the molecules of the id list, in list order
+	 */
+	private IMDLReader selectIds(IMDLReader reader) throws IOException {
+		if (!(reader instanceof RandomAccessMDLReader)) {
+			System.out.println("ID lists need an indexed SD file (plain or block compressed)");
+			System.exit(1);
+		}
+		RandomAccessMDLReader randomAccess = (RandomAccessMDLReader) reader;
+		if (randomAccess.openKeyIndex(sdTagForId) == null) {
+			System.exit(1);
+		}
+		int[] indices = new int[1024];
+		int c = 0;
+		int missing = 0;
+		// decoded like the tag values of the key index, so ids match byte for byte
+		BufferedReader ids = Files.newBufferedReader(Paths.get(idListFile), SDFRecordHelper.CHARSET);
+		String id;
+		while ((id = ids.readLine()) != null) {
+			id = id.trim();
+			if (id.length() == 0) {
+				continue;
+			}
+			int index = randomAccess.getIndexById(id);
+			if (index < 0) {
+				missing++;
+				continue;
+			}
+			if (c == indices.length) {
+				indices = Arrays.copyOf(indices, c * 2);
+			}
+			indices[c++] = index;
+		}
+		ids.close();
+		System.out.println("Selected molecules: " + c + (missing > 0 ? " (" + missing + " ids not found)" : ""));
+		return new SubsetMDLReader(randomAccess, Arrays.copyOf(indices, c));
+	}
+
 	/**
 	 * print setup
 	 */
 	private void printInfos() {
 		System.out.println("Selected label: " + sdTagForLabel);
 		System.out.println("Output format: " + exporterType);
-		System.out.println("Fingerprinting algorithm: " + fingerprintEncoding.getNameOfFingerPrinter());
-		if (fingerprintEncoding instanceof Encoding2D) {
-			System.out.println("Search depth: " + ((Encoding2D) fingerprintEncoding).getSearchDepth());
-		}
-		if (fingerprintEncoding instanceof Encoding3D) {
-			System.out.println("Distance cutoff: " + ((Encoding3D) fingerprintEncoding).getDistanceCutoff());
-			System.out.println("Stretching factor: " + ((Encoding3D) fingerprintEncoding).getStretchingFactor());
+		for (EncodingFingerprint fingerprintEncoding : fingerprintEncodings) {
+			System.out.println("Fingerprinting algorithm: " + fingerprintEncoding.getNameOfFingerPrinter());
+			if (fingerprintEncoding instanceof Encoding2D) {
+				System.out.println("Search depth: " + ((Encoding2D) fingerprintEncoding).getSearchDepth());
+			}
+			if (fingerprintEncoding instanceof Encoding3D) {
+				System.out.println("Distance cutoff: " + ((Encoding3D) fingerprintEncoding).getDistanceCutoff());
+				System.out.println("Stretching factor: " + ((Encoding3D) fingerprintEncoding).getStretchingFactor());
+			}
+			System.out.println("Labeling Algorithm: " + fingerprintEncoding.getAtomLabelType());
 		}
-		System.out.println("Labeling Algorithm: " + fingerprintEncoding.getAtomLabelType());
 		System.out.println("Export option: " + exporterType);
 		System.out.println("Use aromaticity flag: " + useAromaticityFlag);
+		if (useFastParser)
+			System.out.println("Fast V2000 parser: " + useFastParser);
+		if (useMoleculeStore)
+			System.out.println("Molecule store: " + useMoleculeStore);
+		if (threads != 1)
+			System.out.println("Threads: " + (threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+					+ (queueDepth > 0 ? ", queue depth: " + queueDepth : ""));
 		if (exporterType == ExporterType.LIBSVM_MATRIX)
 			System.out.println("Similarity measure: " + distanceType);
 		
@@ -145,7 +288,9 @@ public class jCMapper {
 	@SuppressWarnings("static-access")
 	private Options buildCommandLine() {
 		final Options options = new Options();
-		final Option optSDF = (OptionBuilder.isRequired(true).withDescription("MDL SD file").hasArg(true).create("f"));
+		final Option optSDF = (OptionBuilder.isRequired(true)
+				.withDescription("MDL SD file, gzip compressed files are streamed unless block compressed (BGZF), '" + STDIN + "' reads from stdin")
+				.hasArg(true).create("f"));
 		final Option optLabel = (OptionBuilder.isRequired(false).withDescription("Label (MDL SD Property)")
 				.hasArg(true).create("l"));
 		final Option optType = (OptionBuilder
@@ -159,10 +304,12 @@ public class jCMapper {
 		final Option optFingerprintAlgorithm = (OptionBuilder
 				.isRequired(false)
 				.withDescription(
-						"Fingerprinting algorithm: " + listEnumerationOption(FingerprintType.values())).hasArg(true)
+						"Fingerprinting algorithm, several separated by commas are calculated in one pass: "
+								+ listEnumerationOption(FingerprintType.values())).hasArg(true)
 				.create("c"));
 		final Option optDistanceCutOff = (OptionBuilder.isRequired(false)
-				.withDescription("Distance cutoff / search depth").hasArg(true).create("d"));
+				.withDescription("Distance cutoff / search depth, several separated by commas are calculated in one pass")
+				.hasArg(true).create("d"));
 		final Option optStretchingFactor = (OptionBuilder.isRequired(false)
 				.withDescription("Stretching factor (3D fingerprints)").hasArg(true).create("s"));
 		final Option optHelprinter = (OptionBuilder.isRequired(false).withDescription("Print help").hasArg(false)
@@ -176,6 +323,20 @@ public class jCMapper {
 				"Hash space size (default=2^18)").create("hs"));
 		final Option optFormat = (OptionBuilder.isRequired(false).hasArg(true).withDescription(
 				"Output format: " + listEnumerationOption(ExporterType.values())).create("ff"));
+		final Option optIdList = (OptionBuilder.isRequired(false).hasArg(true).withDescription(
+				"File with one molecule id per line, only these molecules are processed (needs -it)").create("ids"));
+		final Option optIdTag = (OptionBuilder.isRequired(false).hasArg(true).withDescription(
+				"SD tag holding the molecule ids, indexed in file.sdf.<tag>.key").create("it"));
+		final Option optFastParser = (OptionBuilder.isRequired(false).withDescription(
+				"Fast V2000 parser, unsupported records are read by the CDK reader").hasArg(false).create("fp"));
+		final Option optMoleculeStore = (OptionBuilder.isRequired(false).withDescription(
+				"Store prepared molecules in file.sdf.noh.mols and reuse them in later runs").hasArg(false).create("ms"));
+		final Option optThreads = (OptionBuilder.isRequired(false).withDescription(
+				"Number of threads reading and fingerprinting molecules, 0 uses all processors (default 1)").hasArg(true).create("t"));
+		final Option optQueueDepth = (OptionBuilder.isRequired(false).withDescription(
+				"Number of molecules read ahead of the output with several threads (default 4 per thread)").hasArg(true).create("qd"));
+		final Option optSubstructureHash = (OptionBuilder.isRequired(false).withDescription(
+				"Hash the substructures of ECFP/ECFC features as in earlier versions, much slower").hasArg(false).create("sh"));
 		final Option optAromFlag = (OptionBuilder.isRequired(false).withDescription("Use aromaticity flag (only relevant for STRING_PATTERNS,SQLITE,WEKA_NOMINAL)").hasArg(false)
 				.create("k"));
 
@@ -191,6 +352,13 @@ public class jCMapper {
 		options.addOption(optStretchingFactor);
 		options.addOption(optHashSpace);
 		options.addOption(optAromFlag);
+		options.addOption(optIdList);
+		options.addOption(optIdTag);
+		options.addOption(optFastParser);
+		options.addOption(optMoleculeStore);
+		options.addOption(optThreads);
+		options.addOption(optQueueDepth);
+		options.addOption(optSubstructureHash);
 		return options.addOption(optHelprinter);
 	}
 	
@@ -204,6 +372,49 @@ public class jCMapper {
 		return optionString.toString();
 	}
 
+	/**
+	 * replaces each fingerprinter depending on the distance cutoff or search
+	 * depth by one for each of the values, named after the fingerprint and
+	 * the value. Fingerprinters ignoring them, e.g. MACCS, are calculated once
+	 * under their plain name. The ECFP fingerprinters of all search depths
+	 * share one traversal.
+	 */
+	private void expandDistanceCutOffs(int[] distanceCutOffs) throws FingerPrinterException {
+		final List<EncodingFingerprint> encodings = new ArrayList<EncodingFingerprint>();
+		final List<FingerprintType> types = new ArrayList<FingerprintType>();
+		final List<String> names = new ArrayList<String>();
+		for (int i = 0; i < fingerprintEncodings.length; i++) {
+			final EncodingFingerprint fingerprintEncoding = fingerprintEncodings[i];
+			if (!fingerprintEncoding.usesDistanceCutOff()) {
+				encodings.add(fingerprintEncoding);
+				types.add(fingerprintTypes[i]);
+				names.add(fingerprintNames[i]);
+				continue;
+			}
+			EncodingFingerprint[] expanded = new EncodingFingerprint[distanceCutOffs.length];
+			if (fingerprintEncoding instanceof Encoding2DECFP) {
+				expanded = ((Encoding2DECFP) fingerprintEncoding).getRadiusFingerprinters(distanceCutOffs);
+			}
+			for (int d = 0; d < distanceCutOffs.length; d++) {
+				if (expanded[d] == null) {
+					expanded[d] = FingerPrinterFactory.getFingerprinter(fingerprintTypes[i]);
+					expanded[d].setAtomLabelType(fingerprintEncoding.getAtomLabelType());
+					if (expanded[d] instanceof Encoding2D) {
+						((Encoding2D) expanded[d]).setSearchDepth(distanceCutOffs[d]);
+					} else {
+						((Encoding3D) expanded[d]).setDistanceCutoff(distanceCutOffs[d]);
+					}
+				}
+				encodings.add(expanded[d]);
+				types.add(fingerprintTypes[i]);
+				names.add(fingerprintNames[i] + ".d" + distanceCutOffs[d]);
+			}
+		}
+		fingerprintEncodings = encodings.toArray(new EncodingFingerprint[encodings.size()]);
+		fingerprintTypes = types.toArray(new FingerprintType[types.size()]);
+		fingerprintNames = names.toArray(new String[names.size()]);
+	}
+
 	private void parseCommandLine(String[] args, Options options) throws ParseException {
 		CommandLine lvCmd = null;
 		final HelpFormatter lvFormater = new HelpFormatter();
@@ -226,9 +437,15 @@ public class jCMapper {
 		try {
 			if (lvCmd.hasOption("c")) {
 				try {
-					String fingerprintName = lvCmd.getOptionValue("c");
-					fingerprintType = FingerPrinterFactory.FingerprintType.valueOf(fingerprintName);
-					fingerprintEncoding = FingerPrinterFactory.getFingerprinter(fingerprintType);
+					String[] fingerprintNames = lvCmd.getOptionValue("c").split(",");
+					fingerprintTypes = new FingerprintType[fingerprintNames.length];
+					fingerprintEncodings = new EncodingFingerprint[fingerprintNames.length];
+					for (int i = 0; i < fingerprintNames.length; i++) {
+						fingerprintTypes[i] = FingerPrinterFactory.FingerprintType.valueOf(fingerprintNames[i].trim());
+						fingerprintEncodings[i] = FingerPrinterFactory.getFingerprinter(fingerprintTypes[i]);
+						fingerprintNames[i] = fingerprintTypes[i].toString();
+					}
+					this.fingerprintNames = fingerprintNames;
 				} catch (Exception e) {
 					throw new ParseException("Error parsing name of encoding type. Please check your input.");
 				}
@@ -238,7 +455,8 @@ public class jCMapper {
 			}
 			if (lvCmd.hasOption("f")) {
 				sdFileInputData = new String(lvCmd.getOptionValue("f"));
-				sdFileInputData = (new File(sdFileInputData)).getAbsolutePath();
+				if (!STDIN.equals(sdFileInputData))
+					sdFileInputData = (new File(sdFileInputData)).getAbsolutePath();
 				System.out.println("Processing MDL SD file: " + sdFileInputData);
 			}
 			if (lvCmd.hasOption("o")) {
@@ -273,15 +491,53 @@ public class jCMapper {
 			if (lvCmd.hasOption("l")) {
 				sdTagForLabel = new String(lvCmd.getOptionValue("l"));
 			}
+			if (lvCmd.hasOption("ids")) {
+				idListFile = new File(lvCmd.getOptionValue("ids")).getAbsolutePath();
+				if (!lvCmd.hasOption("it")) {
+					throw new ParseException("Option -ids needs the id tag (-it).");
+				}
+				sdTagForId = lvCmd.getOptionValue("it");
+			}
+			if (lvCmd.hasOption("fp")) {
+				useFastParser = true;
+			}
+			if (lvCmd.hasOption("ms")) {
+				useMoleculeStore = true;
+			}
+			if (lvCmd.hasOption("t")) {
+				try {
+					threads = Integer.parseInt(lvCmd.getOptionValue("t"));
+				} catch (Exception e) {
+					throw new ParseException("Error parsing integer value for number of threads. Please check your input.");
+				}
+				if (threads < 0)
+					throw new ParseException("Error parsing integer value for number of threads. Please check your input.");
+			}
+			if (lvCmd.hasOption("qd")) {
+				try {
+					queueDepth = Integer.parseInt(lvCmd.getOptionValue("qd"));
+				} catch (Exception e) {
+					throw new ParseException("Error parsing integer value for queue depth. Please check your input.");
+				}
+			}
 			if (lvCmd.hasOption("a")) {
 				try {
 					final String atomType = lvCmd.getOptionValue("a");
 					final AtomLabelType atomLabelType = AtomLabelType.valueOf(atomType);
-					fingerprintEncoding.setAtomLabelType(atomLabelType);
+					for (EncodingFingerprint fingerprintEncoding : fingerprintEncodings) {
+						fingerprintEncoding.setAtomLabelType(atomLabelType);
+					}
 				} catch (Exception e) {
 					throw new ParseException("Error parsing name of atom type. Please check your input.");
 				}
 			}
+			if (lvCmd.hasOption("sh")) {
+				for (EncodingFingerprint fingerprintEncoding : fingerprintEncodings) {
+					if (fingerprintEncoding instanceof Encoding2DECFP) {
+						((Encoding2DECFP) fingerprintEncoding).setSubstructureHash(true);
+					}
+				}
+			}
 			if (lvCmd.hasOption("hs")) {
 				try {
 					this.hashSpaceSize = new Integer(lvCmd.getOptionValue("hs"));
@@ -291,12 +547,22 @@ public class jCMapper {
 			}
 			if (lvCmd.hasOption("d")) {
 				try {
-					final double distanceCutOff = new Double(lvCmd.getOptionValue("d"));
-					if (fingerprintEncoding instanceof Encoding2D) {
-						((Encoding2D) fingerprintEncoding).setSearchDepth((int) distanceCutOff);
+					final String[] values = lvCmd.getOptionValue("d").split(",");
+					final int[] distanceCutOffs = new int[values.length];
+					for (int i = 0; i < values.length; i++) {
+						distanceCutOffs[i] = (int) new Double(values[i].trim()).doubleValue();
 					}
-					if (fingerprintEncoding instanceof Encoding3D) {
-						((Encoding3D) fingerprintEncoding).setDistanceCutoff((int) distanceCutOff);
+					if (distanceCutOffs.length > 1) {
+						expandDistanceCutOffs(distanceCutOffs);
+					} else {
+						for (EncodingFingerprint fingerprintEncoding : fingerprintEncodings) {
+							if (fingerprintEncoding instanceof Encoding2D) {
+								((Encoding2D) fingerprintEncoding).setSearchDepth(distanceCutOffs[0]);
+							}
+							if (fingerprintEncoding instanceof Encoding3D) {
+								((Encoding3D) fingerprintEncoding).setDistanceCutoff(distanceCutOffs[0]);
+							}
+						}
 					}
 				} catch (Exception e) {
 					throw new ParseException("Error parsing double value for distance cutoff. Please check your input.");
@@ -305,8 +571,10 @@ public class jCMapper {
 			if (lvCmd.hasOption("s")) {
 				try {
 					double stretchingFactor = new Double(lvCmd.getOptionValue("s"));
-					if (fingerprintEncoding instanceof Encoding3D) {
-						((Encoding3D) fingerprintEncoding).setStretchingFactor(stretchingFactor);
+					for (EncodingFingerprint fingerprintEncoding : fingerprintEncodings) {
+						if (fingerprintEncoding instanceof Encoding3D) {
+							((Encoding3D) fingerprintEncoding).setStretchingFactor(stretchingFactor);
+						}
 					}
 				} catch (Exception e) {
 					System.out.println("Error parsing double value for stretching factor. Please check your input.");
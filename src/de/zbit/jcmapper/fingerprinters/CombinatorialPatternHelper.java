@@ -5,17 +5,24 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Vector;
 
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.features.NumericStringFeature;
+import de.zbit.jcmapper.fingerprinters.features.PackedPatternFeature;
 import de.zbit.jcmapper.tools.moltyping.ExtendedAtomAndBondTyper;
 import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 import de.zbit.jcmapper.tools.moltyping.PharmacophorePointAssigner;
 import de.zbit.jcmapper.tools.moltyping.pharmacophore.PotentialPharmacophorePoint;
 
-
+/**
+ * enumerates the 2 and 3 point patterns of the atoms or pharmacophore points
+ * of a molecule within a distance cutoff. The labels are numbered once per
+ * molecule and the patterns are packed into a {@link PackedPatternFeature},
+ * which has the hash code of the pattern string without building it. Each
+ * set of three atoms is visited once, the six orders of the three atoms give
+ * the same features as enumerating all ordered triples.
+ */
 public class CombinatorialPatternHelper {
 
 	final PharmacophorePointAssigner passigner = new PharmacophorePointAssigner();
@@ -30,51 +37,21 @@ public class CombinatorialPatternHelper {
 	 * @return
 	 */
 	public List<IFeature> getFingerprint2PointPPP(IAtomContainer ac, int[][] matrix, int distanceCutOff) {
-
-		final PharmacophorePointAssigner passigner = new PharmacophorePointAssigner();
-		final HashMap<Integer, Vector<PotentialPharmacophorePoint>> pharmacophorePoints = passigner.getPharmacophorePoints(ac);
+		final PatternCoder coder = new PatternCoder(distanceCutOff);
+		final int[][] points = getPharmacophorePoints(ac, matrix.length, coder);
 		final ArrayList<IFeature> features = new ArrayList<IFeature>();
 
 		for (int i = 0; i < matrix.length; i++) {
-			final Vector<PotentialPharmacophorePoint> pointsAtomI = pharmacophorePoints.get(i);
-			if (pointsAtomI == null) {
+			if (points[i] == null) {
 				continue;
 			}
-			for (int j = i; j < matrix.length; j++) {
-				if (i == j) {
-					continue;
-				}
-				if (matrix[i][j] > distanceCutOff) {
+			for (int j = i + 1; j < matrix.length; j++) {
+				if (matrix[i][j] > distanceCutOff || points[j] == null) {
 					continue;
 				}
-				final Vector<PotentialPharmacophorePoint> pointsAtomJ = pharmacophorePoints.get(j);
-				if (pointsAtomJ == null) {
-					continue;
-				}
-
-				for (final PotentialPharmacophorePoint pointAtomI : pointsAtomI) {
-					final String phaTypeI = pointAtomI.getPharmacophoreType();
-
-					for (final PotentialPharmacophorePoint pointAtomJ : pointsAtomJ) {
-						final StringBuffer sb = new StringBuffer();
-						final String phaTypeJ = pointAtomJ.getPharmacophoreType();
-
-						if (phaTypeI.compareTo(phaTypeJ) > 0) {
-							sb.append(phaTypeI);
-							sb.append("-");
-							sb.append(matrix[i][j]);
-							sb.append("-");
-							sb.append(phaTypeJ);
-						} else {
-							sb.append(phaTypeJ);
-							sb.append("-");
-							sb.append(matrix[j][i]);
-							sb.append("-");
-							sb.append(phaTypeI);
-						}
-
-						final NumericStringFeature feature = new NumericStringFeature(sb.toString(), 1.0);
-						features.add(feature);
+				for (final int pointI : points[i]) {
+					for (final int pointJ : points[j]) {
+						features.add(coder.pair(matrix, i, pointI, j, pointJ));
 					}
 				}
 			}
@@ -92,65 +69,31 @@ public class CombinatorialPatternHelper {
 	 * @return
 	 */
 	public List<IFeature> getFingerprint3PointPPP(IAtomContainer ac, int[][] matrix, int distanceCutOff) {
-		final PharmacophorePointAssigner passigner = new PharmacophorePointAssigner();
-		final HashMap<Integer, Vector<PotentialPharmacophorePoint>> pharmacophorePoints = passigner.getPharmacophorePoints(ac);
+		final PatternCoder coder = new PatternCoder(distanceCutOff);
+		final int[][] points = getPharmacophorePoints(ac, matrix.length, coder);
 		final ArrayList<IFeature> features = new ArrayList<IFeature>();
 
 		for (int i = 0; i < matrix.length; i++) {
-
-			final Vector<PotentialPharmacophorePoint> pointsAtomI = pharmacophorePoints.get(i);
-			if (pointsAtomI == null) {
+			if (points[i] == null) {
 				continue;
 			}
-
-			for (int j = 0; j < matrix.length; j++) {
-				if (i == j) {
+			for (int j = i + 1; j < matrix.length; j++) {
+				if ((matrix[i][j] > distanceCutOff && matrix[j][i] > distanceCutOff) || points[j] == null) {
 					continue;
 				}
-				if (matrix[i][j] > distanceCutOff) {
-					continue;
-				}
-				final Vector<PotentialPharmacophorePoint> pointsAtomJ = pharmacophorePoints.get(j);
-				if (pointsAtomJ == null) {
-					continue;
-				}
-
-				for (int k = 0; k < matrix.length; k++) {
-
-					if (k == j || k == i) {
+				for (int k = j + 1; k < matrix.length; k++) {
+					if (points[k] == null) {
 						continue;
 					}
-					if (matrix[j][k] > distanceCutOff) {
+					final boolean forward = isWithin(matrix, i, j, k, distanceCutOff);
+					final boolean backward = isWithin(matrix, i, k, j, distanceCutOff);
+					if (!forward && !backward) {
 						continue;
 					}
-					if (matrix[k][i] > distanceCutOff) {
-						continue;
-					}
-
-					final Vector<PotentialPharmacophorePoint> pointsAtomK = pharmacophorePoints.get(k);
-					if (pointsAtomK == null) {
-						continue;
-					}
-
-					for (final PotentialPharmacophorePoint pointAtomI : pointsAtomI) {
-						for (final PotentialPharmacophorePoint pointAtomJ : pointsAtomJ) {
-							for (final PotentialPharmacophorePoint pointAtomK : pointsAtomK) {
-								final StringBuffer sb = new StringBuffer();
-
-								sb.append(pointAtomI.getPharmacophoreType());
-								sb.append("-");
-								sb.append(matrix[i][j]);
-								sb.append("-");
-								sb.append(pointAtomJ.getPharmacophoreType());
-								sb.append("-");
-								sb.append(matrix[j][k]);
-								sb.append("-");
-								sb.append(pointAtomK.getPharmacophoreType());
-								sb.append("-");
-								sb.append(matrix[k][i]);
-
-								final NumericStringFeature feature = new NumericStringFeature(sb.toString(), 1.0);
-								features.add(feature);
+					for (final int pointI : points[i]) {
+						for (final int pointJ : points[j]) {
+							for (final int pointK : points[k]) {
+								coder.addTriples(features, matrix, i, pointI, j, pointJ, k, pointK, forward, backward);
 							}
 						}
 					}
@@ -171,50 +114,16 @@ public class CombinatorialPatternHelper {
 	 */
 	public List<IFeature> getFingerprint2Point(IAtomContainer ac, int[][] matrix, int distanceCutoff,
 			ExtendedAtomAndBondTyper typer) {
+		final PatternCoder coder = new PatternCoder(distanceCutoff);
+		final int[] labels = getAtomLabels(ac, matrix.length, typer, coder);
 		final ArrayList<IFeature> features = new ArrayList<IFeature>();
 
 		for (int i = 0; i < matrix.length; i++) {
-			// ith atom
-			String atomTypeA = null, atomTypeB = null;
-			try {
-				final IAtom atomA = ac.getAtom(i);
-				atomTypeA = typer.getAtomLabel(atomA);
-			} catch (final MoltyperException e) {
-				e.printStackTrace();
-			}
-
-			// jth atom
-			for (int j = i; j < matrix.length; j++) {
-				if (i == j) {
-					continue;
-				}
+			for (int j = i + 1; j < matrix.length; j++) {
 				if (matrix[i][j] > distanceCutoff) {
 					continue;
 				}
-
-				try {
-					final IAtom atomB = ac.getAtom(j);
-					atomTypeB = typer.getAtomLabel(atomB);
-				} catch (final MoltyperException e) {
-					e.printStackTrace();
-				}
-
-				final StringBuffer sb = new StringBuffer();
-				if (atomTypeA.compareTo(atomTypeB) > 0) {
-					sb.append(atomTypeA);
-					sb.append("-");
-					sb.append(matrix[i][j]);
-					sb.append("-");
-					sb.append(atomTypeB);
-				} else {
-					sb.append(atomTypeB);
-					sb.append("-");
-					sb.append(matrix[j][i]);
-					sb.append("-");
-					sb.append(atomTypeA);
-				}
-				final NumericStringFeature feature = new NumericStringFeature(sb.toString(), 1);
-				features.add(feature);
+				features.add(coder.pair(matrix, i, labels[i], j, labels[j]));
 			}
 		}
 		return features;
@@ -231,54 +140,202 @@ public class CombinatorialPatternHelper {
 	 */
 	public List<IFeature> getFingerprint3Point(IAtomContainer ac, int[][] matrix, int distanceCutoff,
 			ExtendedAtomAndBondTyper typer) {
+		final PatternCoder coder = new PatternCoder(distanceCutoff);
+		final int[] labels = getAtomLabels(ac, matrix.length, typer, coder);
 		final ArrayList<IFeature> features = new ArrayList<IFeature>();
 
 		for (int i = 0; i < matrix.length; i++) {
-			for (int j = 0; j < matrix.length; j++) {
-				if (i == j) {
+			for (int j = i + 1; j < matrix.length; j++) {
+				if (matrix[i][j] > distanceCutoff && matrix[j][i] > distanceCutoff) {
 					continue;
 				}
-				if (matrix[i][j] > distanceCutoff) {
-					continue;
+				for (int k = j + 1; k < matrix.length; k++) {
+					final boolean forward = isWithin(matrix, i, j, k, distanceCutoff);
+					final boolean backward = isWithin(matrix, i, k, j, distanceCutoff);
+					if (forward || backward) {
+						coder.addTriples(features, matrix, i, labels[i], j, labels[j], k, labels[k], forward, backward);
+					}
 				}
+			}
+		}
+		return features;
+	}
 
-				for (int k = 0; k < matrix.length; k++) {
-					if ((i == k) || (j == k)) {
-						continue;
-					}
-					if (matrix[j][k] > distanceCutoff) {
-						continue;
-					}
-					if (matrix[k][i] > distanceCutoff) {
-						continue;
-					}
+	/**
+	 * true if the distances from a to b, b to c and c to a are within the
+	 * cutoff
+	 */
+	private static boolean isWithin(int[][] matrix, int a, int b, int c, int distanceCutoff) {
+		return matrix[a][b] <= distanceCutoff && matrix[b][c] <= distanceCutoff && matrix[c][a] <= distanceCutoff;
+	}
 
-					final StringBuffer sb = new StringBuffer();
-					final IAtom atomA = ac.getAtom(i);
-					final IAtom atomB = ac.getAtom(j);
-					final IAtom atomC = ac.getAtom(k);
+	/**
+	 * returns the codes of the atom labels
+	 */
+	private static int[] getAtomLabels(IAtomContainer ac, int atomCount, ExtendedAtomAndBondTyper typer,
+			PatternCoder coder) {
+		final int[] labels = new int[atomCount];
+		for (int i = 0; i < atomCount; i++) {
+			String label = null;
+			try {
+				label = typer.getAtomLabel(ac.getAtom(i));
+			} catch (final MoltyperException e) {
+				e.printStackTrace();
+			}
+			labels[i] = coder.getCode(String.valueOf(label));
+		}
+		coder.freeze();
+		return labels;
+	}
 
-					try {
-						sb.append(typer.getAtomLabel(atomA));
-						sb.append("-");
-						sb.append(matrix[i][j]);
-						sb.append("-");
-						sb.append(typer.getAtomLabel(atomB));
-						sb.append("-");
-						sb.append(matrix[j][k]);
-						sb.append("-");
-						sb.append(typer.getAtomLabel(atomC));
-						sb.append("-");
-						sb.append(matrix[k][i]);
-					} catch (final MoltyperException e) {
-						e.printStackTrace();
-					}
+	/**
+	 * returns the codes of the pharmacophore types of the atoms, null for
+	 * atoms without pharmacophore points
+	 */
+	private int[][] getPharmacophorePoints(IAtomContainer ac, int atomCount, PatternCoder coder) {
+		final HashMap<Integer, Vector<PotentialPharmacophorePoint>> pharmacophorePoints = this.passigner
+				.getPharmacophorePoints(ac);
+		final int[][] points = new int[atomCount][];
+		for (int i = 0; i < atomCount; i++) {
+			final Vector<PotentialPharmacophorePoint> pointsAtom = pharmacophorePoints.get(i);
+			if (pointsAtom == null) {
+				continue;
+			}
+			points[i] = new int[pointsAtom.size()];
+			for (int p = 0; p < points[i].length; p++) {
+				points[i][p] = coder.getCode(pointsAtom.get(p).getPharmacophoreType());
+			}
+		}
+		coder.freeze();
+		return points;
+	}
 
-					final NumericStringFeature feature = new NumericStringFeature(sb.toString(), 1.0);
-					features.add(feature);
-				}
+	/**
+	 * numbers the labels of a molecule and creates the features of its
+	 * patterns. The hash code of a pattern string is put together from the
+	 * hash codes of its parts, as hash(xy) = hash(x) * 31^length(y) + hash(y).
+	 */
+	private static class PatternCoder {
+		private final HashMap<String, Integer> codes = new HashMap<String, Integer>();
+		private final ArrayList<String> labelList = new ArrayList<String>();
+		private String[] labels;
+		private int[] labelHashes;
+		private int[] labelPowers;
+		private final int[] distanceHashes;
+		private final int[] distancePowers;
+		private boolean packable;
+
+		private PatternCoder(int distanceCutoff) {
+			final int distances = Math.max(Math.min(distanceCutoff, PackedPatternFeature.MAX_VALUE - 1) + 1, 0);
+			this.distanceHashes = new int[distances];
+			this.distancePowers = new int[distances];
+			for (int d = 0; d < distances; d++) {
+				this.distanceHashes[d] = String.valueOf(d).hashCode();
+				this.distancePowers[d] = power(String.valueOf(d).length());
+			}
+		}
+
+		private int getCode(String label) {
+			Integer code = this.codes.get(label);
+			if (code == null) {
+				code = this.labelList.size();
+				this.codes.put(label, code);
+				this.labelList.add(label);
+			}
+			return code;
+		}
+
+		/**
+		 * called when all labels are numbered
+		 */
+		private void freeze() {
+			this.labels = this.labelList.toArray(new String[this.labelList.size()]);
+			this.packable = this.labels.length <= PackedPatternFeature.MAX_VALUE;
+			this.labelHashes = new int[this.labels.length];
+			this.labelPowers = new int[this.labels.length];
+			for (int l = 0; l < this.labels.length; l++) {
+				this.labelHashes[l] = this.labels[l].hashCode();
+				this.labelPowers[l] = power(this.labels[l].length());
+			}
+		}
+
+		private static int power(int length) {
+			int power = 1;
+			for (int i = 0; i < length; i++) {
+				power *= 31;
+			}
+			return power;
+		}
+
+		private boolean isPackable(int distance) {
+			return this.packable && distance >= 0 && distance < this.distanceHashes.length;
+		}
+
+		/**
+		 * appends -distance-label to the hash code of a pattern string
+		 */
+		private int append(int hash, int distance, int label) {
+			hash = hash * 31 + '-';
+			hash = hash * this.distancePowers[distance] + this.distanceHashes[distance];
+			hash = hash * 31 + '-';
+			return hash * this.labelPowers[label] + this.labelHashes[label];
+		}
+
+		/**
+		 * the pattern of two atoms, the greater label first
+		 */
+		private IFeature pair(int[][] matrix, int a, int labelA, int b, int labelB) {
+			if (this.labels[labelA].compareTo(this.labels[labelB]) <= 0) {
+				final int swap = a;
+				a = b;
+				b = swap;
+				final int swapLabel = labelA;
+				labelA = labelB;
+				labelB = swapLabel;
+			}
+			final int distance = matrix[a][b];
+			if (!this.isPackable(distance)) {
+				return new NumericStringFeature(this.labels[labelA] + "-" + distance + "-" + this.labels[labelB], 1.0);
+			}
+			return new PackedPatternFeature(this.labels, PackedPatternFeature.pack(labelA, distance, labelB),
+					this.append(this.labelHashes[labelA], distance, labelB));
+		}
+
+		/**
+		 * the pattern of three atoms in the order a, b, c
+		 */
+		private IFeature triple(int[][] matrix, int a, int labelA, int b, int labelB, int c, int labelC) {
+			final int distanceAB = matrix[a][b];
+			final int distanceBC = matrix[b][c];
+			final int distanceCA = matrix[c][a];
+			if (!this.isPackable(distanceAB) || !this.isPackable(distanceBC) || !this.isPackable(distanceCA)) {
+				return new NumericStringFeature(this.labels[labelA] + "-" + distanceAB + "-" + this.labels[labelB]
+						+ "-" + distanceBC + "-" + this.labels[labelC] + "-" + distanceCA, 1.0);
+			}
+			int hash = this.append(this.labelHashes[labelA], distanceAB, labelB);
+			hash = this.append(hash, distanceBC, labelC);
+			hash = hash * 31 + '-';
+			hash = hash * this.distancePowers[distanceCA] + this.distanceHashes[distanceCA];
+			return new PackedPatternFeature(this.labels, PackedPatternFeature.pack(labelA, distanceAB, labelB,
+					distanceBC, labelC, distanceCA), hash);
+		}
+
+		/**
+		 * adds the patterns of the orders of three atoms, forward are the
+		 * rotations of i, j, k and backward the ones of i, k, j
+		 */
+		private void addTriples(List<IFeature> features, int[][] matrix, int i, int labelI, int j, int labelJ, int k,
+				int labelK, boolean forward, boolean backward) {
+			if (forward) {
+				features.add(this.triple(matrix, i, labelI, j, labelJ, k, labelK));
+				features.add(this.triple(matrix, j, labelJ, k, labelK, i, labelI));
+				features.add(this.triple(matrix, k, labelK, i, labelI, j, labelJ));
+			}
+			if (backward) {
+				features.add(this.triple(matrix, i, labelI, k, labelK, j, labelJ));
+				features.add(this.triple(matrix, k, labelK, j, labelJ, i, labelI));
+				features.add(this.triple(matrix, j, labelJ, i, labelI, k, labelK));
 			}
 		}
-		return features;
 	}
 }
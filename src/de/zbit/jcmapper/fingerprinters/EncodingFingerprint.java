@@ -28,6 +28,29 @@ public abstract class EncodingFingerprint {
 		return ExtendedAtomAndBondTyper.getBondSymbol(bond);
 	}
 
+	/**
+	 * returns the ids of the atom labels in the LabelDictionary, each atom is
+	 * labelled once
+	 * 
+	 * @param ac
+	 * @return
+	 * @throws MoltyperException
+	 */
+	public int[] getAtomLabelIds(IAtomContainer ac) throws MoltyperException {
+		return this.atomTyper.getAtomLabelIds(ac);
+	}
+
+	/**
+	 * returns the ids of the bond labels in the LabelDictionary
+	 * 
+	 * @param ac
+	 * @return
+	 * @throws MoltyperException
+	 */
+	public int[] getBondLabelIds(IAtomContainer ac) throws MoltyperException {
+		return ExtendedAtomAndBondTyper.getBondSymbolIds(ac);
+	}
+
 	public abstract List<IFeature> getFingerprint(IAtomContainer ac);
 
 	public abstract String getNameOfFingerPrinter();
@@ -36,6 +59,27 @@ public abstract class EncodingFingerprint {
 		return false;
 	}
 
+	/**
+	 * returns true if the fingerprint depends on the search depth or the
+	 * distance cutoff, only these are calculated for several of them
+	 * 
+	 * @return
+	 */
+	public boolean usesDistanceCutOff() {
+		return false;
+	}
+
+	/**
+	 * getFingerprint keeps its state per call, so a configured fingerprinter
+	 * may be shared between threads. Fingerprinters keeping state between
+	 * calls return false and are only used by one thread at a time
+	 * 
+	 * @return true if getFingerprint may be called concurrently
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+
 	public void setAtomLabelType(AtomLabelType atomLabelType) {
 		this.atomTyper.setAtomLabelType(atomLabelType);
 	}
@@ -5,7 +5,7 @@ import org.openscience.cdk.interfaces.IBond;
 
 public class NumericStringFeature implements IFeature {
 
-	private final String feature;
+	private String feature;
 	private final double value;
 	private final int hashCode;
 
@@ -15,9 +15,31 @@ public class NumericStringFeature implements IFeature {
 		this.hashCode = feature.hashCode();
 	}
 
+	/**
+	 * for features building their string only when it is asked for, the hash
+	 * code has to be the hash code of that string
+	 * 
+	 * @param hashCode
+	 * @param value
+	 */
+	protected NumericStringFeature(int hashCode, double value) {
+		this.feature = null;
+		this.value = value;
+		this.hashCode = hashCode;
+	}
+
+	/**
+	 * builds the string of a feature created without it
+	 * 
+	 * @return
+	 */
+	protected String createFeatureString() {
+		return null;
+	}
+
 	@Override
 	public int compareTo(IFeature o) {
-		return this.feature.compareTo(((NumericStringFeature) o).feature);
+		return this.featureToString(false).compareTo(o.featureToString(false));
 	}
 
 	@Override
@@ -28,6 +50,9 @@ public class NumericStringFeature implements IFeature {
 
 	@Override
 	public String featureToString(boolean useAromaticFlag) {
+		if (this.feature == null) {
+			this.feature = this.createFeatureString();
+		}
 		return this.feature;
 	}
 
@@ -0,0 +1,73 @@
+package de.zbit.jcmapper.fingerprinters.features;
+
+/**
+ * a pattern of two or three labels and the distances between them, packed
+ * into a long: 2 bits for the number of labels, then for each label 10 bits
+ * for its code and 10 bits for the distance to the next label. The string,
+ * e.g. A-2-B-3-C-4 for three labels, is only built when it is asked for, the
+ * hash code is the hash code of that string.
+ */
+public class PackedPatternFeature extends NumericStringFeature {
+
+	/**
+	 * label codes and distances have to be smaller
+	 */
+	public static final int MAX_VALUE = 1 << 10;
+
+	private final String[] labels;
+	private final long pattern;
+
+	/**
+	 * @param labels
+	 *            the labels of the molecule, shared by its features
+	 * @param pattern
+	 *            the packed pattern, see pack
+	 * @param hashCode
+	 *            hash code of the pattern string
+	 */
+	public PackedPatternFeature(String[] labels, long pattern, int hashCode) {
+		super(hashCode, 1.0);
+		this.labels = labels;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * packs the label codes and the distances of a pattern of two labels
+	 */
+	public static long pack(int labelA, int distanceAB, int labelB) {
+		return 2L << 60 | (long) labelA << 50 | (long) distanceAB << 40 | (long) labelB << 30;
+	}
+
+	/**
+	 * packs the label codes and the distances of a pattern of three labels
+	 */
+	public static long pack(int labelA, int distanceAB, int labelB, int distanceBC, int labelC, int distanceCA) {
+		return 3L << 60 | (long) labelA << 50 | (long) distanceAB << 40 | (long) labelB << 30 | (long) distanceBC << 20
+				| (long) labelC << 10 | distanceCA;
+	}
+
+	public long getPattern() {
+		return this.pattern;
+	}
+
+	@Override
+	protected String createFeatureString() {
+		final StringBuilder sb = new StringBuilder();
+		final int size = (int) (this.pattern >>> 60);
+		for (int p = 0; p < size; p++) {
+			if (p > 0) {
+				sb.append('-');
+			}
+			sb.append(this.labels[field(50 - 20 * p)]);
+			if (p < size - 1 || size == 3) {
+				sb.append('-');
+				sb.append(field(40 - 20 * p));
+			}
+		}
+		return sb.toString();
+	}
+
+	private int field(int shift) {
+		return (int) (this.pattern >>> shift) & (MAX_VALUE - 1);
+	}
+}
@@ -55,6 +55,11 @@ public abstract class Encoding3D extends EncodingFingerprint {
 		this.distanceCutoff = distanceCutoff;
 	}
 
+	@Override
+	public boolean usesDistanceCutOff() {
+		return true;
+	}
+
 	public void setStretchingFactor(double StretchingFactor) {
 		this.stretchingFactor = StretchingFactor;
 	}
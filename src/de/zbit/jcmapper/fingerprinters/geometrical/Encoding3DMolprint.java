@@ -26,13 +26,18 @@ public class Encoding3DMolprint extends Encoding3D {
 			return this.generateFingerprintForSingleAtomMolecule(molecule.getAtom(0));
 		}
 
+		// each atom is labelled once
+		final String[] labels = new String[molecule.getAtomCount()];
+		for (int atom = 0; atom < labels.length; atom++) {
+			labels[atom] = this.getAtomLabel(molecule.getAtom(atom));
+		}
 		for (int atomID = 0; atomID < stretchedDistanceMatrix.length; atomID++) {
 			final List<List<String>> spheres = this.generateSphereLists();
 
 			// generate the features
 			for (int atom = 0; atom < stretchedDistanceMatrix[atomID].length; atom++) {
 				if (stretchedDistanceMatrix[atomID][atom] <= this.getDistanceCutoff()) {
-					spheres.get(stretchedDistanceMatrix[atomID][atom]).add(this.getAtomLabel(molecule.getAtom(atom)));
+					spheres.get(stretchedDistanceMatrix[atomID][atom]).add(labels[atom]);
 				}
 			}
 
@@ -2,279 +2,228 @@ package de.zbit.jcmapper.fingerprinters.topological;
 
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.interfaces.IBond;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.fingerprinters.features.NumericStringFeature;
+import de.zbit.jcmapper.fingerprinters.topological.features.LabelPathFeature;
 import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 
 
 public class DepthFirstSearch extends Encoding2D {
 
 	/**
-	 * @author russr
-	 * 
+	 * the state of one search: the current path as a stack of atoms and label
+	 * codes with the hashes of both reading directions
 	 */
-
-	public class DepthFirstSearchFeature {
-
-		final private int featureSize;
-		final private String featureString;
-		final private IAtom firstAtom;
-		final private IAtom lastAtom;
-		final private int atomsHash;
-
-		public int getAtomsHash() {
-			return atomsHash;
+	private class Search {
+		private final LabelledGraph graph;
+		private final int[] atomLabels;
+		private final int[] labelHash;
+		private final int[] labelPower;
+		private final long[] labelHash64;
+		private final long[] labelPower64;
+
+		private final int maxBonds;
+		private final int[] pathAtoms;
+		private final int[] pathLabels;
+		private final int[] forwardHash;
+		private final int[] reverseHash;
+		private final int[] power;
+		private final long[] forwardHash64;
+		private final long[] reverseHash64;
+		private final long[] power64;
+		private final long[] atomSetKey;
+		private final long[] visited;
+
+		// paths already stored, by path hash and end atoms with atom set
+		private long[] storedPaths = new long[64];
+		private boolean[] occupied = new boolean[32];
+		private int stored = 0;
+
+		private final ArrayList<IFeature> features = new ArrayList<IFeature>();
+
+		private Search(IAtomContainer ac, int searchDepth) throws MoltyperException {
+			this.graph = new LabelledGraph(DepthFirstSearch.this, ac);
+			this.atomLabels = graph.atomLabels;
+			this.labelHash = graph.labelHash;
+			this.labelPower = graph.labelPower;
+			this.labelHash64 = graph.labelHash64;
+			this.labelPower64 = graph.labelPower64;
+			final int atomCount = graph.getAtomCount();
+
+			this.maxBonds = Math.min(Math.max(searchDepth, 1), Math.max(atomCount - 1, 0));
+			this.pathAtoms = new int[maxBonds + 1];
+			this.pathLabels = new int[2 * maxBonds + 1];
+			this.forwardHash = new int[maxBonds + 1];
+			this.reverseHash = new int[maxBonds + 1];
+			this.power = new int[maxBonds + 1];
+			this.forwardHash64 = new long[maxBonds + 1];
+			this.reverseHash64 = new long[maxBonds + 1];
+			this.power64 = new long[maxBonds + 1];
+			this.atomSetKey = new long[maxBonds + 1];
+			this.visited = new long[(atomCount + 63) / 64];
 		}
 
-		public DepthFirstSearchFeature(IAtom firstAtom, IAtom lastAtom, int featureSize, String featureString,
-				int atomsHash) {
-			if (firstAtom.hashCode() == lastAtom.hashCode() && featureSize > 1) {
-				System.out.println("Wrong feature:" + featureString);
+		private void run(int searchDepth) {
+			for (int root = 0; root < atomLabels.length; root++) {
+				final int label = atomLabels[root];
+				pathAtoms[0] = root;
+				pathLabels[0] = label;
+				forwardHash[0] = reverseHash[0] = labelHash[label];
+				forwardHash64[0] = reverseHash64[0] = labelHash64[label];
+				power[0] = labelPower[label];
+				power64[0] = labelPower64[label];
+				atomSetKey[0] = atomKey(root);
+				visited[root >> 6] |= 1L << root;
+				store(0);
+				search(0, searchDepth);
+				visited[root >> 6] &= ~(1L << root);
 			}
-			this.featureSize = featureSize;
-			this.firstAtom = firstAtom;
-			this.lastAtom = lastAtom;
-			this.featureString = featureString;
-			this.atomsHash = atomsHash;
-		}
-
-		public String featureToString() {
-
-			return featureString;
-		}
-
-		public int hashToInteger() {
-			return firstAtom.hashCode();
 		}
 
-		public boolean compareTo(DepthFirstSearchFeature other) {
-			if (this.firstAtom.hashCode() == other.getFirstAtom().hashCode()
-					&& (this.lastAtom.hashCode() == other.getLastAtom().hashCode())) {
-				if (this.atomsHash == other.getAtomsHash()) {
-					return true;
-				} else {
-					return false;
+		/**
+		 * extends the path of the given number of bonds by each neighbour of
+		 * its last atom not on the path
+		 */
+		private void search(int bonds, int searchDepth) {
+			final int atom = pathAtoms[bonds];
+			final int nextBonds = bonds + 1;
+			for (int n = graph.offsets[atom]; n < graph.offsets[atom + 1]; n++) {
+				final int nextAtom = graph.adjacentAtoms[n];
+				if ((visited[nextAtom >> 6] & (1L << nextAtom)) != 0) {
+					continue;
 				}
-			}
-
-			return false;
-		}
-
-		public String getFeatureString() {
-			return featureString;
-		}
-
-		public IAtom getFirstAtom() {
-			return firstAtom;
-		}
-
-		public IAtom getLastAtom() {
-			return lastAtom;
-		}
-
-	}
-
-	private void checkAndStore(ArrayList<Object> newPath, Map<String, ArrayList<DepthFirstSearchFeature>> paths,
-			ArrayList<IFeature> features, IAtomContainer ac) throws MoltyperException {
-		final StringBuilder newPathStringForward = new StringBuilder();
-		final StringBuilder newPathStringReverse = new StringBuilder();
-
-		final int pathLength = newPath.size() - 1;
-		IAtom firstAtom = null;
-		IAtom lastAtom = null;
-		int i;
-		boolean forward = true;
-		String storePath = "";
-
-		// the atomsHash is used to determine whether a similar
-		// looking path from one atom to another is really the same
-		int atomsHash = 0;
-		for (i = 0; i <= pathLength; i++) {
-			if (newPath.get(i) instanceof IAtom) {
-				atomsHash += ((IAtom) newPath.get(i)).hashCode();
+				final int bondLabel = graph.adjacentBondLabels[n];
+				final int atomLabel = atomLabels[nextAtom];
+				pathAtoms[nextBonds] = nextAtom;
+				pathLabels[2 * bonds + 1] = bondLabel;
+				pathLabels[2 * bonds + 2] = atomLabel;
+
+				// hash(x + y) = hash(x) * power(y) + hash(y)
+				final int stepPower = labelPower[bondLabel] * labelPower[atomLabel];
+				final int stepHash = labelHash[bondLabel] * labelPower[atomLabel] + labelHash[atomLabel];
+				final int stepReverseHash = labelHash[atomLabel] * labelPower[bondLabel] + labelHash[bondLabel];
+				forwardHash[nextBonds] = forwardHash[bonds] * stepPower + stepHash;
+				reverseHash[nextBonds] = stepReverseHash * power[bonds] + reverseHash[bonds];
+				power[nextBonds] = power[bonds] * stepPower;
+
+				final long stepPower64 = labelPower64[bondLabel] * labelPower64[atomLabel];
+				final long stepHash64 = labelHash64[bondLabel] * labelPower64[atomLabel] + labelHash64[atomLabel];
+				final long stepReverseHash64 = labelHash64[atomLabel] * labelPower64[bondLabel] + labelHash64[bondLabel];
+				forwardHash64[nextBonds] = forwardHash64[bonds] * stepPower64 + stepHash64;
+				reverseHash64[nextBonds] = stepReverseHash64 * power64[bonds] + reverseHash64[bonds];
+				power64[nextBonds] = power64[bonds] * stepPower64;
+
+				atomSetKey[nextBonds] = atomSetKey[bonds] + atomKey(nextAtom);
+				visited[nextAtom >> 6] |= 1L << nextAtom;
+				store(nextBonds);
+				if (nextBonds < searchDepth && nextBonds < maxBonds) {
+					search(nextBonds, searchDepth);
+				}
+				visited[nextAtom >> 6] &= ~(1L << nextAtom);
 			}
 		}
 
-		// this is a preview scan to avoid building the whole string twice
-		for (i = 0; i <= pathLength; i++) {
-
-			if (newPath.get(i) instanceof IAtom) {
-				if (firstAtom == null) {
-					firstAtom = (IAtom) newPath.get(i);
+		/**
+		 * stores the current path in the direction with the smaller label
+		 * string, unless the same atoms have already been stored with this
+		 * string and these end atoms
+		 */
+		private void store(int bonds) {
+			final int length = 2 * bonds + 1;
+			int direction = 0;
+			for (int i = 0; i < length / 2; i++) {
+				direction = pathLabels[i] - pathLabels[length - 1 - i];
+				if (direction != 0) {
+					break;
 				}
-				newPathStringForward.append(getAtomLabel((IAtom) newPath.get(i)));
-
-			} else if (newPath.get(i) instanceof String) {
-				newPathStringForward.append((String) newPath.get(i));
 			}
-
-			if (newPath.get(pathLength - i) instanceof IAtom) {
-				if (lastAtom == null) {
-					lastAtom = (IAtom) newPath.get(pathLength - i);
-				}
-				newPathStringReverse.append(getAtomLabel((IAtom) newPath.get(pathLength - i)));
-			} else if (newPath.get(pathLength - i) instanceof String) {
-				newPathStringReverse.append((String) newPath.get(pathLength - i));
+			final boolean forward = direction <= 0;
+			final int firstAtom = forward ? pathAtoms[0] : pathAtoms[bonds];
+			final int lastAtom = forward ? pathAtoms[bonds] : pathAtoms[0];
+			final long pathHash = forward ? forwardHash64[bonds] : reverseHash64[bonds];
+			final long atomsKey = atomSetKey[bonds] + mix(((long) firstAtom << 32) | lastAtom);
+			if (!this.add(pathHash, atomsKey)) {
+				return;
 			}
-
-			/*
-			 * We build up the forward and the reverse path until there happens
-			 * to be a difference
-			 */
-			int direction = newPathStringForward.toString().compareTo(newPathStringReverse.toString());
-			if (direction != 0) {
-				if (direction < 0) {
-					forward = true;
-					break;
-				} else if (direction > 0) {
-					forward = false;
-					IAtom tempAtom = firstAtom;
-					firstAtom = lastAtom;
-					lastAtom = tempAtom;
-					break;
-				}
+			final int[] path = new int[length];
+			for (int i = 0; i < length; i++) {
+				path[i] = forward ? pathLabels[i] : pathLabels[length - 1 - i];
 			}
+			features.add(new LabelPathFeature(graph.labels, path, forward ? forwardHash[bonds] : reverseHash[bonds],
+					pathHash));
 		}
-		i++;
-		if (forward == true) {
-			for (; i <= pathLength; i++) {
-				if (newPath.get(i) instanceof IAtom) {
-					newPathStringForward.append(getAtomLabel((IAtom) newPath.get(i)));
-				} else if (newPath.get(i) instanceof String) {
-					newPathStringForward.append((String) newPath.get(i));
-				}
-			}
-			storePath = newPathStringForward.toString();
-		} else {
-			for (; i <= pathLength; i++) {
-				if (newPath.get(pathLength - i) instanceof IAtom) {
-					newPathStringReverse.append(getAtomLabel((IAtom) newPath.get(pathLength - i)));
 
-				} else if (newPath.get(pathLength - i) instanceof String) {
-					newPathStringReverse.append((String) newPath.get((pathLength - i)));
+		/**
+		 * adds a path to the open addressing table of stored paths
+		 *
+		 * @return false if it was stored before
+		 */
+		private boolean add(long pathHash, long atomsKey) {
+			if (2 * (stored + 1) > occupied.length) {
+				final long[] oldPaths = storedPaths;
+				final boolean[] oldOccupied = occupied;
+				storedPaths = new long[2 * oldPaths.length];
+				occupied = new boolean[2 * oldOccupied.length];
+				stored = 0;
+				for (int slot = 0; slot < oldOccupied.length; slot++) {
+					if (oldOccupied[slot]) {
+						add(oldPaths[2 * slot], oldPaths[2 * slot + 1]);
+					}
 				}
 			}
-			storePath = newPathStringReverse.toString();
-		}
-		// debug
-		if (!paths.containsKey(storePath)) {
-			DepthFirstSearchFeature newFeature = new DepthFirstSearchFeature(firstAtom, lastAtom, pathLength,
-					storePath, atomsHash);
-			ArrayList<DepthFirstSearchFeature> newArray = new ArrayList<DepthFirstSearchFeature>();
-			newArray.add(newFeature);
-			paths.put(storePath, newArray);
-			features.add(new NumericStringFeature(newFeature.featureToString(), 1.0));
-		} else {
-			/*
-			 * set FeatureIsIncluded to "true" as an option to suppress double
-			 * features (these feature really appear more than once in the
-			 * molecule)
-			 */
-			boolean featureIsIncluded = false;
-			// featureIsIncluded=true;
-			DepthFirstSearchFeature newFeature = new DepthFirstSearchFeature(firstAtom, lastAtom, pathLength,
-					storePath, atomsHash);
-			for (DepthFirstSearchFeature feature : paths.get(storePath)) {
-				if ((feature).compareTo(newFeature)) {
-					featureIsIncluded = true;
+			final int mask = occupied.length - 1;
+			int slot = (int) mix(pathHash ^ atomsKey) & mask;
+			while (occupied[slot]) {
+				if (storedPaths[2 * slot] == pathHash && storedPaths[2 * slot + 1] == atomsKey) {
+					return false;
 				}
+				slot = (slot + 1) & mask;
 			}
-			if (!featureIsIncluded) {
-				features.add(new NumericStringFeature(newFeature.featureToString(), 1.0));
-				paths.get(storePath).add(newFeature);
-			}
-
+			occupied[slot] = true;
+			storedPaths[2 * slot] = pathHash;
+			storedPaths[2 * slot + 1] = atomsKey;
+			stored++;
+			return true;
 		}
 	}
 
-	/**
-	 * Performs a recursive depth first search
-	 * 
-	 * @param ac
-	 *            The AtomContainer to be searched
-	 * @param root
-	 *            The Atom to start the search at
-	 * @param currentPath
-	 *            The Path that has been generated so far
-	 * @param currentDepth
-	 *            The current depth in this recursive search
-	 * @param searchDepth
-	 *            Description of the Parameter
-	 * @throws MoltyperException
-	 */
-	private void depthFirstSearch(IAtomContainer ac, IAtom root, Map<String, ArrayList<DepthFirstSearchFeature>> paths,
-			List<Object> currentPath, int currentDepth, int searchDepth, ArrayList<IFeature> strings)
-			throws MoltyperException {
-		final List<IBond> bonds = ac.getConnectedBondsList(root);
-		org.openscience.cdk.interfaces.IAtom nextAtom = null;
-		ArrayList<Object> newPath = null;
-		String bondSymbol = null;
-		currentDepth++;
-		for (int f = 0; f < bonds.size(); f++) {
-
-			final IBond bond = (IBond) bonds.get(f);
-			nextAtom = bond.getConnectedAtom(root);
-
-			if (!currentPath.contains(nextAtom)) {
-				newPath = new ArrayList<Object>(currentPath);
-				bondSymbol = getBondLabel(bond);
-				newPath.add(bondSymbol);
-				newPath.add(nextAtom);
-				try {
-					this.checkAndStore(newPath, paths, strings, ac);
-				} catch (MoltyperException e) {
-					e.printStackTrace();
-				}
+	private static long atomKey(int atom) {
+		return mix(atom + 1);
+	}
 
-				if (currentDepth < searchDepth) {
-					this.depthFirstSearch(ac, nextAtom, paths, newPath, currentDepth, searchDepth, strings);
-				}
-			}
-		}
+	// splitmix64 finalizer
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
 	}
 
 	/**
 	 * Gets all pathes of length 1 up to the length given by the 'searchDepth"
 	 * parameter. The pathes are aquired by a number of depth first searches,
 	 * one for each atom.
-	 * 
+	 *
 	 * @param ac
 	 *            The AtomContainer which is to be searched.
 	 * @param searchDepth
 	 *            Description of the Parameter
 	 */
 	protected ArrayList<IFeature> findPathes(IAtomContainer ac, int searchDepth) {
-		final Map<String, ArrayList<DepthFirstSearchFeature>> paths = new HashMap<String, ArrayList<DepthFirstSearchFeature>>();
-		final ArrayList<IFeature> features = new ArrayList<IFeature>();
-		final ArrayList<Object> currentPath = new ArrayList<Object>();
-		for (int f = 0; f < ac.getAtomCount(); f++) {
-			currentPath.clear();
-			currentPath.add(ac.getAtom(f));
-			try {
-				this.checkAndStore(currentPath, paths, features, ac);
-			} catch (MoltyperException e) {
-				e.printStackTrace();
-			}
-			try {
-				this.depthFirstSearch(ac, ac.getAtom(f), paths, currentPath, 0, searchDepth, features);
-			} catch (MoltyperException e) {
-				e.printStackTrace();
-			}
+		try {
+			final Search search = new Search(ac, searchDepth);
+			search.run(searchDepth);
+			return search.features;
+		} catch (MoltyperException e) {
+			e.printStackTrace();
+			return new ArrayList<IFeature>();
 		}
-		return features;
 	}
 
 	/**
 	 * Generates a fingerprint of the default size for the given AtomContainer.
-	 * 
+	 *
 	 * @param ac
 	 *            The AtomContainer for which a Fingerprint is generated
 	 */
@@ -287,7 +236,7 @@ public class DepthFirstSearch extends Encoding2D {
 
 	/**
 	 * returns a hashed fingerprint
-	 * 
+	 *
 	 * @param ac
 	 * @param searchDepth
 	 * @param hashsize
@@ -1,7 +1,5 @@
 package de.zbit.jcmapper.fingerprinters.topological;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import org.openscience.cdk.interfaces.IAtom;
@@ -14,6 +12,11 @@ import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 
 public abstract class Encoding2D extends EncodingFingerprint {
 
+	/**
+	 * a path given by its atoms, its string is the smaller one of the labels
+	 * read forwards and backwards. The labels of each atom and bond are taken
+	 * once, the bonds are found on the topology context of the molecule.
+	 */
 	public class PathFeature {
 		private final List<IAtom> atomSequence;
 		private final IAtomContainer ac;
@@ -25,52 +28,67 @@ public abstract class Encoding2D extends EncodingFingerprint {
 			this.canonicalStringRepresentation = this.generateCanonicalString();
 		}
 
-		private String createBackwardStringRepresention() {
-			final StringBuffer sb = new StringBuffer();
-			for (int i = this.atomSequence.size() - 1; i > 0; i--) {
-				final IAtom atom = this.atomSequence.get(i);
-				final IBond bond = this.ac.getBond(this.atomSequence.get(i), this.atomSequence.get(i - 1));
+		/**
+		 * returns the atom label followed by the label of the bond, null if a
+		 * label cannot be assigned
+		 */
+		private String getStepLabel(String atomLabel, String bondLabel) {
+			return atomLabel == null || bondLabel == null ? null : atomLabel + bondLabel;
+		}
+
+		private String generateCanonicalString() {
+			final TopologyContext context = TopologyContext.getContext(this.ac);
+			final int size = this.atomSequence.size();
+			final String[] atomLabels = new String[size];
+			for (int i = 0; i < size; i++) {
 				try {
-					sb.append(Encoding2D.this.getAtomLabel(atom) + Encoding2D.this.getBondLabel(bond));
+					atomLabels[i] = String.valueOf(Encoding2D.this.getAtomLabel(this.atomSequence.get(i)));
 				} catch (final MoltyperException e) {
 					e.printStackTrace();
 				}
 			}
-			try {
-				sb.append(Encoding2D.this.getAtomLabel(this.atomSequence.get(0)));
-			} catch (final MoltyperException e) {
-				e.printStackTrace();
-			}
-			return sb.toString();
-		}
-
-		private String createForwardStringRepresention() {
-			final StringBuffer sb = new StringBuffer();
-			for (int i = 0; i < this.atomSequence.size() - 1; i++) {
-				final IAtom atom = this.atomSequence.get(i);
-				final IBond bond = this.ac.getBond(this.atomSequence.get(i), this.atomSequence.get(i + 1));
+			// the atom labels followed by the label of the bond to the next
+			// atom, forwards and backwards
+			final String[] forwardSteps = new String[size];
+			final String[] backwardSteps = new String[size];
+			int atom = size > 0 ? context.getAtomIndex(this.atomSequence.get(0)) : -1;
+			for (int i = 0; i < size - 1; i++) {
+				final int next = context.getAtomIndex(this.atomSequence.get(i + 1));
+				final int bondIndex = atom < 0 || next < 0 ? -1 : context.getBondIndex(atom, next);
+				final IBond bond = bondIndex < 0 ? null : this.ac.getBond(bondIndex);
+				String bondLabel = null;
 				try {
-					sb.append(Encoding2D.this.getAtomLabel(atom) + Encoding2D.this.getBondLabel(bond));
+					bondLabel = String.valueOf(Encoding2D.this.getBondLabel(bond));
 				} catch (final MoltyperException e) {
 					e.printStackTrace();
 				}
+				forwardSteps[i] = this.getStepLabel(atomLabels[i], bondLabel);
+				backwardSteps[i + 1] = this.getStepLabel(atomLabels[i + 1], bondLabel);
+				atom = next;
 			}
-			try {
-				sb.append(Encoding2D.this.getAtomLabel(this.atomSequence.get(this.atomSequence.size() - 1)));
-			} catch (final MoltyperException e) {
-				e.printStackTrace();
-			}
-			return sb.toString();
-		}
 
-		private String generateCanonicalString() {
-			final String forwardStringRepresentation = this.createForwardStringRepresention();
-			final String backwardStringRepresentation = this.createBackwardStringRepresention();
-			final ArrayList<String> result = new ArrayList<String>();
-			result.add(forwardStringRepresentation);
-			result.add(backwardStringRepresentation);
-			Collections.sort(result);
-			return result.get(0);
+			final StringBuffer forward = new StringBuffer();
+			final StringBuffer backward = new StringBuffer();
+			for (int i = 0; i < size - 1; i++) {
+				if (forwardSteps[i] != null) {
+					forward.append(forwardSteps[i]);
+				}
+				if (backwardSteps[size - 1 - i] != null) {
+					backward.append(backwardSteps[size - 1 - i]);
+				}
+			}
+			if (size > 0) {
+				if (atomLabels[size - 1] != null) {
+					forward.append(atomLabels[size - 1]);
+				}
+				if (atomLabels[0] != null) {
+					backward.append(atomLabels[0]);
+				}
+			}
+			final String forwardStringRepresentation = forward.toString();
+			final String backwardStringRepresentation = backward.toString();
+			return forwardStringRepresentation.compareTo(backwardStringRepresentation) <= 0 ? forwardStringRepresentation
+					: backwardStringRepresentation;
 		}
 
 		@Override
@@ -89,6 +107,11 @@ public abstract class Encoding2D extends EncodingFingerprint {
 		this.searchDepth = searchDepth;
 	}
 
+	@Override
+	public boolean usesDistanceCutOff() {
+		return true;
+	}
+
 //	/**
 //	 * uses Johnson's algorithm to compute the graph features by iteratively
 //	 * applying Dijkstra's algorithm
@@ -3,13 +3,11 @@ package de.zbit.jcmapper.fingerprinters.topological;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.openscience.cdk.Atom;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.fingerprinters.features.NumericStringFeature;
+import de.zbit.jcmapper.fingerprinters.topological.features.LabelPathFeature;
+import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 import de.zbit.jcmapper.tools.moltyping.enumerations.EnumerationsAtomTypes.AtomLabelType;
 
 
@@ -21,38 +19,198 @@ public class Encoding2DAllPaths extends Encoding2D {
 	}
 
 	/**
-	 * returns the set of all shortest path between two nodes
-	 * 
-	 * @param ac
-	 * @param start
-	 * @return
+	 * the state of one enumeration. Every path is enumerated once, from its
+	 * atom with the smallest index: the path is one arm of atoms with larger
+	 * indices walked from that atom, or two such arms, the second one
+	 * starting at a larger neighbour than the first. A path is read in the
+	 * direction with the smaller string. The previous enumeration walked a
+	 * path from both of its ends, so a path of bonds is stored with value 2
+	 * to keep the counts of its features.
 	 */
-	private List<PathFeature> getAllPathFeatures(IAtomContainer ac, Atom start, int depth) {
-		final List<List<IAtom>> paths = PathTools.getPathsOfLengthUpto(ac, start, super.getSearchDepth());
-		final ArrayList<PathFeature> features = new ArrayList<PathFeature>();
-		for (int i = 0; i < paths.size(); i++) {
-			final PathFeature feature = new PathFeature(paths.get(i), ac);
-			features.add(feature);
-		}
-		return features;
+	private class Search {
+		private final LabelledGraph graph;
+		private final int maxBonds;
+		private final Arm firstArm;
+		private final Arm path;
+		private final long[] visited;
+		private int root;
+		private int firstArmAtom;
+		private int firstArmBonds;
+
+		private final ArrayList<IFeature> features = new ArrayList<IFeature>();
+
+		private Search(IAtomContainer ac, int searchDepth) throws MoltyperException {
+			this.graph = new LabelledGraph(Encoding2DAllPaths.this, ac);
+			final int atomCount = graph.getAtomCount();
+			this.maxBonds = Math.max(Math.min(searchDepth, atomCount - 1), 0);
+			this.firstArm = new Arm(graph, maxBonds);
+			this.path = new Arm(graph, maxBonds);
+			this.visited = new long[(atomCount + 63) / 64];
+		}
+
+		private void run() {
+			for (root = 0; root < graph.getAtomCount(); root++) {
+				firstArm.start(graph.atomLabels[root]);
+				store(firstArm, 0);
+				if (maxBonds > 0) {
+					visited[root >> 6] |= 1L << root;
+					extendFirstArm(root, 0);
+					visited[root >> 6] &= ~(1L << root);
+				}
+			}
+		}
+
+		/**
+		 * extends the first arm by each neighbour of its last atom with a
+		 * larger index than the root and not on the path, each arm is a path
+		 * and may be continued by a second arm
+		 */
+		private void extendFirstArm(int atom, int bonds) {
+			final int nextBonds = bonds + 1;
+			for (int n = graph.offsets[atom]; n < graph.offsets[atom + 1]; n++) {
+				final int nextAtom = graph.adjacentAtoms[n];
+				if (nextAtom < root || (visited[nextAtom >> 6] & (1L << nextAtom)) != 0) {
+					continue;
+				}
+				firstArm.push(bonds, graph.adjacentBondLabels[n], graph.atomLabels[nextAtom]);
+				store(firstArm, nextBonds);
+				if (nextBonds < maxBonds) {
+					visited[nextAtom >> 6] |= 1L << nextAtom;
+					if (bonds == 0) {
+						firstArmAtom = nextAtom;
+					}
+					firstArmBonds = nextBonds;
+					path.startReversed(firstArm, nextBonds);
+					extendSecondArm(root, nextBonds);
+					extendFirstArm(nextAtom, nextBonds);
+					visited[nextAtom >> 6] &= ~(1L << nextAtom);
+				}
+			}
+		}
+
+		/**
+		 * extends the path of the reversed first arm by a second arm from the
+		 * root, whose first atom has a larger index than the one of the first
+		 * arm
+		 */
+		private void extendSecondArm(int atom, int bonds) {
+			final int nextBonds = bonds + 1;
+			final int smallest = bonds == firstArmBonds ? firstArmAtom : root;
+			for (int n = graph.offsets[atom]; n < graph.offsets[atom + 1]; n++) {
+				final int nextAtom = graph.adjacentAtoms[n];
+				if (nextAtom < smallest || (visited[nextAtom >> 6] & (1L << nextAtom)) != 0) {
+					continue;
+				}
+				path.push(bonds, graph.adjacentBondLabels[n], graph.atomLabels[nextAtom]);
+				store(path, nextBonds);
+				if (nextBonds < maxBonds) {
+					visited[nextAtom >> 6] |= 1L << nextAtom;
+					extendSecondArm(nextAtom, nextBonds);
+					visited[nextAtom >> 6] &= ~(1L << nextAtom);
+				}
+			}
+		}
+
+		/**
+		 * stores the path read in the direction with the smaller string
+		 */
+		private void store(Arm arm, int bonds) {
+			final int length = 2 * bonds + 1;
+			final boolean forward = graph.compareReverse(arm.labels, length) <= 0;
+			final int[] labels = new int[length];
+			for (int i = 0; i < length; i++) {
+				labels[i] = forward ? arm.labels[i] : arm.labels[length - 1 - i];
+			}
+			features.add(new LabelPathFeature(graph.labels, labels, forward ? arm.forwardHash[bonds]
+					: arm.reverseHash[bonds], forward ? arm.forwardHash64[bonds] : arm.reverseHash64[bonds],
+					bonds > 0 ? 2.0 : 1.0));
+		}
 	}
 
-	@Override
-	public List<IFeature> getFingerprint(IAtomContainer ac) {
-		final ArrayList<PathFeature> rawfingerprint = new ArrayList<PathFeature>();
+	/**
+	 * a path as a stack of label codes, atom, bond, atom, ..., with the
+	 * hashes of both reading directions for each number of bonds
+	 */
+	private static class Arm {
+		private final LabelledGraph graph;
+		private final int[] labels;
+		private final int[] forwardHash;
+		private final int[] reverseHash;
+		private final int[] power;
+		private final long[] forwardHash64;
+		private final long[] reverseHash64;
+		private final long[] power64;
+
+		private Arm(LabelledGraph graph, int maxBonds) {
+			this.graph = graph;
+			this.labels = new int[2 * maxBonds + 1];
+			this.forwardHash = new int[maxBonds + 1];
+			this.reverseHash = new int[maxBonds + 1];
+			this.power = new int[maxBonds + 1];
+			this.forwardHash64 = new long[maxBonds + 1];
+			this.reverseHash64 = new long[maxBonds + 1];
+			this.power64 = new long[maxBonds + 1];
+		}
 
-		for (int i = 0; i < ac.getAtomCount(); i++) {
-			final List<PathFeature> localpaths = getAllPathFeatures(ac, (Atom) ac.getAtom(i), super.getSearchDepth());
-			rawfingerprint.addAll(localpaths);
+		private void start(int label) {
+			labels[0] = label;
+			forwardHash[0] = reverseHash[0] = graph.labelHash[label];
+			forwardHash64[0] = reverseHash64[0] = graph.labelHash64[label];
+			power[0] = graph.labelPower[label];
+			power64[0] = graph.labelPower64[label];
 		}
 
-		final ArrayList<IFeature> fingerprint = new ArrayList<IFeature>();
-		for (int i = 0; i < rawfingerprint.size(); i++) {
-			final String string = rawfingerprint.get(i).toString();
-			final NumericStringFeature feature = new NumericStringFeature(string, 1.0);
-			fingerprint.add(feature);
+		/**
+		 * starts with the first bonds of the other arm read backwards
+		 */
+		private void startReversed(Arm arm, int bonds) {
+			final int length = 2 * bonds + 1;
+			for (int i = 0; i < length; i++) {
+				labels[i] = arm.labels[length - 1 - i];
+			}
+			forwardHash[bonds] = arm.reverseHash[bonds];
+			reverseHash[bonds] = arm.forwardHash[bonds];
+			power[bonds] = arm.power[bonds];
+			forwardHash64[bonds] = arm.reverseHash64[bonds];
+			reverseHash64[bonds] = arm.forwardHash64[bonds];
+			power64[bonds] = arm.power64[bonds];
+		}
+
+		/**
+		 * appends a bond and an atom to the path of the given number of bonds
+		 */
+		private void push(int bonds, int bondLabel, int atomLabel) {
+			final int nextBonds = bonds + 1;
+			labels[2 * bonds + 1] = bondLabel;
+			labels[2 * bonds + 2] = atomLabel;
+
+			// hash(x + y) = hash(x) * power(y) + hash(y)
+			final int stepPower = graph.labelPower[bondLabel] * graph.labelPower[atomLabel];
+			forwardHash[nextBonds] = forwardHash[bonds] * stepPower + graph.labelHash[bondLabel]
+					* graph.labelPower[atomLabel] + graph.labelHash[atomLabel];
+			reverseHash[nextBonds] = (graph.labelHash[atomLabel] * graph.labelPower[bondLabel] + graph.labelHash[bondLabel])
+					* power[bonds] + reverseHash[bonds];
+			power[nextBonds] = power[bonds] * stepPower;
+
+			final long stepPower64 = graph.labelPower64[bondLabel] * graph.labelPower64[atomLabel];
+			forwardHash64[nextBonds] = forwardHash64[bonds] * stepPower64 + graph.labelHash64[bondLabel]
+					* graph.labelPower64[atomLabel] + graph.labelHash64[atomLabel];
+			reverseHash64[nextBonds] = (graph.labelHash64[atomLabel] * graph.labelPower64[bondLabel] + graph.labelHash64[bondLabel])
+					* power64[bonds] + reverseHash64[bonds];
+			power64[nextBonds] = power64[bonds] * stepPower64;
+		}
+	}
+
+	@Override
+	public List<IFeature> getFingerprint(IAtomContainer ac) {
+		try {
+			final Search search = new Search(ac, super.getSearchDepth());
+			search.run();
+			return search.features;
+		} catch (MoltyperException e) {
+			e.printStackTrace();
+			return new ArrayList<IFeature>();
 		}
-		return fingerprint;
 	}
 
 	@Override
@@ -3,14 +3,11 @@ package de.zbit.jcmapper.fingerprinters.topological;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.openscience.cdk.Atom;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.fingerprinters.features.NumericStringFeature;
+import de.zbit.jcmapper.fingerprinters.topological.features.LabelPathFeature;
+import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 
 
 public class Encoding2DAllShortestPath extends Encoding2D {
@@ -20,61 +17,129 @@ public class Encoding2DAllShortestPath extends Encoding2D {
 	}
 
 	/**
-	 * returns the set of all shortest path between two nodes
-	 * 
-	 * @param ac
-	 * @param start
-	 * @param end
-	 * @param distance
-	 * @return
+	 * the state of one enumeration. The shortest paths from a source atom to a
+	 * target are walked back from the target through the neighbours one bond
+	 * closer to the source, the label codes are filled in from the end of the
+	 * path with the hashes of both reading directions.
 	 */
-	private List<PathFeature> getAllShortestPath(IAtomContainer ac, Atom start, Atom end, int distance) {
-		final ArrayList<List<IAtom>> pathlist = (ArrayList<List<IAtom>>) PathTools.getPathsOfLength(ac, start, distance);
-		final ArrayList<PathFeature> features = new ArrayList<PathFeature>();
-		for (int i = 0; i < pathlist.size(); i++) {
-			int listSize = pathlist.get(i).size();
-			IAtom endAtom = pathlist.get(i).get(listSize - 1);
-			// if this path has the shortest distance possible and it ends with
-			// the target atom, add the feature
-			if (((distance + 1) == pathlist.get(i).size()) && endAtom.equals(end)) {
-				final PathFeature feature = new PathFeature(pathlist.get(i), ac);
-				features.add(feature);
+	private class Search {
+		private final LabelledGraph graph;
+		private final TopologyContext context;
+		private final int maxBonds;
+		private int source;
+
+		private final int[] pathLabels;
+		private final int[] forwardHash;
+		private final int[] reverseHash;
+		private final int[] power;
+		private final long[] forwardHash64;
+		private final long[] reverseHash64;
+		private final long[] power64;
+
+		private final ArrayList<IFeature> features = new ArrayList<IFeature>();
+
+		private Search(IAtomContainer ac, int searchDepth) throws MoltyperException {
+			this.graph = new LabelledGraph(Encoding2DAllShortestPath.this, ac);
+			this.context = TopologyContext.getContext(ac);
+			this.maxBonds = Math.max(Math.min(searchDepth, graph.getAtomCount() - 1), 0);
+			this.pathLabels = new int[2 * maxBonds + 1];
+			this.forwardHash = new int[maxBonds + 1];
+			this.reverseHash = new int[maxBonds + 1];
+			this.power = new int[maxBonds + 1];
+			this.forwardHash64 = new long[maxBonds + 1];
+			this.reverseHash64 = new long[maxBonds + 1];
+			this.power64 = new long[maxBonds + 1];
+		}
+
+		private void run() {
+			if (maxBonds == 0) {
+				return;
+			}
+			for (source = 0; source < graph.getAtomCount(); source++) {
+				// the other half is skipped as the features are canonical
+				for (int target = source + 1; target < graph.getAtomCount(); target++) {
+					final int distance = context.getDistance(source, target);
+					if (distance > maxBonds) {
+						continue;
+					}
+					final int label = graph.atomLabels[target];
+					pathLabels[2 * distance] = label;
+					forwardHash[0] = reverseHash[0] = graph.labelHash[label];
+					forwardHash64[0] = reverseHash64[0] = graph.labelHash64[label];
+					power[0] = graph.labelPower[label];
+					power64[0] = graph.labelPower64[label];
+					walkBack(target, distance, 0);
+				}
 			}
 		}
-		return features;
-	}
 
-	@Override
-	public List<IFeature> getFingerprint(IAtomContainer ac) {
-		final int[][] admat = AdjacencyMatrix.getMatrix(ac);
-		final int[][] shortest_path = PathTools.computeFloydAPSP(admat);
-		final List<PathFeature> allShortestPaths = new ArrayList<PathFeature>();
-
-		for (int i = 0; i < ac.getAtomCount(); i++) {
-			final Atom start = (Atom) ac.getAtom(i);
-			// we may skip the other half of the matrix because we generate a
-			// canonical features afterwards
-			for (int j = i; j < ac.getAtomCount(); j++) {
-				if (i == j) {
+		/**
+		 * extends the path walked back from the target by each neighbour of
+		 * the atom reached that is one bond closer to the source, the forward
+		 * hashes belong to the path read from the source, the reverse hashes
+		 * to the path read from the target
+		 */
+		private void walkBack(int atom, int distance, int bonds) {
+			if (distance == 0) {
+				store(bonds);
+				return;
+			}
+			final int position = 2 * distance;
+			final int nextBonds = bonds + 1;
+			for (int n = graph.offsets[atom]; n < graph.offsets[atom + 1]; n++) {
+				final int nextAtom = graph.adjacentAtoms[n];
+				if (context.getDistance(source, nextAtom) != distance - 1) {
 					continue;
 				}
-				final Atom end = (Atom) ac.getAtom(j);
-				if (shortest_path[i][j] <= super.getSearchDepth()) {
-					final List<PathFeature> allShortestPathsIndex = getAllShortestPath(ac, start, end,
-							shortest_path[i][j]);
-					allShortestPaths.addAll(allShortestPathsIndex);
-				}
+				final int bondLabel = graph.adjacentBondLabels[n];
+				final int atomLabel = graph.atomLabels[nextAtom];
+				pathLabels[position - 1] = bondLabel;
+				pathLabels[position - 2] = atomLabel;
+
+				// hash(x + y) = hash(x) * power(y) + hash(y)
+				final int stepPower = graph.labelPower[bondLabel] * graph.labelPower[atomLabel];
+				forwardHash[nextBonds] = (graph.labelHash[atomLabel] * graph.labelPower[bondLabel] + graph.labelHash[bondLabel])
+						* power[bonds] + forwardHash[bonds];
+				reverseHash[nextBonds] = reverseHash[bonds] * stepPower + graph.labelHash[bondLabel]
+						* graph.labelPower[atomLabel] + graph.labelHash[atomLabel];
+				power[nextBonds] = power[bonds] * stepPower;
+
+				final long stepPower64 = graph.labelPower64[bondLabel] * graph.labelPower64[atomLabel];
+				forwardHash64[nextBonds] = (graph.labelHash64[atomLabel] * graph.labelPower64[bondLabel] + graph.labelHash64[bondLabel])
+						* power64[bonds] + forwardHash64[bonds];
+				reverseHash64[nextBonds] = reverseHash64[bonds] * stepPower64 + graph.labelHash64[bondLabel]
+						* graph.labelPower64[atomLabel] + graph.labelHash64[atomLabel];
+				power64[nextBonds] = power64[bonds] * stepPower64;
+
+				walkBack(nextAtom, distance - 1, nextBonds);
 			}
 		}
 
-		final ArrayList<IFeature> fingerprint = new ArrayList<IFeature>();
-		for (int i = 0; i < allShortestPaths.size(); i++) {
-			final String string = allShortestPaths.get(i).toString();
-			final NumericStringFeature feature = new NumericStringFeature(string, 1.0);
-			fingerprint.add(feature);
+		/**
+		 * stores the current path read in the direction with the smaller string
+		 */
+		private void store(int bonds) {
+			final int length = 2 * bonds + 1;
+			final boolean forward = graph.compareReverse(pathLabels, length) <= 0;
+			final int[] path = new int[length];
+			for (int i = 0; i < length; i++) {
+				path[i] = forward ? pathLabels[i] : pathLabels[length - 1 - i];
+			}
+			features.add(new LabelPathFeature(graph.labels, path, forward ? forwardHash[bonds] : reverseHash[bonds],
+					forward ? forwardHash64[bonds] : reverseHash64[bonds]));
 		}
+	}
 
-		return fingerprint;
+	@Override
+	public List<IFeature> getFingerprint(IAtomContainer ac) {
+		try {
+			final Search search = new Search(ac, super.getSearchDepth());
+			search.run();
+			return search.features;
+		} catch (MoltyperException e) {
+			e.printStackTrace();
+			return new ArrayList<IFeature>();
+		}
 	}
 
 	@Override
@@ -3,8 +3,6 @@ package de.zbit.jcmapper.fingerprinters.topological;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.CombinatorialPatternHelper;
@@ -22,8 +20,7 @@ public class Encoding2DAtomTriple extends Encoding2D {
 	@Override
 	public List<IFeature> getFingerprint(IAtomContainer ac) {
 		List<IFeature> features = new ArrayList<IFeature>();
-		final int[][] admat = AdjacencyMatrix.getMatrix(ac);
-		final int[][] shortest_path = PathTools.computeFloydAPSP(admat);
+		final int[][] shortest_path = TopologyContext.getContext(ac).getDistanceMatrix();
 		int distanceCutOff = super.getSearchDepth();
 		features = combPatternHelper.getFingerprint3Point(ac, shortest_path, distanceCutOff, super.getTyper());
 		return features;
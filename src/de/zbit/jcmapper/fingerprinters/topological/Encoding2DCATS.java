@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Vector;
 
 import org.openscience.cdk.AtomContainer;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
@@ -31,8 +29,7 @@ public class Encoding2DCATS extends Encoding2D {
 	private int[] getCATS2DFingerprint(AtomContainer mol) {
 		final HashMap<Integer, Vector<PotentialPharmacophorePoint>> PPPAssignment = pAssigner
 				.getPharmacophorePoints(mol);
-		int[][] admat = AdjacencyMatrix.getMatrix(mol);
-		int[][] shortestPathMatrix = PathTools.computeFloydAPSP(admat);
+		int[][] shortestPathMatrix = TopologyContext.getContext(mol).getDistanceMatrix();
 		final HashSet<PotentialPharmacophorePointPair> Pairs = pAssigner.assignPairs(mol, PPPAssignment,
 				shortestPathMatrix);
 
@@ -1,12 +1,19 @@
 package de.zbit.jcmapper.fingerprinters.topological;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.AtomContainer;
@@ -22,13 +29,15 @@ import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 import de.zbit.jcmapper.tools.moltyping.enumerations.EnumerationsAtomTypes.AtomLabelType;
 
 
+/**
+ * extended connectivity fingerprint. The features are hashed from the
+ * identifiers of the neighbours by the {@link MorganEngine}, the hash of the
+ * atom and bond labels and the BCUT descriptors of the substructures is
+ * computed if substructure hashing is set.
+ */
 public class Encoding2DECFP extends Encoding2D {
-	private int iteration;
-	private ArrayList<IFeature> completeFeatures;
-	private IAtomContainer molecule;
-	
-
-	private Map<IAtom,ECFPFeature> featuresOfLastIteration;
+	private boolean substructureHash = false;
+	private RadiusGroup radiusGroup = null;
 	
 	public Encoding2DECFP(){
 		this.setAtomLabelType(AtomLabelType.DAYLIGHT_INVARIANT_RING);
@@ -36,122 +45,275 @@ public class Encoding2DECFP extends Encoding2D {
 
 	@Override
 	public ArrayList<IFeature> getFingerprint(IAtomContainer molecule){
+		if(radiusGroup!=null){
+			final ArrayList<IFeature> features = new ArrayList<IFeature>();
+			for(IFeature feature: radiusGroup.getFeatures(molecule)){
+				if(((ECFPFeature)feature).getIterationNumber()<=getSearchDepth())
+					features.add(feature);
+			}
+			return features;
+		}
+		if(!substructureHash){
+			try{
+				return new MorganEngine(this, molecule, getSearchDepth()).getFeatures(this);
+			}catch(Exception e){
+				e.printStackTrace();
+				return new ArrayList<IFeature>();
+			}
+		}
+		final Calculation calculation = new Calculation(molecule);
 		try{
-			calculateFingerprint(molecule);
+			calculation.calculateFingerprint();
 		}catch(Exception e){
 			e.printStackTrace();
 		}
-		return this.completeFeatures;
+		return calculation.completeFeatures;
 	}
 	
-	private void calculateFingerprint(IAtomContainer ac) throws FingerPrinterException, MoltyperException,CDKException{
-		this.iteration=0;
-		this.completeFeatures=new ArrayList<IFeature>();
-		this.molecule=ac;
-		this.featuresOfLastIteration = new HashMap<IAtom,ECFPFeature>();
-		
-		computeInitialIdentifiers();
-		
-		for(int i=0;i<this.getSearchDepth();i++){
-			iteration++;
-			computeIteration();
+	/**
+	 * returns the identifiers of the features without creating them, the
+	 * identifiers of the connection hash even if substructure hashing is set
+	 *
+	 * @param molecule
+	 * @return
+	 * @throws MoltyperException
+	 */
+	public int[] getIdentifiers(IAtomContainer molecule) throws MoltyperException{
+		return new MorganEngine(this, molecule, getSearchDepth()).getIdentifiers();
+	}
+
+	/**
+	 * returns the number of features of each identifier, sorted by
+	 * identifier, as the ECFC counts
+	 *
+	 * @param molecule
+	 * @return
+	 * @throws MoltyperException
+	 */
+	public SortedMap<Integer, Integer> getIdentifierCounts(IAtomContainer molecule) throws MoltyperException{
+		final SortedMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+		for(int identifier: getIdentifiers(molecule)){
+			final Integer count = counts.get(identifier);
+			counts.put(identifier, count == null ? 1 : count + 1);
+		}
+		return counts;
+	}
+
+	/**
+	 * returns fingerprinters of the search depths with the atom label type
+	 * and hash of this one. They share the traversal of a molecule: the
+	 * features of the largest depth are computed once and each fingerprinter
+	 * returns the ones of its iterations, which the features are tagged with.
+	 * The molecule must not be changed until all of them have been called.
+	 *
+	 * @param searchDepths
+	 * @return
+	 */
+	public Encoding2DECFP[] getRadiusFingerprinters(int[] searchDepths){
+		int maxDepth = 0;
+		for(int depth: searchDepths){
+			maxDepth = Math.max(maxDepth, depth);
 		}
+		final Encoding2DECFP traversal = new Encoding2DECFP();
+		traversal.setAtomLabelType(getAtomLabelType());
+		traversal.setSubstructureHash(substructureHash);
+		traversal.setSearchDepth(maxDepth);
+		final RadiusGroup group = new RadiusGroup(traversal, searchDepths.length);
 		
-		// wegner: this is still ugly, I would prefer the molecule is persistent within this object, which it is only 
-		//      for the lifetime of a calculateFingerprint function call, very strange design, and not in a good way.
-		//      Anyway, workaround is to pass a molecule object along to the ECFPFeature as workaround.
-		this.featuresOfLastIteration=null;
-		this.molecule=null;
+		final Encoding2DECFP[] fingerprinters = new Encoding2DECFP[searchDepths.length];
+		for(int i=0;i<searchDepths.length;i++){
+			fingerprinters[i] = new Encoding2DECFP();
+			fingerprinters[i].setAtomLabelType(getAtomLabelType());
+			fingerprinters[i].setSubstructureHash(substructureHash);
+			fingerprinters[i].setSearchDepth(searchDepths[i]);
+			fingerprinters[i].radiusGroup = group;
+		}
+		return fingerprinters;
+	}
+
+	public boolean isSubstructureHash() {
+		return this.substructureHash;
+	}
+
+	/**
+	 * hashes the atom and bond labels and the BCUT descriptors of the
+	 * substructures instead of the identifiers of the neighbours, which is
+	 * much slower
+	 *
+	 * @param substructureHash
+	 */
+	public void setSubstructureHash(boolean substructureHash) {
+		this.substructureHash = substructureHash;
 	}
 	
-	private void computeInitialIdentifiers() throws FingerPrinterException, MoltyperException{
-		for(IAtom atom: molecule.atoms()){
-            IAtomContainer substructure = new AtomContainer();
-			substructure.addAtom(atom);
-			for(IBond bond: molecule.getConnectedBondsList(atom)){
-				substructure.addBond(bond);
+	/**
+	 * the state of one getFingerprint call, the atoms are visited in the
+	 * order of the molecule
+	 */
+	private class Calculation {
+		private int iteration;
+		private final ArrayList<IFeature> completeFeatures = new ArrayList<IFeature>();
+		private final IAtomContainer molecule;
+		private final TopologyContext context;
+		private Map<IAtom,ECFPFeature> featuresOfLastIteration = new LinkedHashMap<IAtom,ECFPFeature>();
+		private final Map<IAtom,Integer> atomIndices = new IdentityHashMap<IAtom,Integer>();
+		private final Set<BitSet> coveredAtomSets = new HashSet<BitSet>();
+		
+		private Calculation(IAtomContainer molecule){
+			this.molecule=molecule;
+			this.context=TopologyContext.getContext(molecule);
+			for(int i=0;i<molecule.getAtomCount();i++){
+				atomIndices.put(molecule.getAtom(i), i);
 			}
-			//System.out.println("initial "+this.getAtomLabel(atom)+",id="+this.getAtomLabel(atom).hashCode());
-			ECFPFeature ecfpFeature = new ECFPFeature(this, molecule, atom, substructure,this.iteration,this.getAtomLabel(atom).hashCode(), null);
-			this.featuresOfLastIteration.put(atom, ecfpFeature);
-			completeFeatures.add(ecfpFeature);
 		}
-	}
 	
-	private void computeIteration() throws FingerPrinterException, MoltyperException{
-		Map<IAtom,ECFPFeature> featuresOfIteration = new HashMap<IAtom, ECFPFeature>();
-		List<ECFPFeature> features = new LinkedList<ECFPFeature>();
+		private void calculateFingerprint() throws FingerPrinterException, MoltyperException,CDKException{
+			computeInitialIdentifiers();
+			
+			for(int i=0;i<getSearchDepth();i++){
+				iteration++;
+				computeIteration();
+			}
+		}
+		
+		private void computeInitialIdentifiers() throws FingerPrinterException, MoltyperException{
+			final int[] offsets = context.getOffsets();
+			final int[] adjacentBonds = context.getAdjacentBonds();
+			for(int i=0;i<molecule.getAtomCount();i++){
+				IAtom atom = molecule.getAtom(i);
+				IAtomContainer substructure = new AtomContainer();
+				substructure.addAtom(atom);
+				for(int n=offsets[i];n<offsets[i+1];n++){
+					substructure.addBond(molecule.getBond(adjacentBonds[n]));
+				}
+				ECFPFeature ecfpFeature = new ECFPFeature(Encoding2DECFP.this, molecule, atom, substructure,this.iteration,getAtomLabel(atom).hashCode(), null, substructureHash);
+				this.featuresOfLastIteration.put(atom, ecfpFeature);
+				completeFeatures.add(ecfpFeature);
+				coveredAtomSets.add(getCoveredAtoms(ecfpFeature));
+			}
+		}
 		
-		for(IAtom atom: featuresOfLastIteration.keySet()){
-			ECFPFeature feature = computeIterationForAtom(atom);
-			features.add(feature);
-			featuresOfIteration.put(atom,feature);
+		private void computeIteration() throws FingerPrinterException, MoltyperException{
+			Map<IAtom,ECFPFeature> featuresOfIteration = new LinkedHashMap<IAtom, ECFPFeature>();
+			List<ECFPFeature> features = new LinkedList<ECFPFeature>();
+			
+			for(IAtom atom: featuresOfLastIteration.keySet()){
+				ECFPFeature feature = computeIterationForAtom(atom);
+				features.add(feature);
+				featuresOfIteration.put(atom,feature);
+			}
+			
+			removeDuplicateSubstructures(features);
+			completeFeatures.addAll(features);
+			this.featuresOfLastIteration = featuresOfIteration;
 		}
 		
-		removeDuplicateSubstructures(features);
-		completeFeatures.addAll(features);
-		this.featuresOfLastIteration = featuresOfIteration;
-	}
+		private ECFPFeature computeIterationForAtom(IAtom atom) throws FingerPrinterException, MoltyperException{
+			ECFPFeature oldFeature = featuresOfLastIteration.get(atom);
+			IAtomContainer newSubstructure = oldFeature.getNonDeepCloneOfSubstructure();
+			List<BondOrderIdentifierTupel> connectivity = new ArrayList<BondOrderIdentifierTupel>();
 	
-	private ECFPFeature computeIterationForAtom(IAtom atom) throws FingerPrinterException, MoltyperException{
-		ECFPFeature oldFeature = featuresOfLastIteration.get(atom);
-        IAtomContainer newSubstructure = oldFeature.getNonDeepCloneOfSubstructure();
-		List<BondOrderIdentifierTupel> connectivity = new ArrayList<BondOrderIdentifierTupel>();
-
-		for(IAtom connectedAtom: molecule.getConnectedAtomsList(atom)){
-			int identifierOfConnectedAtom = featuresOfLastIteration.get(connectedAtom).hashCode();
-			//System.out.println("iterate "+connectedAtom.getAtomTypeName()+",id="+identifierOfConnectedAtom+",id="+featuresOfLastIteration.get(connectedAtom).featureToString(true));
-			connectivity.add(new BondOrderIdentifierTupel(this.getBondOrder(molecule.getBond(atom,connectedAtom)),identifierOfConnectedAtom));
-            IAtomContainer structure = this.featuresOfLastIteration.get(connectedAtom).representedSubstructure();
-			for(IAtom a: structure.atoms()){
-				if(!newSubstructure.contains(a))
-					newSubstructure.addAtom(a);
+			final int[] offsets = context.getOffsets();
+			final int index = atomIndices.get(atom);
+			for(int n=offsets[index];n<offsets[index+1];n++){
+				IAtom connectedAtom = molecule.getAtom(context.getAdjacentAtoms()[n]);
+				int identifierOfConnectedAtom = featuresOfLastIteration.get(connectedAtom).hashCode();
+				connectivity.add(new BondOrderIdentifierTupel(getBondOrder(molecule.getBond(context.getAdjacentBonds()[n])),identifierOfConnectedAtom));
+				IAtomContainer structure = this.featuresOfLastIteration.get(connectedAtom).representedSubstructure();
+				for(IAtom a: structure.atoms()){
+					if(!newSubstructure.contains(a))
+						newSubstructure.addAtom(a);
+				}
+				for(IBond b: structure.bonds()){
+					if(!newSubstructure.contains(b))
+						newSubstructure.addBond(b);
+				}
 			}
-			for(IBond b: structure.bonds()){
-				if(!newSubstructure.contains(b))
-					newSubstructure.addBond(b);
+			
+			ECFPFeature newFeature = new ECFPFeature(Encoding2DECFP.this, molecule, atom, newSubstructure, this.iteration,oldFeature.hashCode(), connectivity, substructureHash);
+			return newFeature;
+		}
+		
+		/**
+		 * removes the features covering the same atoms as a feature of an
+		 * earlier iteration or a feature with a smaller hash, of equal hashes
+		 * the one of the last atom is kept
+		 */
+		private void removeDuplicateSubstructures(List<ECFPFeature> newFeatures){
+			final Map<BitSet,ECFPFeature> smallest = new HashMap<BitSet,ECFPFeature>();
+			final Map<ECFPFeature,BitSet> keys = new IdentityHashMap<ECFPFeature,BitSet>();
+			for(ECFPFeature feature: newFeatures){
+				final BitSet key = getCoveredAtoms(feature);
+				keys.put(feature, key);
+				if(!coveredAtomSets.contains(key)){
+					final ECFPFeature other = smallest.get(key);
+					if(other==null || feature.hashCode()<=other.hashCode())
+						smallest.put(key, feature);
+				}
+			}
+			final Iterator<ECFPFeature> iter = newFeatures.iterator();
+			while(iter.hasNext()){
+				final ECFPFeature feature = iter.next();
+				if(smallest.get(keys.get(feature))!=feature)
+					iter.remove();
 			}
+			coveredAtomSets.addAll(smallest.keySet());
 		}
 		
-		ECFPFeature newFeature = new ECFPFeature(this, molecule, atom, newSubstructure, this.iteration,oldFeature.hashCode(), connectivity);
-		return newFeature;
-	}
-	
-	public boolean isSubstructureHash() {
-		return ECFPFeature.isSubstructureHash();
-	}
-
-	public void setSubstructureHash(boolean substructureHash) {
-		ECFPFeature.setSubstructureHash(substructureHash);
+		private BitSet getCoveredAtoms(ECFPFeature feature){
+			final BitSet coveredAtoms = new BitSet(atomIndices.size());
+			for(IAtom atom: feature.representedAtoms()){
+				coveredAtoms.set(atomIndices.get(atom));
+			}
+			return coveredAtoms;
+		}
 	}
 	
-	private void removeDuplicateSubstructures(Collection<ECFPFeature> newFeatures){
-		Iterator<ECFPFeature> iter = newFeatures.iterator();
+	/**
+	 * the features of the molecules fingerprinted by the largest search depth
+	 * of a group, kept until every fingerprinter of the group has taken them
+	 */
+	private static class RadiusGroup {
+		private final Encoding2DECFP traversal;
+		private final int size;
+		private final Map<IAtomContainer,Traversal> traversals = new WeakHashMap<IAtomContainer,Traversal>();
 		
-		while(iter.hasNext()){
-			ECFPFeature featureToCheck = iter.next();
-			if(hasDuplicate(featureToCheck)){
-				iter.remove();
-				continue;
+		private RadiusGroup(Encoding2DECFP traversal, int size){
+			this.traversal=traversal;
+			this.size=size;
+		}
+		
+		private ArrayList<IFeature> getFeatures(IAtomContainer molecule){
+			Traversal t;
+			synchronized(traversals){
+				t = traversals.get(molecule);
 			}
-			for(ECFPFeature feature: newFeatures){
-				if(feature!=featureToCheck && featureToCheck.representsSameSubstructures(feature)){
-					if(featureToCheck.hashCode()>=feature.hashCode()){
-						iter.remove();
-						break;
+			if(t==null){
+				final ArrayList<IFeature> features = traversal.getFingerprint(molecule);
+				synchronized(traversals){
+					t = traversals.get(molecule);
+					if(t==null){
+						t = new Traversal(features, size);
+						traversals.put(molecule, t);
 					}
 				}
 			}
+			synchronized(traversals){
+				if(--t.remaining<=0)
+					traversals.remove(molecule);
+			}
+			return t.features;
 		}
 	}
 	
-	private boolean hasDuplicate(ECFPFeature feature){
-		for(IFeature f: completeFeatures){
-			if(feature.representsSameSubstructures((ECFPFeature)f)){
-				return true;
-			}
+	private static class Traversal {
+		private final ArrayList<IFeature> features;
+		private int remaining;
+		
+		private Traversal(ArrayList<IFeature> features, int remaining){
+			this.features=features;
+			this.remaining=remaining;
 		}
-		return false;
 	}
 	
 	@Override
@@ -189,7 +351,7 @@ public class Encoding2DECFP extends Encoding2D {
 		}
 	}
 	
-	private int getBondOrder(IBond bond){
+	static int getBondOrder(IBond bond){
 		if(bond.getFlag(CDKConstants.ISAROMATIC))
 			return 4;
 		else
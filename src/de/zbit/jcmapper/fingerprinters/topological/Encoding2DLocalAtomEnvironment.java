@@ -2,12 +2,8 @@ package de.zbit.jcmapper.fingerprinters.topological;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
 
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
@@ -23,43 +19,75 @@ public class Encoding2DLocalAtomEnvironment extends Encoding2D {
 		super.setSearchDepth(6);
 	}
 
+	/**
+	 * the features of an atom are the sorted strings of the paths from it,
+	 * one feature for each number of atoms up to the search depth plus one.
+	 * The paths are the ones of PathTools.getPathsOfLengthUpto, enumerated
+	 * by a depth first search on the labelled graph.
+	 */
 	@Override
 	public ArrayList<IFeature> getFingerprint(IAtomContainer ac) {
 		final ArrayList<IFeature> result = new ArrayList<IFeature>();
+		final LabelledGraph graph;
+		try {
+			graph = new LabelledGraph(this, ac);
+		} catch (MoltyperException e) {
+			e.printStackTrace();
+			return result;
+		}
+		final int searchDepth = Math.max(super.getSearchDepth(), 0);
+		final List<List<String>> pathsBySize = new ArrayList<List<String>>(searchDepth + 1);
+		for (int size = 0; size <= searchDepth; size++) {
+			pathsBySize.add(new ArrayList<String>());
+		}
+		final boolean[] onPath = new boolean[ac.getAtomCount()];
+		final StringBuilder path = new StringBuilder();
 		for (int i = 0; i < ac.getAtomCount(); i++) {
-			final List<List<IAtom>> lae = PathTools.getPathsOfLengthUpto(ac, ac.getAtom(i), super.getSearchDepth());
-			HashMap<Integer, List<List<IAtom>>> laeMap = getFeaturesBySearchDepth(lae);
-			Set<Integer> keySet = laeMap.keySet();
+			onPath[i] = true;
+			path.append(graph.labels[graph.atomLabels[i]]);
+			this.addPaths(graph, i, 0, searchDepth, onPath, path, pathsBySize);
+			path.setLength(0);
+			onPath[i] = false;
 
-			for (Integer key : keySet) {
-				List<String> localFragment = new ArrayList<String>();
-				try {
-					localFragment = this.getPaths(laeMap.get(key), ac);
-				} catch (MoltyperException e) {
-					e.printStackTrace();
+			for (List<String> localFragment : pathsBySize) {
+				if (localFragment.isEmpty()) {
+					continue;
 				}
+				Collections.sort(localFragment);
 				final String shellD = localFragment.toString().replaceAll(" ", "");
 				final NumericStringFeature feature = new NumericStringFeature(shellD, 1.0);
 				result.add(feature);
+				localFragment.clear();
 			}
 		}
 		return result;
 	}
 
-	private HashMap<Integer, List<List<IAtom>>> getFeaturesBySearchDepth(List<List<IAtom>> lae) {
-		HashMap<Integer, List<List<IAtom>>> result = new HashMap<Integer, List<List<IAtom>>>();
-
-		for (List<IAtom> laei : lae) {
-			int searchDepth = laei.size();
-			if (result.containsKey(searchDepth)) {
-				result.get(searchDepth).add(laei);
-			} else {
-				List<List<IAtom>> newFragment = new ArrayList<List<IAtom>>();
-				newFragment.add(laei);
-				result.put(searchDepth, newFragment);
+	/**
+	 * adds the string of the path, then extends it by each neighbour of its
+	 * last atom not on the path
+	 */
+	private void addPaths(LabelledGraph graph, int atom, int bonds, int searchDepth, boolean[] onPath,
+			StringBuilder path, List<List<String>> pathsBySize) {
+		pathsBySize.get(bonds).add(path.toString());
+		if (bonds == searchDepth) {
+			return;
+		}
+		final int length = path.length();
+		for (int n = graph.offsets[atom]; n < graph.offsets[atom + 1]; n++) {
+			final int nextAtom = graph.adjacentAtoms[n];
+			if (onPath[nextAtom]) {
+				continue;
+			}
+			if (this.useBonds) {
+				path.append(graph.labels[graph.adjacentBondLabels[n]]);
 			}
+			path.append(graph.labels[graph.atomLabels[nextAtom]]);
+			onPath[nextAtom] = true;
+			this.addPaths(graph, nextAtom, bonds + 1, searchDepth, onPath, path, pathsBySize);
+			onPath[nextAtom] = false;
+			path.setLength(length);
 		}
-		return result;
 	}
 
 	@Override
@@ -67,34 +95,6 @@ public class Encoding2DLocalAtomEnvironment extends Encoding2D {
 		return "RadialStarFingerprint";
 	}
 
-	/**
-	 * returns a sorted lists of paths describing the environment
-	 * 
-	 * @param localAtomEnvironment
-	 * @return
-	 * @throws MoltyperException
-	 */
-	private ArrayList<String> getPaths(List<List<IAtom>> localAtomEnvironment, IAtomContainer ac)
-			throws MoltyperException {
-		final ArrayList<String> result = new ArrayList<String>();
-		for (int i = 0; i < localAtomEnvironment.size(); i++) {
-			final List<IAtom> iThPath = localAtomEnvironment.get(i);
-			final StringBuffer sb = new StringBuffer();
-			for (int j = 0; j < iThPath.size(); j++) {
-				sb.append(super.getAtomLabel(iThPath.get(j)));
-				if (this.useBonds) {
-					if ((j < iThPath.size() - 1) && (iThPath.size() > 1)) {
-						final int bondindex = ac.getBondNumber(iThPath.get(j), iThPath.get(j + 1));
-						sb.append(super.getBondLabel(ac.getBond(bondindex)));
-					}
-				}
-			}
-			result.add(sb.toString());
-		}
-		Collections.sort(result);
-		return result;
-	}
-
 	public boolean isUseBonds() {
 		return this.useBonds;
 	}
@@ -1,10 +1,9 @@
 package de.zbit.jcmapper.fingerprinters.topological;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
-import org.openscience.cdk.graph.matrix.TopologicalMatrix;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
@@ -22,39 +21,45 @@ public class Encoding2DMolprint extends Encoding2D {
 	}
 
 	private ArrayList<IFeature> calculateFingerprint(IAtomContainer molecule) throws Exception {
-		final int[][] topologicalDistanceMatrix = TopologicalMatrix.getMatrix(molecule);
+		final TopologyContext context = TopologyContext.getContext(molecule);
 		final ArrayList<IFeature> features = new ArrayList<IFeature>();
-		if (topologicalDistanceMatrix.length == 1) {
+		if (context.getAtomCount() == 1) {
 			return generateFingerprintForSingleAtomMolecule(molecule.getAtom(0));
 		}
 
-		for (int atomID = 0; atomID < topologicalDistanceMatrix.length; atomID++) {
+		// the label codes are in the order of the labels
+		final LabelledGraph graph = new LabelledGraph(this, molecule);
+		final int[][] spheres = new int[Math.max(this.getSearchDepth() + 1, 0)][context.getAtomCount()];
+		final int[] sphereSizes = new int[spheres.length];
+		for (int atomID = 0; atomID < context.getAtomCount(); atomID++) {
 
-			final List<List<String>> spheres = generateSphereLists();
+			Arrays.fill(sphereSizes, 0);
 			// generate the features
-			for (int atom = 0; atom < topologicalDistanceMatrix[atomID].length; atom++) {
-				if (topologicalDistanceMatrix[atomID][atom] <= this.getSearchDepth()) {
-					spheres.get(topologicalDistanceMatrix[atomID][atom]).add(this.getAtomLabel(molecule.getAtom(atom)));
+			for (int atom = 0; atom < context.getAtomCount(); atom++) {
+				final int distance = context.getDistance(atomID, atom);
+				if (distance <= this.getSearchDepth()) {
+					spheres[distance][sphereSizes[distance]++] = graph.atomLabels[atom];
 				}
 			}
-			// sorting makes the spheres canonical
-			for (final List<String> sphere : spheres) {
-				Collections.sort(sphere);
-			}
 			// 0[rootlabel]1[label1 label2 label3]2[label1 ... labeln] is a
 			// FingerprintFeature
-			final StringBuffer sb = new StringBuffer();
+			final StringBuilder sb = new StringBuilder();
 
-			for (int i = 0; i < spheres.size(); i++) {
-				final List<String> sphere = spheres.get(i);
-				if (sphere.size() == 0) {
+			for (int i = 0; i < spheres.length; i++) {
+				final int size = sphereSizes[i];
+				if (size == 0) {
 					continue;
 				}
-				sb.append(i + "[");
-				for (int j = 0; j < sphere.size() - 1; j++) {
-					sb.append(sphere.get(j) + " ");
+				// sorting makes the spheres canonical
+				Arrays.sort(spheres[i], 0, size);
+				sb.append(i).append('[');
+				for (int j = 0; j < size; j++) {
+					if (j > 0) {
+						sb.append(' ');
+					}
+					sb.append(graph.labels[spheres[i][j]]);
 				}
-				sb.append(sphere.get(sphere.size() - 1) + "]");
+				sb.append(']');
 				if (i > 0) {
 					features.add(new NumericStringFeature(sb.toString(), 1.0));
 				}
@@ -69,15 +74,6 @@ public class Encoding2DMolprint extends Encoding2D {
 		return features;
 	}
 
-	private List<List<String>> generateSphereLists() {
-		final List<List<String>> spheres = new ArrayList<List<String>>(this.getSearchDepth() + 1);
-
-		for (int d = 0; d <= this.getSearchDepth(); d++) {
-			spheres.add(d, new ArrayList<String>(5));
-		}
-		return spheres;
-	}
-
 	@Override
 	public List<IFeature> getFingerprint(IAtomContainer molecule) {
 		try {
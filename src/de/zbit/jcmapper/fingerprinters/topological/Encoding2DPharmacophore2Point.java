@@ -2,8 +2,6 @@ package de.zbit.jcmapper.fingerprinters.topological;
 
 import java.util.List;
 
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.CombinatorialPatternHelper;
@@ -20,8 +18,7 @@ public class Encoding2DPharmacophore2Point extends Encoding2D {
 	}
 	
 	public List<IFeature> getFingerprint(IAtomContainer ac) {
-		final int[][] admat = AdjacencyMatrix.getMatrix(ac);
-		final int[][] shortestPathMatrix = PathTools.computeFloydAPSP(admat);
+		final int[][] shortestPathMatrix = TopologyContext.getContext(ac).getDistanceMatrix();
 		int distanceCutOff = (int) Math.round(super.getSearchDepth());
 		List<IFeature> features = patternHelper.getFingerprint2PointPPP(ac, shortestPathMatrix, distanceCutOff);
 		return features;
@@ -7,8 +7,6 @@ import java.util.Set;
 import java.util.Vector;
 
 import org.openscience.cdk.AtomContainer;
-import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
@@ -43,8 +41,7 @@ public class Encoding2DSHEDKey extends Encoding2D {
 
 	private HashMap<String, Integer[]> calculateDistribution(
 			HashMap<String, ArrayList<SHEDAtomContainer>> pharmacophores, AtomContainer mol) {
-		final int[][] admat = AdjacencyMatrix.getMatrix(mol);
-		final int[][] shortest_path = PathTools.computeFloydAPSP(admat);
+		final TopologyContext context = TopologyContext.getContext(mol);
 		int count = 0;
 		HashMap<String, Integer[]> result = new HashMap<String, Integer[]>();
 		Set<String> keys = pharmacophores.keySet();
@@ -67,7 +64,7 @@ public class Encoding2DSHEDKey extends Encoding2D {
 				}
 				for (SHEDAtomContainer ac1 : pharmacophores.get(key1)) {
 					for (SHEDAtomContainer ac2 : pharmacophores.get(key2)) {
-						int value = shortest_path[ac1.getAtomNumber()][ac2.getAtomNumber()];
+						int value = context.getDistance(ac1.getAtomNumber(), ac2.getAtomNumber());
 						
 						if (value == 0) {
 							continue;
@@ -144,6 +141,12 @@ public class Encoding2DSHEDKey extends Encoding2D {
 		}			
 		return result;
 	}
+
+	@Override
+	public boolean usesDistanceCutOff() {
+		return false;
+	}
+
 	@Override
 	public String getNameOfFingerPrinter() {
 		return "SHED";
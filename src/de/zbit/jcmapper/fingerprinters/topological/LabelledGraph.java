@@ -0,0 +1,139 @@
+package de.zbit.jcmapper.fingerprinters.topological;
+
+import java.util.Arrays;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.tools.moltyping.LabelDictionary;
+import de.zbit.jcmapper.tools.moltyping.MoltyperException;
+
+/**
+ * a compact snapshot of a molecule for the 2D encodings: the compressed
+ * adjacency rows of its topology context, and the atom and bond labels coded
+ * in the order of the label strings, so sorting codes sorts the labels. The
+ * labels are interned in the LabelDictionary, each atom is labelled once, and
+ * their hashes are the ones kept by the dictionary. The labels are taken for
+ * each calculation, as the flags they depend on may be changed by other
+ * fingerprinters. The bond label codes are also kept in the
+ * order of the adjacency, adjacentBondLabels[n] is the label of the bond to
+ * adjacentAtoms[n]. A path is a sequence of label codes, atom, bond,
+ * atom, ..., its string the concatenation of the labels. The hash of a label
+ * sequence is the String hash code of its string, rolled along with
+ * hash(x + y) = hash(x) * power(y) + hash(y), the same with a 64 bit
+ * multiplier gives a 64 bit hash.
+ */
+class LabelledGraph {
+
+	final String[] labels;
+	final int[] labelHash;
+	final int[] labelPower;
+	final long[] labelHash64;
+	final long[] labelPower64;
+
+	final int[] atomLabels;
+	final int[] bondLabels;
+	final int[] offsets;
+	final int[] adjacentAtoms;
+	final int[] adjacentBondLabels;
+
+	LabelledGraph(Encoding2D encoding, IAtomContainer ac) throws MoltyperException {
+		final TopologyContext context = TopologyContext.getContext(ac);
+		final int[] atomLabelIds = encoding.getAtomLabelIds(ac);
+		final int[] bondLabelIds = encoding.getBondLabelIds(ac);
+		// the distinct label ids of the dictionary, then their codes
+		final int[] ids = Arrays.copyOf(atomLabelIds, atomLabelIds.length + bondLabelIds.length);
+		System.arraycopy(bondLabelIds, 0, ids, atomLabelIds.length, bondLabelIds.length);
+		Arrays.sort(ids);
+		int distinct = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i - 1]) {
+				ids[distinct++] = ids[i];
+			}
+		}
+		final int[] distinctIds = Arrays.copyOf(ids, distinct);
+		// the few distinct ids in the order of their labels
+		final int[] sortedIds = distinctIds.clone();
+		for (int l = 1; l < distinct; l++) {
+			final int id = sortedIds[l];
+			final String label = LabelDictionary.getLabel(id);
+			int m = l;
+			for (; m > 0 && LabelDictionary.getLabel(sortedIds[m - 1]).compareTo(label) > 0; m--) {
+				sortedIds[m] = sortedIds[m - 1];
+			}
+			sortedIds[m] = id;
+		}
+		final int[] codes = new int[distinct];
+		this.labels = new String[distinct];
+		this.labelHash = new int[distinct];
+		this.labelPower = new int[distinct];
+		this.labelHash64 = new long[distinct];
+		this.labelPower64 = new long[distinct];
+		for (int l = 0; l < distinct; l++) {
+			final int id = sortedIds[l];
+			codes[Arrays.binarySearch(distinctIds, id)] = l;
+			labels[l] = LabelDictionary.getLabel(id);
+			labelHash[l] = LabelDictionary.getHash(id);
+			labelPower[l] = LabelDictionary.getPower(id);
+			labelHash64[l] = LabelDictionary.getHash64(id);
+			labelPower64[l] = LabelDictionary.getPower64(id);
+		}
+
+		this.atomLabels = new int[atomLabelIds.length];
+		for (int i = 0; i < atomLabels.length; i++) {
+			atomLabels[i] = codes[Arrays.binarySearch(distinctIds, atomLabelIds[i])];
+		}
+		this.bondLabels = new int[bondLabelIds.length];
+		for (int b = 0; b < bondLabels.length; b++) {
+			bondLabels[b] = codes[Arrays.binarySearch(distinctIds, bondLabelIds[b])];
+		}
+		this.offsets = context.getOffsets();
+		this.adjacentAtoms = context.getAdjacentAtoms();
+		final int[] adjacentBonds = context.getAdjacentBonds();
+		this.adjacentBondLabels = new int[adjacentBonds.length];
+		for (int n = 0; n < adjacentBonds.length; n++) {
+			adjacentBondLabels[n] = bondLabels[adjacentBonds[n]];
+		}
+	}
+
+	int getAtomCount() {
+		return atomLabels.length;
+	}
+
+	/**
+	 * compares the string of a label sequence with the string of the reversed
+	 * sequence like String.compareTo
+	 *
+	 * @param sequence
+	 * @param length
+	 * @return negative if the forward string is smaller, 0 if both are equal
+	 */
+	int compareReverse(int[] sequence, int length) {
+		int forward = 0;
+		int forwardChar = 0;
+		int reverse = length - 1;
+		int reverseChar = 0;
+		while (true) {
+			// whole labels are skipped while both sides are at a label start
+			while (forward < length && forwardChar == 0 && reverseChar == 0 && sequence[forward] == sequence[reverse]) {
+				forward++;
+				reverse--;
+			}
+			while (forward < length && forwardChar == labels[sequence[forward]].length()) {
+				forward++;
+				forwardChar = 0;
+			}
+			while (reverse >= 0 && reverseChar == labels[sequence[reverse]].length()) {
+				reverse--;
+				reverseChar = 0;
+			}
+			if (forward == length || reverse < 0) {
+				// both strings have the same length
+				return 0;
+			}
+			final int c = labels[sequence[forward]].charAt(forwardChar++) - labels[sequence[reverse]].charAt(reverseChar++);
+			if (c != 0) {
+				return c;
+			}
+		}
+	}
+}
@@ -0,0 +1,272 @@
+package de.zbit.jcmapper.fingerprinters.topological;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.fingerprinters.features.IFeature;
+import de.zbit.jcmapper.fingerprinters.topological.features.ECFPFeature;
+import de.zbit.jcmapper.tools.moltyping.LabelDictionary;
+import de.zbit.jcmapper.tools.moltyping.MoltyperException;
+
+/**
+ * the Morgan iterations of the ECFP connection hash on the adjacency rows of
+ * the topology context. The identifier of an atom in iteration 0 is the hash
+ * of its label, in iteration i the hash of i, its last identifier and the
+ * sorted bond order and last identifier pairs of its neighbours, like
+ * Arrays.hashCode. An atom covers the atoms within i bonds, kept as a bitset.
+ * A feature is dropped if an earlier iteration covers the same atoms, or if
+ * another atom of its iteration does with a smaller or equal identifier,
+ * found by hashing the covered atoms.
+ * The substructures of the features are created when asked for, with the
+ * atoms and bonds in the order they are added to the substructure of the
+ * atom by the substructures of its neighbours.
+ */
+class MorganEngine {
+
+	private final IAtomContainer molecule;
+	private final int atomCount;
+	private final int words;
+	private final int[] offsets;
+	private final int[] adjacentAtoms;
+	private final int[] adjacentBonds;
+	private final int[] adjacentOrders;
+	private int[][][] substructureAtoms;
+	private int[][][] substructureBonds;
+
+	private final int[] featureAtoms;
+	private final int[] featureIterations;
+	private final int[] featureIdentifiers;
+	private final int[] featureParents;
+	private int featureCount = 0;
+	private final Set<BitSet> coveredAtomSets = new HashSet<BitSet>();
+
+	MorganEngine(Encoding2D encoding, IAtomContainer molecule, int searchDepth) throws MoltyperException {
+		final TopologyContext context = TopologyContext.getContext(molecule);
+		this.molecule = molecule;
+		this.atomCount = molecule.getAtomCount();
+		this.words = (atomCount + 63) >>> 6;
+		this.offsets = context.getOffsets();
+		this.adjacentAtoms = context.getAdjacentAtoms();
+		this.adjacentBonds = context.getAdjacentBonds();
+		final int[] bondOrders = new int[molecule.getBondCount()];
+		for (int b = 0; b < bondOrders.length; b++) {
+			bondOrders[b] = Encoding2DECFP.getBondOrder(molecule.getBond(b));
+		}
+		this.adjacentOrders = new int[adjacentBonds.length];
+		for (int n = 0; n < adjacentBonds.length; n++) {
+			this.adjacentOrders[n] = bondOrders[adjacentBonds[n]];
+		}
+
+		final int capacity = atomCount * (Math.max(searchDepth, 0) + 1);
+		this.featureAtoms = new int[capacity];
+		this.featureIterations = new int[capacity];
+		this.featureIdentifiers = new int[capacity];
+		this.featureParents = new int[capacity];
+
+		final int[] labels = encoding.getAtomLabelIds(molecule);
+		int[] identifiers = new int[atomCount];
+		long[] coverage = new long[atomCount * words];
+		for (int a = 0; a < atomCount; a++) {
+			identifiers[a] = hash(new int[] { 0, LabelDictionary.getHash(labels[a]) }, 2);
+			coverage[a * words + (a >>> 6)] |= 1L << a;
+			this.addFeature(a, 0, identifiers[a], 0);
+			this.coveredAtomSets.add(this.getCoveredAtoms(coverage, a));
+		}
+
+		int[] connections = new int[2];
+		long[] pairs = new long[0];
+		for (int iteration = 1; iteration <= searchDepth; iteration++) {
+			final int[] nextIdentifiers = new int[atomCount];
+			final long[] nextCoverage = new long[atomCount * words];
+			for (int a = 0; a < atomCount; a++) {
+				final int first = offsets[a];
+				final int degree = offsets[a + 1] - first;
+				if (pairs.length < degree) {
+					pairs = new long[degree];
+					connections = new int[2 * degree + 2];
+				}
+				final int row = a * words;
+				System.arraycopy(coverage, row, nextCoverage, row, words);
+				for (int n = 0; n < degree; n++) {
+					final int neighbour = adjacentAtoms[first + n];
+					// sorts by bond order, then by the signed identifier
+					pairs[n] = ((long) adjacentOrders[first + n] << 32) | ((identifiers[neighbour] ^ 0x80000000) & 0xffffffffL);
+					final int neighbourRow = neighbour * words;
+					for (int w = 0; w < words; w++) {
+						nextCoverage[row + w] |= coverage[neighbourRow + w];
+					}
+				}
+				Arrays.sort(pairs, 0, degree);
+				connections[0] = iteration;
+				connections[1] = identifiers[a];
+				for (int n = 0; n < degree; n++) {
+					connections[2 * n + 2] = (int) (pairs[n] >>> 32);
+					connections[2 * n + 3] = (int) pairs[n] ^ 0x80000000;
+				}
+				nextIdentifiers[a] = hash(connections, 2 * degree + 2);
+			}
+			this.addIteration(iteration, identifiers, nextIdentifiers, nextCoverage);
+			identifiers = nextIdentifiers;
+			coverage = nextCoverage;
+		}
+	}
+
+	/**
+	 * adds the features of an iteration which do not cover the same atoms as
+	 * a feature of an earlier iteration or a feature of this iteration with a
+	 * smaller identifier, of equal identifiers the one of the last atom is kept
+	 */
+	private void addIteration(int iteration, int[] parents, int[] identifiers, long[] coverage) {
+		final BitSet[] coveredAtoms = new BitSet[atomCount];
+		final Map<BitSet, Integer> smallest = new HashMap<BitSet, Integer>();
+		for (int a = 0; a < atomCount; a++) {
+			coveredAtoms[a] = this.getCoveredAtoms(coverage, a);
+			if (!this.coveredAtomSets.contains(coveredAtoms[a])) {
+				final Integer other = smallest.get(coveredAtoms[a]);
+				if (other == null || identifiers[a] <= identifiers[other]) {
+					smallest.put(coveredAtoms[a], a);
+				}
+			}
+		}
+		for (int a = 0; a < atomCount; a++) {
+			final Integer kept = smallest.get(coveredAtoms[a]);
+			if (kept != null && kept == a) {
+				this.addFeature(a, iteration, identifiers[a], parents[a]);
+			}
+		}
+		this.coveredAtomSets.addAll(smallest.keySet());
+	}
+
+	private BitSet getCoveredAtoms(long[] coverage, int atom) {
+		return BitSet.valueOf(LongBuffer.wrap(coverage, atom * words, words));
+	}
+
+	private void addFeature(int atom, int iteration, int identifier, int parent) {
+		this.featureAtoms[featureCount] = atom;
+		this.featureIterations[featureCount] = iteration;
+		this.featureIdentifiers[featureCount] = identifier;
+		this.featureParents[featureCount] = parent;
+		this.featureCount++;
+	}
+
+	/**
+	 * Arrays.hashCode of the first length values
+	 */
+	private static int hash(int[] values, int length) {
+		int hash = 1;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + values[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * returns the identifiers of the features, iteration by iteration in the
+	 * order of the atoms
+	 *
+	 * @return
+	 */
+	int[] getIdentifiers() {
+		return Arrays.copyOf(this.featureIdentifiers, this.featureCount);
+	}
+
+	ArrayList<IFeature> getFeatures(Encoding2D encoding) {
+		final ArrayList<IFeature> features = new ArrayList<IFeature>(this.featureCount);
+		for (int f = 0; f < this.featureCount; f++) {
+			features.add(new Feature(encoding, featureAtoms[f], featureIterations[f], featureParents[f],
+					featureIdentifiers[f]));
+		}
+		return features;
+	}
+
+	/**
+	 * the substructure of an atom in an iteration: in iteration 0 the atom
+	 * and its bonds, then the substructure of the last iteration followed by
+	 * the atoms and bonds of the substructures of the neighbours not in it
+	 */
+	private synchronized IAtomContainer createSubstructure(int atom, int iteration) {
+		if (this.substructureAtoms == null) {
+			this.substructureAtoms = new int[featureIterations[featureCount - 1] + 1][atomCount][];
+			this.substructureBonds = new int[substructureAtoms.length][atomCount][];
+		}
+		this.order(atom, iteration, new boolean[atomCount], new boolean[molecule.getBondCount()]);
+		final IAtomContainer substructure = new AtomContainer();
+		for (int a : this.substructureAtoms[iteration][atom]) {
+			substructure.addAtom(molecule.getAtom(a));
+		}
+		for (int b : this.substructureBonds[iteration][atom]) {
+			substructure.addBond(molecule.getBond(b));
+		}
+		return substructure;
+	}
+
+	private void order(int atom, int iteration, boolean[] atomMarks, boolean[] bondMarks) {
+		if (this.substructureAtoms[iteration][atom] != null) {
+			return;
+		}
+		if (iteration == 0) {
+			this.substructureAtoms[0][atom] = new int[] { atom };
+			this.substructureBonds[0][atom] = Arrays.copyOfRange(this.adjacentBonds, offsets[atom], offsets[atom + 1]);
+			return;
+		}
+		this.order(atom, iteration - 1, atomMarks, bondMarks);
+		for (int n = offsets[atom]; n < offsets[atom + 1]; n++) {
+			this.order(adjacentAtoms[n], iteration - 1, atomMarks, bondMarks);
+		}
+		final int[] atoms = this.append(this.substructureAtoms[iteration - 1], atom, atomMarks);
+		final int[] bonds = this.append(this.substructureBonds[iteration - 1], atom, bondMarks);
+		this.substructureAtoms[iteration][atom] = atoms;
+		this.substructureBonds[iteration][atom] = bonds;
+	}
+
+	/**
+	 * concatenates the sequence of the atom and the ones of its neighbours
+	 * without repetitions, the marks are cleared again
+	 */
+	private int[] append(int[][] sequences, int atom, boolean[] marks) {
+		int size = 0;
+		int[] sequence = new int[sequences[atom].length];
+		for (int n = offsets[atom] - 1; n < offsets[atom + 1]; n++) {
+			for (int element : sequences[n < offsets[atom] ? atom : this.adjacentAtoms[n]]) {
+				if (!marks[element]) {
+					marks[element] = true;
+					if (size == sequence.length) {
+						sequence = Arrays.copyOf(sequence, 2 * size + 1);
+					}
+					sequence[size++] = element;
+				}
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			marks[sequence[i]] = false;
+		}
+		return Arrays.copyOf(sequence, size);
+	}
+
+	private class Feature extends ECFPFeature {
+		private final int atom;
+		private IAtomContainer substructure;
+
+		private Feature(Encoding2D encoding, int atom, int iteration, int parent, int identifier) {
+			super(encoding, molecule, molecule.getAtom(atom), iteration, parent, identifier);
+			this.atom = atom;
+		}
+
+		@Override
+		public IAtomContainer representedSubstructure() {
+			if (this.substructure == null) {
+				this.substructure = createSubstructure(this.atom, this.getIterationNumber());
+			}
+			return this.substructure;
+		}
+	}
+}
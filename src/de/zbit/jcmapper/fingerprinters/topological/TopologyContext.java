@@ -0,0 +1,344 @@
+package de.zbit.jcmapper.fingerprinters.topological;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * the topology of a molecule shared by the 2D encodings: the atom indices,
+ * the adjacency of the atoms, the topological distances of all atom pairs
+ * and the ring flags of atoms and bonds. The adjacency is kept in compressed
+ * rows: the neighbours of atom i and the bonds to them are at the positions
+ * offsets[i] to offsets[i + 1] - 1 of two arrays, in the order of
+ * getConnectedBondsList. A context is kept for each
+ * molecule as long as the molecule is referenced, so the encodings
+ * calculated on one molecule compute its topology once. The distances are
+ * found by a breadth first search from every atom and stored in one array,
+ * they and the ring flags are computed when they are first asked for.
+ */
+public class TopologyContext {
+
+	/**
+	 * the distance of atoms in different components, the value of
+	 * PathTools.computeFloydAPSP
+	 */
+	public static final int UNREACHABLE = 999999999;
+
+	private static final Map<IAtomContainer, TopologyContext> contexts = new WeakHashMap<IAtomContainer, TopologyContext>();
+
+	private final int atomCount;
+	private final int bondCount;
+	private final Map<IAtom, Integer> atomIndex;
+	private final int[] offsets;
+	private final int[] adjacentAtoms;
+	private final int[] adjacentBonds;
+	private final int[] bondAtoms;
+
+	// row major, -1 for atoms in different components
+	private volatile short[] distances;
+	private volatile int[][] distanceMatrix;
+	private volatile boolean[] ringAtoms;
+	private volatile boolean[] ringBonds;
+
+	/**
+	 * returns the context of the molecule, it is computed again if atoms or
+	 * bonds have been added or removed since
+	 *
+	 * @param ac
+	 * @return
+	 */
+	public static TopologyContext getContext(IAtomContainer ac) {
+		synchronized (contexts) {
+			final TopologyContext context = contexts.get(ac);
+			if (context != null && context.atomCount == ac.getAtomCount() && context.bondCount == ac.getBondCount()) {
+				return context;
+			}
+		}
+		final TopologyContext context = new TopologyContext(ac);
+		synchronized (contexts) {
+			contexts.put(ac, context);
+		}
+		return context;
+	}
+
+	private TopologyContext(IAtomContainer ac) {
+		this.atomCount = ac.getAtomCount();
+		this.bondCount = ac.getBondCount();
+		this.atomIndex = new IdentityHashMap<IAtom, Integer>();
+		for (int i = 0; i < atomCount; i++) {
+			atomIndex.put(ac.getAtom(i), i);
+		}
+
+		this.offsets = new int[atomCount + 1];
+		this.bondAtoms = new int[2 * bondCount];
+		for (int b = 0; b < bondCount; b++) {
+			final IBond bond = ac.getBond(b);
+			bondAtoms[2 * b] = atomIndex.get(bond.getAtom(0));
+			bondAtoms[2 * b + 1] = atomIndex.get(bond.getAtom(1));
+			offsets[bondAtoms[2 * b] + 1]++;
+			offsets[bondAtoms[2 * b + 1] + 1]++;
+		}
+		for (int i = 0; i < atomCount; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+
+		this.adjacentAtoms = new int[2 * bondCount];
+		this.adjacentBonds = new int[2 * bondCount];
+		final int[] position = Arrays.copyOf(offsets, atomCount);
+		for (int b = 0; b < bondCount; b++) {
+			final int a0 = bondAtoms[2 * b];
+			final int a1 = bondAtoms[2 * b + 1];
+			adjacentAtoms[position[a0]] = a1;
+			adjacentBonds[position[a0]++] = b;
+			adjacentAtoms[position[a1]] = a0;
+			adjacentBonds[position[a1]++] = b;
+		}
+	}
+
+	public int getAtomCount() {
+		return this.atomCount;
+	}
+
+	public int getBondCount() {
+		return this.bondCount;
+	}
+
+	/**
+	 * returns the index of the atom in the molecule, -1 if it is not one of
+	 * its atoms
+	 *
+	 * @param atom
+	 * @return
+	 */
+	public int getAtomIndex(IAtom atom) {
+		final Integer index = this.atomIndex.get(atom);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * returns the index of the bond between the atoms, -1 if they are not
+	 * bonded
+	 *
+	 * @param atom1
+	 * @param atom2
+	 * @return
+	 */
+	public int getBondIndex(int atom1, int atom2) {
+		for (int n = offsets[atom1]; n < offsets[atom1 + 1]; n++) {
+			if (adjacentAtoms[n] == atom2) {
+				return adjacentBonds[n];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * returns the index of the ith atom of the bond, i is 0 or 1
+	 *
+	 * @param bond
+	 * @param i
+	 * @return
+	 */
+	public int getBondAtom(int bond, int i) {
+		return this.bondAtoms[2 * bond + i];
+	}
+
+	public int getDegree(int atom) {
+		return this.offsets[atom + 1] - this.offsets[atom];
+	}
+
+	/**
+	 * returns the offsets of the adjacency rows, the neighbours of atom i are
+	 * at the positions offsets[i] to offsets[i + 1] - 1. The array must not
+	 * be changed
+	 *
+	 * @return
+	 */
+	public int[] getOffsets() {
+		return this.offsets;
+	}
+
+	/**
+	 * returns the neighbour indices of all atoms, row by row, the array must
+	 * not be changed
+	 *
+	 * @return
+	 */
+	public int[] getAdjacentAtoms() {
+		return this.adjacentAtoms;
+	}
+
+	/**
+	 * returns the indices of the bonds to the neighbours of all atoms, row by
+	 * row, the array must not be changed
+	 *
+	 * @return
+	 */
+	public int[] getAdjacentBonds() {
+		return this.adjacentBonds;
+	}
+
+	/**
+	 * returns the number of bonds on a shortest path between the atoms,
+	 * UNREACHABLE if there is none
+	 *
+	 * @param atom1
+	 * @param atom2
+	 * @return
+	 */
+	public int getDistance(int atom1, int atom2) {
+		final int distance = this.getDistances()[atom1 * atomCount + atom2];
+		return distance < 0 ? UNREACHABLE : distance;
+	}
+
+	/**
+	 * returns the distances as a matrix like PathTools.computeFloydAPSP, the
+	 * matrix is shared and must not be changed
+	 *
+	 * @return
+	 */
+	public int[][] getDistanceMatrix() {
+		if (this.distanceMatrix != null) {
+			return this.distanceMatrix;
+		}
+		synchronized (this) {
+			if (this.distanceMatrix == null) {
+				final int[][] matrix = new int[atomCount][atomCount];
+				for (int i = 0; i < atomCount; i++) {
+					for (int j = 0; j < atomCount; j++) {
+						matrix[i][j] = this.getDistance(i, j);
+					}
+				}
+				this.distanceMatrix = matrix;
+			}
+			return this.distanceMatrix;
+		}
+	}
+
+	public boolean isRingAtom(int atom) {
+		return this.getRingAtoms()[atom];
+	}
+
+	public boolean isRingBond(int bond) {
+		return this.getRingBonds()[bond];
+	}
+
+	private short[] getDistances() {
+		final short[] distances = this.distances;
+		return distances != null ? distances : this.computeDistances();
+	}
+
+	private synchronized short[] computeDistances() {
+		if (this.distances == null) {
+			final short[] d = new short[atomCount * atomCount];
+			Arrays.fill(d, (short) -1);
+			final int[] queue = new int[atomCount];
+			for (int source = 0; source < atomCount; source++) {
+				final int row = source * atomCount;
+				d[row + source] = 0;
+				queue[0] = source;
+				int head = 0;
+				int tail = 1;
+				while (head < tail) {
+					final int atom = queue[head++];
+					final short next = (short) (d[row + atom] + 1);
+					for (int n = offsets[atom]; n < offsets[atom + 1]; n++) {
+						final int neighbour = adjacentAtoms[n];
+						if (d[row + neighbour] < 0) {
+							d[row + neighbour] = next;
+							queue[tail++] = neighbour;
+						}
+					}
+				}
+			}
+			this.distances = d;
+		}
+		return this.distances;
+	}
+
+	private boolean[] getRingAtoms() {
+		final boolean[] ringAtoms = this.ringAtoms;
+		return ringAtoms != null ? ringAtoms : this.computeRingAtoms();
+	}
+
+	private synchronized boolean[] computeRingAtoms() {
+		if (this.ringAtoms == null) {
+			final boolean[] ringBonds = this.getRingBonds();
+			final boolean[] atoms = new boolean[atomCount];
+			for (int b = 0; b < bondCount; b++) {
+				if (ringBonds[b]) {
+					atoms[bondAtoms[2 * b]] = true;
+					atoms[bondAtoms[2 * b + 1]] = true;
+				}
+			}
+			this.ringAtoms = atoms;
+		}
+		return this.ringAtoms;
+	}
+
+	/**
+	 * a bond is in a ring if it is no bridge, the bridges are found by a depth
+	 * first search comparing the discovery order of the atoms with the lowest
+	 * one reachable over a back bond
+	 */
+	private boolean[] getRingBonds() {
+		final boolean[] ringBonds = this.ringBonds;
+		return ringBonds != null ? ringBonds : this.computeRingBonds();
+	}
+
+	private synchronized boolean[] computeRingBonds() {
+		if (this.ringBonds == null) {
+			final boolean[] bonds = new boolean[bondCount];
+			final int[] order = new int[atomCount];
+			final int[] low = new int[atomCount];
+			final int[] parentBond = new int[atomCount];
+			final int[] stack = new int[atomCount];
+			final int[] next = new int[atomCount];
+			int discovered = 0;
+			for (int root = 0; root < atomCount; root++) {
+				if (order[root] != 0) {
+					continue;
+				}
+				order[root] = low[root] = ++discovered;
+				parentBond[root] = -1;
+				int top = 0;
+				stack[0] = root;
+				next[root] = offsets[root];
+				while (top >= 0) {
+					final int atom = stack[top];
+					if (next[atom] < offsets[atom + 1]) {
+						final int neighbour = adjacentAtoms[next[atom]];
+						final int bond = adjacentBonds[next[atom]++];
+						if (bond == parentBond[atom]) {
+							continue;
+						}
+						if (order[neighbour] == 0) {
+							order[neighbour] = low[neighbour] = ++discovered;
+							parentBond[neighbour] = bond;
+							next[neighbour] = offsets[neighbour];
+							stack[++top] = neighbour;
+						} else {
+							// a back bond closes a ring
+							bonds[bond] = true;
+							low[atom] = Math.min(low[atom], order[neighbour]);
+						}
+					} else {
+						top--;
+						if (top >= 0) {
+							final int parent = stack[top];
+							low[parent] = Math.min(low[parent], low[atom]);
+							bonds[parentBond[atom]] = low[atom] <= order[parent];
+						}
+					}
+				}
+			}
+			this.ringBonds = bonds;
+		}
+		return this.ringBonds;
+	}
+}
@@ -41,4 +41,21 @@ public class DanglingBond {
 	public IBond getBond() {
 		return bond;
 	}
+
+	/**
+	 * returns a copy of the bond with the connected atom replaced, the bond
+	 * itself is not changed
+	 *
+	 * @param atom
+	 * @return
+	 * @throws CloneNotSupportedException
+	 */
+	public IBond getBondTo(IAtom atom) throws CloneNotSupportedException {
+		final IBond copy = this.bond.clone();
+		for (int i = 0; i < this.bond.getAtomCount(); i++) {
+			copy.setAtom(this.bond.getAtom(i), i);
+		}
+		copy.setAtom(atom, this.connectedAtomPosition);
+		return copy;
+	}
 }
@@ -3,7 +3,9 @@ package de.zbit.jcmapper.fingerprinters.topological.features;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openscience.cdk.AtomContainer;
 import org.openscience.cdk.PseudoAtom;
@@ -19,12 +21,12 @@ import de.zbit.jcmapper.fingerprinters.FingerPrinterException;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP.BondOrderIdentifierTupel;
+import de.zbit.jcmapper.fingerprinters.topological.TopologyContext;
 import de.zbit.jcmapper.tools.moltyping.MoltyperException;
 
 public class ECFPFeature implements IFeature {
 	
-	// set substructure hashing as default!
-	private static boolean substructureHash=true; 
+	private final boolean substructureHash;
 	
 	private IAtom coreAtom;
 	private int feature;
@@ -35,7 +37,7 @@ public class ECFPFeature implements IFeature {
 	private EncodingFingerprint encodingFingerprint;
 	private IAtomContainer parentMolecule; 
 	
-	public ECFPFeature(EncodingFingerprint encodingFingerprint, IAtomContainer parentMolecule, IAtom coreAtom, IAtomContainer substructure, int iterationNumber, int parent, List<BondOrderIdentifierTupel> connections) {
+	public ECFPFeature(EncodingFingerprint encodingFingerprint, IAtomContainer parentMolecule, IAtom coreAtom, IAtomContainer substructure, int iterationNumber, int parent, List<BondOrderIdentifierTupel> connections, boolean substructureHash) {
 		this.substructure = substructure;
 		this.coreAtom = coreAtom;
 		this.iterationNumber = iterationNumber;
@@ -43,6 +45,7 @@ public class ECFPFeature implements IFeature {
 		this.connections = connections;
 		this.encodingFingerprint=encodingFingerprint;
 		this.parentMolecule = parentMolecule;
+		this.substructureHash = substructureHash;
 
 		//needs to be the last function call in the constructor
 		this.feature=0;
@@ -53,6 +56,20 @@ public class ECFPFeature implements IFeature {
 		}
 	}
 
+	/**
+	 * a feature with a known hash, subclasses create the substructure when
+	 * it is first asked for by representedSubstructure
+	 */
+	protected ECFPFeature(EncodingFingerprint encodingFingerprint, IAtomContainer parentMolecule, IAtom coreAtom, int iterationNumber, int parent, int feature) {
+		this.coreAtom = coreAtom;
+		this.iterationNumber = iterationNumber;
+		this.parent = parent;
+		this.encodingFingerprint=encodingFingerprint;
+		this.parentMolecule = parentMolecule;
+		this.substructureHash = false;
+		this.feature = feature;
+	}
+
 	private int computeFeatureHash() throws MoltyperException{
 		int hashCode=0;
 		if(substructureHash){
@@ -111,14 +128,10 @@ public class ECFPFeature implements IFeature {
 		return hashCode;
 	}
 
-	public static boolean isSubstructureHash() {
+	public boolean isSubstructureHash() {
 		return substructureHash;
 	}
 
-	public static void setSubstructureHash(boolean substructureHash) {
-		ECFPFeature.substructureHash = substructureHash;
-	}
-
 
 	@Override
 	public int hashCode() {
@@ -136,42 +149,48 @@ public class ECFPFeature implements IFeature {
 			return 0;
 	}
 
+	/**
+	 * the dangling bonds are replaced by copies ending in pseudo atoms, so the
+	 * molecule is not changed and features may be written concurrently
+	 */
 	@Override
 	public String featureToString(boolean useAromaticFlag) {
-		String smile;
 		ArrayList<DanglingBond> danglingBonds = this.detectDanglingBonds();
 		
-		IAtom[] tempAtoms = new IAtom[danglingBonds.size()];
-		final IAtomContainer substructureClone = this.getNonDeepCloneOfSubstructure();
-		
-		for (int i = 0; i < danglingBonds.size(); i++) {
-			final DanglingBond dangling = danglingBonds.get(i);
-			final IBond bond = dangling.getBond();
-			tempAtoms[i] = dangling.getConnectedAtom();
-			final IAtom pseudoAtom = new PseudoAtom();
-			bond.setAtom(pseudoAtom, dangling.getConnectedAtomPosition());
-			substructureClone.addAtom(pseudoAtom);
-			substructureClone.addBond(dangling.getBond());
+		final Map<IBond, IBond> copies = new IdentityHashMap<IBond, IBond>();
+		try {
+			for (final DanglingBond dangling : danglingBonds) {
+				copies.put(dangling.getBond(), dangling.getBondTo(new PseudoAtom()));
+			}
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+			return null;
 		}
 		
-		smile = new SmilesGenerator().createSMILES(substructureClone);
-
-		for (int i = 0; i < danglingBonds.size(); i++) {
-			final DanglingBond connectivity = danglingBonds.get(i);
-			final IBond bond = connectivity.getBond();
-			bond.setAtom(tempAtoms[i], connectivity.getConnectedAtomPosition());
+		final IAtomContainer substructureClone = new AtomContainer();
+		for (IBond bond : this.representedSubstructure().bonds()) {
+			substructureClone.addBond(copies.containsKey(bond) ? copies.get(bond) : bond);
+		}
+		for (IAtom atom : this.representedSubstructure().atoms()) {
+			substructureClone.addAtom(atom);
 		}
-		return smile;
+		for (final DanglingBond dangling : danglingBonds) {
+			final IBond copy = copies.get(dangling.getBond());
+			substructureClone.addAtom(copy.getAtom(dangling.getConnectedAtomPosition()));
+			substructureClone.addBond(copy);
+		}
+		
+		return new SmilesGenerator().createSMILES(substructureClone);
 	}
 	
 	private ArrayList<DanglingBond> detectDanglingBonds(){
 		ArrayList<DanglingBond> danglingBonds = new ArrayList<DanglingBond>();
 		try{
-			for(IBond bond: substructure.bonds()){
-				if(!substructure.contains(bond.getAtom(0))){
+			for(IBond bond: representedSubstructure().bonds()){
+				if(!representedSubstructure().contains(bond.getAtom(0))){
 					danglingBonds.add(new DanglingBond(bond, bond.getAtom(0)));
 					continue;
-				}if(!substructure.contains(bond.getAtom(1)))
+				}if(!representedSubstructure().contains(bond.getAtom(1)))
 					danglingBonds.add(new DanglingBond(bond, bond.getAtom(1)));
 			}
 		}catch(FingerPrinterException e){
@@ -187,20 +206,20 @@ public class ECFPFeature implements IFeature {
 	
 	public IAtomContainer getNonDeepCloneOfSubstructure(){
         IAtomContainer clone = new AtomContainer();
-		for(IBond bond: this.substructure.bonds())
+		for(IBond bond: this.representedSubstructure().bonds())
 			clone.addBond(bond);
 		
-		for(IAtom atom: this.substructure.atoms())
+		for(IAtom atom: this.representedSubstructure().atoms())
 			clone.addAtom(atom);
 		
 		return clone;
 	}
 	
 	public boolean representsSameSubstructures(ECFPFeature arg){
-		if(arg.substructure.getAtomCount()!=this.substructure.getAtomCount())
+		if(arg.representedSubstructure().getAtomCount()!=this.representedSubstructure().getAtomCount())
 			return false;
-		for(IAtom atom: arg.substructure.atoms()){
-			if(!this.substructure.contains(atom))
+		for(IAtom atom: arg.representedSubstructure().atoms()){
+			if(!this.representedSubstructure().contains(atom))
 				return false;
 		}
 		return true;
@@ -221,12 +240,12 @@ public class ECFPFeature implements IFeature {
 
 	@Override
 	public Iterable<IAtom> representedAtoms() {
-		return substructure.atoms();
+		return representedSubstructure().atoms();
 	}
 
 	@Override
 	public Iterable<IBond> representedBonds() {
-		return substructure.bonds();
+		return representedSubstructure().bonds();
 	}
 	
 	
@@ -239,8 +258,9 @@ public class ECFPFeature implements IFeature {
 		      double fingerprintProperties[] = null;
               IAtomContainer imol = this.representedSubstructure();
 		      ArrayList<Integer> al = new ArrayList<Integer>();
+		      TopologyContext context = TopologyContext.getContext(parentMolecule);
 		      for(IAtom atom: imol.atoms()){
-		    	 Integer atomNumber=new Integer(parentMolecule.getAtomNumber(atom));
+		    	 Integer atomNumber=new Integer(context.getAtomIndex(atom));
 		         al.add(atomNumber);
 		         //System.out.println("atom index "+atomNumber+" element "+atom.getSymbol()+" type "+atom.getAtomTypeName());
 		      }
@@ -17,35 +17,31 @@ public class ECFPVariantFeature extends ECFPFeature {
 	private final DanglingBond[] connectivityBonds;
 	
 	public ECFPVariantFeature(EncodingFingerprint encodingFingerprint, IAtomContainer parentMolecule, IAtom coreAtom, IAtomContainer substructure, DanglingBond[] connectivityBonds, int iterationNumber, int parent, List<BondOrderIdentifierTupel> connections) {
-		super(encodingFingerprint, parentMolecule, coreAtom, substructure, iterationNumber, parent, connections);
+		super(encodingFingerprint, parentMolecule, coreAtom, substructure, iterationNumber, parent, connections, true);
 		this.connectivityBonds = connectivityBonds;
 	}
 
 	@Override
 	public String featureToString(boolean useAromaticFlag) {
-		final IAtom[] tempAtoms = new IAtom[this.connectivityBonds.length];
 		final IAtomContainer substructureClone = this.getNonDeepCloneOfSubstructure();
 
-		for (int i = 0; i < this.connectivityBonds.length; i++) {
-			final DanglingBond connectivity = this.connectivityBonds[i];
-			final IBond bond = connectivity.getBond();
-			tempAtoms[i] = connectivity.getConnectedAtom();
-			if (!substructureClone.contains(connectivity.getConnectedAtom())) {
-				final IAtom pseudoAtom = new PseudoAtom();
-				bond.setAtom(pseudoAtom, connectivity.getConnectedAtomPosition());
-				substructureClone.addAtom(pseudoAtom);
+		try {
+			for (int i = 0; i < this.connectivityBonds.length; i++) {
+				final DanglingBond connectivity = this.connectivityBonds[i];
+				if (!substructureClone.contains(connectivity.getConnectedAtom())) {
+					// a copy to a pseudo atom, the molecule is not changed
+					final IAtom pseudoAtom = new PseudoAtom();
+					substructureClone.addAtom(pseudoAtom);
+					substructureClone.addBond(connectivity.getBondTo(pseudoAtom));
+				} else {
+					substructureClone.addBond(connectivity.getBond());
+				}
 			}
-			substructureClone.addBond(connectivity.getBond());
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace();
+			return null;
 		}
-		String smile = new SmilesGenerator().createSMILES(substructureClone);
-
-		for (int i = 0; i < this.connectivityBonds.length; i++) {
-			final DanglingBond connectivity = this.connectivityBonds[i];
-			final IBond bond = connectivity.getBond();
-			bond.setAtom(tempAtoms[i], connectivity.getConnectedAtomPosition());
-		}
-
-		return smile;
+		return new SmilesGenerator().createSMILES(substructureClone);
 	}
 
 	public DanglingBond getDanglingBond(int i) {
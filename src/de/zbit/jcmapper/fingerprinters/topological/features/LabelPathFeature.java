@@ -0,0 +1,74 @@
+package de.zbit.jcmapper.fingerprinters.topological.features;
+
+import de.zbit.jcmapper.fingerprinters.features.NumericStringFeature;
+
+/**
+ * a path kept as a sequence of atom and bond label codes, the string is only
+ * built when it is asked for. The hash code is the hash code of that string.
+ */
+public class LabelPathFeature extends NumericStringFeature {
+
+	private final String[] labels;
+	private final int[] path;
+	private final long pathHash;
+
+	/**
+	 * @param labels
+	 *            the labels of the molecule, shared by its features
+	 * @param path
+	 *            codes of the labels along the path
+	 * @param hashCode
+	 *            hash code of the path string
+	 * @param pathHash
+	 *            64 bit hash of the path string
+	 */
+	public LabelPathFeature(String[] labels, int[] path, int hashCode, long pathHash) {
+		this(labels, path, hashCode, pathHash, 1.0);
+	}
+
+	/**
+	 * @param labels
+	 *            the labels of the molecule, shared by its features
+	 * @param path
+	 *            codes of the labels along the path
+	 * @param hashCode
+	 *            hash code of the path string
+	 * @param pathHash
+	 *            64 bit hash of the path string
+	 * @param value
+	 *            the number of times the path is counted
+	 */
+	public LabelPathFeature(String[] labels, int[] path, int hashCode, long pathHash, double value) {
+		super(hashCode, value);
+		this.labels = labels;
+		this.path = path;
+		this.pathHash = pathHash;
+	}
+
+	/**
+	 * returns a 64 bit hash of the path string
+	 *
+	 * @return
+	 */
+	public long getPathHash() {
+		return this.pathHash;
+	}
+
+	/**
+	 * returns the number of bonds of the path
+	 *
+	 * @return
+	 */
+	public int getPathLength() {
+		return this.path.length / 2;
+	}
+
+	@Override
+	protected String createFeatureString() {
+		final StringBuilder sb = new StringBuilder();
+		for (int label : this.path) {
+			sb.append(this.labels[label]);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,170 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * writes MDL SD records as BGZF file, i.e. concatenated gzip members of at
+ * most 64 KB carrying their size in a 'BC' extra field, terminated by an empty
+ * end of file member. A block is closed before a record that does not fit
+ * into it anymore, so most records are inflated from a single block by
+ * {@link BlockGzipSDFile}. The output is a valid gzip file.
+ */
+public class BlockGzipSDFWriter implements Closeable {
+
+	static final int BLOCK_SIZE = 0xff00;
+	private static final int MAX_MEMBER_SIZE = 65536;
+	private static final int HEADER_SIZE = 18;
+	private static final int TRAILER_SIZE = 8;
+
+	private final OutputStream out;
+	private final byte[] block = new byte[BLOCK_SIZE];
+	private int length = 0;
+	private final byte[] member = new byte[MAX_MEMBER_SIZE];
+	private final Deflater deflater;
+	private final CRC32 crc = new CRC32();
+
+	public BlockGzipSDFWriter(OutputStream out) {
+		this(out, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param out
+	 *            closed by {@link #close()}
+	 * @param level
+	 *            deflate compression level
+	 */
+	public BlockGzipSDFWriter(OutputStream out, int level) {
+		this.out = out;
+		this.deflater = new Deflater(level, true);
+	}
+
+	/**
+	 * writes the sd file (plain or gzip compressed) as BGZF file
+	 *
+	 * @param sdf
+	 * @param bgzf
+	 * @throws IOException
+	 */
+	public static void compress(File sdf, File bgzf) throws IOException {
+		final StreamingMDLReader reader = StreamingMDLReader.open(sdf);
+		final BlockGzipSDFWriter writer = new BlockGzipSDFWriter(new BufferedOutputStream(new FileOutputStream(bgzf)));
+		try {
+			ByteBuffer record;
+			for (int i = 0; (record = reader.getRecord(i)) != null; i++) {
+				writer.writeRecord(record);
+			}
+		} finally {
+			reader.close();
+			writer.close();
+		}
+	}
+
+	/**
+	 * appends the record, a new block is started if the record does not fit
+	 * into the current one
+	 *
+	 * @param record
+	 * @throws IOException
+	 */
+	public void writeRecord(ByteBuffer record) throws IOException {
+		record = record.duplicate();
+		if (this.length > 0 && this.length + record.remaining() > BLOCK_SIZE) {
+			this.flushBlock();
+		}
+		while (record.hasRemaining()) {
+			final int n = Math.min(record.remaining(), BLOCK_SIZE - this.length);
+			record.get(this.block, this.length, n);
+			this.length += n;
+			if (this.length == BLOCK_SIZE) {
+				this.flushBlock();
+			}
+		}
+	}
+
+	/**
+	 * writes the pending block and the end of file marker
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (this.length > 0) {
+				this.flushBlock();
+			}
+			this.flushBlock();
+		} finally {
+			this.deflater.end();
+			this.out.close();
+		}
+	}
+
+	private void flushBlock() throws IOException {
+		this.deflater.reset();
+		this.deflater.setInput(this.block, 0, this.length);
+		this.deflater.finish();
+		int size = HEADER_SIZE;
+		while (!this.deflater.finished() && size < MAX_MEMBER_SIZE - TRAILER_SIZE) {
+			size += this.deflater.deflate(this.member, size, MAX_MEMBER_SIZE - TRAILER_SIZE - size);
+		}
+		if (!this.deflater.finished()) {
+			throw new IOException("Compressed block exceeds " + MAX_MEMBER_SIZE + " bytes");
+		}
+		this.crc.reset();
+		this.crc.update(this.block, 0, this.length);
+
+		final int memberSize = size + TRAILER_SIZE;
+		final byte[] m = this.member;
+		m[0] = 0x1f;
+		m[1] = (byte) 0x8b;
+		m[2] = 8; // deflate
+		m[3] = 4; // FEXTRA
+		m[4] = m[5] = m[6] = m[7] = 0; // mtime
+		m[8] = 0;
+		m[9] = (byte) 0xff; // unknown os
+		m[10] = 6; // xlen
+		m[11] = 0;
+		m[12] = 'B';
+		m[13] = 'C';
+		m[14] = 2;
+		m[15] = 0;
+		m[16] = (byte) (memberSize - 1);
+		m[17] = (byte) ((memberSize - 1) >>> 8);
+		putInt(m, size, (int) this.crc.getValue());
+		putInt(m, size + 4, this.length);
+		this.out.write(m, 0, memberSize);
+		this.length = 0;
+	}
+
+	private static void putInt(byte[] b, int p, int value) {
+		b[p] = (byte) value;
+		b[p + 1] = (byte) (value >>> 8);
+		b[p + 2] = (byte) (value >>> 16);
+		b[p + 3] = (byte) (value >>> 24);
+	}
+
+	/**
+	 * compresses an sd file for random access
+	 *
+	 * @param args
+	 *            input sd file (plain or gzip) and output file
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: BlockGzipSDFWriter <input.sdf[.gz]> <output.sdf.gz>");
+			System.exit(1);
+		}
+		try {
+			compress(new File(args[0]), new File(args[1]));
+		} catch (final IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
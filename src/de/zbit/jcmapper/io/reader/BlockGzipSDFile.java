@@ -0,0 +1,426 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * record access on a gzip compressed MDL SD file consisting of several gzip
+ * members (blocks), e.g. BGZF files written by {@link BlockGzipSDFWriter} or
+ * bgzip. A block table maps uncompressed offsets to the compressed position of
+ * each member, so a record is read by inflating only the blocks it lies in.
+ * BGZF blocks carry their compressed size in the header and the table is built
+ * without inflating anything. Other members are inflated once to find their
+ * end, a plain gzip file is a single block and every access inflates all of
+ * it. getRecord is safe for concurrent callers, each thread keeps its last
+ * inflated block.
+ */
+public class BlockGzipSDFile implements ISDFRecordSource {
+
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+	private static final int FHCRC = 2;
+	private static final int TRAILER_SIZE = 8;
+	private static final int HEADER_READ = 65536;
+
+	private final File sdf;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	// block b starts at compressed[b] and covers [uncompressed[b],
+	// uncompressed[b+1])
+	private long[] compressed = new long[1024];
+	private long[] uncompressed = new long[1024];
+	private int blocks = 0;
+
+	private final ThreadLocal<Block> lastBlock = new ThreadLocal<Block>();
+
+	public BlockGzipSDFile(File sdf) throws IOException {
+		this.sdf = sdf;
+		this.file = new RandomAccessFile(sdf, "r");
+		this.channel = this.file.getChannel();
+		this.readBlockTable();
+		if (this.blocks == 1 && this.length() > HEADER_READ) {
+			System.out.println("[BlockGzipSDFile] " + sdf + " is a single gzip member, every record access inflates the whole file."
+					+ " Use BlockGzipSDFWriter to write it as block compressed file.");
+		}
+	}
+
+	/**
+	 * checks the gzip magic number of the file
+	 *
+	 * @param sdf
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isGzip(File sdf) throws IOException {
+		final InputStream in = new FileInputStream(sdf);
+		try {
+			return in.read() == 0x1f && in.read() == 0x8b;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * checks whether the first gzip member of the file is a BGZF block
+	 *
+	 * @param sdf
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isBlockCompressed(File sdf) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(sdf, "r");
+		try {
+			final byte[] head = new byte[(int) Math.min(HEADER_READ, raf.length())];
+			raf.readFully(head);
+			return new Header(ByteBuffer.wrap(head)).blockSize > 0;
+		} catch (final IOException e) {
+			return false;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * returns the number of gzip members holding data
+	 *
+	 * @return
+	 */
+	public int getBlockCount() {
+		return this.blocks;
+	}
+
+	/**
+	 * returns the uncompressed length of the file
+	 */
+	@Override
+	public long length() {
+		return this.uncompressed[this.blocks];
+	}
+
+	@Override
+	public ByteBuffer getRecord(long start, long end) throws IOException {
+		if (end <= start) {
+			return ByteBuffer.allocate(0).asReadOnlyBuffer();
+		}
+		int b = this.findBlock(start);
+		Block block = this.getBlock(b);
+		if (end <= this.uncompressed[b + 1]) {
+			return ByteBuffer.wrap(block.data, (int) (start - this.uncompressed[b]), (int) (end - start)).slice().asReadOnlyBuffer();
+		}
+		// record straddles a block boundary
+		final ByteBuffer copy = ByteBuffer.allocate((int) (end - start));
+		long position = start;
+		while (position < end) {
+			final int offset = (int) (position - this.uncompressed[b]);
+			final int length = (int) Math.min(block.data.length - offset, end - position);
+			copy.put(block.data, offset, length);
+			position += length;
+			if (position < end) {
+				block = this.getBlock(++b);
+			}
+		}
+		copy.flip();
+		return copy.asReadOnlyBuffer();
+	}
+
+	/**
+	 * inflates all blocks once and returns the offsets behind all $$$$ lines
+	 */
+	@Override
+	public SDFOffsetIndex scan() throws IOException {
+		long[] offsets = new long[1024];
+		int c = 0;
+		int column = 0;
+		int dollars = 0;
+		boolean carriageReturn = false;
+		for (int b = 0; b < this.blocks; b++) {
+			final byte[] data = this.inflate(b);
+			final long base = this.uncompressed[b];
+			for (int i = 0; i < data.length; i++) {
+				final byte bt = data[i];
+				if (carriageReturn) {
+					// delimiter line ended with \r, a following \n belongs to it
+					carriageReturn = false;
+					if (++c == offsets.length) {
+						offsets = Arrays.copyOf(offsets, offsets.length * 2);
+					}
+					offsets[c] = bt == '\n' ? base + i + 1 : base + i;
+					if (bt == '\n') {
+						continue;
+					}
+				}
+				if (bt == '\n' || bt == '\r') {
+					if (dollars == 4) {
+						if (bt == '\r') {
+							carriageReturn = true;
+						} else {
+							if (++c == offsets.length) {
+								offsets = Arrays.copyOf(offsets, offsets.length * 2);
+							}
+							offsets[c] = base + i + 1;
+						}
+					}
+					column = 0;
+					dollars = 0;
+					continue;
+				}
+				if (column == dollars && dollars < 4 && bt == '$') {
+					dollars++;
+				}
+				column++;
+			}
+		}
+		if (carriageReturn || dollars == 4) {
+			if (++c == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[c] = this.length();
+		}
+		return new SDFOffsetIndex(offsets, c);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.file.close();
+	}
+
+	/**
+	 * returns the block containing the uncompressed position
+	 */
+	private int findBlock(long position) {
+		int low = 0;
+		int high = this.blocks - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (this.uncompressed[middle] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	private Block getBlock(int b) throws IOException {
+		Block block = this.lastBlock.get();
+		if (block == null || block.index != b) {
+			block = new Block(b, this.inflate(b));
+			this.lastBlock.set(block);
+		}
+		return block;
+	}
+
+	/**
+	 * inflates the bth block
+	 *
+	 * @param b
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] inflate(int b) throws IOException {
+		final long size = this.uncompressed[b + 1] - this.uncompressed[b];
+		final long compressedSize = this.compressed[b + 1] - this.compressed[b];
+		if (size > Integer.MAX_VALUE - 8 || compressedSize > Integer.MAX_VALUE - 8) {
+			throw new IOException("gzip member at " + this.compressed[b] + " of " + this.sdf + " is too large for random access");
+		}
+		final ByteBuffer member = this.read(this.compressed[b], (int) compressedSize);
+		final int headerLength = new Header(member).length;
+		final byte[] data = new byte[(int) size];
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member.array(), headerLength, member.limit() - headerLength - TRAILER_SIZE);
+			int n = 0;
+			while (n < data.length && !inflater.finished()) {
+				final int inflated = inflater.inflate(data, n, data.length - n);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += inflated;
+			}
+			if (n != data.length) {
+				throw new IOException("Truncated gzip member at " + this.compressed[b] + " of " + this.sdf);
+			}
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt gzip member at " + this.compressed[b] + " of " + this.sdf + ": " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		return data;
+	}
+
+	/**
+	 * walks the gzip members and stores their compressed and uncompressed
+	 * start, empty members (e.g. the BGZF end of file marker) are skipped
+	 *
+	 * @throws IOException
+	 */
+	private void readBlockTable() throws IOException {
+		final long fileLength = this.channel.size();
+		long position = 0;
+		long offset = 0;
+		while (position < fileLength) {
+			final ByteBuffer head = this.read(position, (int) Math.min(HEADER_READ, fileLength - position));
+			final Header header = new Header(head);
+			final long end;
+			final long size;
+			if (header.blockSize > 0) {
+				end = position + header.blockSize;
+				final ByteBuffer trailer = this.read(end - 4, 4);
+				size = trailer.getInt(0) & 0xFFFFFFFFL;
+			} else {
+				final long[] member = this.inflateMember(position + header.length);
+				end = position + header.length + member[0] + TRAILER_SIZE;
+				size = member[1];
+			}
+			if (end > fileLength) {
+				throw new IOException("Truncated gzip member at " + position + " of " + this.sdf);
+			}
+			if (size > 0) {
+				this.addBlock(position, offset);
+				offset += size;
+			}
+			position = end;
+		}
+		this.addBlock(position, offset);
+		this.blocks--;
+	}
+
+	private void addBlock(long position, long offset) {
+		if (this.blocks == this.compressed.length) {
+			this.compressed = Arrays.copyOf(this.compressed, this.blocks * 2);
+			this.uncompressed = Arrays.copyOf(this.uncompressed, this.blocks * 2);
+		}
+		this.compressed[this.blocks] = position;
+		this.uncompressed[this.blocks] = offset;
+		this.blocks++;
+	}
+
+	/**
+	 * inflates a member of unknown compressed size to find its end
+	 *
+	 * @param position
+	 *            start of the deflate data
+	 * @return compressed and uncompressed size of the deflate data
+	 * @throws IOException
+	 */
+	private long[] inflateMember(long position) throws IOException {
+		final Inflater inflater = new Inflater(true);
+		final byte[] output = new byte[HEADER_READ];
+		long read = 0;
+		long size = 0;
+		try {
+			while (!inflater.finished()) {
+				if (inflater.needsInput()) {
+					final ByteBuffer input = this.read(position + read, HEADER_READ);
+					if (input.limit() == 0) {
+						throw new IOException("Truncated gzip member at " + position + " of " + this.sdf);
+					}
+					inflater.setInput(input.array(), 0, input.limit());
+					read += input.limit();
+				}
+				size += inflater.inflate(output);
+			}
+			return new long[] { read - inflater.getRemaining(), size };
+		} catch (final DataFormatException e) {
+			throw new IOException("Corrupt gzip member at " + position + " of " + this.sdf + ": " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * reads up to length bytes at the position, less at the end of the file
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (this.channel.read(buffer, position + buffer.position()) < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	/**
+	 * gzip member header, blockSize is the total member size given by a BGZF
+	 * extra field or -1
+	 */
+	private static class Header {
+		int length;
+		int blockSize = -1;
+
+		Header(ByteBuffer head) throws IOException {
+			if (head.limit() < 10 || (head.get(0) & 0xFF) != 0x1f || (head.get(1) & 0xFF) != 0x8b || head.get(2) != 8) {
+				throw new IOException("Not a gzip member");
+			}
+			final int flags = head.get(3) & 0xFF;
+			int p = 10;
+			if ((flags & FEXTRA) != 0) {
+				final int xlen = unsignedShort(head, p);
+				p += 2;
+				final int extraEnd = p + xlen;
+				while (p + 4 <= extraEnd) {
+					final int length = unsignedShort(head, p + 2);
+					if (head.get(p) == 'B' && head.get(p + 1) == 'C' && length == 2) {
+						this.blockSize = unsignedShort(head, p + 4) + 1;
+					}
+					p += 4 + length;
+				}
+				p = extraEnd;
+			}
+			if ((flags & FNAME) != 0) {
+				p = skipZeroTerminated(head, p);
+			}
+			if ((flags & FCOMMENT) != 0) {
+				p = skipZeroTerminated(head, p);
+			}
+			if ((flags & FHCRC) != 0) {
+				p += 2;
+			}
+			if (p > head.limit()) {
+				throw new IOException("gzip header too long");
+			}
+			this.length = p;
+		}
+
+		private static int unsignedShort(ByteBuffer head, int p) throws IOException {
+			if (p + 2 > head.limit()) {
+				throw new IOException("gzip header too long");
+			}
+			return (head.get(p) & 0xFF) | (head.get(p + 1) & 0xFF) << 8;
+		}
+
+		private static int skipZeroTerminated(ByteBuffer head, int p) throws IOException {
+			while (p < head.limit() && head.get(p) != 0) {
+				p++;
+			}
+			if (p == head.limit()) {
+				throw new IOException("gzip header too long");
+			}
+			return p + 1;
+		}
+	}
+
+	private static class Block {
+		final int index;
+		final byte[] data;
+
+		Block(int index, byte[] data) {
+			this.index = index;
+			this.data = data;
+		}
+	}
+}
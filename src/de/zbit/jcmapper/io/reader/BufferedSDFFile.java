@@ -0,0 +1,71 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * record access through a {@link BufferedRandomAccessFile}. The file is
+ * scanned in parallel on a temporary mapping (or line by line with the
+ * buffered reader if it cannot be mapped), records are fetched with positional
+ * reads on the file channel, so getRecord is safe for concurrent callers.
+ */
+public class BufferedSDFFile implements ISDFRecordSource {
+
+	private final File sdf;
+	private final BufferedRandomAccessFile raf;
+	private final FileChannel channel;
+
+	public BufferedSDFFile(File sdf) throws FileNotFoundException {
+		this.sdf = sdf;
+		this.raf = new BufferedRandomAccessFile(sdf, "r");
+		this.channel = this.raf.getChannel();
+	}
+
+	@Override
+	public SDFOffsetIndex scan() throws IOException {
+		MappedSDFile mapped = null;
+		try {
+			mapped = new MappedSDFile(this.sdf);
+			return mapped.scan();
+		} catch (final IOException e) {
+			System.out.println("[BufferedSDFFile] Could not map " + this.sdf + ", scanning line by line");
+		} finally {
+			if (mapped != null) {
+				mapped.close();
+			}
+		}
+		synchronized (this.raf) {
+			return SDFOffsetIndex.scan(this.raf);
+		}
+	}
+
+	@Override
+	public ByteBuffer getRecord(long start, long end) throws IOException {
+		final ByteBuffer record = ByteBuffer.allocate((int) (end - start));
+		while (record.hasRemaining()) {
+			if (this.channel.read(record, start + record.position()) < 0) {
+				break;
+			}
+		}
+		record.flip();
+		return record.asReadOnlyBuffer();
+	}
+
+	@Override
+	public long length() {
+		try {
+			return this.channel.size();
+		} catch (final IOException e) {
+			e.printStackTrace();
+			return 0;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.raf.close();
+	}
+}
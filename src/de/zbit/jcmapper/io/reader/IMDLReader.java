@@ -0,0 +1,98 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.openscience.cdk.AtomContainer;
+
+/**
+ * source of molecules consumed by the exporters. Random access readers know
+ * their size up front, streaming readers return {@link #UNKNOWN_SIZE} and can
+ * only be read in order, i.e.
+ * 
+ * <pre>
+ * for (int i = 0; reader.hasMol(i); i++) {
+ * 	AtomContainer mol = reader.getMol(i);
+ * }
+ * </pre>
+ */
+public interface IMDLReader extends Closeable {
+
+	public static final int UNKNOWN_SIZE = -1;
+
+	/**
+	 * returns the number of structures or {@link #UNKNOWN_SIZE} for streams
+	 * 
+	 * @return
+	 */
+	public int getSize();
+
+	/**
+	 * checks whether there is an ith molecule, streams read ahead to find out
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public boolean hasMol(int index);
+
+	/**
+	 * returns the ith molecule
+	 * 
+	 * @param index
+	 * @return an empty molecule if the molecule could not be parsed
+	 */
+	public AtomContainer getMol(int index);
+
+	/**
+	 * returns a task reading the ith molecule like {@link #getMol(int)}. Tasks
+	 * of different molecules may run concurrently and in any order, streams
+	 * copy the record so the task stays valid when the stream moves on.
+	 * Indices have to be requested in the same order as for getMol.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public Callable<AtomContainer> getMolTask(int index);
+
+	/**
+	 * returns the ith molecule as plain mol file
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public String getMDLMolString(int index);
+
+	/**
+	 * returns the mdl sd tag for the ith molecule
+	 * 
+	 * @param index
+	 * @param label
+	 * @return
+	 */
+	public String getLabel(int index, String label);
+
+	/**
+	 * returns all possible labels for this data set
+	 * 
+	 * @param label
+	 * @return
+	 * @throws UnsupportedOperationException
+	 *             if the labels are not known before the input has been read
+	 */
+	public Set<String> getAllLabelClasses(String label);
+
+	public boolean isRemoveHydrogens();
+
+	public void setRemoveHydrogens(boolean removeHydrogens);
+
+	public boolean isFastParser();
+
+	/**
+	 * reads V2000 records with {@link MDLV2000Parser} instead of the CDK
+	 * reader, records it does not support are still read by the CDK reader
+	 * 
+	 * @param fastParser
+	 */
+	public void setFastParser(boolean fastParser);
+}
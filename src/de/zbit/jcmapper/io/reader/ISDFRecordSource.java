@@ -0,0 +1,36 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * byte level access to the records of an MDL SD file
+ */
+public interface ISDFRecordSource extends Closeable {
+
+	/**
+	 * scans the whole file for $$$$ delimiters
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	public SDFOffsetIndex scan() throws IOException;
+
+	/**
+	 * returns the bytes in [start,end) as a read only buffer, positioned at 0
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 * @throws IOException
+	 */
+	public ByteBuffer getRecord(long start, long end) throws IOException;
+
+	/**
+	 * returns the length of the file in bytes
+	 *
+	 * @return
+	 */
+	public long length();
+}
@@ -0,0 +1,370 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObjectBuilder;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.stereo.StereoElementFactory;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+/**
+ * array based molecule as read by {@link MDLV2000Parser}. Atoms and bonds are
+ * indexed from 0 in file order, bond orders are 1, 2, 3 and 4 (aromatic).
+ * Deuterium and tritium are stored as hydrogen with mass number 2 and 3. The
+ * CDK molecule is only built by {@link #toAtomContainer()}, it equals the
+ * molecule read by the CDK MDLV2000Reader.
+ */
+public class MDLMolecule {
+
+	private static final IChemObjectBuilder builder = DefaultChemObjectBuilder.getInstance();
+
+	private final String title;
+	private final String remark;
+	private final String[] symbols;
+	private final int[] atomicNumbers;
+	/**
+	 * D or T for hydrogen isotopes, null otherwise
+	 */
+	private final String[] isotopeLabels;
+	private final double[] coordinates;
+	private final int[] charges;
+	private final int[] massNumbers;
+	private final int[] parities;
+	private final int[] valences;
+	private final int[] mappings;
+	private final int[] bondAtoms;
+	private final int[] bondOrders;
+	private final int[] bondStereos;
+	private final Map<String, String> properties;
+
+	MDLMolecule(String title, String remark, String[] symbols, int[] atomicNumbers, String[] isotopeLabels,
+			double[] coordinates, int[] charges, int[] massNumbers, int[] parities, int[] valences, int[] mappings,
+			int[] bondAtoms, int[] bondOrders, int[] bondStereos, Map<String, String> properties) {
+		this.title = title;
+		this.remark = remark;
+		this.symbols = symbols;
+		this.atomicNumbers = atomicNumbers;
+		this.isotopeLabels = isotopeLabels;
+		this.coordinates = coordinates;
+		this.charges = charges;
+		this.massNumbers = massNumbers;
+		this.parities = parities;
+		this.valences = valences;
+		this.mappings = mappings;
+		this.bondAtoms = bondAtoms;
+		this.bondOrders = bondOrders;
+		this.bondStereos = bondStereos;
+		this.properties = properties;
+	}
+
+	public int getAtomCount() {
+		return this.symbols.length;
+	}
+
+	public int getBondCount() {
+		return this.bondOrders.length;
+	}
+
+	public String getTitle() {
+		return this.title;
+	}
+
+	public String getSymbol(int atom) {
+		return this.symbols[atom];
+	}
+
+	public int getAtomicNumber(int atom) {
+		return this.atomicNumbers[atom];
+	}
+
+	public int getFormalCharge(int atom) {
+		return this.charges[atom];
+	}
+
+	/**
+	 * @param atom
+	 * @return the mass number or 0 if not specified
+	 */
+	public int getMassNumber(int atom) {
+		return this.massNumbers[atom];
+	}
+
+	public double getX(int atom) {
+		return this.coordinates[3 * atom];
+	}
+
+	public double getY(int atom) {
+		return this.coordinates[3 * atom + 1];
+	}
+
+	public double getZ(int atom) {
+		return this.coordinates[3 * atom + 2];
+	}
+
+	public int getBondBegin(int bond) {
+		return this.bondAtoms[2 * bond];
+	}
+
+	public int getBondEnd(int bond) {
+		return this.bondAtoms[2 * bond + 1];
+	}
+
+	/**
+	 * @param bond
+	 * @return 1, 2, 3 or 4 for aromatic bonds
+	 */
+	public int getBondOrder(int bond) {
+		return this.bondOrders[bond];
+	}
+
+	/**
+	 * @param bond
+	 * @return the MDL bond stereo field
+	 */
+	public int getBondStereo(int bond) {
+		return this.bondStereos[bond];
+	}
+
+	/**
+	 * returns the sd tags in file order
+	 *
+	 * @return
+	 */
+	public Map<String, String> getProperties() {
+		return Collections.unmodifiableMap(this.properties);
+	}
+
+	public String getProperty(String label) {
+		return this.properties.get(label);
+	}
+
+	/**
+	 * builds the CDK molecule in the same steps as the MDLV2000Reader:
+	 * coordinates, bonds, sd tags, hydrogen isotopes, MDL valence model and
+	 * stereo elements
+	 *
+	 * @return
+	 * @throws CDKException
+	 */
+	public AtomContainer toAtomContainer() throws CDKException {
+		final int atomCount = this.getAtomCount();
+		final IAtom[] atoms = new IAtom[atomCount];
+		boolean hasX = false, hasY = false, hasZ = false;
+		boolean hasIsotopeLabels = false;
+		for (int i = 0; i < atomCount; i++) {
+			final IAtom atom;
+			if (this.isotopeLabels[i] != null) {
+				atom = builder.newInstance(IPseudoAtom.class, this.isotopeLabels[i]);
+				atom.setSymbol(this.isotopeLabels[i]);
+				atom.setAtomicNumber(0);
+				hasIsotopeLabels = true;
+			} else {
+				atom = builder.newInstance(IAtom.class, this.symbols[i]);
+			}
+			final Point3d point = new Point3d(this.coordinates[3 * i], this.coordinates[3 * i + 1], this.coordinates[3 * i + 2]);
+			atom.setPoint3d(point);
+			atom.setFormalCharge(this.charges[i]);
+			atom.setStereoParity(this.parities[i]);
+			if (this.massNumbers[i] != 0 && this.isotopeLabels[i] == null) {
+				atom.setMassNumber(this.massNumbers[i]);
+			}
+			if (this.valences[i] > 0 && this.valences[i] < 16) {
+				atom.setValency(this.valences[i] == 15 ? 0 : this.valences[i]);
+			}
+			if (this.mappings[i] != 0) {
+				atom.setProperty(CDKConstants.ATOM_ATOM_MAPPING, this.mappings[i]);
+			}
+			hasX |= point.x != 0;
+			hasY |= point.y != 0;
+			hasZ |= point.z != 0;
+			atoms[i] = atom;
+		}
+		if (!hasX && !hasY && !hasZ) {
+			if (atomCount == 1) {
+				atoms[0].setPoint2d(new Point2d(0, 0));
+			} else {
+				for (final IAtom atom : atoms) {
+					atom.setPoint3d(null);
+				}
+			}
+		} else if (!hasZ) {
+			for (final IAtom atom : atoms) {
+				atom.setPoint2d(new Point2d(atom.getPoint3d().x, atom.getPoint3d().y));
+				atom.setPoint3d(null);
+			}
+		}
+
+		final int bondCount = this.getBondCount();
+		final IBond[] bonds = new IBond[bondCount];
+		final int[] explicitValences = new int[atomCount];
+		for (int b = 0; b < bondCount; b++) {
+			final int u = this.bondAtoms[2 * b];
+			final int v = this.bondAtoms[2 * b + 1];
+			final IBond bond = builder.newInstance(IBond.class, atoms[u], atoms[v]);
+			switch (this.bondOrders[b]) {
+			case 1:
+				bond.setOrder(IBond.Order.SINGLE);
+				bond.setStereo(toStereo(this.bondStereos[b], 1));
+				break;
+			case 2:
+				bond.setOrder(IBond.Order.DOUBLE);
+				bond.setStereo(toStereo(this.bondStereos[b], 2));
+				break;
+			case 3:
+				bond.setOrder(IBond.Order.TRIPLE);
+				break;
+			default:
+				bond.setOrder(IBond.Order.UNSET);
+				bond.setFlag(CDKConstants.ISAROMATIC, true);
+				bond.setFlag(CDKConstants.SINGLE_OR_DOUBLE, true);
+				atoms[u].setFlag(CDKConstants.ISAROMATIC, true);
+				atoms[v].setFlag(CDKConstants.ISAROMATIC, true);
+			}
+			if (this.bondOrders[b] < 4) {
+				explicitValences[u] += this.bondOrders[b];
+				explicitValences[v] += this.bondOrders[b];
+			} else {
+				explicitValences[u] = explicitValences[v] = Integer.MIN_VALUE;
+			}
+			bonds[b] = bond;
+		}
+
+		final AtomContainer container = (AtomContainer) builder.newInstance(IAtomContainer.class);
+		container.setProperty(CDKConstants.TITLE, this.title);
+		container.setProperty(CDKConstants.REMARK, this.remark);
+		container.setAtoms(atoms);
+		container.setBonds(bonds);
+		for (final Map.Entry<String, String> property : this.properties.entrySet()) {
+			container.setProperty(property.getKey(), property.getValue());
+		}
+
+		if (hasIsotopeLabels) {
+			replaceIsotopeLabels(container, atoms);
+		}
+
+		boolean hasQueryValences = false;
+		for (int i = 0; i < atomCount; i++) {
+			if (explicitValences[i] < 0) {
+				hasQueryValences = true;
+			} else {
+				applyMDLValenceModel(container.getAtom(i), explicitValences[i]);
+			}
+		}
+
+		if (!hasQueryValences && hasX && hasY) {
+			if (hasZ) {
+				container.setStereoElements(StereoElementFactory.using3DCoordinates(container).createAll());
+			} else {
+				container.setStereoElements(StereoElementFactory.using2DCoordinates(container).createAll());
+			}
+		}
+		return container;
+	}
+
+	/**
+	 * replaces the D and T pseudo atoms by hydrogen isotopes
+	 */
+	private static void replaceIsotopeLabels(IAtomContainer container, IAtom[] atoms) throws CDKException {
+		final Isotopes isotopes;
+		try {
+			isotopes = Isotopes.getInstance();
+		} catch (final IOException e) {
+			throw new CDKException(e.getMessage());
+		}
+		for (final IAtom atom : atoms) {
+			if (atom instanceof IPseudoAtom) {
+				final int massNumber = "D".equals(((IPseudoAtom) atom).getLabel()) ? 2 : 3;
+				final IAtom hydrogen = builder.newInstance(IAtom.class, atom);
+				hydrogen.setSymbol("H");
+				hydrogen.setAtomicNumber(1);
+				isotopes.configure(hydrogen, isotopes.getIsotope("H", massNumber));
+				AtomContainerManipulator.replaceAtomByAtom(container, atom, hydrogen);
+			}
+		}
+	}
+
+	private static IBond.Stereo toStereo(int stereo, int order) {
+		switch (stereo) {
+		case 0:
+			return order == 2 ? IBond.Stereo.E_Z_BY_COORDINATES : IBond.Stereo.NONE;
+		case 1:
+			return IBond.Stereo.UP;
+		case 3:
+			return IBond.Stereo.E_OR_Z;
+		case 4:
+			return IBond.Stereo.UP_OR_DOWN;
+		default:
+			return IBond.Stereo.DOWN;
+		}
+	}
+
+	/**
+	 * sets valency and implicit hydrogen count from the explicit valence
+	 */
+	private static void applyMDLValenceModel(IAtom atom, int explicitValence) {
+		if (atom.getValency() != null) {
+			if (atom.getValency() >= explicitValence) {
+				atom.setImplicitHydrogenCount(atom.getValency() - explicitValence);
+			} else {
+				atom.setImplicitHydrogenCount(0);
+			}
+		} else {
+			final Integer atomicNumber = atom.getAtomicNumber();
+			final Integer charge = atom.getFormalCharge();
+			final int implicitValence = implicitValence(atomicNumber == null ? 0 : atomicNumber, charge == null ? 0
+					: charge, explicitValence);
+			if (implicitValence < explicitValence) {
+				atom.setValency(explicitValence);
+				atom.setImplicitHydrogenCount(0);
+			} else {
+				atom.setValency(implicitValence);
+				atom.setImplicitHydrogenCount(implicitValence - explicitValence);
+			}
+		}
+	}
+
+	/**
+	 * the MDL valence of the CDK reader, it is not public in CDK. It is looked
+	 * up once when the holder is first used, null if it is not available
+	 */
+	private static class ValenceModel {
+		private static final Method implicitValence = lookUpImplicitValence();
+
+		private static Method lookUpImplicitValence() {
+			try {
+				final Method method = Class.forName("org.openscience.cdk.io.MDLValence").getDeclaredMethod(
+						"implicitValence", int.class, int.class, int.class);
+				method.setAccessible(true);
+				return method;
+			} catch (final Exception e) {
+				return null;
+			}
+		}
+	}
+
+	static boolean isValenceModelAvailable() {
+		return ValenceModel.implicitValence != null;
+	}
+
+	private static int implicitValence(int atomicNumber, int charge, int explicitValence) {
+		try {
+			return (Integer) ValenceModel.implicitValence.invoke(null, atomicNumber, charge, explicitValence);
+		} catch (final Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.ChemFile;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.io.MDLV2000Reader;
+
+/**
+ * turns the bytes of a single SD record into a prepared molecule, shared by
+ * all MDL readers
+ */
+public final class MDLRecordParser {
+
+	/**
+	 * parses and types the record
+	 * 
+	 * @param record
+	 * @param removeHydrogens
+	 * @return an empty molecule if the record could not be parsed
+	 */
+	public static AtomContainer getMol(ByteBuffer record, boolean removeHydrogens) {
+		return getMol(record, removeHydrogens, false);
+	}
+
+	/**
+	 * parses and types the record
+	 * 
+	 * @param record
+	 * @param removeHydrogens
+	 * @param fastParser
+	 *            read the record with {@link MDLV2000Parser}, records it does
+	 *            not support are read by the CDK reader
+	 * @return an empty molecule if the record could not be parsed
+	 */
+	public static AtomContainer getMol(ByteBuffer record, boolean removeHydrogens, boolean fastParser) {
+
+		AtomContainer mol = null;
+		try {
+			if (fastParser) {
+				final MDLMolecule compact = MDLV2000Parser.parse(record);
+				if (compact != null) {
+					mol = compact.toAtomContainer();
+				}
+			}
+			if (mol == null) {
+				mol = getRawMolecule(record);
+			}
+		} catch (final CDKException e) {
+			e.printStackTrace();
+		} catch (final RuntimeException e) {
+			e.printStackTrace();
+		}
+
+		if (mol == null) {
+			return new AtomContainer();
+		}
+		mol.setProperty("ID", (int) System.currentTimeMillis());
+
+		if (removeHydrogens) {
+			mol = (AtomContainer)MoleculePreprocessor.prepareMoleculeRemoveHydrogens(mol);
+		} else {
+			mol = (AtomContainer)MoleculePreprocessor.prepareMoleculeConserveHydrogens(mol);
+		}
+		return mol;
+	}
+
+	/**
+	 * parses the record without decoding it into a string first, falls back
+	 * to the string based D/T fix on failure
+	 * 
+	 * @param record
+	 * @return
+	 * @throws CDKException
+	 */
+	public static AtomContainer getRawMolecule(ByteBuffer record) throws CDKException {
+		try {
+			final MDLV2000Reader reader = new MDLV2000Reader(new InputStreamReader(new ByteBufferInputStream(
+					record.duplicate()), "ISO-8859-1"));
+			final ChemFile fileContents = reader.read(new ChemFile());
+			return (AtomContainer) fileContents.getChemSequence(0).getChemModel(0).getMoleculeSet().getAtomContainer(0);
+		} catch (final NullPointerException e) {
+			return getRawMolecule(SDFRecordHelper.toMolString(record));
+		} catch (final UnsupportedEncodingException e) {
+			throw new CDKException(e.getMessage());
+		}
+	}
+
+	/**
+	 * get a type molecule with stripped hydrogens
+	 *
+	 * @param mdlString
+	 * @return
+	 * @throws CDKException
+	 */
+	public static AtomContainer getRawMolecule(String mdlString) throws CDKException {
+
+        AtomContainer mol = null;
+
+		try {
+			final MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mdlString));
+			final ChemFile fileContents = reader.read(new ChemFile());
+			final org.openscience.cdk.interfaces.IChemSequence sequence = fileContents.getChemSequence(0);
+			final org.openscience.cdk.interfaces.IChemModel model = sequence.getChemModel(0);
+			final org.openscience.cdk.interfaces.IAtomContainerSet som = model.getMoleculeSet();
+			final org.openscience.cdk.interfaces.IAtomContainer imol = som.getAtomContainer(0);
+			mol = (AtomContainer) imol;
+
+		} catch (final NullPointerException e) {
+			/*
+			 * Fix for NullPointer due to occurence of D or T (Deuterium or
+			 * Tritium) with massNumber null as happens now and then in Starlite
+			 * (Chembl) Regex fix to replace D or T with a H (Hydrogen) symbol
+			 * as replacement.
+			 */
+
+			final Pattern p = Pattern.compile("[D|T](\\s+\\d){6}");
+			final Matcher matcher = p.matcher(mdlString);
+			final StringBuilder sb = new StringBuilder(mdlString);
+			while (matcher.find()) {
+				sb.replace(matcher.start(), matcher.start() + 1, "H");
+			}
+			mdlString = sb.toString();
+			final MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mdlString));
+			final ChemFile fileContents = reader.read(new ChemFile());
+			final org.openscience.cdk.interfaces.IChemSequence sequence = fileContents.getChemSequence(0);
+			final org.openscience.cdk.interfaces.IChemModel model = sequence.getChemModel(0);
+			final org.openscience.cdk.interfaces.IAtomContainerSet som = model.getMoleculeSet();
+			final org.openscience.cdk.interfaces.IAtomContainer imol = som.getAtomContainer(0);
+			mol = (AtomContainer) imol;
+		}
+
+		return mol;
+	}
+
+}
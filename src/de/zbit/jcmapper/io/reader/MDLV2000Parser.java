@@ -0,0 +1,452 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.config.Isotopes;
+import org.openscience.cdk.tools.periodictable.PeriodicTable;
+
+/**
+ * reads the header, atom, bond and property block of a V2000 record and its
+ * sd tags directly from the record bytes into a {@link MDLMolecule}. Fields
+ * are interpreted like the CDK MDLV2000Reader does. Records using features
+ * beyond plain structures (query bonds, pseudo atoms other than D and T, atom
+ * lists, aliases, radicals, R groups, V3000) and malformed records are not
+ * parsed, the caller falls back to the CDK reader for these.
+ */
+public final class MDLV2000Parser {
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	/**
+	 * thrown for records left to the CDK reader
+	 */
+	private static final class UnsupportedRecordException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private static final UnsupportedRecordException UNSUPPORTED = new UnsupportedRecordException();
+
+	private final byte[] b;
+	private final int end;
+	private int position;
+	private int lineStart;
+	private int lineEnd;
+
+	private MDLV2000Parser(byte[] b, int start, int end) {
+		this.b = b;
+		this.position = start;
+		this.end = end;
+	}
+
+	/**
+	 * parses the record
+	 *
+	 * @param record
+	 * @return null if the record has to be read by the CDK reader
+	 */
+	public static MDLMolecule parse(ByteBuffer record) {
+		if (!MDLMolecule.isValenceModelAvailable()) {
+			return null;
+		}
+		final MDLV2000Parser parser;
+		if (record.hasArray()) {
+			parser = new MDLV2000Parser(record.array(), record.arrayOffset() + record.position(), record.arrayOffset()
+					+ record.limit());
+		} else {
+			final byte[] bytes = new byte[record.remaining()];
+			record.duplicate().get(bytes);
+			parser = new MDLV2000Parser(bytes, 0, bytes.length);
+		}
+		try {
+			return parser.read();
+		} catch (final UnsupportedRecordException e) {
+			return null;
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	private MDLMolecule read() throws UnsupportedRecordException, IOException {
+		// header
+		this.nextLine();
+		if (this.startsWith(this.lineStart, "$$$$")) {
+			throw UNSUPPORTED;
+		}
+		final String title = this.lineEnd > this.lineStart ? this.lineString(this.lineStart) : null;
+		this.nextLine();
+		this.nextLine();
+		final String remark = this.lineEnd > this.lineStart ? this.lineString(this.lineStart) : null;
+
+		// counts line
+		this.nextLine();
+		if (this.lineEnd - this.lineStart < 39 || !this.startsWith(this.lineStart + 34, "V2000")) {
+			throw UNSUPPORTED;
+		}
+		final int atomCount = this.readMolfileInt(0);
+		final int bondCount = this.readMolfileInt(3);
+		if (atomCount < 0 || bondCount < 0) {
+			throw UNSUPPORTED;
+		}
+
+		final String[] symbols = new String[atomCount];
+		final int[] atomicNumbers = new int[atomCount];
+		final String[] isotopeLabels = new String[atomCount];
+		final double[] coordinates = new double[3 * atomCount];
+		final int[] charges = new int[atomCount];
+		final int[] massNumbers = new int[atomCount];
+		final int[] parities = new int[atomCount];
+		final int[] valences = new int[atomCount];
+		final int[] mappings = new int[atomCount];
+		for (int i = 0; i < atomCount; i++) {
+			this.nextLine();
+			this.readAtom(i, symbols, atomicNumbers, isotopeLabels, coordinates, charges, massNumbers, parities,
+					valences, mappings);
+		}
+
+		final int[] bondAtoms = new int[2 * bondCount];
+		final int[] bondOrders = new int[bondCount];
+		final int[] bondStereos = new int[bondCount];
+		for (int i = 0; i < bondCount; i++) {
+			this.nextLine();
+			this.readBond(i, atomCount, bondAtoms, bondOrders, bondStereos);
+		}
+
+		// property block, up to M  END
+		while (this.hasNextLine()) {
+			this.nextLine();
+			final int length = this.lineEnd - this.lineStart;
+			if (length < 5) {
+				continue;
+			}
+			final byte c0 = this.b[this.lineStart];
+			final boolean twoSpaces = this.b[this.lineStart + 1] == ' ' && this.b[this.lineStart + 2] == ' ';
+			if (!twoSpaces) {
+				continue;
+			}
+			if (c0 == 'A' || c0 == 'G' || c0 == 'S' || c0 == 'V') {
+				throw UNSUPPORTED;
+			}
+			if (c0 != 'M') {
+				continue;
+			}
+			if (this.startsWith(this.lineStart + 3, "END")) {
+				break;
+			} else if (this.startsWith(this.lineStart + 3, "CHG")) {
+				this.readAtomValues(charges, atomCount, false);
+			} else if (this.startsWith(this.lineStart + 3, "ISO")) {
+				this.readAtomValues(massNumbers, atomCount, true);
+			} else if (this.startsWith(this.lineStart + 3, "RAD") || this.startsWith(this.lineStart + 3, "RGP")
+					|| this.startsWith(this.lineStart + 3, "ZZC")) {
+				throw UNSUPPORTED;
+			}
+		}
+
+		final Map<String, String> properties = this.readData();
+		return new MDLMolecule(title, remark, symbols, atomicNumbers, isotopeLabels, coordinates, charges,
+				massNumbers, parities, valences, mappings, bondAtoms, bondOrders, bondStereos, properties);
+	}
+
+	private void readAtom(int i, String[] symbols, int[] atomicNumbers, String[] isotopeLabels, double[] coordinates,
+			int[] charges, int[] massNumbers, int[] parities, int[] valences, int[] mappings)
+			throws UnsupportedRecordException, IOException {
+		final int length = Math.min(69, this.trimmedLength());
+		// the symbol ends at 34, the fields after it are 3 wide
+		if (length < 32 || (length > 34 && length % 3 != 0)) {
+			throw UNSUPPORTED;
+		}
+		coordinates[3 * i] = this.readCoordinate(0);
+		coordinates[3 * i + 1] = this.readCoordinate(10);
+		coordinates[3 * i + 2] = this.readCoordinate(20);
+		int massDifference = 0;
+		if (length >= 36) {
+			massDifference = (this.b[this.lineStart + 34] == '-' ? -1 : 1) * toInt(this.b[this.lineStart + 35]);
+		}
+		if (length >= 39) {
+			charges[i] = toCharge(this.b[this.lineStart + 38]);
+		}
+		if (length >= 42) {
+			parities[i] = toInt(this.b[this.lineStart + 41]);
+		}
+		if (length >= 51) {
+			valences[i] = this.readMolfileInt(48);
+		}
+		if (length >= 63) {
+			mappings[i] = this.readMolfileInt(60);
+		}
+
+		if (this.lineStart + 34 > this.lineEnd) {
+			throw UNSUPPORTED;
+		}
+		int from = this.lineStart + 31;
+		int to = this.lineStart + 34;
+		while (from < to && (this.b[from] & 0xFF) <= ' ') {
+			from++;
+		}
+		while (to > from && (this.b[to - 1] & 0xFF) <= ' ') {
+			to--;
+		}
+		final String symbol = new String(this.b, from, to - from, ISO_8859_1).intern();
+		final Integer atomicNumber = PeriodicTable.getAtomicNumber(symbol);
+		if (atomicNumber != null && atomicNumber > 0) {
+			symbols[i] = symbol;
+			atomicNumbers[i] = atomicNumber;
+			if (massDifference != 0) {
+				massNumbers[i] = Isotopes.getInstance().getMajorIsotope(atomicNumber).getMassNumber() + massDifference;
+			}
+		} else if ("D".equals(symbol) || "T".equals(symbol)) {
+			symbols[i] = "H";
+			atomicNumbers[i] = 1;
+			isotopeLabels[i] = symbol;
+			massNumbers[i] = "D".equals(symbol) ? 2 : 3;
+		} else {
+			throw UNSUPPORTED;
+		}
+	}
+
+	private void readBond(int i, int atomCount, int[] bondAtoms, int[] bondOrders, int[] bondStereos)
+			throws UnsupportedRecordException {
+		final int length = Math.min(21, this.trimmedLength());
+		if (length < 9 || length % 3 != 0) {
+			throw UNSUPPORTED;
+		}
+		final int stereo = length >= 12 ? this.readUInt(9, 3) : 0;
+		final int u = this.readMolfileInt(0) - 1;
+		final int v = this.readMolfileInt(3) - 1;
+		final int order = this.readMolfileInt(6);
+		if (u < 0 || u >= atomCount || v < 0 || v >= atomCount || order < 1 || order > 4) {
+			throw UNSUPPORTED;
+		}
+		if (order < 3 && stereo != 0 && stereo != 1 && stereo != 3 && stereo != 4 && stereo != 6) {
+			throw UNSUPPORTED;
+		}
+		bondAtoms[2 * i] = u;
+		bondAtoms[2 * i + 1] = v;
+		bondOrders[i] = order;
+		bondStereos[i] = order < 3 ? stereo : 0;
+	}
+
+	/**
+	 * reads an M  CHG or M  ISO line
+	 */
+	private void readAtomValues(int[] values, int atomCount, boolean positive) throws UnsupportedRecordException {
+		if (this.lineEnd - this.lineStart < 9) {
+			throw UNSUPPORTED;
+		}
+		final int count = this.readUInt(6, 3);
+		for (int i = 0, st = 10; i < count && st + 7 <= this.lineEnd - this.lineStart; i++, st += 8) {
+			final int atom = this.readMolfileInt(st) - 1;
+			final int value = this.readMolfileInt(st + 4);
+			if (atom < 0 || atom >= atomCount || (positive && value <= 0)) {
+				throw UNSUPPORTED;
+			}
+			values[atom] = value;
+		}
+	}
+
+	/**
+	 * reads the sd tags up to $$$$, multi line values are joined with new
+	 * lines unless the previous line was wrapped at 80 characters
+	 */
+	private Map<String, String> readData() throws UnsupportedRecordException {
+		final Map<String, String> properties = new LinkedHashMap<String, String>();
+		String header = null;
+		boolean wrap = false;
+		final StringBuilder data = new StringBuilder(80);
+		while (this.hasNextLine()) {
+			this.nextLine();
+			String line = this.lineString(this.lineStart);
+			if (line.equals("$$$$")) {
+				break;
+			}
+			final String newHeader = dataHeader(line);
+			if (newHeader != null) {
+				if (header != null) {
+					properties.put(header, data.toString());
+				}
+				header = newHeader;
+				wrap = false;
+				data.setLength(0);
+				continue;
+			}
+			if (data.length() > 0 || !line.equals(" ")) {
+				line = line.trim();
+			}
+			if (line.isEmpty()) {
+				continue;
+			}
+			if (!wrap && data.length() > 0) {
+				data.append('\n');
+			}
+			data.append(line);
+			wrap = line.length() == 80;
+		}
+		if (header != null) {
+			properties.put(header, data.toString());
+		}
+		return properties;
+	}
+
+	private static String dataHeader(String line) {
+		if (line.length() > 2 && line.charAt(0) != '>' && line.charAt(1) != ' ') {
+			return null;
+		}
+		final int open = line.indexOf('<', 2);
+		if (open < 0) {
+			return null;
+		}
+		final int close = line.indexOf('>', open);
+		if (close < 0) {
+			return null;
+		}
+		return line.substring(open + 1, close);
+	}
+
+	private boolean hasNextLine() {
+		return this.position < this.end;
+	}
+
+	/**
+	 * moves to the next line, line breaks are \n, \r\n or \r
+	 */
+	private void nextLine() throws UnsupportedRecordException {
+		if (this.position >= this.end) {
+			throw UNSUPPORTED;
+		}
+		int p = this.position;
+		while (p < this.end && this.b[p] != '\n' && this.b[p] != '\r') {
+			p++;
+		}
+		this.lineStart = this.position;
+		this.lineEnd = p;
+		if (p < this.end && this.b[p] == '\r') {
+			p++;
+		}
+		if (p < this.end && this.b[p] == '\n' && (p == this.lineEnd || this.b[p - 1] == '\r')) {
+			p++;
+		}
+		this.position = p;
+	}
+
+	private String lineString(int from) {
+		return new String(this.b, from, this.lineEnd - from, ISO_8859_1);
+	}
+
+	private boolean startsWith(int p, String s) {
+		if (p + s.length() > this.lineEnd) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			if (this.b[p + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * line length without trailing spaces
+	 */
+	private int trimmedLength() {
+		int p = this.lineEnd;
+		while (p > this.lineStart && this.b[p - 1] == ' ') {
+			p--;
+		}
+		return p - this.lineStart;
+	}
+
+	/**
+	 * reads a right aligned, optionally signed three character integer field
+	 */
+	private int readMolfileInt(int offset) throws UnsupportedRecordException {
+		int p = this.lineStart + offset;
+		final int to = p + 3;
+		if (to > this.lineEnd) {
+			throw UNSUPPORTED;
+		}
+		while (p < to && this.b[p] == ' ') {
+			p++;
+		}
+		int sign = 1;
+		if (p < to && this.b[p] == '-') {
+			sign = -1;
+			p++;
+		}
+		int value = 0;
+		int digits = 0;
+		while (p < to && this.b[p] >= '0' && this.b[p] <= '9') {
+			value = 10 * value + this.b[p++] - '0';
+			digits++;
+		}
+		while (p < to && this.b[p] == ' ') {
+			p++;
+		}
+		if (p < to || (digits == 0 && sign < 0)) {
+			throw UNSUPPORTED;
+		}
+		return sign * value;
+	}
+
+	private int readUInt(int offset, int length) throws UnsupportedRecordException {
+		if (this.lineStart + offset + length > this.lineEnd) {
+			throw UNSUPPORTED;
+		}
+		int value = 0;
+		for (int p = this.lineStart + offset; p < this.lineStart + offset + length; p++) {
+			value = 10 * value + toInt(this.b[p]);
+		}
+		return value;
+	}
+
+	/**
+	 * reads a ten character coordinate field with four decimals
+	 */
+	private double readCoordinate(int offset) throws UnsupportedRecordException {
+		if (this.b[this.lineStart + offset + 5] != '.') {
+			throw UNSUPPORTED;
+		}
+		int p = offset;
+		while (this.b[this.lineStart + p] == ' ') {
+			p++;
+		}
+		int sign = 1;
+		if (this.b[this.lineStart + p] == '-') {
+			sign = -1;
+			p++;
+		}
+		final int integer = this.readUInt(p, offset + 5 - p);
+		final int fraction = this.readUInt(offset + 6, 4);
+		return sign * (integer * 10000L + fraction) / 10000.0;
+	}
+
+	private static int toInt(byte c) {
+		return c >= '0' && c <= '9' ? c - '0' : 0;
+	}
+
+	private static int toCharge(byte c) {
+		switch (c) {
+		case '1':
+			return 3;
+		case '2':
+			return 2;
+		case '3':
+			return 1;
+		case '5':
+			return -1;
+		case '6':
+			return -2;
+		case '7':
+			return -3;
+		default:
+			return 0;
+		}
+	}
+}
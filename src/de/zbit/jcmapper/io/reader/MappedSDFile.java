@@ -0,0 +1,176 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * record access on a memory mapped MDL SD file. Files larger than one segment
+ * (1 GB) are mapped as several segments, records are handed out as views on
+ * the mapping and only copied if they straddle two segments.
+ */
+public class MappedSDFile implements ISDFRecordSource {
+
+	private static final int SEGMENT_SHIFT = 30;
+
+	private final RandomAccessFile file;
+	private final ByteBuffer[] segments;
+	private final int segmentShift;
+	private final long segmentMask;
+	private final long length;
+
+	public MappedSDFile(File sdf) throws IOException {
+		this(sdf, SEGMENT_SHIFT);
+	}
+
+	/**
+	 * @param sdf
+	 * @param segmentShift
+	 *            segment size is 2^segmentShift bytes
+	 * @throws IOException
+	 */
+	public MappedSDFile(File sdf, int segmentShift) throws IOException {
+		this.file = new RandomAccessFile(sdf, "r");
+		this.segmentShift = segmentShift;
+		this.segmentMask = (1L << segmentShift) - 1;
+
+		final FileChannel channel = this.file.getChannel();
+		this.length = channel.size();
+		final int count = (int) ((this.length + this.segmentMask) >>> segmentShift);
+		this.segments = new ByteBuffer[count];
+		for (int s = 0; s < count; s++) {
+			final long position = (long) s << segmentShift;
+			final long size = Math.min(1L << segmentShift, this.length - position);
+			this.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		}
+	}
+
+	/**
+	 * returns the byte at the given file position
+	 *
+	 * @param position
+	 * @return
+	 */
+	public byte get(long position) {
+		return this.segments[(int) (position >>> this.segmentShift)].get((int) (position & this.segmentMask));
+	}
+
+	@Override
+	public long length() {
+		return this.length;
+	}
+
+	@Override
+	public ByteBuffer getRecord(long start, long end) {
+		final int segment = (int) (start >>> this.segmentShift);
+		if (end <= start) {
+			return ByteBuffer.allocate(0).asReadOnlyBuffer();
+		}
+		if (segment == (int) ((end - 1) >>> this.segmentShift)) {
+			final ByteBuffer view = this.segments[segment].duplicate();
+			view.position((int) (start & this.segmentMask));
+			view.limit((int) (((end - 1) & this.segmentMask) + 1));
+			return view.slice().asReadOnlyBuffer();
+		}
+		// record straddles a segment boundary
+		final ByteBuffer copy = ByteBuffer.allocate((int) (end - start));
+		long position = start;
+		while (position < end) {
+			final ByteBuffer view = this.segments[(int) (position >>> this.segmentShift)].duplicate();
+			view.position((int) (position & this.segmentMask));
+			view.limit((int) Math.min(view.capacity(), view.position() + (end - position)));
+			position += view.remaining();
+			copy.put(view);
+		}
+		copy.flip();
+		return copy.asReadOnlyBuffer();
+	}
+
+	/**
+	 * scans the mapped bytes for lines starting with $$$$, no lines are
+	 * decoded. Large files are scanned in parallel.
+	 */
+	@Override
+	public SDFOffsetIndex scan() {
+		return new ParallelSDFIndexer().scan(this);
+	}
+
+	/**
+	 * returns the offsets behind all $$$$ lines starting in [from,to); the
+	 * first entry is from
+	 *
+	 * @param from
+	 *            may point into the middle of a line
+	 * @param to
+	 * @param progress
+	 *            print a dot every 2000 records
+	 * @return
+	 */
+	SDFOffsetIndex scan(long from, long to, boolean progress) {
+		long[] offsets = new long[1024];
+		int c = 0;
+		offsets[0] = from;
+
+		boolean lineStart = from == 0 || this.get(from - 1) == '\n' || this.get(from - 1) == '\r';
+		long position = from;
+		while (position < to) {
+			final ByteBuffer segment = this.segments[(int) (position >>> this.segmentShift)];
+			final long base = position & ~this.segmentMask;
+			final int last = (int) Math.min(segment.limit(), to - base);
+			for (int i = (int) (position - base); i < last; i++) {
+				final byte b = segment.get(i);
+				if (lineStart && b == '$' && this.isDelimiter(base + i)) {
+					c++;
+					if (c == offsets.length) {
+						offsets = Arrays.copyOf(offsets, offsets.length * 2);
+					}
+					offsets[c] = this.endOfLine(base + i);
+					if (progress && c % 2000 == 0) {
+						System.out.print(".");
+					}
+				}
+				lineStart = (b == '\n' || b == '\r');
+			}
+			position = base + last;
+		}
+		if (progress) {
+			System.out.print("\n");
+		}
+		return new SDFOffsetIndex(offsets, c);
+	}
+
+	private boolean isDelimiter(long position) {
+		return position + 3 < this.length && this.get(position + 1) == '$' && this.get(position + 2) == '$'
+				&& this.get(position + 3) == '$';
+	}
+
+	/**
+	 * returns the position of the first byte of the next line
+	 *
+	 * @param position
+	 * @return
+	 */
+	long endOfLine(long position) {
+		while (position < this.length) {
+			final byte b = this.get(position++);
+			if (b == '\n') {
+				return position;
+			}
+			if (b == '\r') {
+				if (position < this.length && this.get(position) == '\n') {
+					position++;
+				}
+				return position;
+			}
+		}
+		return this.length;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.file.close();
+	}
+}
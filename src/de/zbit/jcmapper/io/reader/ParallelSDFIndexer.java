@@ -0,0 +1,104 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * builds the record offsets of a memory mapped SD file in parallel. The file
+ * is split into byte ranges which are scanned for $$$$ lines on a fork join
+ * pool. A delimiter line belongs to the range it starts in, records
+ * straddling a range boundary are therefore found exactly once, and the
+ * per-range offsets are concatenated in file order.
+ */
+public class ParallelSDFIndexer {
+
+	private static final long DEFAULT_RANGE_SIZE = 16L << 20;
+
+	private final int threads;
+	private final long rangeSize;
+
+	public ParallelSDFIndexer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelSDFIndexer(int threads) {
+		this(threads, DEFAULT_RANGE_SIZE);
+	}
+
+	/**
+	 * @param threads
+	 *            parallelism of the fork join pool
+	 * @param rangeSize
+	 *            ranges are not split below this size (bytes)
+	 */
+	public ParallelSDFIndexer(int threads, long rangeSize) {
+		this.threads = Math.max(1, threads);
+		this.rangeSize = Math.max(1, rangeSize);
+	}
+
+	/**
+	 * returns the record offsets of the file, small files are scanned on the
+	 * calling thread
+	 *
+	 * @param file
+	 * @return
+	 */
+	public SDFOffsetIndex scan(MappedSDFile file) {
+		if (this.threads == 1 || file.length() <= this.rangeSize) {
+			return file.scan(0, file.length(), false);
+		}
+		final ForkJoinPool pool = new ForkJoinPool(this.threads);
+		try {
+			return pool.invoke(new RangeTask(file, 0, file.length()));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private class RangeTask extends RecursiveTask<SDFOffsetIndex> {
+		private static final long serialVersionUID = -2941087218546716187L;
+
+		private final MappedSDFile file;
+		private final long from;
+		private final long to;
+
+		RangeTask(MappedSDFile file, long from, long to) {
+			this.file = file;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected SDFOffsetIndex compute() {
+			if (this.to - this.from <= ParallelSDFIndexer.this.rangeSize) {
+				return this.file.scan(this.from, this.to, false);
+			}
+			final long middle = this.from + (this.to - this.from) / 2;
+			final RangeTask left = new RangeTask(this.file, this.from, middle);
+			final RangeTask right = new RangeTask(this.file, middle, this.to);
+			left.fork();
+			final SDFOffsetIndex rightOffsets = right.compute();
+			return merge(left.join(), rightOffsets);
+		}
+	}
+
+	/**
+	 * appends the record ends of the right range to the left range, the
+	 * first entry of the right range is its start and not a record end
+	 *
+	 * @param left
+	 * @param right
+	 * @return
+	 */
+	static SDFOffsetIndex merge(SDFOffsetIndex left, SDFOffsetIndex right) {
+		final int size = left.getSize() + right.getSize();
+		final long[] offsets = new long[size + 1];
+		for (int i = 0; i <= left.getSize(); i++) {
+			offsets[i] = left.getOffset(i);
+		}
+		for (int i = 1; i <= right.getSize(); i++) {
+			offsets[left.getSize() + i] = right.getOffset(i);
+		}
+		return new SDFOffsetIndex(offsets, size);
+	}
+}
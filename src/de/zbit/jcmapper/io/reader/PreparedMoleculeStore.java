@@ -0,0 +1,688 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.Bond;
+import org.openscience.cdk.CDK;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomType.Hybridization;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IChemObject;
+import org.openscience.cdk.interfaces.IDoubleBondStereochemistry;
+import org.openscience.cdk.interfaces.IStereoElement;
+import org.openscience.cdk.interfaces.ITetrahedralChirality;
+import org.openscience.cdk.stereo.DoubleBondStereochemistry;
+import org.openscience.cdk.stereo.TetrahedralChirality;
+
+/**
+ * molecules of an SD file after {@link MoleculePreprocessor}, i.e. typed,
+ * aromatic and with or without hydrogens, stored next to the SD file
+ * (file.sdf.noh.mols or file.sdf.h.mols) so later runs skip parsing and
+ * perception. Entries are keyed by record offset and validated against the
+ * SD file like {@link SDFOffsetIndex}, the file is also invalidated by a
+ * different CDK version. Molecules the store cannot represent (pseudo atoms,
+ * radicals, unknown property types) are not stored and have to be read from
+ * the SD file. The store is memory mapped, layout (big endian):
+ *
+ * <pre>
+ * int   magic 'JCPM'
+ * int   version
+ * long  length of the SD file
+ * long  last modification time of the SD file
+ * long  CRC32 over the first and last 64 KB of the SD file
+ * UTF   CDK version
+ * byte  1 if hydrogens are removed
+ * int   number of records n
+ * ...   entries, one per record, empty if the molecule is not stored
+ * n+1   long record offsets in the SD file
+ * n+1   long entry offsets in the store
+ * long  offset of the record offset table
+ * </pre>
+ */
+public class PreparedMoleculeStore {
+
+	public static final String SUFFIX = ".mols";
+
+	private static final int MAGIC = 0x4A43504D;
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte PROPERTY_STRING = 0;
+	private static final byte PROPERTY_INTEGER = 1;
+	private static final byte STEREO_TETRAHEDRAL = 0;
+	private static final byte STEREO_DOUBLE_BOND = 1;
+
+	// nullable atom and bond fields, stored if the bit is set
+	private static final int ATOMIC_NUMBER = 1;
+	private static final int MASS_NUMBER = 1 << 1;
+	private static final int EXACT_MASS = 1 << 2;
+	private static final int NATURAL_ABUNDANCE = 1 << 3;
+	private static final int FORMAL_CHARGE = 1 << 4;
+	private static final int CHARGE = 1 << 5;
+	private static final int IMPLICIT_HYDROGENS = 1 << 6;
+	private static final int VALENCY = 1 << 7;
+	private static final int FORMAL_NEIGHBOURS = 1 << 8;
+	private static final int HYBRIDIZATION = 1 << 9;
+	private static final int MAX_BOND_ORDER = 1 << 10;
+	private static final int BOND_ORDER_SUM = 1 << 11;
+	private static final int COVALENT_RADIUS = 1 << 12;
+	private static final int STEREO_PARITY = 1 << 13;
+	private static final int POINT2D = 1 << 14;
+	private static final int POINT3D = 1 << 15;
+	private static final int FRACTIONAL_POINT3D = 1 << 16;
+	private static final int ORDER = 1;
+	private static final int STEREO = 1 << 1;
+	private static final int ELECTRON_COUNT = 1 << 2;
+
+	private final MappedSDFile entries;
+	private final long[] entryOffsets;
+	private final boolean removeHydrogens;
+
+	private PreparedMoleculeStore(MappedSDFile entries, long[] entryOffsets, boolean removeHydrogens) {
+		this.entries = entries;
+		this.entryOffsets = entryOffsets;
+		this.removeHydrogens = removeHydrogens;
+	}
+
+	/**
+	 * returns the store file of an SD file
+	 *
+	 * @param sdf
+	 * @param removeHydrogens
+	 * @return
+	 */
+	public static File getStoreFile(File sdf, boolean removeHydrogens) {
+		return new File(sdf.getPath() + (removeHydrogens ? ".noh" : ".h") + SUFFIX);
+	}
+
+	/**
+	 * prepares all records of the SD file and writes the store next to it
+	 *
+	 * @param sdf
+	 * @param records
+	 * @param index
+	 * @param removeHydrogens
+	 * @param fastParser
+	 *            read the records with {@link MDLV2000Parser}
+	 * @throws IOException
+	 */
+	public static void build(File sdf, ISDFRecordSource records, SDFOffsetIndex index, boolean removeHydrogens,
+			boolean fastParser) throws IOException {
+		final File storeFile = getStoreFile(sdf, removeHydrogens);
+		final File tmpFile = new File(storeFile.getPath() + ".tmp");
+		final int size = index.getSize();
+		final long[] entryOffsets = new long[size + 1];
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sdf.length());
+			out.writeLong(sdf.lastModified());
+			out.writeLong(SDFOffsetIndex.checksum(sdf));
+			out.writeUTF(CDK.getVersion());
+			out.writeBoolean(removeHydrogens);
+			out.writeInt(size);
+			// DataOutputStream.size() overflows at 2 GB
+			long position = out.size();
+			for (int i = 0; i < size; i++) {
+				entryOffsets[i] = position;
+				final AtomContainer mol = MDLRecordParser.getMol(records.getRecord(index.getOffset(i), index.getOffset(i + 1)),
+						removeHydrogens, fastParser);
+				final byte[] entry = encode(mol);
+				if (entry != null) {
+					out.write(entry);
+					position += entry.length;
+				}
+				if (i % 2000 == 1999) {
+					System.out.print(".");
+				}
+			}
+			entryOffsets[size] = position;
+			System.out.print("\n");
+			final long tables = entryOffsets[size];
+			for (int i = 0; i <= size; i++) {
+				out.writeLong(index.getOffset(i));
+			}
+			for (int i = 0; i <= size; i++) {
+				out.writeLong(entryOffsets[i]);
+			}
+			out.writeLong(tables);
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(storeFile)) {
+			storeFile.delete();
+			if (!tmpFile.renameTo(storeFile)) {
+				tmpFile.delete();
+				throw new IOException("Could not write molecule store " + storeFile);
+			}
+		}
+	}
+
+	/**
+	 * maps the store of the SD file
+	 *
+	 * @param sdf
+	 * @param index
+	 *            record offsets of the SD file
+	 * @param removeHydrogens
+	 * @return null if there is no store or it does not match the SD file
+	 */
+	public static PreparedMoleculeStore load(File sdf, SDFOffsetIndex index, boolean removeHydrogens) {
+		final File storeFile = getStoreFile(sdf, removeHydrogens);
+		if (!storeFile.isFile()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile), 65536));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			if (in.readLong() != sdf.length() || in.readLong() != sdf.lastModified()
+					|| in.readLong() != SDFOffsetIndex.checksum(sdf)) {
+				return null;
+			}
+			if (!CDK.getVersion().equals(in.readUTF()) || in.readBoolean() != removeHydrogens) {
+				return null;
+			}
+			final int size = in.readInt();
+			if (size != index.getSize()) {
+				return null;
+			}
+			final long tables = readTableOffset(storeFile);
+			in.close();
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile), 65536));
+			skipFully(in, tables);
+			for (int i = 0; i <= size; i++) {
+				if (in.readLong() != index.getOffset(i)) {
+					return null;
+				}
+			}
+			final long[] entryOffsets = new long[size + 1];
+			for (int i = 0; i <= size; i++) {
+				entryOffsets[i] = in.readLong();
+			}
+			if (entryOffsets[size] != tables) {
+				return null;
+			}
+			return new PreparedMoleculeStore(new MappedSDFile(storeFile), entryOffsets, removeHydrogens);
+		} catch (final IOException e) {
+			return null;
+		} catch (final RuntimeException e) {
+			// truncated or corrupt store, rebuild
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	public boolean isRemoveHydrogens() {
+		return this.removeHydrogens;
+	}
+
+	/**
+	 * returns the number of records
+	 *
+	 * @return
+	 */
+	public int getSize() {
+		return this.entryOffsets.length - 1;
+	}
+
+	/**
+	 * returns the prepared ith molecule, may be called concurrently
+	 *
+	 * @param index
+	 * @return null if the molecule is not stored
+	 */
+	public AtomContainer getMol(int index) {
+		if (this.entryOffsets[index] == this.entryOffsets[index + 1]) {
+			return null;
+		}
+		final AtomContainer mol = decode(this.entries.getRecord(this.entryOffsets[index], this.entryOffsets[index + 1]));
+		mol.setProperty("ID", (int) System.currentTimeMillis());
+		return mol;
+	}
+
+	public void close() throws IOException {
+		this.entries.close();
+	}
+
+	/**
+	 * serializes a prepared molecule, the "ID" property is not stored
+	 *
+	 * @param mol
+	 * @return null if the molecule cannot be stored
+	 */
+	static byte[] encode(AtomContainer mol) {
+		if (mol.getAtomCount() == 0 || mol.getLonePairCount() > 0 || mol.getSingleElectronCount() > 0) {
+			return null;
+		}
+		final Map<String, Integer> strings = new HashMap<String, Integer>();
+		final List<String> table = new ArrayList<String>();
+		final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * mol.getAtomCount() + 256);
+		final DataOutputStream out = new DataOutputStream(body);
+		try {
+			out.writeShort(mol.getFlagValue().shortValue());
+			if (!writeProperties(out, mol, strings, table)) {
+				return null;
+			}
+			final Map<IAtom, Integer> atomIndex = new HashMap<IAtom, Integer>();
+			out.writeInt(mol.getAtomCount());
+			for (int a = 0; a < mol.getAtomCount(); a++) {
+				final IAtom atom = mol.getAtom(a);
+				if (atom.getClass() != Atom.class) {
+					return null;
+				}
+				atomIndex.put(atom, a);
+				writeAtom(out, atom, strings, table);
+				if (!writeProperties(out, atom, strings, table)) {
+					return null;
+				}
+			}
+			final Map<IBond, Integer> bondIndex = new HashMap<IBond, Integer>();
+			out.writeInt(mol.getBondCount());
+			for (int b = 0; b < mol.getBondCount(); b++) {
+				final IBond bond = mol.getBond(b);
+				if (bond.getClass() != Bond.class || bond.getAtomCount() != 2 || !atomIndex.containsKey(bond.getAtom(0))
+						|| !atomIndex.containsKey(bond.getAtom(1))) {
+					return null;
+				}
+				bondIndex.put(bond, b);
+				out.writeInt(atomIndex.get(bond.getAtom(0)));
+				out.writeInt(atomIndex.get(bond.getAtom(1)));
+				writeBond(out, bond, strings, table);
+				if (!writeProperties(out, bond, strings, table)) {
+					return null;
+				}
+			}
+			final List<IStereoElement> stereo = new ArrayList<IStereoElement>();
+			for (final IStereoElement element : mol.stereoElements()) {
+				stereo.add(element);
+			}
+			out.writeInt(stereo.size());
+			for (final IStereoElement element : stereo) {
+				if (element instanceof ITetrahedralChirality) {
+					final ITetrahedralChirality chirality = (ITetrahedralChirality) element;
+					out.writeByte(STEREO_TETRAHEDRAL);
+					if (!writeIndex(out, atomIndex, chirality.getChiralAtom())) {
+						return null;
+					}
+					for (final IAtom ligand : chirality.getLigands()) {
+						if (!writeIndex(out, atomIndex, ligand)) {
+							return null;
+						}
+					}
+					out.writeByte(chirality.getStereo().ordinal());
+				} else if (element instanceof IDoubleBondStereochemistry) {
+					final IDoubleBondStereochemistry doubleBond = (IDoubleBondStereochemistry) element;
+					out.writeByte(STEREO_DOUBLE_BOND);
+					if (!writeIndex(out, bondIndex, doubleBond.getStereoBond())
+							|| !writeIndex(out, bondIndex, doubleBond.getBonds()[0])
+							|| !writeIndex(out, bondIndex, doubleBond.getBonds()[1])) {
+						return null;
+					}
+					out.writeByte(doubleBond.getStereo().ordinal());
+				} else {
+					return null;
+				}
+			}
+			out.flush();
+
+			final ByteArrayOutputStream entry = new ByteArrayOutputStream(body.size() + 16 * table.size() + 4);
+			final DataOutputStream header = new DataOutputStream(entry);
+			header.writeInt(table.size());
+			for (final String s : table) {
+				final byte[] bytes = s.getBytes(UTF8);
+				header.writeInt(bytes.length);
+				header.write(bytes);
+			}
+			body.writeTo(header);
+			header.flush();
+			return entry.toByteArray();
+		} catch (final IOException e) {
+			// not thrown by byte array streams
+			return null;
+		}
+	}
+
+	/**
+	 * deserializes a prepared molecule
+	 *
+	 * @param entry
+	 * @return
+	 */
+	static AtomContainer decode(ByteBuffer entry) {
+		final ByteBuffer in = entry.duplicate();
+		final String[] strings = new String[in.getInt()];
+		for (int s = 0; s < strings.length; s++) {
+			final byte[] bytes = new byte[in.getInt()];
+			in.get(bytes);
+			strings[s] = new String(bytes, UTF8);
+		}
+
+		final AtomContainer mol = new AtomContainer();
+		setFlags(mol, in.getShort());
+		readProperties(in, mol, strings);
+		final IAtom[] atoms = new IAtom[in.getInt()];
+		for (int a = 0; a < atoms.length; a++) {
+			atoms[a] = readAtom(in, strings);
+			readProperties(in, atoms[a], strings);
+		}
+		mol.setAtoms(atoms);
+		final IBond[] bonds = new IBond[in.getInt()];
+		for (int b = 0; b < bonds.length; b++) {
+			final IAtom begin = atoms[in.getInt()];
+			final IAtom end = atoms[in.getInt()];
+			bonds[b] = readBond(in, begin, end, strings);
+			readProperties(in, bonds[b], strings);
+		}
+		mol.setBonds(bonds);
+		final int stereo = in.getInt();
+		for (int e = 0; e < stereo; e++) {
+			if (in.get() == STEREO_TETRAHEDRAL) {
+				final IAtom focus = atoms[in.getInt()];
+				final IAtom[] ligands = new IAtom[4];
+				for (int l = 0; l < 4; l++) {
+					ligands[l] = atoms[in.getInt()];
+				}
+				mol.addStereoElement(new TetrahedralChirality(focus, ligands, ITetrahedralChirality.Stereo.values()[in.get()]));
+			} else {
+				final IBond bond = bonds[in.getInt()];
+				final IBond[] ligands = new IBond[] { bonds[in.getInt()], bonds[in.getInt()] };
+				mol.addStereoElement(new DoubleBondStereochemistry(bond, ligands,
+						IDoubleBondStereochemistry.Conformation.values()[in.get()]));
+			}
+		}
+		return mol;
+	}
+
+	private static void writeAtom(DataOutputStream out, IAtom atom, Map<String, Integer> strings, List<String> table)
+			throws IOException {
+		int fields = 0;
+		fields |= atom.getAtomicNumber() != null ? ATOMIC_NUMBER : 0;
+		fields |= atom.getMassNumber() != null ? MASS_NUMBER : 0;
+		fields |= atom.getExactMass() != null ? EXACT_MASS : 0;
+		fields |= atom.getNaturalAbundance() != null ? NATURAL_ABUNDANCE : 0;
+		fields |= atom.getFormalCharge() != null ? FORMAL_CHARGE : 0;
+		fields |= atom.getCharge() != null ? CHARGE : 0;
+		fields |= atom.getImplicitHydrogenCount() != null ? IMPLICIT_HYDROGENS : 0;
+		fields |= atom.getValency() != null ? VALENCY : 0;
+		fields |= atom.getFormalNeighbourCount() != null ? FORMAL_NEIGHBOURS : 0;
+		fields |= atom.getHybridization() != null ? HYBRIDIZATION : 0;
+		fields |= atom.getMaxBondOrder() != null ? MAX_BOND_ORDER : 0;
+		fields |= atom.getBondOrderSum() != null ? BOND_ORDER_SUM : 0;
+		fields |= atom.getCovalentRadius() != null ? COVALENT_RADIUS : 0;
+		fields |= atom.getStereoParity() != null ? STEREO_PARITY : 0;
+		fields |= atom.getPoint2d() != null ? POINT2D : 0;
+		fields |= atom.getPoint3d() != null ? POINT3D : 0;
+		fields |= atom.getFractionalPoint3d() != null ? FRACTIONAL_POINT3D : 0;
+		out.writeInt(fields);
+		out.writeShort(atom.getFlagValue().shortValue());
+		writeString(out, atom.getSymbol(), strings, table);
+		writeString(out, atom.getAtomTypeName(), strings, table);
+		writeString(out, atom.getID(), strings, table);
+		if ((fields & ATOMIC_NUMBER) != 0) {
+			out.writeInt(atom.getAtomicNumber());
+		}
+		if ((fields & MASS_NUMBER) != 0) {
+			out.writeInt(atom.getMassNumber());
+		}
+		if ((fields & EXACT_MASS) != 0) {
+			out.writeDouble(atom.getExactMass());
+		}
+		if ((fields & NATURAL_ABUNDANCE) != 0) {
+			out.writeDouble(atom.getNaturalAbundance());
+		}
+		if ((fields & FORMAL_CHARGE) != 0) {
+			out.writeInt(atom.getFormalCharge());
+		}
+		if ((fields & CHARGE) != 0) {
+			out.writeDouble(atom.getCharge());
+		}
+		if ((fields & IMPLICIT_HYDROGENS) != 0) {
+			out.writeInt(atom.getImplicitHydrogenCount());
+		}
+		if ((fields & VALENCY) != 0) {
+			out.writeInt(atom.getValency());
+		}
+		if ((fields & FORMAL_NEIGHBOURS) != 0) {
+			out.writeInt(atom.getFormalNeighbourCount());
+		}
+		if ((fields & HYBRIDIZATION) != 0) {
+			out.writeByte(atom.getHybridization().ordinal());
+		}
+		if ((fields & MAX_BOND_ORDER) != 0) {
+			out.writeByte(atom.getMaxBondOrder().ordinal());
+		}
+		if ((fields & BOND_ORDER_SUM) != 0) {
+			out.writeDouble(atom.getBondOrderSum());
+		}
+		if ((fields & COVALENT_RADIUS) != 0) {
+			out.writeDouble(atom.getCovalentRadius());
+		}
+		if ((fields & STEREO_PARITY) != 0) {
+			out.writeInt(atom.getStereoParity());
+		}
+		if ((fields & POINT2D) != 0) {
+			out.writeDouble(atom.getPoint2d().x);
+			out.writeDouble(atom.getPoint2d().y);
+		}
+		if ((fields & POINT3D) != 0) {
+			writePoint3d(out, atom.getPoint3d());
+		}
+		if ((fields & FRACTIONAL_POINT3D) != 0) {
+			writePoint3d(out, atom.getFractionalPoint3d());
+		}
+	}
+
+	private static IAtom readAtom(ByteBuffer in, String[] strings) {
+		final int fields = in.getInt();
+		final IAtom atom = new Atom();
+		setFlags(atom, in.getShort());
+		atom.setSymbol(readString(in, strings));
+		atom.setAtomTypeName(readString(in, strings));
+		atom.setID(readString(in, strings));
+		atom.setAtomicNumber((fields & ATOMIC_NUMBER) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setMassNumber((fields & MASS_NUMBER) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setExactMass((fields & EXACT_MASS) != 0 ? Double.valueOf(in.getDouble()) : null);
+		atom.setNaturalAbundance((fields & NATURAL_ABUNDANCE) != 0 ? Double.valueOf(in.getDouble()) : null);
+		atom.setFormalCharge((fields & FORMAL_CHARGE) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setCharge((fields & CHARGE) != 0 ? Double.valueOf(in.getDouble()) : null);
+		atom.setImplicitHydrogenCount((fields & IMPLICIT_HYDROGENS) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setValency((fields & VALENCY) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setFormalNeighbourCount((fields & FORMAL_NEIGHBOURS) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setHybridization((fields & HYBRIDIZATION) != 0 ? Hybridization.values()[in.get()] : null);
+		atom.setMaxBondOrder((fields & MAX_BOND_ORDER) != 0 ? IBond.Order.values()[in.get()] : null);
+		atom.setBondOrderSum((fields & BOND_ORDER_SUM) != 0 ? Double.valueOf(in.getDouble()) : null);
+		atom.setCovalentRadius((fields & COVALENT_RADIUS) != 0 ? Double.valueOf(in.getDouble()) : null);
+		atom.setStereoParity((fields & STEREO_PARITY) != 0 ? Integer.valueOf(in.getInt()) : null);
+		atom.setPoint2d((fields & POINT2D) != 0 ? new Point2d(in.getDouble(), in.getDouble()) : null);
+		atom.setPoint3d((fields & POINT3D) != 0 ? readPoint3d(in) : null);
+		atom.setFractionalPoint3d((fields & FRACTIONAL_POINT3D) != 0 ? readPoint3d(in) : null);
+		return atom;
+	}
+
+	private static void writeBond(DataOutputStream out, IBond bond, Map<String, Integer> strings, List<String> table)
+			throws IOException {
+		int fields = 0;
+		fields |= bond.getOrder() != null ? ORDER : 0;
+		fields |= bond.getStereo() != null ? STEREO : 0;
+		fields |= bond.getElectronCount() != null ? ELECTRON_COUNT : 0;
+		out.writeByte(fields);
+		out.writeShort(bond.getFlagValue().shortValue());
+		writeString(out, bond.getID(), strings, table);
+		if ((fields & ORDER) != 0) {
+			out.writeByte(bond.getOrder().ordinal());
+		}
+		if ((fields & STEREO) != 0) {
+			out.writeByte(bond.getStereo().ordinal());
+		}
+		if ((fields & ELECTRON_COUNT) != 0) {
+			out.writeInt(bond.getElectronCount());
+		}
+	}
+
+	private static IBond readBond(ByteBuffer in, IAtom begin, IAtom end, String[] strings) {
+		final int fields = in.get();
+		final IBond bond = new Bond(begin, end);
+		setFlags(bond, in.getShort());
+		bond.setID(readString(in, strings));
+		bond.setOrder((fields & ORDER) != 0 ? IBond.Order.values()[in.get()] : null);
+		bond.setStereo((fields & STEREO) != 0 ? IBond.Stereo.values()[in.get()] : null);
+		bond.setElectronCount((fields & ELECTRON_COUNT) != 0 ? Integer.valueOf(in.getInt()) : null);
+		return bond;
+	}
+
+	/**
+	 * writes string and integer properties with string keys, the "ID"
+	 * property is skipped
+	 *
+	 * @return false if there are other properties
+	 */
+	private static boolean writeProperties(DataOutputStream out, IChemObject object, Map<String, Integer> strings,
+			List<String> table) throws IOException {
+		final Map<Object, Object> properties = object.getProperties();
+		int count = 0;
+		for (final Map.Entry<Object, Object> property : properties.entrySet()) {
+			if (!(property.getKey() instanceof String)) {
+				return false;
+			}
+			if (property.getValue() instanceof String || property.getValue() instanceof Integer) {
+				count++;
+			} else {
+				return false;
+			}
+		}
+		final boolean skipId = object instanceof AtomContainer && properties.containsKey("ID");
+		out.writeInt(skipId ? count - 1 : count);
+		for (final Map.Entry<Object, Object> property : properties.entrySet()) {
+			if (skipId && "ID".equals(property.getKey())) {
+				continue;
+			}
+			writeString(out, (String) property.getKey(), strings, table);
+			if (property.getValue() instanceof String) {
+				out.writeByte(PROPERTY_STRING);
+				writeString(out, (String) property.getValue(), strings, table);
+			} else {
+				out.writeByte(PROPERTY_INTEGER);
+				out.writeInt((Integer) property.getValue());
+			}
+		}
+		return true;
+	}
+
+	private static void readProperties(ByteBuffer in, IChemObject object, String[] strings) {
+		final int count = in.getInt();
+		if (count == 0) {
+			return;
+		}
+		final Map<Object, Object> properties = new HashMap<Object, Object>(count * 2);
+		for (int p = 0; p < count; p++) {
+			final String key = readString(in, strings);
+			if (in.get() == PROPERTY_STRING) {
+				properties.put(key, readString(in, strings));
+			} else {
+				properties.put(key, in.getInt());
+			}
+		}
+		object.setProperties(properties);
+	}
+
+	private static <T> boolean writeIndex(DataOutputStream out, Map<T, Integer> indices, T object) throws IOException {
+		final Integer index = indices.get(object);
+		if (index == null) {
+			return false;
+		}
+		out.writeInt(index);
+		return true;
+	}
+
+	private static void writeString(DataOutputStream out, String s, Map<String, Integer> strings, List<String> table)
+			throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		Integer ref = strings.get(s);
+		if (ref == null) {
+			ref = table.size();
+			strings.put(s, ref);
+			table.add(s);
+		}
+		out.writeInt(ref);
+	}
+
+	private static String readString(ByteBuffer in, String[] strings) {
+		final int ref = in.getInt();
+		return ref < 0 ? null : strings[ref];
+	}
+
+	private static void writePoint3d(DataOutputStream out, Point3d point) throws IOException {
+		out.writeDouble(point.x);
+		out.writeDouble(point.y);
+		out.writeDouble(point.z);
+	}
+
+	private static Point3d readPoint3d(ByteBuffer in) {
+		return new Point3d(in.getDouble(), in.getDouble(), in.getDouble());
+	}
+
+	private static void setFlags(IChemObject object, short flags) {
+		for (int bit = 0; bit < 16; bit++) {
+			if ((flags & (1 << bit)) != 0) {
+				object.setFlag(1 << bit, true);
+			}
+		}
+	}
+
+	/**
+	 * reads the offset of the record offset table from the end of the store
+	 */
+	private static long readTableOffset(File storeFile) throws IOException {
+		final RandomAccessFile in = new RandomAccessFile(storeFile, "r");
+		try {
+			in.seek(in.length() - 8);
+			return in.readLong();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void skipFully(DataInputStream in, long n) throws IOException {
+		while (n > 0) {
+			final long skipped = in.skip(n);
+			if (skipped <= 0) {
+				throw new IOException("Unexpected end of molecule store");
+			}
+			n -= skipped;
+		}
+	}
+}
@@ -1,320 +1,405 @@
-package de.zbit.jcmapper.io.reader;
-
-import java.io.BufferedReader;
-import java.io.Closeable;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.openscience.cdk.ChemFile;
-import org.openscience.cdk.AtomContainer;
-import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.io.MDLV2000Reader;
-
-public class RandomAccessMDLReader implements Closeable{
-
-	private ArrayList<Long> molindex;
-	private BufferedRandomAccessFile raf = null;
-	private int size = 0;
-	private AtomContainer threadmol = null;
-	private boolean removeHydrogens = true;
-
-	/**
-	 * this thread reads a molecule
-	 */
-	public class ParseThread extends Thread {
-
-		private final Long index;
-
-		public ParseThread(Long index) {
-			this.index = index;
-		}
-
-		@Override
-		public void run() {
-			try {
-				RandomAccessMDLReader.this.threadmol = RandomAccessMDLReader.this.getMolRaf(this.index);
-			} catch (final IOException e) {
-				e.printStackTrace();
-			} catch (final CDKException e) {
-				e.printStackTrace();
-			}
-		}
-	}
-
-	/**
-	 * opens a buffered reader on mdl sd file
-	 * 
-	 * @param sdf
-	 * @throws IOException
-	 */
-	public RandomAccessMDLReader(File sdf) throws IOException {
-
-		try {
-			this.raf = new BufferedRandomAccessFile(sdf, "r");
-		} catch (final FileNotFoundException e1) {
-			System.out.println("Could not find file: " + sdf.getCanonicalPath());
-		}
-		try {
-			this.setRanges();
-		} catch (final IOException e) {
-			System.out.println("[RandomAccessMDLReader] Could not parse MDL SD file " + sdf);
-			System.exit(1);
-		}
-	}
-
-	/**
-	 * returns the ith molecule in the random access file as plain mol file
-	 * (e.g. to display it with Marvin)
-	 * 
-	 * @param index
-	 * @return
-	 */
-	public String getMDLMolString(int index) {
-		try {
-			return this.getPlainMol(this.molindex.get(index));
-		} catch (final IOException e) {
-			e.printStackTrace();
-		} catch (final CDKException e) {
-			e.printStackTrace();
-		}
-		return "";
-	}
-
-	/**
-	 * returns the mdl sd tag for the ith molecule
-	 * 
-	 * @param index
-	 * @return
-	 */
-	public String getLabel(int index, String label) {
-		try {
-			String molString = this.getPlainMol(this.molindex.get(index));
-			BufferedReader reader = new BufferedReader(new StringReader(molString));
-			String line;
-			while ((line = reader.readLine()) != null) {
-				// tag was found, proceed to next line
-				if (line.contains(">") && line.contains("<" + label + ">"))
-					return reader.readLine().trim();
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (CDKException e) {
-			e.printStackTrace();
-		}
-		return "";
-	}
-
-	/**
-	 * returns all possible labels for this data set
-	 * 
-	 * @param label
-	 * @return
-	 */
-	public Set<String> getAllLabelClasses(String label) {
-		HashSet<String> tags = new HashSet<String>();
-		for (int i = 0; i < this.size; i++) {
-			String currentLabel = getLabel(i, label);
-			if (!tags.contains(currentLabel)) {
-				tags.add(currentLabel);
-			}
-		}
-		return tags;
-	}
-
-	/**
-	 * returns the ith molecule in the random access file
-	 * 
-	 * @param index
-	 * @returns null if the molecule could not be parsed
-	 */
-	public AtomContainer getMol(int index) {
-
-		this.threadmol = null;
-		ParseThread readthread = new ParseThread(this.molindex.get(index));
-		readthread.start();
-		try {
-			readthread.join();
-		} catch (InterruptedException e1) {
-			e1.printStackTrace();
-		}
-
-        AtomContainer mol = new AtomContainer();
-		if (this.threadmol == null) {
-			readthread = null;
-			return mol;
-		} else {
-			try {
-				mol = (AtomContainer) this.threadmol.clone();
-			} catch (final CloneNotSupportedException e) {
-				e.printStackTrace();
-			}
-			readthread = null;
-			mol.setProperty("ID", (int) System.currentTimeMillis());
-
-			if (this.removeHydrogens) {
-				mol = (AtomContainer)MoleculePreprocessor.prepareMoleculeRemoveHydrogens(mol);
-			} else {
-				mol = (AtomContainer)MoleculePreprocessor.prepareMoleculeConserveHydrogens(mol);
-			}
-			return mol;
-		}
-	}
-
-	/**
-	 * returns the ith Molecule (index of first structure is 0!)
-	 * 
-	 * @param mr
-	 * @return
-	 * @throws IOException
-	 * @throws CDKException
-	 */
-	private AtomContainer getMolRaf(Long mr) throws IOException, CDKException {
-		this.raf.seek(mr.longValue());
-		final StringBuffer mdl = new StringBuffer();
-
-		String line = null;
-		while ((line = this.raf.readLineBuffered()) != null) {
-			mdl.append(line + "\n");
-			if (line.startsWith("$$$$")) {
-				break;
-			}
-		}
-
-        AtomContainer molecule = null;
-		String mdlString = mdl.toString();
-		molecule = this.getRawMolecule(mdlString);
-
-		return molecule;
-	}
-
-	/**
-	 * returns the ith Molecule (index of first structure is 0!)
-	 * 
-	 * @param mr
-	 * @return
-	 * @throws IOException
-	 * @throws CDKException
-	 */
-	private String getPlainMol(Long mr) throws IOException, CDKException {
-		this.raf.seek(mr.longValue());
-		final StringBuffer mdl = new StringBuffer();
-
-		String line = null;
-		while ((line = this.raf.readLineBuffered()) != null) {
-			mdl.append(line + "\n");
-			if (line.startsWith("$$$$")) {
-				break;
-			}
-		}
-
-		return mdl.toString();
-	}
-
-	/**
-	 * get a type molecule with stripped hydrogens
-	 *
-	 * @param mdlString
-	 * @return
-	 * @throws CDKException
-	 */
-	private AtomContainer getRawMolecule(String mdlString) throws CDKException {
-
-        AtomContainer mol = null;
-
-		try {
-			final MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mdlString));
-			final ChemFile fileContents = reader.read(new ChemFile());
-			final org.openscience.cdk.interfaces.IChemSequence sequence = fileContents.getChemSequence(0);
-			final org.openscience.cdk.interfaces.IChemModel model = sequence.getChemModel(0);
-			final org.openscience.cdk.interfaces.IAtomContainerSet som = model.getMoleculeSet();
-			final org.openscience.cdk.interfaces.IAtomContainer imol = som.getAtomContainer(0);
-			mol = (AtomContainer) imol;
-
-		} catch (final NullPointerException e) {
-			/*
-			 * Fix for NullPointer due to occurence of D or T (Deuterium or
-			 * Tritium) with massNumber null as happens now and then in Starlite
-			 * (Chembl) Regex fix to replace D or T with a H (Hydrogen) symbol
-			 * as replacement.
-			 */
-
-			final Pattern p = Pattern.compile("[D|T](\\s+\\d){6}");
-			final Matcher matcher = p.matcher(mdlString);
-			final StringBuilder sb = new StringBuilder(mdlString);
-			while (matcher.find()) {
-				sb.replace(matcher.start(), matcher.start() + 1, "H");
-			}
-			mdlString = sb.toString();
-			final MDLV2000Reader reader = new MDLV2000Reader(new StringReader(mdlString));
-			final ChemFile fileContents = reader.read(new ChemFile());
-			final org.openscience.cdk.interfaces.IChemSequence sequence = fileContents.getChemSequence(0);
-			final org.openscience.cdk.interfaces.IChemModel model = sequence.getChemModel(0);
-			final org.openscience.cdk.interfaces.IAtomContainerSet som = model.getMoleculeSet();
-			final org.openscience.cdk.interfaces.IAtomContainer imol = som.getAtomContainer(0);
-			mol = (AtomContainer) imol;
-		}
-
-		return mol;
-	}
-
-	/**
-	 * returns the number of structures contained in the MDL SD file
-	 * 
-	 * @return
-	 */
-	public int getSize() {
-		return this.size;
-	}
-
-	public boolean isRemoveHydrogens() {
-		return removeHydrogens;
-	}
-
-	public void setRemoveHydrogens(boolean removeHydrogens) {
-		this.removeHydrogens = removeHydrogens;
-	}
-
-	/**
-	 * 
-	 * stores the offset for the molecules
-	 * 
-	 * @return
-	 * @throws IOException
-	 */
-	private void setRanges() throws IOException {
-		String line;
-		Long mr;
-
-		this.molindex = new ArrayList<Long>();
-		new StringBuffer();
-
-		int c = 0;
-		// add the first entry
-		this.molindex.add(new Long(0));
-		while ((line = this.raf.readLineBuffered()) != null) {
-			if (line.startsWith("$$$$")) {
-				mr = this.raf.getFilePointer();
-				this.molindex.add(mr);
-				mr = new Long(0);
-				c++;
-				if (c % 2000 == 0) {
-					System.out.print(".");
-				}
-			}
-		}
-		this.size = c;
-		System.out.print("\n");
-	}
-
-	@Override
-	public void close() throws IOException {
-		this.raf.close();
-	}
-}
+package de.zbit.jcmapper.io.reader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openscience.cdk.AtomContainer;
+
+/**
+ * random access on the records of an MDL SD file. getMol, getMDLMolString and
+ * getLabel may be called concurrently, each call reads its record with a
+ * positional read or from the memory mapped file. Gzip compressed files are
+ * read through {@link BlockGzipSDFile}, which is only fast for block
+ * compressed (BGZF) files. SD tags can be cached as dictionary encoded
+ * columns ({@link #cacheTags(String...)}), prepared molecules can be kept in
+ * a {@link PreparedMoleculeStore} ({@link #openMoleculeStore()}).
+ */
+public class RandomAccessMDLReader implements IMDLReader {
+
+	private SDFOffsetIndex molindex;
+	private ISDFRecordSource records = null;
+	private int size = 0;
+	private boolean removeHydrogens = true;
+	private boolean fastParser = false;
+	private final Map<String, SDFTagColumn> tagColumns = new ConcurrentHashMap<String, SDFTagColumn>();
+	private final File sdf;
+	private final boolean useIndexFile;
+	private SDFKeyIndex keyIndex = null;
+	private PreparedMoleculeStore moleculeStore = null;
+
+	/**
+	 * opens a buffered reader on mdl sd file, reuses or writes the sidecar
+	 * offset index (file.sdf.idx)
+	 * 
+	 * @param sdf
+	 * @throws IOException
+	 */
+	public RandomAccessMDLReader(File sdf) throws IOException {
+		this(sdf, true);
+	}
+
+	/**
+	 * opens a buffered reader on mdl sd file
+	 * 
+	 * @param sdf
+	 * @param useIndexFile
+	 *            load the record offsets from the sidecar index and write it
+	 *            after a full scan
+	 * @throws IOException
+	 */
+	public RandomAccessMDLReader(File sdf, boolean useIndexFile) throws IOException {
+		this(sdf, useIndexFile, false);
+	}
+
+	/**
+	 * opens a reader on mdl sd file
+	 * 
+	 * @param sdf
+	 * @param useIndexFile
+	 *            load the record offsets from the sidecar index and write it
+	 *            after a full scan
+	 * @param memoryMapped
+	 *            map the file into memory instead of reading it through a
+	 *            buffered random access file, ignored for gzip compressed
+	 *            files
+	 * @throws IOException
+	 */
+	public RandomAccessMDLReader(File sdf, boolean useIndexFile, boolean memoryMapped) throws IOException {
+		this.sdf = sdf;
+		this.useIndexFile = useIndexFile;
+		try {
+			if (BlockGzipSDFile.isGzip(sdf)) {
+				this.records = new BlockGzipSDFile(sdf);
+			} else if (memoryMapped) {
+				this.records = new MappedSDFile(sdf);
+			} else {
+				this.records = new BufferedSDFFile(sdf);
+			}
+		} catch (final FileNotFoundException e1) {
+			System.out.println("Could not find file: " + sdf.getCanonicalPath());
+		}
+		try {
+			this.setRanges(sdf, useIndexFile);
+		} catch (final IOException e) {
+			System.out.println("[RandomAccessMDLReader] Could not parse MDL SD file " + sdf);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * returns the ith molecule in the random access file as plain mol file
+	 * (e.g. to display it with Marvin)
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public String getMDLMolString(int index) {
+		try {
+			return SDFRecordHelper.toMolString(this.getRecord(index));
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return "";
+	}
+
+	/**
+	 * returns the mdl sd tag for the ith molecule
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public String getLabel(int index, String label) {
+		final SDFTagColumn column = this.tagColumns.get(label);
+		if (column != null) {
+			return column.getValue(index);
+		}
+		try {
+			return SDFRecordHelper.getTag(this.getRecord(index), label);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return "";
+	}
+
+	/**
+	 * returns all possible labels for this data set, the tag is cached as
+	 * column on first use
+	 * 
+	 * @param label
+	 * @return
+	 */
+	public Set<String> getAllLabelClasses(String label) {
+		SDFTagColumn column = this.tagColumns.get(label);
+		if (column == null) {
+			this.cacheTags(label);
+			column = this.tagColumns.get(label);
+		}
+		if (column == null) {
+			return Collections.emptySet();
+		}
+		return column.getValues();
+	}
+
+	/**
+	 * extracts the given sd tags of all records in a single pass, later
+	 * getLabel and getAllLabelClasses calls for these tags are array lookups
+	 * 
+	 * @param labels
+	 */
+	public void cacheTags(String... labels) {
+		final List<String> missing = new ArrayList<String>();
+		for (final String label : labels) {
+			if (!this.tagColumns.containsKey(label) && !missing.contains(label)) {
+				missing.add(label);
+			}
+		}
+		if (missing.isEmpty()) {
+			return;
+		}
+		try {
+			for (final SDFTagColumn column : SDFTagColumn.build(this.records, this.molindex,
+					missing.toArray(new String[missing.size()]))) {
+				this.tagColumns.put(column.getLabel(), column);
+			}
+		} catch (final IOException e) {
+			System.out.println("[RandomAccessMDLReader] Could not read sd tags " + missing + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * returns the cached column of the sd tag
+	 * 
+	 * @param label
+	 * @return null if the tag has not been cached
+	 */
+	public SDFTagColumn getTagColumn(String label) {
+		return this.tagColumns.get(label);
+	}
+
+	/**
+	 * loads or builds the key index on the sd tag, the index is stored next
+	 * to the SD file (file.sdf.&lt;tag&gt;.key) if sidecar files are used
+	 * 
+	 * @param label
+	 *            sd tag holding the molecule ids
+	 * @return
+	 */
+	public SDFKeyIndex openKeyIndex(String label) {
+		if (this.keyIndex != null && this.keyIndex.getLabel().equals(label)) {
+			return this.keyIndex;
+		}
+		SDFKeyIndex index = null;
+		if (this.useIndexFile) {
+			index = SDFKeyIndex.load(this.sdf, label);
+		}
+		if (index == null) {
+			this.cacheTags(label);
+			try {
+				index = SDFKeyIndex.build(this.getTagColumn(label));
+			} catch (final IOException e) {
+				System.out.println("[RandomAccessMDLReader] Could not build key index on " + label + ": " + e.getMessage());
+				return null;
+			}
+			if (this.useIndexFile) {
+				try {
+					index.save(this.sdf);
+				} catch (final IOException e) {
+					System.out.println("[RandomAccessMDLReader] Could not write key index file for " + this.sdf + ": "
+							+ e.getMessage());
+				}
+			}
+		}
+		this.keyIndex = index;
+		return index;
+	}
+
+	/**
+	 * returns the index of the first molecule with the id, needs a key index
+	 * ({@link #openKeyIndex(String)})
+	 * 
+	 * @param id
+	 * @return -1 if there is no such molecule
+	 */
+	public int getIndexById(String id) {
+		if (this.keyIndex == null) {
+			throw new IllegalStateException("No key index opened");
+		}
+		return this.keyIndex.getRecord(id);
+	}
+
+	/**
+	 * returns the first molecule with the id, needs a key index
+	 * ({@link #openKeyIndex(String)})
+	 * 
+	 * @param id
+	 * @return null if there is no such molecule
+	 */
+	public AtomContainer getMolById(String id) {
+		final int index = this.getIndexById(id);
+		return index < 0 ? null : this.getMol(index);
+	}
+
+	/**
+	 * loads or builds the store of prepared molecules (file.sdf.noh.mols or
+	 * file.sdf.h.mols), getMol then reads stored molecules instead of parsing
+	 * and typing the records. The store matches the current hydrogen setting.
+	 * 
+	 * @return false if the store could not be written
+	 */
+	public boolean openMoleculeStore() {
+		if (this.moleculeStore != null && this.moleculeStore.isRemoveHydrogens() == this.removeHydrogens) {
+			return true;
+		}
+		PreparedMoleculeStore store = PreparedMoleculeStore.load(this.sdf, this.molindex, this.removeHydrogens);
+		if (store == null) {
+			try {
+				PreparedMoleculeStore.build(this.sdf, this.records, this.molindex, this.removeHydrogens, this.fastParser);
+			} catch (final IOException e) {
+				System.out.println("[RandomAccessMDLReader] Could not write molecule store for " + this.sdf + ": "
+						+ e.getMessage());
+				return false;
+			}
+			store = PreparedMoleculeStore.load(this.sdf, this.molindex, this.removeHydrogens);
+			if (store == null) {
+				return false;
+			}
+		}
+		this.closeMoleculeStore();
+		this.moleculeStore = store;
+		return true;
+	}
+
+	@Override
+	public boolean hasMol(int index) {
+		return index >= 0 && index < this.size;
+	}
+
+	/**
+	 * returns the ith molecule in the random access file
+	 * 
+	 * @param index
+	 * @returns an empty molecule if the molecule could not be parsed
+	 */
+	public AtomContainer getMol(int index) {
+		final PreparedMoleculeStore store = this.moleculeStore;
+		if (store != null && store.isRemoveHydrogens() == this.removeHydrogens) {
+			final AtomContainer mol = store.getMol(index);
+			if (mol != null) {
+				return mol;
+			}
+		}
+		try {
+			return MDLRecordParser.getMol(this.getRecord(index), this.removeHydrogens, this.fastParser);
+		} catch (final IOException e) {
+			e.printStackTrace();
+		}
+		return new AtomContainer();
+	}
+
+	@Override
+	public Callable<AtomContainer> getMolTask(final int index) {
+		return new Callable<AtomContainer>() {
+			@Override
+			public AtomContainer call() {
+				return getMol(index);
+			}
+		};
+	}
+
+	/**
+	 * returns the bytes of the ith record including the $$$$ line
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	private ByteBuffer getRecord(int index) throws IOException {
+		return this.records.getRecord(this.molindex.getOffset(index), this.molindex.getOffset(index + 1));
+	}
+
+	/**
+	 * returns the record offsets of the SD file
+	 * 
+	 * @return
+	 */
+	public SDFOffsetIndex getIndex() {
+		return this.molindex;
+	}
+
+	/**
+	 * returns the number of structures contained in the MDL SD file
+	 * 
+	 * @return
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	public boolean isRemoveHydrogens() {
+		return removeHydrogens;
+	}
+
+	public void setRemoveHydrogens(boolean removeHydrogens) {
+		this.removeHydrogens = removeHydrogens;
+	}
+
+	@Override
+	public boolean isFastParser() {
+		return this.fastParser;
+	}
+
+	@Override
+	public void setFastParser(boolean fastParser) {
+		this.fastParser = fastParser;
+	}
+
+	/**
+	 * 
+	 * stores the offset for the molecules
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private void setRanges(File sdf, boolean useIndexFile) throws IOException {
+		if (useIndexFile) {
+			this.molindex = SDFOffsetIndex.load(sdf);
+		}
+		if (this.molindex == null) {
+			this.molindex = this.records.scan();
+			if (useIndexFile) {
+				try {
+					this.molindex.save(sdf);
+				} catch (final IOException e) {
+					System.out.println("[RandomAccessMDLReader] Could not write index file for " + sdf + ": " + e.getMessage());
+				}
+			}
+		}
+		this.size = this.molindex.getSize();
+	}
+
+	private void closeMoleculeStore() {
+		if (this.moleculeStore != null) {
+			try {
+				this.moleculeStore.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+			this.moleculeStore = null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.closeMoleculeStore();
+		this.records.close();
+	}
+}
@@ -0,0 +1,325 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * maps the values of an sd tag (e.g. a registry id) to record indices. Keys
+ * are kept as sorted array of UTF-8 byte strings and looked up by binary
+ * search, records without the tag are not indexed. The index can be stored
+ * next to the SD file (file.sdf.&lt;tag&gt;.key) and is memory mapped on later
+ * opens, it is validated against the SD file like {@link SDFOffsetIndex}.
+ * Sidecar layout (big endian):
+ *
+ * <pre>
+ * int   magic 'JCKY'
+ * int   version
+ * long  length of the SD file
+ * long  last modification time of the SD file
+ * long  CRC32 over the first and last 64 KB of the SD file
+ * UTF   tag
+ * int   number of keys n
+ * n     int record indices, sorted by key and record
+ * n+1   long key offsets into the key data
+ * ...   key data, UTF-8
+ * </pre>
+ */
+public class SDFKeyIndex {
+
+	public static final String SUFFIX = ".key";
+
+	private static final int MAGIC = 0x4A434B59;
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String label;
+	private final ByteBuffer entries;
+	private final int size;
+	private final int keyOffsetsStart;
+	private final int keysStart;
+
+	/**
+	 * @param label
+	 * @param entries
+	 *            entry part of the sidecar layout, starting at the number of
+	 *            keys
+	 */
+	private SDFKeyIndex(String label, ByteBuffer entries) {
+		this.label = label;
+		this.entries = entries;
+		this.size = entries.getInt(0);
+		this.keyOffsetsStart = 4 + 4 * this.size;
+		this.keysStart = this.keyOffsetsStart + 8 * (this.size + 1);
+	}
+
+	/**
+	 * builds the index from a cached tag column, empty values are skipped
+	 *
+	 * @param column
+	 * @return
+	 * @throws IOException
+	 *             if the index would exceed 2 GB
+	 */
+	public static SDFKeyIndex build(final SDFTagColumn column) throws IOException {
+		// sort the distinct values once and bucket the records by rank
+		final byte[][] values = new byte[column.getDictionarySize()][];
+		final Integer[] order = new Integer[values.length];
+		for (int code = 0; code < values.length; code++) {
+			values[code] = column.getDictionaryValue(code).getBytes(UTF8);
+			order[code] = code;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return compareBytes(values[a], values[b]);
+			}
+		});
+		final int[] rank = new int[values.length];
+		for (int r = 0; r < order.length; r++) {
+			rank[order[r]] = r;
+		}
+		final int[] start = new int[values.length + 1];
+		int keys = 0;
+		for (int i = 0; i < column.getSize(); i++) {
+			if (values[column.getCode(i)].length > 0) {
+				start[rank[column.getCode(i)] + 1]++;
+				keys++;
+			}
+		}
+		for (int r = 0; r < values.length; r++) {
+			start[r + 1] += start[r];
+		}
+		final int[] records = new int[keys];
+		for (int i = 0; i < column.getSize(); i++) {
+			if (values[column.getCode(i)].length > 0) {
+				records[start[rank[column.getCode(i)]]++] = i;
+			}
+		}
+
+		long keyBytes = 0;
+		for (final int record : records) {
+			keyBytes += values[column.getCode(record)].length;
+		}
+		final long length = 4 + 4L * keys + 8L * (keys + 1) + keyBytes;
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Key index for " + column.getLabel() + " exceeds 2 GB");
+		}
+		final ByteBuffer entries = ByteBuffer.allocate((int) length);
+		entries.putInt(keys);
+		for (final int record : records) {
+			entries.putInt(record);
+		}
+		long offset = 0;
+		entries.putLong(offset);
+		for (final int record : records) {
+			offset += values[column.getCode(record)].length;
+			entries.putLong(offset);
+		}
+		for (final int record : records) {
+			entries.put(values[column.getCode(record)]);
+		}
+		entries.flip();
+		return new SDFKeyIndex(column.getLabel(), entries);
+	}
+
+	public String getLabel() {
+		return this.label;
+	}
+
+	/**
+	 * returns the number of indexed records
+	 *
+	 * @return
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * returns the first record with the key
+	 *
+	 * @param key
+	 * @return the record index or -1 if the key is unknown
+	 */
+	public int getRecord(String key) {
+		final int first = this.findFirst(key.getBytes(UTF8));
+		return first < 0 ? -1 : this.getEntryRecord(first);
+	}
+
+	/**
+	 * returns all records with the key in file order
+	 *
+	 * @param key
+	 * @return
+	 */
+	public int[] getRecords(String key) {
+		final byte[] k = key.getBytes(UTF8);
+		final int first = this.findFirst(k);
+		if (first < 0) {
+			return new int[0];
+		}
+		int last = first + 1;
+		while (last < this.size && this.compareKey(last, k) == 0) {
+			last++;
+		}
+		final int[] records = new int[last - first];
+		for (int e = first; e < last; e++) {
+			records[e - first] = this.getEntryRecord(e);
+		}
+		return records;
+	}
+
+	/**
+	 * returns the sidecar key index file of an SD file
+	 *
+	 * @param sdf
+	 * @param label
+	 * @return
+	 */
+	public static File getKeyFile(File sdf, String label) {
+		return new File(sdf.getPath() + "." + label.replaceAll("[^A-Za-z0-9_.-]", "_") + SUFFIX);
+	}
+
+	/**
+	 * maps the sidecar key index of the SD file
+	 *
+	 * @param sdf
+	 * @param label
+	 * @return null if there is no index or it does not match the SD file
+	 */
+	public static SDFKeyIndex load(File sdf, String label) {
+		final File keyFile = getKeyFile(sdf, label);
+		if (!keyFile.isFile()) {
+			return null;
+		}
+		RandomAccessFile in = null;
+		try {
+			in = new RandomAccessFile(keyFile, "r");
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+			if (in.readLong() != sdf.length() || in.readLong() != sdf.lastModified()
+					|| in.readLong() != SDFOffsetIndex.checksum(sdf)) {
+				return null;
+			}
+			if (!label.equals(in.readUTF())) {
+				return null;
+			}
+			final long position = in.getFilePointer();
+			final ByteBuffer entries = in.getChannel().map(FileChannel.MapMode.READ_ONLY, position, in.length() - position);
+			final SDFKeyIndex index = new SDFKeyIndex(label, entries);
+			if (index.size < 0 || index.keysStart > entries.limit()
+					|| index.keysStart + entries.getLong(index.keyOffsetsStart + 8 * index.size) != entries.limit()) {
+				return null;
+			}
+			return index;
+		} catch (final IOException e) {
+			return null;
+		} catch (final RuntimeException e) {
+			// truncated or corrupt index, rebuild
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * stores the index next to the SD file
+	 *
+	 * @param sdf
+	 * @throws IOException
+	 */
+	public void save(File sdf) throws IOException {
+		final File keyFile = getKeyFile(sdf, this.label);
+		final File tmpFile = new File(keyFile.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sdf.length());
+			out.writeLong(sdf.lastModified());
+			out.writeLong(SDFOffsetIndex.checksum(sdf));
+			out.writeUTF(this.label);
+			final ByteBuffer entries = this.entries.duplicate();
+			entries.position(0);
+			final byte[] chunk = new byte[65536];
+			while (entries.hasRemaining()) {
+				final int n = Math.min(chunk.length, entries.remaining());
+				entries.get(chunk, 0, n);
+				out.write(chunk, 0, n);
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(keyFile)) {
+			keyFile.delete();
+			if (!tmpFile.renameTo(keyFile)) {
+				tmpFile.delete();
+				throw new IOException("Could not write key index file " + keyFile);
+			}
+		}
+	}
+
+	/**
+	 * returns the first entry with the key or -1
+	 */
+	private int findFirst(byte[] key) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.compareKey(middle, key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low < this.size && this.compareKey(low, key) == 0 ? low : -1;
+	}
+
+	private int getEntryRecord(int entry) {
+		return this.entries.getInt(4 + 4 * entry);
+	}
+
+	/**
+	 * compares the key of the entry with the given key as unsigned bytes
+	 */
+	private int compareKey(int entry, byte[] key) {
+		final int start = this.keysStart + (int) this.entries.getLong(this.keyOffsetsStart + 8 * entry);
+		final int end = this.keysStart + (int) this.entries.getLong(this.keyOffsetsStart + 8 * (entry + 1));
+		final int n = Math.min(end - start, key.length);
+		for (int i = 0; i < n; i++) {
+			final int c = (this.entries.get(start + i) & 0xFF) - (key[i] & 0xFF);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return (end - start) - key.length;
+	}
+
+	static int compareBytes(byte[] a, byte[] b) {
+		final int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			final int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return a.length - b.length;
+	}
+}
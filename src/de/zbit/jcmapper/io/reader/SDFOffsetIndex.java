@@ -0,0 +1,266 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Record offsets of an MDL SD file. Entry i is the byte offset of the ith
+ * record, the last entry is the offset directly behind the last $$$$ line, so
+ * record i spans [getOffset(i), getOffset(i+1)).
+ *
+ * The index can be stored next to the SD file (file.sdf.idx) and is reused on
+ * later opens as long as length, modification time and a sampled checksum of
+ * the SD file are unchanged. Sidecar layout (big endian):
+ *
+ * <pre>
+ * int   magic 'JCIX'
+ * int   version
+ * long  length of the SD file
+ * long  last modification time of the SD file
+ * long  CRC32 over the first and last 64 KB of the SD file
+ * int   number of records
+ * ...   number of records + 1 offsets, delta encoded as unsigned LEB128 varints
+ * </pre>
+ */
+public class SDFOffsetIndex {
+
+	public static final String SUFFIX = ".idx";
+
+	private static final int MAGIC = 0x4A434958;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 8 + 4;
+	private static final int CHECKSUM_SAMPLE = 65536;
+
+	private final long[] offsets;
+	private final int size;
+
+	/**
+	 * @param offsets
+	 *            record offsets, at least size+1 entries
+	 * @param size
+	 *            number of records
+	 */
+	public SDFOffsetIndex(long[] offsets, int size) {
+		this.offsets = offsets;
+		this.size = size;
+	}
+
+	/**
+	 * returns the number of records
+	 *
+	 * @return
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * returns the start offset of the ith record, getOffset(getSize()) is the
+	 * end of the last record
+	 *
+	 * @param index
+	 * @return
+	 */
+	public long getOffset(int index) {
+		if (index < 0 || index > this.size) {
+			throw new IndexOutOfBoundsException("Record " + index + " not in [0," + this.size + "]");
+		}
+		return this.offsets[index];
+	}
+
+	/**
+	 * scans the SD file line by line for $$$$ delimiters
+	 *
+	 * @param raf
+	 * @return
+	 * @throws IOException
+	 */
+	public static SDFOffsetIndex scan(BufferedRandomAccessFile raf) throws IOException {
+		String line;
+		long[] offsets = new long[1024];
+		int c = 0;
+
+		raf.seek(0);
+		// add the first entry
+		offsets[0] = 0;
+		while ((line = raf.readLineBuffered()) != null) {
+			if (line.startsWith("$$$$")) {
+				c++;
+				if (c == offsets.length) {
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				}
+				offsets[c] = raf.getFilePointer();
+				if (c % 2000 == 0) {
+					System.out.print(".");
+				}
+			}
+		}
+		System.out.print("\n");
+		return new SDFOffsetIndex(offsets, c);
+	}
+
+	/**
+	 * returns the sidecar index file of an SD file
+	 *
+	 * @param sdf
+	 * @return
+	 */
+	public static File getIndexFile(File sdf) {
+		return new File(sdf.getPath() + SUFFIX);
+	}
+
+	/**
+	 * loads the sidecar index of the SD file
+	 *
+	 * @param sdf
+	 * @return null if there is no index or it does not match the SD file
+	 */
+	public static SDFOffsetIndex load(File sdf) {
+		File indexFile = getIndexFile(sdf);
+		if (!indexFile.isFile()) {
+			return null;
+		}
+		RandomAccessFile in = null;
+		try {
+			in = new RandomAccessFile(indexFile, "r");
+			FileChannel channel = in.getChannel();
+			if (channel.size() < HEADER_LENGTH) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			if (buffer.getLong() != sdf.length() || buffer.getLong() != sdf.lastModified()
+					|| buffer.getLong() != checksum(sdf)) {
+				return null;
+			}
+			int size = buffer.getInt();
+			if (size < 0) {
+				return null;
+			}
+			long[] offsets = new long[size + 1];
+			long offset = 0;
+			for (int i = 0; i <= size; i++) {
+				offset += readVarLong(buffer);
+				offsets[i] = offset;
+			}
+			return new SDFOffsetIndex(offsets, size);
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			// truncated or corrupt index, rebuild
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * stores the index next to the SD file
+	 *
+	 * @param sdf
+	 * @throws IOException
+	 */
+	public void save(File sdf) throws IOException {
+		File indexFile = getIndexFile(sdf);
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sdf.length());
+			out.writeLong(sdf.lastModified());
+			out.writeLong(checksum(sdf));
+			out.writeInt(this.size);
+			long last = 0;
+			for (int i = 0; i <= this.size; i++) {
+				writeVarLong(out, this.offsets[i] - last);
+				last = this.offsets[i];
+			}
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(indexFile)) {
+			indexFile.delete();
+			if (!tmpFile.renameTo(indexFile)) {
+				tmpFile.delete();
+				throw new IOException("Could not write index file " + indexFile);
+			}
+		}
+	}
+
+	/**
+	 * CRC32 over the first and the last 64 KB, cheap enough for huge files
+	 * and catches in-place edits which keep length and time stamp
+	 *
+	 * @param sdf
+	 * @return
+	 * @throws IOException
+	 */
+	static long checksum(File sdf) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(sdf, "r");
+		try {
+			CRC32 crc = new CRC32();
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_SAMPLE);
+			updateChecksum(crc, channel, buffer, 0);
+			if (length > CHECKSUM_SAMPLE) {
+				updateChecksum(crc, channel, buffer, Math.max(CHECKSUM_SAMPLE, length - CHECKSUM_SAMPLE));
+			}
+			return crc.getValue();
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void updateChecksum(CRC32 crc, FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				break;
+			}
+		}
+		crc.update(buffer.array(), 0, buffer.position());
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(ByteBuffer buffer) throws IOException {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			if (shift > 63) {
+				throw new IOException("Malformed index entry");
+			}
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
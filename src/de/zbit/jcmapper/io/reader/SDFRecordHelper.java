@@ -0,0 +1,188 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * helpers working directly on the bytes of a single SD record. Bytes are
+ * interpreted as ISO-8859-1.
+ */
+public class SDFRecordHelper {
+
+	/**
+	 * the charset of the tag values, text matched against them, e.g. an id
+	 * list, has to be decoded with it
+	 */
+	public static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+	/**
+	 * returns the record as plain mol string with '\n' line endings
+	 *
+	 * @param record
+	 * @return
+	 */
+	public static String toMolString(ByteBuffer record) {
+		final int limit = record.limit();
+		final StringBuilder sb = new StringBuilder(limit + 1);
+		for (int i = record.position(); i < limit; i++) {
+			final byte b = record.get(i);
+			if (b == '\r') {
+				sb.append('\n');
+				if (i + 1 < limit && record.get(i + 1) == '\n') {
+					i++;
+				}
+			} else {
+				sb.append((char) (b & 0xFF));
+			}
+		}
+		if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '\n') {
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * returns the value of the sd tag, i.e. the line following the first line
+	 * containing both '>' and '&lt;label&gt;'
+	 *
+	 * @param record
+	 * @param label
+	 * @return the trimmed value or "" if the tag is missing
+	 */
+	public static String getTag(ByteBuffer record, String label) {
+		final byte[] tag = toBytes("<" + label + ">");
+		final int limit = record.limit();
+		int lineStart = record.position();
+		while (lineStart < limit) {
+			final int lineEnd = endOfLine(record, lineStart);
+			if (isTagLine(record, lineStart, lineEnd, tag)) {
+				final int valueStart = nextLine(record, lineEnd);
+				if (valueStart >= limit) {
+					return "";
+				}
+				return decode(record, valueStart, endOfLine(record, valueStart)).trim();
+			}
+			lineStart = nextLine(record, lineEnd);
+		}
+		return "";
+	}
+
+	/**
+	 * returns the values of several sd tags in one pass over the record
+	 *
+	 * @param record
+	 * @param tags
+	 *            tags as returned by {@link #toTags(String[])}
+	 * @return the trimmed values, "" for missing tags
+	 */
+	public static String[] getTags(ByteBuffer record, byte[][] tags) {
+		final String[] values = new String[tags.length];
+		int missing = tags.length;
+		final int limit = record.limit();
+		int lineStart = record.position();
+		while (lineStart < limit && missing > 0) {
+			final int lineEnd = endOfLine(record, lineStart);
+			final int next = nextLine(record, lineEnd);
+			for (int t = 0; t < tags.length; t++) {
+				if (values[t] == null && isTagLine(record, lineStart, lineEnd, tags[t])) {
+					missing--;
+					values[t] = next >= limit ? "" : decode(record, next, endOfLine(record, next)).trim();
+				}
+			}
+			lineStart = next;
+		}
+		for (int t = 0; t < tags.length; t++) {
+			if (values[t] == null) {
+				values[t] = "";
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * encodes sd tag labels for {@link #getTags(ByteBuffer, byte[][])}
+	 *
+	 * @param labels
+	 * @return
+	 */
+	public static byte[][] toTags(String[] labels) {
+		final byte[][] tags = new byte[labels.length][];
+		for (int t = 0; t < labels.length; t++) {
+			tags[t] = toBytes("<" + labels[t] + ">");
+		}
+		return tags;
+	}
+
+	/**
+	 * checks whether the line [start,end) contains '>' and the tag
+	 */
+	static boolean isTagLine(ByteBuffer record, int start, int end, byte[] tag) {
+		boolean bracket = false;
+		for (int i = start; i < end; i++) {
+			if (record.get(i) == '>') {
+				bracket = true;
+				break;
+			}
+		}
+		return bracket && indexOf(record, start, end, tag) >= 0;
+	}
+
+	/**
+	 * returns the position of the first line break character at or after
+	 * start or the limit of the buffer
+	 */
+	static int endOfLine(ByteBuffer record, int start) {
+		final int limit = record.limit();
+		int i = start;
+		while (i < limit) {
+			final byte b = record.get(i);
+			if (b == '\n' || b == '\r') {
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * returns the start of the line following the line break at lineEnd
+	 */
+	static int nextLine(ByteBuffer record, int lineEnd) {
+		final int limit = record.limit();
+		if (lineEnd >= limit) {
+			return limit;
+		}
+		if (record.get(lineEnd) == '\r' && lineEnd + 1 < limit && record.get(lineEnd + 1) == '\n') {
+			return lineEnd + 2;
+		}
+		return lineEnd + 1;
+	}
+
+	static int indexOf(ByteBuffer record, int start, int end, byte[] pattern) {
+		outer: for (int i = start; i <= end - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (record.get(i + j) != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	static String decode(ByteBuffer record, int start, int end) {
+		final char[] chars = new char[end - start];
+		for (int i = start; i < end; i++) {
+			chars[i - start] = (char) (record.get(i) & 0xFF);
+		}
+		return new String(chars);
+	}
+
+	static byte[] toBytes(String s) {
+		final byte[] bytes = new byte[s.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) s.charAt(i);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,132 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * values of one sd tag for all records of a file, dictionary encoded: every
+ * record stores the code of its value, each distinct value is stored once.
+ * Missing tags are stored as "".
+ */
+public class SDFTagColumn {
+
+	private final String label;
+	private final int[] codes;
+	private final String[] dictionary;
+
+	private SDFTagColumn(String label, int[] codes, String[] dictionary) {
+		this.label = label;
+		this.codes = codes;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * extracts the tags of all records in a single pass over the records
+	 *
+	 * @param records
+	 * @param index
+	 * @param labels
+	 * @return one column per label
+	 * @throws IOException
+	 */
+	public static SDFTagColumn[] build(ISDFRecordSource records, SDFOffsetIndex index, String... labels) throws IOException {
+		final byte[][] tags = SDFRecordHelper.toTags(labels);
+		final int size = index.getSize();
+		final int[][] codes = new int[labels.length][size];
+		final List<Map<String, Integer>> dictionaries = new ArrayList<Map<String, Integer>>();
+		for (int t = 0; t < labels.length; t++) {
+			dictionaries.add(new HashMap<String, Integer>());
+		}
+		for (int i = 0; i < size; i++) {
+			final String[] values = SDFRecordHelper.getTags(records.getRecord(index.getOffset(i), index.getOffset(i + 1)), tags);
+			for (int t = 0; t < labels.length; t++) {
+				final Map<String, Integer> dictionary = dictionaries.get(t);
+				Integer code = dictionary.get(values[t]);
+				if (code == null) {
+					code = dictionary.size();
+					dictionary.put(values[t], code);
+				}
+				codes[t][i] = code;
+			}
+		}
+		final SDFTagColumn[] columns = new SDFTagColumn[labels.length];
+		for (int t = 0; t < labels.length; t++) {
+			final String[] values = new String[dictionaries.get(t).size()];
+			for (final Map.Entry<String, Integer> entry : dictionaries.get(t).entrySet()) {
+				values[entry.getValue()] = entry.getKey();
+			}
+			columns[t] = new SDFTagColumn(labels[t], codes[t], values);
+		}
+		return columns;
+	}
+
+	public String getLabel() {
+		return this.label;
+	}
+
+	/**
+	 * returns the number of records
+	 *
+	 * @return
+	 */
+	public int getSize() {
+		return this.codes.length;
+	}
+
+	/**
+	 * returns the tag value of the ith record
+	 *
+	 * @param index
+	 * @return
+	 */
+	public String getValue(int index) {
+		return this.dictionary[this.codes[index]];
+	}
+
+	/**
+	 * returns the dictionary code of the ith record's value, codes are
+	 * numbered in order of first occurrence
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getCode(int index) {
+		return this.codes[index];
+	}
+
+	/**
+	 * returns the value of a dictionary code
+	 *
+	 * @param code
+	 * @return
+	 */
+	public String getDictionaryValue(int code) {
+		return this.dictionary[code];
+	}
+
+	/**
+	 * returns the number of distinct values
+	 *
+	 * @return
+	 */
+	public int getDictionarySize() {
+		return this.dictionary.length;
+	}
+
+	/**
+	 * returns all distinct values in order of first occurrence
+	 *
+	 * @return
+	 */
+	public Set<String> getValues() {
+		final Set<String> values = new LinkedHashSet<String>();
+		Collections.addAll(values, this.dictionary);
+		return values;
+	}
+}
@@ -0,0 +1,283 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+import org.openscience.cdk.AtomContainer;
+
+/**
+ * one pass reader on an MDL SD stream (pipes, stdin, gzip). Only the current
+ * record is kept in memory, so records have to be requested in order. The
+ * number of records is unknown until the stream is exhausted.
+ */
+public class StreamingMDLReader implements IMDLReader {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	private int limit = 0;
+
+	private byte[] record = new byte[BUFFER_SIZE];
+	private int recordLength = 0;
+	private int current = -1;
+	private boolean exhausted = false;
+	private boolean removeHydrogens = true;
+	private boolean fastParser = false;
+
+	/**
+	 * @param in
+	 *            stream of SD records, closed by {@link #close()}
+	 */
+	public StreamingMDLReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * opens a stream on the file, gzip compressed files are decompressed on
+	 * the fly
+	 *
+	 * @param sdf
+	 * @return
+	 * @throws IOException
+	 */
+	public static StreamingMDLReader open(File sdf) throws IOException {
+		return open(new FileInputStream(sdf));
+	}
+
+	/**
+	 * opens a reader on the stream, gzip compressed input is decompressed on
+	 * the fly
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static StreamingMDLReader open(InputStream in) throws IOException {
+		in = new BufferedInputStream(in, BUFFER_SIZE);
+		if (isGzip(in)) {
+			in = new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		return new StreamingMDLReader(in);
+	}
+
+	/**
+	 * checks the gzip magic number without consuming it
+	 *
+	 * @param in
+	 *            must support mark/reset
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isGzip(InputStream in) throws IOException {
+		in.mark(2);
+		final int b1 = in.read();
+		final int b2 = in.read();
+		in.reset();
+		return b1 == 0x1f && b2 == 0x8b;
+	}
+
+	@Override
+	public int getSize() {
+		return UNKNOWN_SIZE;
+	}
+
+	@Override
+	public boolean hasMol(int index) {
+		return this.moveTo(index);
+	}
+
+	@Override
+	public AtomContainer getMol(int index) {
+		if (!this.moveTo(index)) {
+			throw new IndexOutOfBoundsException("Stream ended before record " + index);
+		}
+		return MDLRecordParser.getMol(this.currentRecord(), this.removeHydrogens, this.fastParser);
+	}
+
+	@Override
+	public Callable<AtomContainer> getMolTask(int index) {
+		if (!this.moveTo(index)) {
+			throw new IndexOutOfBoundsException("Stream ended before record " + index);
+		}
+		final ByteBuffer record = ByteBuffer.wrap(Arrays.copyOf(this.record, this.recordLength)).asReadOnlyBuffer();
+		final boolean removeHydrogens = this.removeHydrogens;
+		final boolean fastParser = this.fastParser;
+		return new Callable<AtomContainer>() {
+			@Override
+			public AtomContainer call() {
+				return MDLRecordParser.getMol(record, removeHydrogens, fastParser);
+			}
+		};
+	}
+
+	@Override
+	public String getMDLMolString(int index) {
+		if (!this.moveTo(index)) {
+			return "";
+		}
+		return SDFRecordHelper.toMolString(this.currentRecord());
+	}
+
+	@Override
+	public String getLabel(int index, String label) {
+		if (!this.moveTo(index)) {
+			return "";
+		}
+		return SDFRecordHelper.getTag(this.currentRecord(), label);
+	}
+
+	/**
+	 * not available, labels are only known at the end of the stream
+	 */
+	@Override
+	public Set<String> getAllLabelClasses(String label) {
+		throw new UnsupportedOperationException("Label classes of a stream are unknown before it has been read");
+	}
+
+	@Override
+	public boolean isRemoveHydrogens() {
+		return this.removeHydrogens;
+	}
+
+	@Override
+	public void setRemoveHydrogens(boolean removeHydrogens) {
+		this.removeHydrogens = removeHydrogens;
+	}
+
+	@Override
+	public boolean isFastParser() {
+		return this.fastParser;
+	}
+
+	@Override
+	public void setFastParser(boolean fastParser) {
+		this.fastParser = fastParser;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+	/**
+	 * returns the bytes of the ith record including the $$$$ line, the buffer
+	 * is only valid until the next record is read
+	 *
+	 * @param index
+	 * @return null if the stream ended before
+	 */
+	ByteBuffer getRecord(int index) {
+		if (!this.moveTo(index)) {
+			return null;
+		}
+		return this.currentRecord();
+	}
+
+	private ByteBuffer currentRecord() {
+		return ByteBuffer.wrap(this.record, 0, this.recordLength).asReadOnlyBuffer();
+	}
+
+	/**
+	 * reads forward until the ith record is the current one
+	 *
+	 * @param index
+	 * @return false if the stream ended before
+	 */
+	private boolean moveTo(int index) {
+		if (index < this.current) {
+			throw new IllegalStateException("Record " + index + " has already been passed, streams can only be read in order");
+		}
+		try {
+			while (this.current < index) {
+				if (!this.readRecord()) {
+					return false;
+				}
+			}
+		} catch (final IOException e) {
+			e.printStackTrace();
+			this.exhausted = true;
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * reads the next record including its $$$$ line, a trailing record
+	 * without delimiter is ignored like in {@link RandomAccessMDLReader}
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean readRecord() throws IOException {
+		if (this.exhausted) {
+			return false;
+		}
+		this.recordLength = 0;
+		while (true) {
+			final int lineStart = this.recordLength;
+			if (!this.readLine()) {
+				this.exhausted = true;
+				return false;
+			}
+			if (this.recordLength - lineStart >= 4 && this.record[lineStart] == '$' && this.record[lineStart + 1] == '$'
+					&& this.record[lineStart + 2] == '$' && this.record[lineStart + 3] == '$') {
+				this.current++;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * appends the next line including its line break to the record
+	 *
+	 * @return false if the stream is exhausted
+	 * @throws IOException
+	 */
+	private boolean readLine() throws IOException {
+		boolean read = false;
+		while (true) {
+			if (this.position == this.limit && !this.fill()) {
+				return read;
+			}
+			final byte b = this.buffer[this.position++];
+			this.append(b);
+			read = true;
+			if (b == '\n') {
+				return true;
+			}
+			if (b == '\r') {
+				if ((this.position < this.limit || this.fill()) && this.buffer[this.position] == '\n') {
+					this.append(this.buffer[this.position++]);
+				}
+				return true;
+			}
+		}
+	}
+
+	private void append(byte b) {
+		if (this.recordLength == this.record.length) {
+			this.record = Arrays.copyOf(this.record, this.record.length * 2);
+		}
+		this.record[this.recordLength++] = b;
+	}
+
+	private boolean fill() throws IOException {
+		final int read = this.in.read(this.buffer);
+		if (read <= 0) {
+			return false;
+		}
+		this.position = 0;
+		this.limit = read;
+		return true;
+	}
+}
@@ -0,0 +1,97 @@
+package de.zbit.jcmapper.io.reader;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.openscience.cdk.AtomContainer;
+
+/**
+ * view on selected records of a random access reader, e.g. the molecules of
+ * an id list. Record i of the view is record indices[i] of the reader.
+ */
+public class SubsetMDLReader implements IMDLReader {
+
+	private final RandomAccessMDLReader reader;
+	private final int[] indices;
+
+	/**
+	 * @param reader
+	 *            closed by {@link #close()}
+	 * @param indices
+	 *            record indices of the reader
+	 */
+	public SubsetMDLReader(RandomAccessMDLReader reader, int[] indices) {
+		this.reader = reader;
+		this.indices = indices;
+	}
+
+	@Override
+	public int getSize() {
+		return this.indices.length;
+	}
+
+	@Override
+	public boolean hasMol(int index) {
+		return index >= 0 && index < this.indices.length;
+	}
+
+	@Override
+	public AtomContainer getMol(int index) {
+		return this.reader.getMol(this.indices[index]);
+	}
+
+	@Override
+	public Callable<AtomContainer> getMolTask(int index) {
+		return this.reader.getMolTask(this.indices[index]);
+	}
+
+	@Override
+	public String getMDLMolString(int index) {
+		return this.reader.getMDLMolString(this.indices[index]);
+	}
+
+	@Override
+	public String getLabel(int index, String label) {
+		return this.reader.getLabel(this.indices[index], label);
+	}
+
+	/**
+	 * returns the labels of the selected records only
+	 */
+	@Override
+	public Set<String> getAllLabelClasses(String label) {
+		this.reader.cacheTags(label);
+		final Set<String> tags = new HashSet<String>();
+		for (final int index : this.indices) {
+			tags.add(this.reader.getLabel(index, label));
+		}
+		return tags;
+	}
+
+	@Override
+	public boolean isRemoveHydrogens() {
+		return this.reader.isRemoveHydrogens();
+	}
+
+	@Override
+	public void setRemoveHydrogens(boolean removeHydrogens) {
+		this.reader.setRemoveHydrogens(removeHydrogens);
+	}
+
+	@Override
+	public boolean isFastParser() {
+		return this.reader.isFastParser();
+	}
+
+	@Override
+	public void setFastParser(boolean fastParser) {
+		this.reader.setFastParser(fastParser);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+}
@@ -12,7 +12,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
 
@@ -43,7 +43,7 @@ public class ExporterFullFingerprintCSV implements IExporter {
 	}
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 
 		try {
 			final FileWriter fw = new FileWriter(outputFile);
@@ -52,55 +52,61 @@ public class ExporterFullFingerprintCSV implements IExporter {
 			Long start = System.currentTimeMillis();
 			
 			ProgressBar progressBar = new ProgressBar(reader.getSize());
-			for (int i = 0; i < reader.getSize(); i++) {
+			FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+			try {
+				for (int i = 0; pipeline.hasNext(); i++) {
 			
-				IAtomContainer mol = reader.getMol(i);
-				FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-				String molLabel = (String) mol.getProperty(label);
-				if (molLabel != null) {
-					featureMap.setLabel(molLabel);
-				} else {
-					featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
-				}
-
-				Set<IFeature> featureKeys = featureMap.getKeySet();
-				featureCount = featureCount + featureKeys.size();
-				HashMap<Integer, IFeature> features = new HashMap<Integer, IFeature>();
-
-				for (IFeature feature : featureKeys) {
-					int hashCode = ExporterHelper.rehash(feature.hashCode(), this.hashSpace);
-					if (features.containsKey(hashCode)) {
-						collisions++;
+					FingerprintPipeline.Entry entry = pipeline.next();
+					IAtomContainer mol = entry.getMol();
+					FeatureMap featureMap = entry.getFeatureMap();
+					String molLabel = (String) mol.getProperty(label);
+					if (molLabel != null) {
+						featureMap.setLabel(molLabel);
 					} else {
-						features.put(hashCode, feature);
+						featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
 					}
-				}
 
-				fw.append(featureMap.getLabel() + ", ");
-				for (int h = 0; h < hashSpace; h++) {
-					if (h == hashSpace - 1) {
-						if (features.containsKey(h)) {
-							fw.append("1");
+					Set<IFeature> featureKeys = featureMap.getKeySet();
+					featureCount = featureCount + featureKeys.size();
+					HashMap<Integer, IFeature> features = new HashMap<Integer, IFeature>();
+
+					for (IFeature feature : featureKeys) {
+						int hashCode = ExporterHelper.rehash(feature.hashCode(), this.hashSpace);
+						if (features.containsKey(hashCode)) {
+							collisions++;
 						} else {
-							fw.append("0");
+							features.put(hashCode, feature);
 						}
-						continue;
 					}
 
-					if (features.containsKey(h)) {
-						fw.append("1, ");
-					} else {
-						fw.append("0, ");
+					fw.append(featureMap.getLabel() + ", ");
+					for (int h = 0; h < hashSpace; h++) {
+						if (h == hashSpace - 1) {
+							if (features.containsKey(h)) {
+								fw.append("1");
+							} else {
+								fw.append("0");
+							}
+							continue;
+						}
+
+						if (features.containsKey(h)) {
+							fw.append("1, ");
+						} else {
+							fw.append("0, ");
+						}
 					}
+					fw.append("\n");
+					progressBar.DisplayBar();
 				}
-				fw.append("\n");
-				progressBar.DisplayBar();
+			} finally {
+				pipeline.close();
 			}
 
 			fw.close();
 			Long end = System.currentTimeMillis();
 			System.out.println("Time elapsed: " + (end - start) + " ms");
-			ExporterHelper.printInfo(collisions, featureCount, reader.getSize());
+			ExporterHelper.printInfo(collisions, featureCount, progressBar.getCallNumber());
 
 		} catch (final IOException e) {
 			e.printStackTrace();
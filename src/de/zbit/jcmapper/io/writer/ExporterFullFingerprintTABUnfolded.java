@@ -18,7 +18,7 @@ import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.io.writer.feature.SortableFeature;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
@@ -29,7 +29,7 @@ public class ExporterFullFingerprintTABUnfolded implements IExporter {
 	}
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 
 		try {
 			final FileWriter fw = new FileWriter(outputFile);
@@ -43,46 +43,52 @@ public class ExporterFullFingerprintTABUnfolded implements IExporter {
 	        // }
 			
 			ProgressBar progressBar = new ProgressBar(reader.getSize());
-			for (int i = 0; i < reader.getSize(); i++) {
+			FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+			try {
+				for (int i = 0; pipeline.hasNext(); i++) {
 			
-				IAtomContainer mol = reader.getMol(i);
-				FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-				String molLabel = (String) mol.getProperty(label);
-				if (molLabel != null) {
-					featureMap.setLabel(molLabel);
-				} else {
-					featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
-				}
+					FingerprintPipeline.Entry entry = pipeline.next();
+					IAtomContainer mol = entry.getMol();
+					FeatureMap featureMap = entry.getFeatureMap();
+					String molLabel = (String) mol.getProperty(label);
+					if (molLabel != null) {
+						featureMap.setLabel(molLabel);
+					} else {
+						featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
+					}
 
-				Set<IFeature> featureKeys = featureMap.getKeySet();
-				featureCount = featureCount + featureKeys.size();
-				HashMap<Integer, SortableFeature> features = new HashMap<Integer, SortableFeature>();
+					Set<IFeature> featureKeys = featureMap.getKeySet();
+					featureCount = featureCount + featureKeys.size();
+					HashMap<Integer, SortableFeature> features = new HashMap<Integer, SortableFeature>();
 			
-				for (IFeature feature : featureKeys) {
-					int hashCode = feature.hashCode();
-					if (features.containsKey(hashCode)) {
-						collisions++;
-					} else {
-						features.put(hashCode, new SortableFeature(feature, useAromaticFlag));
+					for (IFeature feature : featureKeys) {
+						int hashCode = feature.hashCode();
+						if (features.containsKey(hashCode)) {
+							collisions++;
+						} else {
+							features.put(hashCode, new SortableFeature(feature, useAromaticFlag));
+						}
 					}
-				}
 
-				for (Integer hashCode : features.keySet()){
-					fw.append(featureMap.getLabel() + "\t");
-					fw.append(hashCode.toString()+ "\t");
-					SortableFeature feature=features.get(hashCode);
-					fw.append(feature.getValue()+ "\t");
-					String featureString=feature.getString(useAromaticFlag);
-					fw.append(featureString+ ", ");
-					fw.append("\n");
+					for (Integer hashCode : features.keySet()){
+						fw.append(featureMap.getLabel() + "\t");
+						fw.append(hashCode.toString()+ "\t");
+						SortableFeature feature=features.get(hashCode);
+						fw.append(feature.getValue()+ "\t");
+						String featureString=feature.getString(useAromaticFlag);
+						fw.append(featureString+ ", ");
+						fw.append("\n");
+					}
+					progressBar.DisplayBar();
 				}
-				progressBar.DisplayBar();
+			} finally {
+				pipeline.close();
 			}
 
 			fw.close();
 			Long end = System.currentTimeMillis();
 			System.out.println("Time elapsed: " + (end - start) + " ms");
-			ExporterHelper.printInfo(collisions, featureCount, reader.getSize());
+			ExporterHelper.printInfo(collisions, featureCount, progressBar.getCallNumber());
 
 		} catch (final IOException e) {
 			e.printStackTrace();
@@ -16,7 +16,7 @@ import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.features.PositionFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
 
@@ -45,12 +45,12 @@ public abstract class ExporterHashLinear extends ExporterLinear {
 		this.hashSpace = hashSpace;
 	}
 
-	protected abstract void writeHeader(FileWriter fw,EncodingFingerprint fingerprinter,String label,RandomAccessMDLReader reader);
+	protected abstract void writeHeader(FileWriter fw,EncodingFingerprint fingerprinter,String label,IMDLReader reader);
 
 	protected abstract int writeFingerprint(ArrayList<IFeature> fingerprint, FileWriter fw, String label);
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 		
 		try {
 			
@@ -62,44 +62,50 @@ public abstract class ExporterHashLinear extends ExporterLinear {
 			
 			ProgressBar progressBar = new ProgressBar(reader.getSize());
 			
- 			for (int i = 0; i < reader.getSize(); i++) {
-				IAtomContainer mol = reader.getMol(i);
-				FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-				String molLabel = (String) mol.getProperty(label);
-				if (molLabel != null) {
-					featureMap.setLabel(molLabel);
-				} else {
-					featureMap.setLabel("?");
-				}
+			FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+			try {
+				for (int i = 0; pipeline.hasNext(); i++) {
+					FingerprintPipeline.Entry entry = pipeline.next();
+					IAtomContainer mol = entry.getMol();
+					FeatureMap featureMap = entry.getFeatureMap();
+					String molLabel = (String) mol.getProperty(label);
+					if (molLabel != null) {
+						featureMap.setLabel(molLabel);
+					} else {
+						featureMap.setLabel("?");
+					}
 
-				Set<IFeature> keys = featureMap.getKeySet();
-				featureCount = featureCount + keys.size();
-				ArrayList<IFeature> featureBits = new ArrayList<IFeature>();
-				// rehash all features and pack them into a sortable list
+					Set<IFeature> keys = featureMap.getKeySet();
+					featureCount = featureCount + keys.size();
+					ArrayList<IFeature> featureBits = new ArrayList<IFeature>();
+					// rehash all features and pack them into a sortable list
 				
 				
 				
-				for (IFeature feature : keys) {
-					if (feature instanceof IFeature) {
-						if(feature instanceof PositionFeature){
-							featureBits.add(feature);
-						}else{
-							int localHash = ExporterHelper.rehash(feature.hashCode(), this.hashSpace);
-							IFeature hashedFeature = new HashedBitFeature(localHash);
-							featureBits.add(hashedFeature);
+					for (IFeature feature : keys) {
+						if (feature instanceof IFeature) {
+							if(feature instanceof PositionFeature){
+								featureBits.add(feature);
+							}else{
+								int localHash = ExporterHelper.rehash(feature.hashCode(), this.hashSpace);
+								IFeature hashedFeature = new HashedBitFeature(localHash);
+								featureBits.add(hashedFeature);
+							}
 						}
 					}
-				}
 				
-				progressBar.DisplayBar();
- 				Collections.sort(featureBits);
-				collisions += writeFingerprint(featureBits, fw, featureMap.getLabel());
+					progressBar.DisplayBar();
+	 				Collections.sort(featureBits);
+					collisions += writeFingerprint(featureBits, fw, featureMap.getLabel());
+				}
+			} finally {
+				pipeline.close();
 			}
 
 			fw.close();
 			Long end = System.currentTimeMillis();
 			System.out.println("Time elapsed: " + (end - start) + " ms");
-			ExporterHelper.printInfo(collisions, featureCount, reader.getSize());
+			ExporterHelper.printInfo(collisions, featureCount, progressBar.getCallNumber());
 
 		} catch (final IOException e) {
 			e.printStackTrace();
@@ -1,19 +1,27 @@
 package de.zbit.jcmapper.io.writer;
 
 
+import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Set;
+import java.util.TreeSet;
 
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 
 
 public class ExporterHashWeka extends ExporterHashLinear {
 	private int labelThreshold = 5;
+	/*
+	 * labels collected while the data block of a stream is spooled, null for
+	 * random access readers
+	 */
+	private Set<String> streamedLabels = null;
 
 	public void setLabelThreshold(int labelThreshold) {
 		// System.out.println("yes it works:"+labelThreshold);
@@ -28,8 +36,48 @@ public class ExporterHashWeka extends ExporterHashLinear {
 		super(hashSpace);
 	}
 
+	/**
+	 * the label classes of a stream are only known at its end, so the data
+	 * block is written to a temporary file first and appended to the header
+	 * afterwards
+	 */
+	@Override
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+		if (reader.getSize() != IMDLReader.UNKNOWN_SIZE) {
+			super.export(reader, fingerprinter, label, outputFile, useAromaticFlag);
+			return;
+		}
+		File dataFile = null;
+		try {
+			dataFile = File.createTempFile(outputFile.getName(), ".data");
+			this.streamedLabels = new TreeSet<String>();
+			super.export(reader, fingerprinter, label, dataFile, useAromaticFlag);
+
+			final FileWriter fw = new FileWriter(outputFile);
+			writeHeader(fw, getLabels(this.streamedLabels));
+			final FileReader data = new FileReader(dataFile);
+			final char[] buffer = new char[65536];
+			int read;
+			while ((read = data.read(buffer)) > 0) {
+				fw.write(buffer, 0, read);
+			}
+			data.close();
+			fw.close();
+		} catch (final IOException e) {
+			e.printStackTrace();
+		} finally {
+			this.streamedLabels = null;
+			if (dataFile != null) {
+				dataFile.delete();
+			}
+		}
+	}
+
 	@Override
 	protected int writeFingerprint(ArrayList<IFeature> fingerprint, FileWriter fw, String label) {
+		if (this.streamedLabels != null && !label.equals("?")) {
+			this.streamedLabels.add(label);
+		}
 		int collisions = 0;
 		int fingerPrintPos = 0;
 		try {
@@ -63,7 +111,15 @@ public class ExporterHashWeka extends ExporterHashLinear {
 	}
 
 	@Override
-	protected void writeHeader(FileWriter fw, EncodingFingerprint fingerprinter, String label, RandomAccessMDLReader reader) {
+	protected void writeHeader(FileWriter fw, EncodingFingerprint fingerprinter, String label, IMDLReader reader) {
+		if (this.streamedLabels != null) {
+			// header follows once the stream has been read
+			return;
+		}
+		writeHeader(fw, getLabels(label, reader));
+	}
+
+	private void writeHeader(FileWriter fw, String labels) {
 		try {
 			/*
 			 * there is a possibility to comment the export file
@@ -73,7 +129,7 @@ public class ExporterHashWeka extends ExporterHashLinear {
 			for (int i = 0; i <= super.getHashSpace(); i++) {
 				fw.append("@ATTRIBUTE\t" + "HASH-" + (i + "").trim() + "\t{0,1}\n");
 			}
-			fw.append("@ATTRIBUTE\tLABEL\t" + getLabels(label, reader) + "\n");
+			fw.append("@ATTRIBUTE\tLABEL\t" + labels + "\n");
 
 			fw.append("\n@DATA\n");
 		} catch (final IOException e) {
@@ -81,10 +137,13 @@ public class ExporterHashWeka extends ExporterHashLinear {
 		}
 	}
 
-	protected String getLabels(String label, RandomAccessMDLReader reader) {
+	protected String getLabels(String label, IMDLReader reader) {
+		return getLabels(reader.getAllLabelClasses(label));
+	}
+
+	protected String getLabels(Set<String> labelSet) {
 		String labels = "NUMERIC";
 
-		Set<String> labelSet = reader.getAllLabelClasses(label);
 		ArrayList<String> listLabels = new ArrayList<String>(labelSet);
 		Collections.sort(listLabels);
 
@@ -16,7 +16,7 @@ import de.zbit.jcmapper.distance.MatrixCalculator;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMapHelper;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
 public class ExporterLIBSVMMatrix implements IExporter {
@@ -32,22 +32,28 @@ public class ExporterLIBSVMMatrix implements IExporter {
 	}
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 		Long start = System.currentTimeMillis();
 		ArrayList<FeatureMap> featuremaps = new ArrayList<FeatureMap>();
 		
 		ProgressBar progressbar = new ProgressBar(reader.getSize());
-		for (int i = 0; i < reader.getSize(); i++) {
-			IAtomContainer mol = reader.getMol(i);
-			FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-			String molLabel = (String) mol.getProperty(label);
-			if (molLabel != null) {
-				featureMap.setLabel(molLabel);
-			} else {
-				featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
+		FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+		try {
+			for (int i = 0; pipeline.hasNext(); i++) {
+				FingerprintPipeline.Entry entry = pipeline.next();
+				IAtomContainer mol = entry.getMol();
+				FeatureMap featureMap = entry.getFeatureMap();
+				String molLabel = (String) mol.getProperty(label);
+				if (molLabel != null) {
+					featureMap.setLabel(molLabel);
+				} else {
+					featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
+				}
+				featuremaps.add(featureMap);
+				progressbar.DisplayBar();
 			}
-			featuremaps.add(featureMap);
-			progressbar.DisplayBar();
+		} finally {
+			pipeline.close();
 		}
 		FeatureMapHelper.printFeatureMapStatistics(featuremaps);
 		Long end = System.currentTimeMillis();
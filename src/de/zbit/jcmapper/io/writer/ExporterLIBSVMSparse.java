@@ -7,7 +7,7 @@ import java.util.ArrayList;
 
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 
 
 public class ExporterLIBSVMSparse extends ExporterHashLinear {
@@ -44,7 +44,7 @@ public class ExporterLIBSVMSparse extends ExporterHashLinear {
 	
 
 	@Override
-	protected void writeHeader(FileWriter fw, EncodingFingerprint fingerprinter,String label,RandomAccessMDLReader reader) {
+	protected void writeHeader(FileWriter fw, EncodingFingerprint fingerprinter,String label,IMDLReader reader) {
 		// TODO Auto-generated method stub
 		
 	}
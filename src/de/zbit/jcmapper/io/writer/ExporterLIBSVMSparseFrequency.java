@@ -8,7 +8,7 @@ import java.util.Iterator;
 
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 
 public class ExporterLIBSVMSparseFrequency extends ExporterHashLinear {
 
@@ -61,7 +61,7 @@ public class ExporterLIBSVMSparseFrequency extends ExporterHashLinear {
 	@Override
 	protected void writeHeader(FileWriter fw,
 			EncodingFingerprint fingerprinter, String label,
-			RandomAccessMDLReader reader) {
+			IMDLReader reader) {
 		// TODO Auto-generated method stub
 
 	}
@@ -20,7 +20,7 @@ import com.almworks.sqlite4java.SQLiteStatement;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.io.writer.feature.SortableFeature;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP;
@@ -30,7 +30,7 @@ public class ExporterNumericSQLite implements IExporter {
 
    @Override
    public void export(
-      RandomAccessMDLReader reader,
+      IMDLReader reader,
       EncodingFingerprint fingerprinter,
       String label,
       File outputFile,
@@ -80,106 +80,112 @@ public class ExporterNumericSQLite implements IExporter {
          cmpdCounter = 1;
       }
 
-      for (int i = 0; i < reader.getSize(); i++) {
-         IAtomContainer mol = reader.getMol(i);
-         FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-         String molLabel = (String) mol.getProperty(label);
-         if (molLabel != null) {
-            featureMap.setLabel(molLabel);
-            System.out.println(molLabel);
-         } else {
-            featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + cmpdCounter);
-            //System.out.println(ExporterHelper.getMolName(mol) + "_INDEX=" + cmpdCounter);
-         }
+      FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+      try {
+         for (int i = 0; pipeline.hasNext(); i++) {
+            FingerprintPipeline.Entry entry = pipeline.next();
+            IAtomContainer mol = entry.getMol();
+            FeatureMap featureMap = entry.getFeatureMap();
+            String molLabel = (String) mol.getProperty(label);
+            if (molLabel != null) {
+               featureMap.setLabel(molLabel);
+               System.out.println(molLabel);
+            } else {
+               featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + cmpdCounter);
+               //System.out.println(ExporterHelper.getMolName(mol) + "_INDEX=" + cmpdCounter);
+            }
 
-         String cmpdLabel = featureMap.getLabel();
-         String featureString = null;
-         int fpInteger = -1;
-         double fpValue = 0.0;
-         try {
-            db.exec("INSERT INTO " + tableCompounds + "(compoundid,compoundnbr) VALUES ('" + cmpdLabel + "','" + cmpdCounter + "');");
-            db.exec("BEGIN;");
-         } 
-         catch (SQLiteException e) {   
-            // compound exists, but for which fingerprint routine?
+            String cmpdLabel = featureMap.getLabel();
+            String featureString = null;
+            int fpInteger = -1;
+            double fpValue = 0.0;
             try {
-               st = db.prepare("SELECT compoundnbr FROM " + tableCompounds + " WHERE compoundid = ?");
-               st.bind(1, cmpdLabel);
-               int cmpdCounter2use=-1;
-               while (st.step()) {
-                  cmpdCounter2use=st.columnInt(0);
-               }
-               st = db.prepare("SELECT compoundnbr FROM " + tableFingerprint + " WHERE compoundnbr = ?");
-               st.bind(1, cmpdCounter2use);
-               while (st.step()) {
-                  cmpdCounter2use=st.columnInt(0);
-               }
-               System.out.println("Compound exists already, skipping " + fingerprinterName + " calculation for '" + cmpdLabel + "' (" + cmpdCounter2use + ")");
-               continue;
-               //skip this calculation routine and do not add anything to the DB
+               db.exec("INSERT INTO " + tableCompounds + "(compoundid,compoundnbr) VALUES ('" + cmpdLabel + "','" + cmpdCounter + "');");
+               db.exec("BEGIN;");
             } 
-            catch (SQLiteException e2) {       
-               //All fine compound does not encode this fingerprint
+            catch (SQLiteException e) {   
+               // compound exists, but for which fingerprint routine?
+               try {
+                  st = db.prepare("SELECT compoundnbr FROM " + tableCompounds + " WHERE compoundid = ?");
+                  st.bind(1, cmpdLabel);
+                  int cmpdCounter2use=-1;
+                  while (st.step()) {
+                     cmpdCounter2use=st.columnInt(0);
+                  }
+                  st = db.prepare("SELECT compoundnbr FROM " + tableFingerprint + " WHERE compoundnbr = ?");
+                  st.bind(1, cmpdCounter2use);
+                  while (st.step()) {
+                     cmpdCounter2use=st.columnInt(0);
+                  }
+                  System.out.println("Compound exists already, skipping " + fingerprinterName + " calculation for '" + cmpdLabel + "' (" + cmpdCounter2use + ")");
+                  continue;
+                  //skip this calculation routine and do not add anything to the DB
+               } 
+               catch (SQLiteException e2) {       
+                  //All fine compound does not encode this fingerprint
+               }
             }
-         }
          
-         Set<IFeature> featureKeys = featureMap.getKeySet();
-         HashMap<Integer, SortableFeature> features = new HashMap<Integer, SortableFeature>();
-         for (IFeature feature : featureKeys) {
-            int hashCode = feature.hashCode();
-            if (features.containsKey(hashCode)) {
-               collisions++;
-            } else {
-               features.put(hashCode, new SortableFeature(feature, useAromaticFlag));
+            Set<IFeature> featureKeys = featureMap.getKeySet();
+            HashMap<Integer, SortableFeature> features = new HashMap<Integer, SortableFeature>();
+            for (IFeature feature : featureKeys) {
+               int hashCode = feature.hashCode();
+               if (features.containsKey(hashCode)) {
+                  collisions++;
+               } else {
+                  features.put(hashCode, new SortableFeature(feature, useAromaticFlag));
+               }
             }
-         }
          
-         for (Integer hashCode : features.keySet()){
-            SortableFeature feature = features.get(hashCode);
-            fpInteger = hashCode;
-            featureString = feature.getString(useAromaticFlag);
-            fpValue = feature.getValue();
-            try {
-               if(storeFingerprintSimilarity && fingerprinterName.equals("ECFP")){
-            	  ECFPFeature eFeature = (ECFPFeature)feature.getFeature();
-                  IAtomContainer substructure = eFeature.representedSubstructure();
-            	  int nAtoms = substructure.getAtomCount();
-                  int nBonds = substructure.getBondCount();
-                  int iteration = eFeature.getIterationNumber();
-                  int parent = eFeature.getParent();
-                  int nDoubleBonds = 0;
-            	  for (int bi = 0; bi < nBonds; bi++) {
-                     IBond iBond = substructure.getBond(bi);
-                     if (iBond.getOrder() == IBond.Order.DOUBLE) {
-                        nDoubleBonds++;
+            for (Integer hashCode : features.keySet()){
+               SortableFeature feature = features.get(hashCode);
+               fpInteger = hashCode;
+               featureString = feature.getString(useAromaticFlag);
+               fpValue = feature.getValue();
+               try {
+                  if(storeFingerprintSimilarity && fingerprinterName.equals("ECFP")){
+               	  ECFPFeature eFeature = (ECFPFeature)feature.getFeature();
+                     IAtomContainer substructure = eFeature.representedSubstructure();
+               	  int nAtoms = substructure.getAtomCount();
+                     int nBonds = substructure.getBondCount();
+                     int iteration = eFeature.getIterationNumber();
+                     int parent = eFeature.getParent();
+                     int nDoubleBonds = 0;
+               	  for (int bi = 0; bi < nBonds; bi++) {
+                        IBond iBond = substructure.getBond(bi);
+                        if (iBond.getOrder() == IBond.Order.DOUBLE) {
+                           nDoubleBonds++;
+                        }
                      }
+               	  double fpp[] = ((ECFPFeature)feature.getFeature()).getBcutProperties();
+               	  db.exec("INSERT INTO " + tableDictionary + "(encoding, fp, bc1, bc2, bc3, bc4, bc5, bc6,doublebonds,atoms,iteration,parent) VALUES ('" + featureString + "','" + fpInteger + "','" + fpp[0] + "','" + fpp[1] + "','" + fpp[2] + "','" + fpp[3] + "','" + fpp[4] + "','" + fpp[5] + "','"  + nDoubleBonds + "','" + nAtoms + "','" + iteration  + "','" + parent + "');");
+                  } else{
+               	   db.exec("INSERT INTO " + tableDictionary + "(encoding, fp) VALUES ('" + featureString + "','" + fpInteger + "');");
                   }
-            	  double fpp[] = ((ECFPFeature)feature.getFeature()).getBcutProperties();
-            	  db.exec("INSERT INTO " + tableDictionary + "(encoding, fp, bc1, bc2, bc3, bc4, bc5, bc6,doublebonds,atoms,iteration,parent) VALUES ('" + featureString + "','" + fpInteger + "','" + fpp[0] + "','" + fpp[1] + "','" + fpp[2] + "','" + fpp[3] + "','" + fpp[4] + "','" + fpp[5] + "','"  + nDoubleBonds + "','" + nAtoms + "','" + iteration  + "','" + parent + "');");
-               } else{
-            	   db.exec("INSERT INTO " + tableDictionary + "(encoding, fp) VALUES ('" + featureString + "','" + fpInteger + "');");
+               } 
+               catch (SQLiteException e) {       
+                  // skipping duplicates
+               }
+               try {
+                  db.exec("INSERT INTO " + tableFingerprint + "(compoundnbr, fp, value) VALUES ('" + cmpdCounter + "','" + fpInteger + "','" + fpValue + "');");
+               } 
+               catch (SQLiteException e) {       
+                  System.out.println(e);
                }
-            } 
-            catch (SQLiteException e) {       
-               // skipping duplicates
             }
+         
             try {
-               db.exec("INSERT INTO " + tableFingerprint + "(compoundnbr, fp, value) VALUES ('" + cmpdCounter + "','" + fpInteger + "','" + fpValue + "');");
+               db.exec("COMMIT;");
             } 
-            catch (SQLiteException e) {       
+            catch (SQLiteException e) {
                System.out.println(e);
+               e.printStackTrace();
             }
+            progressBar.DisplayBar();
+            cmpdCounter = cmpdCounter + 1;
          }
-         
-         try {
-            db.exec("COMMIT;");
-         } 
-         catch (SQLiteException e) {
-            System.out.println(e);
-            e.printStackTrace();
-         }
-         progressBar.DisplayBar();
-         cmpdCounter = cmpdCounter + 1;
+      } finally {
+         pipeline.close();
       }
 
       Long end = null;
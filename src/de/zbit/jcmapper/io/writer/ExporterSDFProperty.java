@@ -17,7 +17,7 @@ import org.openscience.cdk.io.SDFWriter;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
 
@@ -62,7 +62,7 @@ public class ExporterSDFProperty implements IExporter {
 	}
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 		
 		try {
 			
@@ -73,40 +73,46 @@ public class ExporterSDFProperty implements IExporter {
 			
 			ProgressBar progressBar = new ProgressBar(reader.getSize());
 			
- 			for (int i = 0; i < reader.getSize(); i++) {
-				IAtomContainer mol = reader.getMol(i);
-				FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-				String molLabel = (String) mol.getProperty(label);
-				if (molLabel != null) {
-					featureMap.setLabel(molLabel);
-				} else {
-					featureMap.setLabel("?");
-				}
+			FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+			try {
+				for (int i = 0; pipeline.hasNext(); i++) {
+					FingerprintPipeline.Entry entry = pipeline.next();
+					IAtomContainer mol = entry.getMol();
+					FeatureMap featureMap = entry.getFeatureMap();
+					String molLabel = (String) mol.getProperty(label);
+					if (molLabel != null) {
+						featureMap.setLabel(molLabel);
+					} else {
+						featureMap.setLabel("?");
+					}
 
-				Set<IFeature> keys = featureMap.getKeySet();
-				featureCount = featureCount + keys.size();
-				ArrayList<IFeature> featureBits = new ArrayList<IFeature>();
-				// rehash all features and pack them into a sortable list
-				for (IFeature feature : keys) {
-					if (feature instanceof IFeature) {
-						int localHash = ExporterHelper.rehash(feature.hashCode(), this.hashSpace);
-						IFeature hashedFeature = new HashedBitFeature(localHash);
-						featureBits.add(hashedFeature);
+					Set<IFeature> keys = featureMap.getKeySet();
+					featureCount = featureCount + keys.size();
+					ArrayList<IFeature> featureBits = new ArrayList<IFeature>();
+					// rehash all features and pack them into a sortable list
+					for (IFeature feature : keys) {
+						if (feature instanceof IFeature) {
+							int localHash = ExporterHelper.rehash(feature.hashCode(), this.hashSpace);
+							IFeature hashedFeature = new HashedBitFeature(localHash);
+							featureBits.add(hashedFeature);
+						}
 					}
-				}
 				
-				progressBar.DisplayBar();
- 				Collections.sort(featureBits);
-				String fp = getFingerprint(featureBits);
-				mol.setProperties(mol.getProperties());
-				mol.setProperty("Fingerprint", fp);
-				sdw.write(mol);
+					progressBar.DisplayBar();
+	 				Collections.sort(featureBits);
+					String fp = getFingerprint(featureBits);
+					mol.setProperties(mol.getProperties());
+					mol.setProperty("Fingerprint", fp);
+					sdw.write(mol);
+				}
+			} finally {
+				pipeline.close();
 			}
 
 			sdw.close();
 			Long end = System.currentTimeMillis();
 			System.out.println("Time elapsed: " + (end - start) + " ms");
-			ExporterHelper.printInfo(collisions, featureCount, reader.getSize());
+			ExporterHelper.printInfo(collisions, featureCount, progressBar.getCallNumber());
 
 		} catch (final IOException e) {
 			e.printStackTrace();
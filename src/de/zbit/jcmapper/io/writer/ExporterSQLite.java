@@ -18,14 +18,14 @@ import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.io.writer.feature.SortableFeature;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
 public class ExporterSQLite implements IExporter {
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 		// WARNING: This is extremely slow, so beware or try doing some parts in memory
 		//          For now this scales to any size, since it operates fully on SQL queries, but
 		//          this slows down things.
@@ -97,98 +97,104 @@ public class ExporterSQLite implements IExporter {
 			cmpdCounter=1;
 		}
 
-		for (int i = 0; i < reader.getSize(); i++) {
-			IAtomContainer mol = reader.getMol(i);
-			FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-			String molLabel = (String) mol.getProperty(label);
-			if (molLabel != null) {
-				featureMap.setLabel(molLabel);
-			} else {
-				featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + cmpdCounter);
-			}
-
-			String cmpdLabel=featureMap.getLabel();
-			String featureString=null;
-			int fpInteger=-1;
-			try {
-				db.exec("INSERT INTO "+tableCompounds+"(compoundid,compoundnbr) VALUES ('"+cmpdLabel+"','"+cmpdCounter+"');");
-				if(createPivotedTable){
-					db.exec("INSERT INTO "+tableFingerprintPivoted+"(compoundid,"+cmpdLabel+") VALUES ('"+cmpdLabel+"','"+cmpdCounter+"');");
+		FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+		try {
+			for (int i = 0; pipeline.hasNext(); i++) {
+				FingerprintPipeline.Entry entry = pipeline.next();
+				IAtomContainer mol = entry.getMol();
+				FeatureMap featureMap = entry.getFeatureMap();
+				String molLabel = (String) mol.getProperty(label);
+				if (molLabel != null) {
+					featureMap.setLabel(molLabel);
+				} else {
+					featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + cmpdCounter);
 				}
-				db.exec("BEGIN;");
-			} 
-			catch (SQLiteException e) 
-			{   
-				// compound exists, but for which fingerprint routine?
+
+				String cmpdLabel=featureMap.getLabel();
+				String featureString=null;
+				int fpInteger=-1;
 				try {
-					st=db.prepare("SELECT compoundnbr FROM "+tableCompounds+" WHERE compoundid = ?");
-					st.bind(1, cmpdLabel);
-					int cmpdCounter2use=-1;
-					while (st.step()) {
-						cmpdCounter2use=st.columnInt(0);
+					db.exec("INSERT INTO "+tableCompounds+"(compoundid,compoundnbr) VALUES ('"+cmpdLabel+"','"+cmpdCounter+"');");
+					if(createPivotedTable){
+						db.exec("INSERT INTO "+tableFingerprintPivoted+"(compoundid,"+cmpdLabel+") VALUES ('"+cmpdLabel+"','"+cmpdCounter+"');");
 					}
-					st=db.prepare("SELECT compoundnbr FROM "+tableFingerprint+" WHERE compoundnbr = ?");
-					st.bind(1, cmpdCounter2use);
-					while (st.step()) {
-						cmpdCounter2use=st.columnInt(0);
-					}
-					System.out.println("Compound exists already, skipping "+fingerprinterName+" calculation for '"+cmpdLabel+"' ("+cmpdCounter2use+")");
-					continue;
-					//skip this calculation routine and do not add anything to the DB
+					db.exec("BEGIN;");
 				} 
-				catch (SQLiteException e2) 
-				{       
-					//All fine compound does not encode this fingerprint
+				catch (SQLiteException e) 
+				{   
+					// compound exists, but for which fingerprint routine?
+					try {
+						st=db.prepare("SELECT compoundnbr FROM "+tableCompounds+" WHERE compoundid = ?");
+						st.bind(1, cmpdLabel);
+						int cmpdCounter2use=-1;
+						while (st.step()) {
+							cmpdCounter2use=st.columnInt(0);
+						}
+						st=db.prepare("SELECT compoundnbr FROM "+tableFingerprint+" WHERE compoundnbr = ?");
+						st.bind(1, cmpdCounter2use);
+						while (st.step()) {
+							cmpdCounter2use=st.columnInt(0);
+						}
+						System.out.println("Compound exists already, skipping "+fingerprinterName+" calculation for '"+cmpdLabel+"' ("+cmpdCounter2use+")");
+						continue;
+						//skip this calculation routine and do not add anything to the DB
+					} 
+					catch (SQLiteException e2) 
+					{       
+						//All fine compound does not encode this fingerprint
+					}
 				}
-			}
 			
-			Set<IFeature> featureKeys = featureMap.getKeySet();
-			HashMap<Integer, SortableFeature> features = new HashMap<Integer, SortableFeature>();
-			for (IFeature feature : featureKeys) {
-				int hashCode = feature.hashCode();
-				if (features.containsKey(hashCode)) {
-					collisions++;
-				} else {
-					features.put(hashCode, new SortableFeature(feature, useAromaticFlag));
+				Set<IFeature> featureKeys = featureMap.getKeySet();
+				HashMap<Integer, SortableFeature> features = new HashMap<Integer, SortableFeature>();
+				for (IFeature feature : featureKeys) {
+					int hashCode = feature.hashCode();
+					if (features.containsKey(hashCode)) {
+						collisions++;
+					} else {
+						features.put(hashCode, new SortableFeature(feature, useAromaticFlag));
+					}
 				}
-			}
 			
-			featureString="";
-			for (Integer hashCode : features.keySet()){
-				SortableFeature feature=features.get(hashCode);
-				fpInteger=hashCode;
-				//DISABLED, since time complexity bottleneck
-				//USE ExporterNumericSQLite is really needed
-				//featureString=feature.getString(useAromaticFlag) + ":" + df.format(feature.getValue());
-				//featureString=feature.getString(useAromaticFlag);
-				double fpValue = feature.getValue();
-				try {
-					db.exec("INSERT INTO "+tableDictionary+"(encoding, fp) VALUES ('"+featureString+"','"+fpInteger+"');");
-				} 
-				catch (SQLiteException e) 
-				{       
-					// skipping duplicates
+				featureString="";
+				for (Integer hashCode : features.keySet()){
+					SortableFeature feature=features.get(hashCode);
+					fpInteger=hashCode;
+					//DISABLED, since time complexity bottleneck
+					//USE ExporterNumericSQLite is really needed
+					//featureString=feature.getString(useAromaticFlag) + ":" + df.format(feature.getValue());
+					//featureString=feature.getString(useAromaticFlag);
+					double fpValue = feature.getValue();
+					try {
+						db.exec("INSERT INTO "+tableDictionary+"(encoding, fp) VALUES ('"+featureString+"','"+fpInteger+"');");
+					} 
+					catch (SQLiteException e) 
+					{       
+						// skipping duplicates
+					}
+					//System.out.println("Details: encoding='"+featureString+"', fp='"+fpString+"'");
+					try {
+						db.exec("INSERT INTO "+tableFingerprint+"(compoundnbr, fp, value) VALUES ('"+cmpdCounter+"','"+fpInteger+"','"+fpValue+"');");
+					} 
+					catch (SQLiteException e) 
+					{       
+						System.out.println(e);
+					}
 				}
-				//System.out.println("Details: encoding='"+featureString+"', fp='"+fpString+"'");
+			
 				try {
-					db.exec("INSERT INTO "+tableFingerprint+"(compoundnbr, fp, value) VALUES ('"+cmpdCounter+"','"+fpInteger+"','"+fpValue+"');");
+					db.exec("COMMIT;");
 				} 
 				catch (SQLiteException e) 
 				{       
 					System.out.println(e);
 				}
-			}
+				progressBar.DisplayBar();
 			
-			try {
-				db.exec("COMMIT;");
-			} 
-			catch (SQLiteException e) 
-			{       
-				System.out.println(e);
+				cmpdCounter=cmpdCounter+1;
 			}
-			progressBar.DisplayBar();
-			
-			cmpdCounter=cmpdCounter+1;
+		} finally {
+			pipeline.close();
 		}
 
 		Long end = null;
@@ -15,7 +15,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.io.writer.feature.SortableFeature;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
@@ -36,19 +36,23 @@ public class ExporterSparseNominalWeka implements IExporter {
 	 * @param fingerprinter
 	 * @return
 	 */
-	private TreeMap<IFeature, Integer> collectGlobalFeatures(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter) {
+	private TreeMap<IFeature, Integer> collectGlobalFeatures(IMDLReader reader, EncodingFingerprint fingerprinter) {
 		// first round: collect all features
 		
 		TreeMap<IFeature, Integer> globalFeatureHashMap = new TreeMap<IFeature, Integer>();
-		for (int i = 0; i < reader.getSize(); i++) {
-			IAtomContainer mol = reader.getMol(i);
-			FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-			Set<IFeature> keys = featureMap.getKeySet();
-			Iterator<IFeature> featureIterator = keys.iterator();
-			while (featureIterator.hasNext()) {
-				IFeature currentFeature = featureIterator.next();
-				globalFeatureHashMap.put(currentFeature, 0);
+		FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+		try {
+			for (int i = 0; pipeline.hasNext(); i++) {
+				FeatureMap featureMap = pipeline.next().getFeatureMap();
+				Set<IFeature> keys = featureMap.getKeySet();
+				Iterator<IFeature> featureIterator = keys.iterator();
+				while (featureIterator.hasNext()) {
+					IFeature currentFeature = featureIterator.next();
+					globalFeatureHashMap.put(currentFeature, 0);
+				}
 			}
+		} finally {
+			pipeline.close();
 		}
 
 		// assign indices 1,...,n to the n features found
@@ -68,7 +72,7 @@ public class ExporterSparseNominalWeka implements IExporter {
 	/*
 	 * write a ARFF header
 	 */
-	private void writeHeader(TreeMap<IFeature, Integer> map, FileWriter fw, RandomAccessMDLReader reader, String label, boolean useAromaticFlag) throws IOException {
+	private void writeHeader(TreeMap<IFeature, Integer> map, FileWriter fw, IMDLReader reader, String label, boolean useAromaticFlag) throws IOException {
 		Set<IFeature> keys = map.keySet();
 		fw.append("@relation	MOLECULE\n");
 		Iterator<IFeature> iter = keys.iterator();
@@ -80,10 +84,16 @@ public class ExporterSparseNominalWeka implements IExporter {
 	}
 
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 
 		int collisions = 0;
 
+		if (reader.getSize() == IMDLReader.UNKNOWN_SIZE) {
+			System.out.println("Format " + ExporterFactory.ExporterType.WEKA_NOMINAL
+					+ " reads the input twice and needs a random access MDL SD file, not a stream.");
+			return;
+		}
+
 		Long start = System.currentTimeMillis();
 		
 		
@@ -94,36 +104,42 @@ public class ExporterSparseNominalWeka implements IExporter {
 			TreeMap<IFeature, Integer> globalFeatureHashMap = collectGlobalFeatures(reader, fingerprinter);
 			writeHeader(globalFeatureHashMap, fw, reader, label, useAromaticFlag);
 
-			for (int i = 0; i < reader.getSize(); i++) {
-				IAtomContainer mol = reader.getMol(i);
-				FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-				String molLabel = (String) mol.getProperty(label);
-				if (molLabel != null) {
-					featureMap.setLabel(molLabel);
-				} else {
-					featureMap.setLabel("?");
-				}
+			FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+			try {
+				for (int i = 0; pipeline.hasNext(); i++) {
+					FingerprintPipeline.Entry entry = pipeline.next();
+					IAtomContainer mol = entry.getMol();
+					FeatureMap featureMap = entry.getFeatureMap();
+					String molLabel = (String) mol.getProperty(label);
+					if (molLabel != null) {
+						featureMap.setLabel(molLabel);
+					} else {
+						featureMap.setLabel("?");
+					}
 
-				ArrayList<SortableFeature> Features = new ArrayList<SortableFeature>();
-				Set<IFeature> keys = featureMap.getKeySet();
-				for (IFeature feature : keys) {
-					if (feature instanceof IFeature) {
-						Features.add(new SortableFeature(feature,useAromaticFlag));
+					ArrayList<SortableFeature> Features = new ArrayList<SortableFeature>();
+					Set<IFeature> keys = featureMap.getKeySet();
+					for (IFeature feature : keys) {
+						if (feature instanceof IFeature) {
+							Features.add(new SortableFeature(feature,useAromaticFlag));
+						}
 					}
-				}
 
-				Collections.sort(Features);
+					Collections.sort(Features);
 
-				fw.append("{");
-				for (SortableFeature feature : Features) {
-					int index = globalFeatureHashMap.get(feature);
-					fw.append(" " + index + " 1,");
-				}				
+					fw.append("{");
+					for (SortableFeature feature : Features) {
+						int index = globalFeatureHashMap.get(feature);
+						fw.append(" " + index + " 1,");
+					}				
 
-				fw.append(featureMap.getLabel());
-				fw.append("}");
-				fw.append("\n");
-				progressBar.DisplayBar();
+					fw.append(featureMap.getLabel());
+					fw.append("}");
+					fw.append("\n");
+					progressBar.DisplayBar();
+				}
+			} finally {
+				pipeline.close();
 			}
 			Long end = System.currentTimeMillis();
 			System.out.println("Time elapsed: " + (end - start) + " ms");
@@ -134,7 +150,7 @@ public class ExporterSparseNominalWeka implements IExporter {
 		}
 	}
 
-	protected String getLabels(String label, RandomAccessMDLReader reader) {
+	protected String getLabels(String label, IMDLReader reader) {
 		String labels = "NUMERIC";
 
 		Set<String> labelSet = reader.getAllLabelClasses(label);
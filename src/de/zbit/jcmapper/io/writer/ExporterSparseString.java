@@ -14,7 +14,7 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
 import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
 import de.zbit.jcmapper.fingerprinters.features.IFeature;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 import de.zbit.jcmapper.io.writer.feature.SortableFeature;
 import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 
@@ -23,7 +23,7 @@ import de.zbit.jcmapper.tools.progressbar.ProgressBar;
 public class ExporterSparseString implements IExporter {
  
 	@Override
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag) {
 
 		try {
 			final FileWriter fw = new FileWriter(outputFile);
@@ -34,39 +34,45 @@ public class ExporterSparseString implements IExporter {
 			Long start = System.currentTimeMillis();
 			
 			ProgressBar progressBar = new ProgressBar(reader.getSize());
-			for (int i = 0; i < reader.getSize(); i++) {
-				IAtomContainer mol = reader.getMol(i);
-				FeatureMap featureMap = new FeatureMap(fingerprinter.getFingerprint(mol));
-				String molLabel = (String) mol.getProperty(label);
-				if (molLabel != null) {
-					featureMap.setLabel(molLabel);
-				} else {
-					featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
-				}
+			FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+			try {
+				for (int i = 0; pipeline.hasNext(); i++) {
+					FingerprintPipeline.Entry entry = pipeline.next();
+					IAtomContainer mol = entry.getMol();
+					FeatureMap featureMap = entry.getFeatureMap();
+					String molLabel = (String) mol.getProperty(label);
+					if (molLabel != null) {
+						featureMap.setLabel(molLabel);
+					} else {
+						featureMap.setLabel(ExporterHelper.getMolName(mol) + "_INDEX=" + i);
+					}
 
-				//IFeature[] keys = (IFeature[]) featureMap.getKeySet().toArray();
-				Set<IFeature> keys =   featureMap.getKeySet();
-				ArrayList<SortableFeature> Features = new ArrayList<SortableFeature>();
+					//IFeature[] keys = (IFeature[]) featureMap.getKeySet().toArray();
+					Set<IFeature> keys =   featureMap.getKeySet();
+					ArrayList<SortableFeature> Features = new ArrayList<SortableFeature>();
 
-				for (IFeature feature : keys) {
-					if (feature instanceof IFeature) {
-						Features.add(new SortableFeature(feature,useAromaticFlag));
+					for (IFeature feature : keys) {
+						if (feature instanceof IFeature) {
+							Features.add(new SortableFeature(feature,useAromaticFlag));
+						}
 					}
-				}
 
-				Collections.sort(Features);
-				fw.append(featureMap.getLabel());
-				int lastUsedIndex = 0;
-				for (SortableFeature feature : Features) {
-					if (feature.getHash() == lastUsedIndex) {
-						collisions++;
-						continue;
+					Collections.sort(Features);
+					fw.append(featureMap.getLabel());
+					int lastUsedIndex = 0;
+					for (SortableFeature feature : Features) {
+						if (feature.getHash() == lastUsedIndex) {
+							collisions++;
+							continue;
+						}
+						fw.append("\t" + feature.getString(useAromaticFlag) + ":" + df.format(feature.getValue()));
+						lastUsedIndex = feature.getHash();
 					}
-					fw.append("\t" + feature.getString(useAromaticFlag) + ":" + df.format(feature.getValue()));
-					lastUsedIndex = feature.getHash();
+					fw.append("\n");
+					progressBar.DisplayBar();
 				}
-				fw.append("\n");
-				progressBar.DisplayBar();
+			} finally {
+				pipeline.close();
 			}
 			Long end = System.currentTimeMillis();
 			System.out.println("Time elapsed: " + (end - start) + " ms");
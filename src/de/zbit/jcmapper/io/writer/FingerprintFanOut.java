@@ -0,0 +1,276 @@
+package de.zbit.jcmapper.io.writer;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
+import de.zbit.jcmapper.io.reader.IMDLReader;
+
+/**
+ * exports several fingerprints of the molecules of a reader in a single pass.
+ * Each molecule is read, prepared and fingerprinted by all fingerprinters
+ * once, so they share the molecule and what they cache for it (e.g. its
+ * topology and pharmacophore points). Every exporter runs in a thread of its
+ * own on a {@link Branch}, a reader whose {@link FingerprintPipeline} passes
+ * on the fingerprints of the branch. The molecules are copied for each
+ * branch, as exporters may set properties.
+ *
+ * <pre>
+ * FingerprintFanOut fanOut = new FingerprintFanOut(reader, fingerprinters);
+ * fanOut.export(exporters, label, outputFiles, useAromaticFlag);
+ * </pre>
+ */
+public class FingerprintFanOut {
+
+	private static final int BRANCH_QUEUE_DEPTH = 16;
+
+	private final IMDLReader reader;
+	private final EncodingFingerprint[] fingerprinters;
+	private final Branch[] branches;
+
+	/**
+	 * @param reader
+	 * @param fingerprinters
+	 *            one for each exporter
+	 */
+	public FingerprintFanOut(IMDLReader reader, EncodingFingerprint[] fingerprinters) {
+		this.reader = reader;
+		this.fingerprinters = fingerprinters;
+		this.branches = new Branch[fingerprinters.length];
+		for (int f = 0; f < fingerprinters.length; f++) {
+			this.branches[f] = new Branch(fingerprinters[f]);
+		}
+	}
+
+	/**
+	 * returns the reader handed to the fth exporter
+	 *
+	 * @param f
+	 * @return
+	 */
+	public IMDLReader getBranch(int f) {
+		return this.branches[f];
+	}
+
+	/**
+	 * runs the fth exporter on the fingerprints of the fth fingerprinter and
+	 * writes them to the fth file, returns when all exporters are done
+	 *
+	 * @param exporters
+	 * @param label
+	 * @param outputFiles
+	 * @param useAromaticFlag
+	 */
+	public void export(final IExporter[] exporters, final String label, final File[] outputFiles,
+			final boolean useAromaticFlag) {
+		final Thread[] threads = new Thread[exporters.length];
+		for (int f = 0; f < exporters.length; f++) {
+			final int branch = f;
+			threads[f] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						exporters[branch].export(branches[branch], fingerprinters[branch], label, outputFiles[branch],
+								useAromaticFlag);
+					} finally {
+						branches[branch].finish();
+					}
+				}
+			}, "jCMapper-exporter-" + f);
+			threads[f].start();
+		}
+
+		final FingerprintPipeline pipeline = new FingerprintPipeline(this.reader, this.fingerprinters,
+				FingerprintPipeline.getDefaultThreads(), FingerprintPipeline.getDefaultQueueDepth());
+		try {
+			while (pipeline.hasNext()) {
+				final FingerprintPipeline.Entry entry = pipeline.next();
+				for (int f = 0; f < this.branches.length; f++) {
+					this.branches[f].put(new FingerprintPipeline.Entry(entry.getIndex(), copy(entry.getMol()), entry
+							.getFeatureMap(f), entry.isExceeded(f)));
+				}
+			}
+		} finally {
+			pipeline.close();
+			for (final Branch branch : this.branches) {
+				branch.end();
+			}
+			for (final Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * copies the molecule with its own properties, atoms and bonds are shared
+	 */
+	private static IAtomContainer copy(IAtomContainer mol) {
+		final AtomContainer copy = new AtomContainer(mol);
+		copy.setID(mol.getID());
+		copy.setFlags(mol.getFlags());
+		copy.setProperties(mol.getProperties());
+		return copy;
+	}
+
+	/**
+	 * the reader of one exporter. The first pipeline opened on it receives the
+	 * fingerprints calculated by the fan out, later pipelines read the source
+	 * again. Other calls are passed on to the source reader.
+	 */
+	public class Branch implements IMDLReader {
+		private final EncodingFingerprint fingerprinter;
+		private final FingerprintPipeline.Entry end = new FingerprintPipeline.Entry(-1, null, null, false);
+		private final BlockingQueue<FingerprintPipeline.Entry> queue = new ArrayBlockingQueue<FingerprintPipeline.Entry>(
+				BRANCH_QUEUE_DEPTH);
+		private volatile boolean closed = false;
+		private boolean opened = false;
+		private FingerprintPipeline.Entry pending = null;
+
+		private Branch(EncodingFingerprint fingerprinter) {
+			this.fingerprinter = fingerprinter;
+		}
+
+		/**
+		 * starts the pass over the fingerprints of the fan out
+		 *
+		 * @param fingerprinter
+		 * @return null if the pass has already been made or the fingerprints
+		 *         are not the ones of the fingerprinter
+		 */
+		synchronized Branch open(EncodingFingerprint fingerprinter) {
+			if (this.opened || fingerprinter != this.fingerprinter) {
+				return null;
+			}
+			this.opened = true;
+			return this;
+		}
+
+		IMDLReader getSource() {
+			return reader;
+		}
+
+		boolean hasNext() {
+			if (this.pending == null) {
+				try {
+					this.pending = this.queue.take();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the next molecule");
+				}
+			}
+			return this.pending != this.end;
+		}
+
+		FingerprintPipeline.Entry next() {
+			if (!this.hasNext()) {
+				throw new IllegalStateException("No more molecules");
+			}
+			final FingerprintPipeline.Entry entry = this.pending;
+			this.pending = null;
+			return entry;
+		}
+
+		/**
+		 * queues an entry unless the exporter has stopped reading, waits while
+		 * the exporter is behind
+		 */
+		private void put(FingerprintPipeline.Entry entry) {
+			try {
+				while (!this.closed) {
+					if (this.queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+						return;
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while passing on molecule " + entry.getIndex());
+			}
+		}
+
+		private void end() {
+			this.put(this.end);
+		}
+
+		/**
+		 * the exporter is done with the fingerprints of the fan out, later
+		 * entries are dropped
+		 */
+		void finish() {
+			this.closed = true;
+			this.queue.clear();
+		}
+
+		/**
+		 * the source reader is closed by its owner
+		 */
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public int getSize() {
+			return reader.getSize();
+		}
+
+		@Override
+		public boolean hasMol(int index) {
+			return reader.hasMol(index);
+		}
+
+		@Override
+		public AtomContainer getMol(int index) {
+			return reader.getMol(index);
+		}
+
+		@Override
+		public Callable<AtomContainer> getMolTask(int index) {
+			return reader.getMolTask(index);
+		}
+
+		@Override
+		public String getMDLMolString(int index) {
+			return reader.getMDLMolString(index);
+		}
+
+		@Override
+		public String getLabel(int index, String label) {
+			return reader.getLabel(index, label);
+		}
+
+		@Override
+		public Set<String> getAllLabelClasses(String label) {
+			return reader.getAllLabelClasses(label);
+		}
+
+		@Override
+		public boolean isRemoveHydrogens() {
+			return reader.isRemoveHydrogens();
+		}
+
+		@Override
+		public void setRemoveHydrogens(boolean removeHydrogens) {
+			reader.setRemoveHydrogens(removeHydrogens);
+		}
+
+		@Override
+		public boolean isFastParser() {
+			return reader.isFastParser();
+		}
+
+		@Override
+		public void setFastParser(boolean fastParser) {
+			reader.setFastParser(fastParser);
+		}
+	}
+}
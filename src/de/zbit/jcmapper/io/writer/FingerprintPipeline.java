@@ -0,0 +1,407 @@
+package de.zbit.jcmapper.io.writer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
+import de.zbit.jcmapper.fingerprinters.features.FeatureMap;
+import de.zbit.jcmapper.io.reader.IMDLReader;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSMatchBudget;
+
+/**
+ * reads, prepares and fingerprints the molecules of a reader for the
+ * exporters. With more than one thread a reader thread hands the records to
+ * worker threads, which parse, type and fingerprint them, and the exporter
+ * receives the results in input order. At most queueDepth molecules are in
+ * flight, so a slow exporter blocks the workers. With a single thread
+ * everything runs in the calling thread like the plain loop over the reader.
+ *
+ * <pre>
+ * FingerprintPipeline pipeline = new FingerprintPipeline(reader, fingerprinter);
+ * try {
+ * 	while (pipeline.hasNext()) {
+ * 		FingerprintPipeline.Entry entry = pipeline.next();
+ * 		...
+ * 	}
+ * } finally {
+ * 	pipeline.close();
+ * }
+ * </pre>
+ *
+ * Fingerprinters that are not thread safe ({@link EncodingFingerprint#isThreadSafe()})
+ * are used by one worker at a time, reading and typing still run in parallel.
+ * A pipeline may calculate several fingerprints of each molecule, they share
+ * the molecule and whatever the fingerprinters cache for it. On a branch of a
+ * {@link FingerprintFanOut} the pipeline passes on the fingerprints calculated
+ * there. Molecules whose SMARTS matching used up its budget get empty SMARTS
+ * based fingerprints, they are reported and marked in their entries.
+ */
+public class FingerprintPipeline {
+
+	private static int defaultThreads = 1;
+	private static int defaultQueueDepth = 0;
+
+	private final Entry end = new Entry(-1, null);
+
+	private final IMDLReader reader;
+	private final EncodingFingerprint[] fingerprinters;
+	private final int threads;
+	private int next = 0;
+
+	// branch of a fan out
+	private FingerprintFanOut.Branch branch = null;
+
+	// parallel mode
+	private BlockingQueue<Entry> work;
+	private BlockingQueue<Entry> ordered;
+	private Semaphore inFlight;
+	private Thread[] stages;
+	private Entry pending = null;
+
+	/**
+	 * uses the default number of threads and queue depth
+	 *
+	 * @param reader
+	 * @param fingerprinter
+	 */
+	public FingerprintPipeline(IMDLReader reader, EncodingFingerprint fingerprinter) {
+		this(reader, fingerprinter, defaultThreads, defaultQueueDepth);
+	}
+
+	/**
+	 * @param reader
+	 * @param fingerprinter
+	 * @param threads
+	 *            number of worker threads, 1 runs in the calling thread
+	 * @param queueDepth
+	 *            maximum number of molecules read ahead of the exporter, 0
+	 *            for 4 per thread
+	 */
+	public FingerprintPipeline(IMDLReader reader, EncodingFingerprint fingerprinter, int threads, int queueDepth) {
+		this(reader, new EncodingFingerprint[] { fingerprinter }, threads, queueDepth);
+	}
+
+	/**
+	 * calculates several fingerprints of each molecule
+	 *
+	 * @param reader
+	 * @param fingerprinters
+	 * @param threads
+	 *            number of worker threads, 1 runs in the calling thread
+	 * @param queueDepth
+	 *            maximum number of molecules read ahead of the exporter, 0
+	 *            for 4 per thread
+	 */
+	public FingerprintPipeline(IMDLReader reader, EncodingFingerprint[] fingerprinters, int threads, int queueDepth) {
+		if (reader instanceof FingerprintFanOut.Branch && fingerprinters.length == 1) {
+			this.branch = ((FingerprintFanOut.Branch) reader).open(fingerprinters[0]);
+			if (this.branch == null) {
+				// read again, e.g. by an exporter making two passes
+				reader = ((FingerprintFanOut.Branch) reader).getSource();
+			}
+		}
+		this.reader = reader;
+		this.fingerprinters = fingerprinters;
+		this.threads = this.branch != null ? 1 : Math.max(1, threads);
+		if (this.threads > 1) {
+			this.start(queueDepth > 0 ? queueDepth : 4 * this.threads);
+		}
+	}
+
+	/**
+	 * sets the number of worker threads used by the exporters
+	 *
+	 * @param threads
+	 *            0 for one thread per processor
+	 */
+	public static void setDefaultThreads(int threads) {
+		defaultThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	public static int getDefaultThreads() {
+		return defaultThreads;
+	}
+
+	/**
+	 * sets the number of molecules read ahead of the exporters
+	 *
+	 * @param queueDepth
+	 *            0 for 4 per thread
+	 */
+	public static void setDefaultQueueDepth(int queueDepth) {
+		defaultQueueDepth = Math.max(0, queueDepth);
+	}
+
+	public static int getDefaultQueueDepth() {
+		return defaultQueueDepth;
+	}
+
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/**
+	 * checks whether there is a next molecule, waits for the reader thread
+	 *
+	 * @return
+	 */
+	public boolean hasNext() {
+		if (this.branch != null) {
+			return this.branch.hasNext();
+		}
+		if (this.threads == 1) {
+			return this.reader.hasMol(this.next);
+		}
+		if (this.pending == null) {
+			try {
+				this.pending = this.ordered.take();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the next molecule");
+			}
+		}
+		return this.pending != this.end;
+	}
+
+	/**
+	 * returns the next molecule and its fingerprint, exceptions of the reader
+	 * or the fingerprinter are rethrown here
+	 *
+	 * @return
+	 */
+	public Entry next() {
+		if (this.branch != null) {
+			return this.branch.next();
+		}
+		if (this.threads == 1) {
+			final Entry entry = new Entry(this.next, null);
+			entry.mol = this.reader.getMol(this.next++);
+			this.fingerprint(entry);
+			return entry;
+		}
+		if (!this.hasNext()) {
+			throw new IllegalStateException("No more molecules");
+		}
+		final Entry entry = this.pending;
+		this.pending = null;
+		try {
+			entry.done.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for molecule " + entry.index);
+		}
+		this.inFlight.release();
+		this.next++;
+		if (entry.failure instanceof RuntimeException) {
+			throw (RuntimeException) entry.failure;
+		}
+		if (entry.failure instanceof Error) {
+			throw (Error) entry.failure;
+		}
+		if (entry.failure != null) {
+			throw new RuntimeException(entry.failure);
+		}
+		return entry;
+	}
+
+	/**
+	 * stops the reader and worker threads
+	 */
+	public void close() {
+		if (this.branch != null) {
+			this.branch.finish();
+		}
+		if (this.stages != null) {
+			for (final Thread stage : this.stages) {
+				stage.interrupt();
+			}
+			this.stages = null;
+		}
+	}
+
+	private void start(int queueDepth) {
+		this.work = new ArrayBlockingQueue<Entry>(queueDepth);
+		this.ordered = new ArrayBlockingQueue<Entry>(queueDepth + 1);
+		this.inFlight = new Semaphore(queueDepth);
+		this.stages = new Thread[this.threads + 1];
+		this.stages[0] = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				read();
+			}
+		}, "jCMapper-reader");
+		for (int t = 1; t <= this.threads; t++) {
+			this.stages[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, "jCMapper-worker-" + t);
+		}
+		for (final Thread stage : this.stages) {
+			stage.setDaemon(true);
+			stage.start();
+		}
+	}
+
+	/**
+	 * reader stage: hands the records to the workers and queues them in input
+	 * order for the exporter
+	 */
+	private void read() {
+		try {
+			for (int i = 0;; i++) {
+				this.inFlight.acquire();
+				final Entry entry;
+				try {
+					if (!this.reader.hasMol(i)) {
+						break;
+					}
+					entry = new Entry(i, this.reader.getMolTask(i));
+				} catch (final RuntimeException e) {
+					final Entry failed = new Entry(i, null);
+					failed.failure = e;
+					failed.done.countDown();
+					this.ordered.put(failed);
+					break;
+				}
+				this.ordered.put(entry);
+				this.work.put(entry);
+			}
+			this.ordered.put(this.end);
+			for (int t = 0; t < this.threads; t++) {
+				this.work.put(this.end);
+			}
+		} catch (final InterruptedException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * worker stage: parses, types and fingerprints
+	 */
+	private void work() {
+		try {
+			while (true) {
+				final Entry entry = this.work.take();
+				if (entry == this.end) {
+					return;
+				}
+				try {
+					entry.mol = entry.task.call();
+					this.fingerprint(entry);
+				} catch (final Throwable t) {
+					entry.failure = t;
+				} finally {
+					entry.done.countDown();
+				}
+			}
+		} catch (final InterruptedException e) {
+			// closed
+		}
+	}
+
+	private void fingerprint(Entry entry) {
+		entry.featureMaps = new FeatureMap[this.fingerprinters.length];
+		entry.exceeded = new boolean[this.fingerprinters.length];
+		final MoleculeSnapshot snapshot = this.fingerprinters.length > 1 ? new MoleculeSnapshot(entry.mol) : null;
+		for (int f = 0; f < this.fingerprinters.length; f++) {
+			final EncodingFingerprint fingerprinter = this.fingerprinters[f];
+			if (f > 0) {
+				snapshot.restore();
+			}
+			if (fingerprinter.isThreadSafe()) {
+				entry.featureMaps[f] = new FeatureMap(fingerprinter.getFingerprint(entry.mol));
+			} else {
+				synchronized (fingerprinter) {
+					entry.featureMaps[f] = new FeatureMap(fingerprinter.getFingerprint(entry.mol));
+				}
+			}
+			if (entry.mol.getProperty(SMARTSMatchBudget.EXCEEDED) != null) {
+				entry.mol.removeProperty(SMARTSMatchBudget.EXCEEDED);
+				entry.exceeded[f] = true;
+				System.out.println("Warning: SMARTS matching of molecule " + entry.index + " used up its budget, the "
+						+ fingerprinter.getClass().getSimpleName() + " fingerprint is empty");
+			}
+		}
+	}
+
+	/**
+	 * a molecule with its fingerprints
+	 */
+	public static class Entry {
+		private final int index;
+		private final Callable<AtomContainer> task;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private IAtomContainer mol;
+		private FeatureMap[] featureMaps;
+		private boolean[] exceeded;
+		private Throwable failure;
+
+		private Entry(int index, Callable<AtomContainer> task) {
+			this.index = index;
+			this.task = task;
+		}
+
+		Entry(int index, IAtomContainer mol, FeatureMap featureMap, boolean exceeded) {
+			this(index, null);
+			this.mol = mol;
+			this.featureMaps = new FeatureMap[] { featureMap };
+			this.exceeded = new boolean[] { exceeded };
+		}
+
+		/**
+		 * returns the index of the molecule in the reader
+		 *
+		 * @return
+		 */
+		public int getIndex() {
+			return this.index;
+		}
+
+		public IAtomContainer getMol() {
+			return this.mol;
+		}
+
+		public FeatureMap getFeatureMap() {
+			return this.featureMaps[0];
+		}
+
+		/**
+		 * returns the fingerprint of the fth fingerprinter of the pipeline
+		 *
+		 * @param f
+		 * @return
+		 */
+		public FeatureMap getFeatureMap(int f) {
+			return this.featureMaps[f];
+		}
+
+		/**
+		 * returns true if the SMARTS matching of the fingerprint used up its
+		 * budget, the fingerprint is empty then
+		 *
+		 * @return
+		 */
+		public boolean isExceeded() {
+			return this.exceeded[0];
+		}
+
+		/**
+		 * returns true if the SMARTS matching of the fth fingerprint used up
+		 * its budget
+		 *
+		 * @param f
+		 * @return
+		 */
+		public boolean isExceeded(int f) {
+			return this.exceeded[f];
+		}
+	}
+}
@@ -4,8 +4,8 @@ package de.zbit.jcmapper.io.writer;
 import java.io.File;
 
 import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
-import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.IMDLReader;
 
 public interface IExporter {
-	public void export(RandomAccessMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag);
+	public void export(IMDLReader reader, EncodingFingerprint fingerprinter, String label, File outputFile, boolean useAromaticFlag);
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package de.zbit.jcmapper.io.writer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IChemObject;
+
+/**
+ * the flags and properties of a molecule, its atoms and bonds. Fingerprinters
+ * may set them, e.g. the SMARTS matching sets ring and aromaticity flags,
+ * which changes the atom labels of other fingerprinters. When several
+ * fingerprints of one molecule are calculated, the molecule is restored
+ * before each of them, so every fingerprint is the one of the molecule as it
+ * was read.
+ */
+class MoleculeSnapshot {
+
+	private final IChemObject[] objects;
+	private final boolean[][] flags;
+	private final List<Map<Object, Object>> properties;
+
+	MoleculeSnapshot(IAtomContainer mol) {
+		final int atomCount = mol.getAtomCount();
+		this.objects = new IChemObject[1 + atomCount + mol.getBondCount()];
+		this.objects[0] = mol;
+		for (int i = 0; i < atomCount; i++) {
+			this.objects[1 + i] = mol.getAtom(i);
+		}
+		for (int b = 0; b < mol.getBondCount(); b++) {
+			this.objects[1 + atomCount + b] = mol.getBond(b);
+		}
+		this.flags = new boolean[this.objects.length][];
+		this.properties = new ArrayList<Map<Object, Object>>(this.objects.length);
+		for (int o = 0; o < this.objects.length; o++) {
+			this.flags[o] = this.objects[o].getFlags();
+			this.properties.add(new HashMap<Object, Object>(this.objects[o].getProperties()));
+		}
+	}
+
+	/**
+	 * sets the flags and properties taken, properties added since are removed
+	 */
+	void restore() {
+		for (int o = 0; o < this.objects.length; o++) {
+			final IChemObject object = this.objects[o];
+			object.setFlags(this.flags[o]);
+			final Map<Object, Object> taken = this.properties.get(o);
+			final Map<Object, Object> current = object.getProperties();
+			if (current.size() != taken.size() || !current.equals(taken)) {
+				for (final Object key : new ArrayList<Object>(current.keySet())) {
+					if (!taken.containsKey(key)) {
+						object.removeProperty(key);
+					}
+				}
+				object.addProperties(taken);
+			}
+		}
+	}
+}
@@ -2,12 +2,20 @@ package de.zbit.jcmapper.tools.moltyping;
 
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 
 import de.zbit.jcmapper.tools.moltyping.enumerations.EnumerationsAtomTypes.AtomLabelType;
 
 
 public class ExtendedAtomAndBondTyper {
+
+	private static final int AROMATIC_BOND = LabelDictionary.getId(":");
+	private static final int SINGLE_BOND = LabelDictionary.getId("-");
+	private static final int DOUBLE_BOND = LabelDictionary.getId("=");
+	private static final int TRIPLE_BOND = LabelDictionary.getId("#");
+	private static final int OTHER_BOND = LabelDictionary.getId("");
+
 	/**
 	 * returns the CDK atom type
 	 * 
@@ -42,6 +50,32 @@ public class ExtendedAtomAndBondTyper {
 		return bondSymbol;
 	}
 
+	/**
+	 * returns the ids of the bond symbols of the molecule in the
+	 * LabelDictionary, in the order of the bonds
+	 * 
+	 * @param ac
+	 * @return
+	 */
+	public static int[] getBondSymbolIds(IAtomContainer ac) {
+		final int[] symbols = new int[ac.getBondCount()];
+		for (int b = 0; b < symbols.length; b++) {
+			final IBond bond = ac.getBond(b);
+			if (bond.getFlag(CDKConstants.ISAROMATIC)) {
+				symbols[b] = AROMATIC_BOND;
+			} else if (bond.getOrder() == IBond.Order.SINGLE) {
+				symbols[b] = SINGLE_BOND;
+			} else if (bond.getOrder() == IBond.Order.DOUBLE) {
+				symbols[b] = DOUBLE_BOND;
+			} else if (bond.getOrder() == IBond.Order.TRIPLE) {
+				symbols[b] = TRIPLE_BOND;
+			} else {
+				symbols[b] = OTHER_BOND;
+			}
+		}
+		return symbols;
+	}
+
 	/**
 	 * returns the bond symbol for a given bond
 	 * 
@@ -61,19 +95,24 @@ public class ExtendedAtomAndBondTyper {
 	}
 
 	public static String getDaylightInvariant(IAtom atom) {
+		return appendDaylightInvariant(atom, new StringBuilder(24)).toString();
+	}
+
+	/**
+	 * appends Symbol.#Heavyneighbours.valence-hydrogens.mass.charge.#hydrogens
+	 */
+	private static StringBuilder appendDaylightInvariant(IAtom atom, StringBuilder label) {
 		final int numberOfHydrogens = getHydrogenCount(atom);
 		final int numberOfNeighbors = getFormalneighbourCount(atom);
 		final int valency = getValency(atom);
-		final StringBuffer label = new StringBuffer();
 
 		label.append(atom.getAtomicNumber());
-		label.append("." + (numberOfNeighbors - numberOfHydrogens));
-		label.append("." + (valency - numberOfHydrogens));
-		label.append("." + (atom.getMassNumber()));
-		label.append("." + (atom.getFormalCharge()));
-		label.append("." + (numberOfHydrogens));
-
-		return label.toString();
+		label.append('.').append(numberOfNeighbors - numberOfHydrogens);
+		label.append('.').append(valency - numberOfHydrogens);
+		label.append('.').append(atom.getMassNumber());
+		label.append('.').append(atom.getFormalCharge());
+		label.append('.').append(numberOfHydrogens);
+		return label;
 	}
 
 	/**
@@ -82,17 +121,7 @@ public class ExtendedAtomAndBondTyper {
 	 * e.g. 12.2.3.mass.0.1.1
 	 */
 	public static String getDaylightInvariantRing(IAtom atom) {
-		final int numberOfHydrogens = getHydrogenCount(atom);
-		final int numberOfNeighbors = getFormalneighbourCount(atom);
-		final int valency = getValency(atom);
-		final StringBuffer label = new StringBuffer();
-
-		label.append(atom.getAtomicNumber());
-		label.append("." + (numberOfNeighbors - numberOfHydrogens));
-		label.append("." + (valency - numberOfHydrogens));
-		label.append("." + (atom.getMassNumber()));
-		label.append("." + (atom.getFormalCharge()));
-		label.append("." + (numberOfHydrogens));
+		final StringBuilder label = appendDaylightInvariant(atom, new StringBuilder(24));
 
 		if (atom.getFlag(CDKConstants.ISINRING)) {
 			label.append(".1");
@@ -111,22 +140,17 @@ public class ExtendedAtomAndBondTyper {
 	 */
 	public static String getElementNeighborRingType(IAtom atom) {
 		
-		String type = getAtomSymbol(atom);
-		Integer formalNeighbourCount = getFormalneighbourCount(atom);
-		Integer hydrogenCount = getHydrogenCount(atom);
-
-		try {
-			if (atom.getFlag(CDKConstants.ISAROMATIC)) {
-				type = type + ".a." + (formalNeighbourCount - hydrogenCount);
-			} else if (atom.getFlag(CDKConstants.ISINRING)) {
-				type = type + ".r." + (formalNeighbourCount - hydrogenCount);
-			} else {
-				type = type + "." + (formalNeighbourCount - hydrogenCount);
-			}
-		} catch (final Exception e) {
-			e.printStackTrace();
+		final StringBuilder type = new StringBuilder(getAtomSymbol(atom));
+		final int heavyNeighbours = getFormalneighbourCount(atom) - getHydrogenCount(atom);
+
+		if (atom.getFlag(CDKConstants.ISAROMATIC)) {
+			type.append(".a.");
+		} else if (atom.getFlag(CDKConstants.ISINRING)) {
+			type.append(".r.");
+		} else {
+			type.append('.');
 		}
-		return type;
+		return type.append(heavyNeighbours).toString();
 	}
 
 	
@@ -176,12 +200,8 @@ public class ExtendedAtomAndBondTyper {
 	 */
 	public static String getElementNeighborType(IAtom atom) {
 
-		String type = getAtomSymbol(atom);
-		Integer formalNeighbourCount = getFormalneighbourCount(atom);
-		Integer hydrogenCount = getHydrogenCount(atom);
-
-		type = type + "." + (formalNeighbourCount - hydrogenCount);
-		return type;
+		final int heavyNeighbours = getFormalneighbourCount(atom) - getHydrogenCount(atom);
+		return new StringBuilder(getAtomSymbol(atom)).append('.').append(heavyNeighbours).toString();
 	}
 
 	/**
@@ -256,6 +276,23 @@ public class ExtendedAtomAndBondTyper {
 		}
 	}
 
+	/**
+	 * labels the atoms of the molecule once and returns the ids of their
+	 * labels in the LabelDictionary, in the order of the atoms. The labels
+	 * depend on flags, e.g. aromaticity, so they are taken again for each call.
+	 * 
+	 * @param ac
+	 * @return
+	 * @throws MoltyperException
+	 */
+	public int[] getAtomLabelIds(IAtomContainer ac) throws MoltyperException {
+		final int[] labels = new int[ac.getAtomCount()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = LabelDictionary.getId(this.getAtomLabel(ac.getAtom(i)));
+		}
+		return labels;
+	}
+
 	public AtomLabelType getAtomLabelType() {
 		return this.atomLabelType;
 	}
@@ -0,0 +1,130 @@
+package de.zbit.jcmapper.tools.moltyping;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * interns the atom labels and bond symbols of all molecules: each label gets
+ * an id when it is first seen and keeps it, so ids of different molecules and
+ * threads can be compared. The number of labels is bounded by the label
+ * types, e.g. element symbols or Daylight invariants, so looking up a label
+ * takes no lock, only new labels are added under one. With each label the
+ * dictionary keeps its hashes, so encodings can hash label sequences from
+ * the ids: the String hash code rolled along with
+ * hash(x + y) = hash(x) * power(y) + hash(y), and the same with a 64 bit
+ * multiplier.
+ */
+public class LabelDictionary {
+
+	private static final long PRIME64 = 1099511628211L;
+
+	private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	// written under the class lock before the id is put into ids
+	private static volatile Label[] labels = new Label[64];
+	private static volatile int size = 0;
+
+	/**
+	 * returns the id of the label, a new one if it has not been seen before
+	 *
+	 * @param label
+	 * @return
+	 */
+	public static int getId(String label) {
+		final Integer id = ids.get(label);
+		return id != null ? id : add(label);
+	}
+
+	private static synchronized int add(String label) {
+		final Integer known = ids.get(label);
+		if (known != null) {
+			return known;
+		}
+		final int id = size;
+		if (id == labels.length) {
+			labels = Arrays.copyOf(labels, 2 * id);
+		}
+		labels[id] = new Label(label);
+		ids.put(label, id);
+		size = id + 1;
+		return id;
+	}
+
+	/**
+	 * returns the label of an id given by getId
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static String getLabel(int id) {
+		return labels[id].label;
+	}
+
+	/**
+	 * returns the String hash code of the label
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static int getHash(int id) {
+		return labels[id].hash;
+	}
+
+	/**
+	 * returns 31 to the power of the length of the label, the multiplier of a
+	 * hash followed by the label
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static int getPower(int id) {
+		return labels[id].power;
+	}
+
+	/**
+	 * returns the 64 bit hash of the label
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static long getHash64(int id) {
+		return labels[id].hash64;
+	}
+
+	/**
+	 * returns the 64 bit multiplier of a hash followed by the label
+	 *
+	 * @param id
+	 * @return
+	 */
+	public static long getPower64(int id) {
+		return labels[id].power64;
+	}
+
+	public static int size() {
+		return size;
+	}
+
+	private static class Label {
+		private final String label;
+		private final int hash;
+		private final int power;
+		private final long hash64;
+		private final long power64;
+
+		private Label(String label) {
+			int power = 1;
+			long hash64 = 0;
+			long power64 = 1;
+			for (int c = 0; c < label.length(); c++) {
+				power *= 31;
+				hash64 = hash64 * PRIME64 + label.charAt(c);
+				power64 *= PRIME64;
+			}
+			this.label = label;
+			this.hash = label.hashCode();
+			this.power = power;
+			this.hash64 = hash64;
+			this.power64 = power64;
+		}
+	}
+}
@@ -4,27 +4,40 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
 
 import org.openscience.cdk.AtomContainer;
-import org.openscience.cdk.DefaultChemObjectBuilder;
 import org.openscience.cdk.exception.CDKException;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
-import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
 
-import de.zbit.jcmapper.tools.moltyping.pharmacophore.PPPDefinitionFileReader;
 import de.zbit.jcmapper.tools.moltyping.pharmacophore.PotentialPharmacophorePoint;
 import de.zbit.jcmapper.tools.moltyping.pharmacophore.PotentialPharmacophorePointPair;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSMatchBudget;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQuery;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQueryRegistry;
 
 
 public class PharmacophorePointAssigner {
-	private final ArrayList<PotentialPharmacophorePoint> ppps;
+	// the points of the molecules in use, all assigners read the same definitions
+	private static final Map<IAtomContainer, HashMap<Integer, Vector<PotentialPharmacophorePoint>>> assignments = new WeakHashMap<IAtomContainer, HashMap<Integer, Vector<PotentialPharmacophorePoint>>>();
+	// the points of molecules whose SMARTS matching used up its budget
+	private static final HashMap<Integer, Vector<PotentialPharmacophorePoint>> EXCEEDED = new HashMap<Integer, Vector<PotentialPharmacophorePoint>>();
+
+	private final List<PotentialPharmacophorePoint> ppps;
+	private final SMARTSQuery[] queries;
 
 	public PharmacophorePointAssigner() {
-		final PPPDefinitionFileReader PPPreader = new PPPDefinitionFileReader();
-		this.ppps = PPPreader.readPharmacophoreDefinitions();
+		// the definitions are read and parsed once for all assigners
+		this.ppps = SMARTSQueryRegistry.getPharmacophoreDefinitions();
+		final List<String> smarts = new ArrayList<String>(this.ppps.size());
+		for (final PotentialPharmacophorePoint ppp : this.ppps) {
+			smarts.add(ppp.getSMARTSPattern());
+		}
+		this.queries = SMARTSQueryRegistry.getQueries(smarts);
 	}
 
 	private HashMap<Integer, Vector<PotentialPharmacophorePoint>> assignPharmacophorePoints(IAtomContainer mol) {
@@ -34,9 +47,20 @@ public class PharmacophorePointAssigner {
 
 		final HashMap<Integer, Vector<PotentialPharmacophorePoint>> PPPAssignment = new HashMap<Integer, Vector<PotentialPharmacophorePoint>>();
 
+		try {
+			SMARTSQueryRegistry.prepare(mol);
+		} catch (final CDKException e) {
+			return PPPAssignment;
+		}
+
 		// Now math the individual patterns
-		for (final PotentialPharmacophorePoint ppp : this.ppps) {
-			final List<List<Integer>> hits = this.getAtoms4SMARTS(ppp.getSMARTSPattern(), mol);
+		final SMARTSMatchBudget budget = new SMARTSMatchBudget();
+		for (int p = 0; p < this.ppps.size(); p++) {
+			if (this.queries[p] == null) {
+				continue;
+			}
+			final PotentialPharmacophorePoint ppp = this.ppps.get(p);
+			final List<List<Integer>> hits = this.queries[p].getUniqueMatchingAtoms(mol, budget);
 			for (int i = 0, n = hits.size(); i < n; i++) {
 				for (int j = 0, n1 = hits.get(i).size(); j < n1; j++) {
 					if (!PPPAssignment.containsKey(hits.get(i).get(j))) {
@@ -49,6 +73,10 @@ public class PharmacophorePointAssigner {
 				}
 			}
 		}
+		if (budget.isExceeded()) {
+			// the points found so far may be incomplete
+			return null;
+		}
 		//We do not want to see all those non-matching patterns
 		//if (PPPAssignment.size() == 0) {
 		//	System.out.println("[PPP-Typer] Warning: zero pharmacophore points");
@@ -58,43 +86,39 @@ public class PharmacophorePointAssigner {
 	}
 
 	/**
-	 * This method performs the SMARTS matching as implemented in the CDK
-	 * 
-	 * @param pattern
-	 *            - Valid SMARTS pattern
-	 * @param mol
-	 *            - IAtomContainer
-	 * @return matches - List<List<Integer>> List of Lists, containing the atom
-	 *         indices of the matches
-	 */
-	private List<List<Integer>> getAtoms4SMARTS(String pattern, IAtomContainer mol) {
-		try {
-			final SMARTSQueryTool sqt = new SMARTSQueryTool("C", DefaultChemObjectBuilder.getInstance());
-			sqt.setSmarts(pattern);
-			sqt.matches(mol);
-			return sqt.getUniqueMatchingAtoms();
-		} catch (final CDKException e) {
-			// e.printStackTrace();
-			//We do not want to see all those non-matching patterns
-			//System.out.println("Warning: SMARTS search skipped because of timeout. Pattern: " + pattern);
-			ArrayList<List<Integer>> list = new ArrayList<List<Integer>>();
-			return list;
-		}
-	}
-
-	/**
-	 * returns a vector of potential pharmacophore points for a molecule
+	 * returns a vector of potential pharmacophore points for a molecule. The
+	 * points are assigned once for each molecule and shared by the encodings,
+	 * so the map must not be changed. If the SMARTS matching uses up its
+	 * budget, there are no points and the molecule gets the
+	 * {@link SMARTSMatchBudget#EXCEEDED} property.
 	 * 
 	 * @param mol
 	 * @return
 	 */
 	public HashMap<Integer, Vector<PotentialPharmacophorePoint>> getPharmacophorePoints(IAtomContainer mol) {
-		final HashMap<Integer, Vector<PotentialPharmacophorePoint>> PPPAssignment = this.assignPharmacophorePoints(mol);
-		this.lipophilicCarbonAnnotation(PPPAssignment, mol);
-		this.negativeCOOHPOOHSOOHDetection(PPPAssignment, mol);
+		synchronized (assignments) {
+			final HashMap<Integer, Vector<PotentialPharmacophorePoint>> PPPAssignment = assignments.get(mol);
+			if (PPPAssignment == EXCEEDED) {
+				mol.setProperty(SMARTSMatchBudget.EXCEEDED, Boolean.TRUE);
+			}
+			if (PPPAssignment != null) {
+				return PPPAssignment;
+			}
+		}
+		HashMap<Integer, Vector<PotentialPharmacophorePoint>> PPPAssignment = this.assignPharmacophorePoints(mol);
+		if (PPPAssignment == null) {
+			PPPAssignment = EXCEEDED;
+			mol.setProperty(SMARTSMatchBudget.EXCEEDED, Boolean.TRUE);
+		} else {
+			this.lipophilicCarbonAnnotation(PPPAssignment, mol);
+			this.negativeCOOHPOOHSOOHDetection(PPPAssignment, mol);
+		}
 		
 		//TODO
 		//System.out.println(PPPAssignment.toString());
+		synchronized (assignments) {
+			assignments.put(mol, PPPAssignment);
+		}
 		return PPPAssignment;
 	}
 
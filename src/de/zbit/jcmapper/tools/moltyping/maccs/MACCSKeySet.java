@@ -0,0 +1,88 @@
+package de.zbit.jcmapper.tools.moltyping.maccs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSMatchBudget;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQuery;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQueryRegistry;
+
+/**
+ * the MACCS keys defined by SMARTS patterns, read and parsed once. Keys
+ * without a pattern (?) are left to the fingerprinter. A key is set if its
+ * pattern matches at least as many different sets of atoms as its frequency.
+ */
+public class MACCSKeySet {
+
+	private static MACCSKeySet defaultKeySet = null;
+
+	private final List<MACCSSmartsPattern> patterns;
+	private final SMARTSQuery[] queries;
+
+	public MACCSKeySet(List<MACCSSmartsPattern> patterns) {
+		this.patterns = Collections.unmodifiableList(new ArrayList<MACCSSmartsPattern>(patterns));
+		this.queries = new SMARTSQuery[this.patterns.size()];
+		for (int p = 0; p < this.queries.length; p++) {
+			final String smarts = this.patterns.get(p).getSMARTS();
+			if (!smarts.equals("?")) {
+				this.queries[p] = SMARTSQueryRegistry.getQuery(smarts);
+			}
+		}
+	}
+
+	/**
+	 * returns the key set of the MACCS166 definitions
+	 * 
+	 * @return
+	 */
+	public static synchronized MACCSKeySet getDefaultKeySet() {
+		if (defaultKeySet == null) {
+			defaultKeySet = new MACCSKeySet(new MACCSDefinitionFileReader().readMACCSDefinitions());
+		}
+		return defaultKeySet;
+	}
+
+	public List<MACCSSmartsPattern> getPatterns() {
+		return this.patterns;
+	}
+
+	/**
+	 * adds the positions of the keys set by their patterns in the order of
+	 * the patterns. The molecule is prepared for SMARTS matching. If the
+	 * matching uses up its budget, no positions are added and the molecule
+	 * gets the {@link SMARTSMatchBudget#EXCEEDED} property.
+	 * 
+	 * @param mol
+	 * @param positions
+	 * @return false if the matching used up its budget
+	 */
+	public boolean addMatchingPositions(IAtomContainer mol, List<Integer> positions) {
+		try {
+			SMARTSQueryRegistry.prepare(mol);
+		} catch (final CDKException e) {
+			e.printStackTrace();
+			return true;
+		}
+		final SMARTSMatchBudget budget = new SMARTSMatchBudget();
+		final List<Integer> matching = new ArrayList<Integer>();
+		for (int p = 0; p < this.queries.length; p++) {
+			if (this.queries[p] == null) {
+				continue;
+			}
+			final int frequency = Math.max(this.patterns.get(p).getFrequency(), 1);
+			if (this.queries[p].countUniqueMatches(mol, frequency, budget) >= frequency) {
+				matching.add(this.patterns.get(p).getPosition());
+			}
+		}
+		if (budget.isExceeded()) {
+			mol.setProperty(SMARTSMatchBudget.EXCEEDED, Boolean.TRUE);
+			return false;
+		}
+		positions.addAll(matching);
+		return true;
+	}
+}
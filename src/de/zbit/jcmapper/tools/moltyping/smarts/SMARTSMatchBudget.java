@@ -0,0 +1,58 @@
+package de.zbit.jcmapper.tools.moltyping.smarts;
+
+/**
+ * the number of steps and optionally the time the SMARTS queries may take on
+ * a molecule. A budget is created for each molecule and shared by all queries
+ * matched on it. A step is taken for each atom a single atom query is tested
+ * on and for each mapping the matcher enumerates, including the ones dropped
+ * by the stereo and component checks or as matches of the same atoms, so the
+ * steps and the result do not depend on the machine. Once the budget is used
+ * up, queries stop and the molecule gets the {@link #EXCEEDED} property, its
+ * SMARTS based fingerprints are left empty instead of partial.
+ */
+public class SMARTSMatchBudget {
+
+	/**
+	 * the property of molecules whose queries used up the budget
+	 */
+	public static final String EXCEEDED = "SMARTSMatchBudgetExceeded";
+
+	private final long deadline;
+	private long steps;
+	private boolean exceeded = false;
+
+	/**
+	 * @param timeMillis
+	 *            the time the queries may take, 0 for no time limit
+	 * @param steps
+	 *            the number of steps the queries may take
+	 */
+	public SMARTSMatchBudget(long timeMillis, long steps) {
+		this.deadline = timeMillis > 0 ? System.nanoTime() + timeMillis * 1000000L : 0;
+		this.steps = steps;
+	}
+
+	/**
+	 * a budget with the limits of the registry
+	 */
+	public SMARTSMatchBudget() {
+		this(SMARTSQueryRegistry.getTimeBudget(), SMARTSQueryRegistry.getStepBudget());
+	}
+
+	/**
+	 * takes one step, returns false if the budget is used up
+	 *
+	 * @return
+	 */
+	public boolean step() {
+		if (!this.exceeded
+				&& (--this.steps < 0 || (this.deadline != 0 && System.nanoTime() - this.deadline > 0))) {
+			this.exceeded = true;
+		}
+		return !this.exceeded;
+	}
+
+	public boolean isExceeded() {
+		return this.exceeded;
+	}
+}
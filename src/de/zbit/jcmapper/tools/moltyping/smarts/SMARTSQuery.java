@@ -0,0 +1,163 @@
+package de.zbit.jcmapper.tools.moltyping.smarts;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.ComponentGrouping;
+import org.openscience.cdk.isomorphism.Pattern;
+import org.openscience.cdk.isomorphism.SmartsStereoMatch;
+import org.openscience.cdk.isomorphism.Ullmann;
+import org.openscience.cdk.isomorphism.matchers.IQueryAtom;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+
+/**
+ * a parsed SMARTS pattern. The query and its pattern are only read while
+ * matching, so a query can be matched on several molecules at the same time.
+ * The molecules have to be prepared by
+ * {@link SMARTSQueryRegistry#prepare(IAtomContainer)} first. The matches are
+ * the ones of the SMARTSQueryTool.
+ */
+public class SMARTSQuery {
+
+	private final String smarts;
+	private final QueryAtomContainer query;
+	private final Pattern pattern;
+
+	SMARTSQuery(String smarts, QueryAtomContainer query) {
+		this.smarts = smarts;
+		this.query = query;
+		this.pattern = query.getAtomCount() == 1 ? null : Ullmann.findSubstructure(query);
+	}
+
+	public String getSMARTS() {
+		return this.smarts;
+	}
+
+	/**
+	 * returns the atom indices of the matches, matches of the same atoms only
+	 * once
+	 * 
+	 * @param mol
+	 *            a prepared molecule
+	 * @param budget
+	 * @return
+	 */
+	public List<List<Integer>> getUniqueMatchingAtoms(IAtomContainer mol, SMARTSMatchBudget budget) {
+		final List<List<Integer>> matches = new ArrayList<List<Integer>>();
+		final Set<BitSet> matchedAtoms = new HashSet<BitSet>();
+		final Iterator<int[]> mappings = this.getMappings(mol, budget);
+		while (mappings.hasNext()) {
+			final int[] mapping = mappings.next();
+			final BitSet atoms = new BitSet();
+			for (final int atom : mapping) {
+				atoms.set(atom);
+			}
+			if (matchedAtoms.add(atoms)) {
+				final List<Integer> match = new ArrayList<Integer>(mapping.length);
+				for (final int atom : mapping) {
+					match.add(atom);
+				}
+				matches.add(match);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * counts the matches of different atoms, stops at max
+	 *
+	 * @param mol
+	 *            a prepared molecule
+	 * @param max
+	 * @param budget
+	 * @return
+	 */
+	public int countUniqueMatches(IAtomContainer mol, int max, SMARTSMatchBudget budget) {
+		int count = 0;
+		final Set<BitSet> matchedAtoms = new HashSet<BitSet>();
+		final Iterator<int[]> mappings = this.getMappings(mol, budget);
+		while (count < max && mappings.hasNext()) {
+			final BitSet atoms = new BitSet();
+			for (final int atom : mappings.next()) {
+				atoms.set(atom);
+			}
+			if (matchedAtoms.add(atoms)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * returns true if the query matches the molecule
+	 * 
+	 * @param mol
+	 *            a prepared molecule
+	 * @param budget
+	 * @return
+	 */
+	public boolean matches(IAtomContainer mol, SMARTSMatchBudget budget) {
+		return this.getMappings(mol, budget).hasNext();
+	}
+
+	/**
+	 * the mappings of the query atoms to the atoms of the molecule, the ones
+	 * of queries with several atoms are enumerated while iterating. A step of
+	 * the budget is taken for each atom tested and each mapping enumerated,
+	 * there are no more mappings once it is used up.
+	 */
+	private Iterator<int[]> getMappings(final IAtomContainer mol, final SMARTSMatchBudget budget) {
+		if (this.pattern == null) {
+			final IQueryAtom queryAtom = (IQueryAtom) this.query.getAtom(0);
+			final List<int[]> mappings = new ArrayList<int[]>();
+			for (int i = 0; i < mol.getAtomCount() && budget.step(); i++) {
+				if (queryAtom.matches(mol.getAtom(i))) {
+					mappings.add(new int[] { i });
+				}
+			}
+			return mappings.iterator();
+		}
+		if (budget.isExceeded()) {
+			return Collections.<int[]> emptyList().iterator();
+		}
+		final Iterator<int[]> mappings = this.pattern.matchAll(mol).iterator();
+		final SmartsStereoMatch stereo = new SmartsStereoMatch(this.query, mol);
+		final ComponentGrouping grouping = new ComponentGrouping(this.query, mol);
+		return new Iterator<int[]>() {
+			private int[] next = null;
+
+			@Override
+			public boolean hasNext() {
+				while (this.next == null && !budget.isExceeded() && mappings.hasNext() && budget.step()) {
+					final int[] mapping = mappings.next();
+					if (stereo.apply(mapping) && grouping.apply(mapping)) {
+						this.next = mapping;
+					}
+				}
+				return this.next != null;
+			}
+
+			@Override
+			public int[] next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final int[] mapping = this.next;
+				this.next = null;
+				return mapping;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,131 @@
+package de.zbit.jcmapper.tools.moltyping.smarts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.aromaticity.Aromaticity;
+import org.openscience.cdk.aromaticity.ElectronDonation;
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.graph.Cycles;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.isomorphism.matchers.smarts.SmartsMatchers;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+
+import de.zbit.jcmapper.tools.moltyping.pharmacophore.PPPDefinitionFileReader;
+import de.zbit.jcmapper.tools.moltyping.pharmacophore.PotentialPharmacophorePoint;
+
+/**
+ * parses each SMARTS pattern once for the whole process and keeps the parsed
+ * queries, which can be matched by several threads. The pharmacophore point
+ * definitions are read once as well. Molecules are prepared like the
+ * SMARTSQueryTool does, by ring perception and the Daylight aromaticity
+ * model.
+ */
+public class SMARTSQueryRegistry {
+
+	private static final Map<String, SMARTSQuery> queries = new HashMap<String, SMARTSQuery>();
+	private static final Aromaticity aromaticity = new Aromaticity(ElectronDonation.daylight(),
+			Cycles.or(Cycles.all(), Cycles.vertexShort()));
+	private static List<PotentialPharmacophorePoint> pharmacophoreDefinitions = null;
+
+	private static volatile long timeBudget = 0;
+	private static volatile long stepBudget = 1000000;
+
+	/**
+	 * returns the parsed query of a SMARTS pattern
+	 * 
+	 * @param smarts
+	 * @return null if the pattern can not be parsed
+	 */
+	public static SMARTSQuery getQuery(String smarts) {
+		synchronized (queries) {
+			if (queries.containsKey(smarts)) {
+				return queries.get(smarts);
+			}
+		}
+		SMARTSQuery query = null;
+		try {
+			query = new SMARTSQuery(smarts, SMARTSParser.parse(smarts, DefaultChemObjectBuilder.getInstance()));
+		} catch (final RuntimeException e) {
+			System.out.println("Could not parse SMARTS pattern " + smarts + ": " + e.getMessage());
+		}
+		synchronized (queries) {
+			queries.put(smarts, query);
+		}
+		return query;
+	}
+
+	/**
+	 * returns the parsed queries of the SMARTS patterns, unparsable ones are
+	 * null
+	 * 
+	 * @param smarts
+	 * @return
+	 */
+	public static SMARTSQuery[] getQueries(List<String> smarts) {
+		final SMARTSQuery[] queries = new SMARTSQuery[smarts.size()];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = getQuery(smarts.get(i));
+		}
+		return queries;
+	}
+
+	/**
+	 * returns the pharmacophore point definitions, read once
+	 * 
+	 * @return
+	 */
+	public static synchronized List<PotentialPharmacophorePoint> getPharmacophoreDefinitions() {
+		if (pharmacophoreDefinitions == null) {
+			pharmacophoreDefinitions = Collections.unmodifiableList(new ArrayList<PotentialPharmacophorePoint>(
+					new PPPDefinitionFileReader().readPharmacophoreDefinitions()));
+		}
+		return pharmacophoreDefinitions;
+	}
+
+	/**
+	 * perceives the rings and the aromaticity the queries are matched on, has
+	 * to be called before matching queries on a molecule
+	 * 
+	 * @param mol
+	 * @throws CDKException
+	 *             if the aromaticity can not be perceived
+	 */
+	public static void prepare(IAtomContainer mol) throws CDKException {
+		SmartsMatchers.prepare(mol, true);
+		aromaticity.apply(mol);
+	}
+
+	/**
+	 * the time in milliseconds the queries may take on a molecule, 0 for no
+	 * time limit (the default). A time limit makes the fingerprints of
+	 * molecules close to it depend on the machine.
+	 * 
+	 * @return
+	 */
+	public static long getTimeBudget() {
+		return timeBudget;
+	}
+
+	public static void setTimeBudget(long timeMillis) {
+		timeBudget = timeMillis;
+	}
+
+	/**
+	 * the number of steps the queries may take on a molecule, see
+	 * {@link SMARTSMatchBudget}
+	 * 
+	 * @return
+	 */
+	public static long getStepBudget() {
+		return stepBudget;
+	}
+
+	public static void setStepBudget(long steps) {
+		stepBudget = steps;
+	}
+}
@@ -46,6 +46,10 @@ public abstract class AbstractProgressBar implements Serializable {
     callNumbersInSyncWithTimeMeasurements=true;
   }
   
+  /**
+   * @param totalCalls - a value <= 0 means unknown, e.g. for streamed input;
+   * only the number of calls is displayed then.
+   */
   public void setNumberOfTotalCalls(long totalCalls) {
     this.totalCalls = totalCalls;
     reset(); // Reset when changing number of total calls.
@@ -98,8 +102,9 @@ public abstract class AbstractProgressBar implements Serializable {
   public synchronized void DisplayBar(String additionalText, boolean omitTimeCount) {
     callNr++;
     
-    // Calculate percentage
-    int perc = Math.min((int)(((double)callNr/(double)totalCalls)*100.0), 100);
+    // Calculate percentage, -1 if the total number of calls is unknown
+    int perc = -1;
+    if (totalCalls > 0) perc = Math.min((int)(((double)callNr/(double)totalCalls)*100.0), 100);
     
     // Calculate time remaining
     double miliSecsRemaining = -1;
@@ -111,7 +116,7 @@ public abstract class AbstractProgressBar implements Serializable {
       }
       
       // Calculate
-      if (numMeasurements>0) {
+      if (numMeasurements>0 && totalCalls > 0) {
         double ScansRemaining = (totalCalls - (callNr+1)); // /(double)MLIBSVMSettings.runs;
         if (callNumbersInSyncWithTimeMeasurements) {
           miliSecsRemaining = ScansRemaining * ((measureTime/(double)numMeasurements)) ;
@@ -140,7 +145,7 @@ public abstract class AbstractProgressBar implements Serializable {
   /**
    * Implement this function. Avoid calling it manually.
    * Please, set it to SYNCHRONIZED.
-   * @param percent - The percentage of the bar.
+   * @param percent - The percentage of the bar, -1 if the number of total calls is unknown.
    * @param miliSecondsRemaining - If available, miliseconds remaining until 100%. If NOT available, -1.
    * @param additionalText - If available, additional text to display. , If NOT available, null.
    */
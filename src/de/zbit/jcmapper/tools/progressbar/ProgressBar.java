@@ -10,6 +10,8 @@ package de.zbit.jcmapper.tools.progressbar;
 public class ProgressBar extends AbstractProgressBar {
 	private static final long serialVersionUID = 2073719565121276629L;
 
+	private static final int COUNTER_STEP = 1000;
+
 	private int lastPerc = -1;
 	private boolean isWindows = (System.getProperty("os.name").toLowerCase().contains("windows")) ? true : false;
 	protected boolean useSimpleStyle = useSimpleStyle();
@@ -50,6 +52,10 @@ public class ProgressBar extends AbstractProgressBar {
 	 * java.lang.String)
 	 */
 	protected synchronized void drawProgressBar(int percent, double miliSecondsRemaining, String additionalText) {
+		if (percent < 0) {
+			drawCounter(additionalText);
+			return;
+		}
 		String percString = percent + "%";
 
 		// Calculate time remaining
@@ -125,6 +131,22 @@ public class ProgressBar extends AbstractProgressBar {
 		return; // sb.toString();
 	}
 
+	/**
+	 * Unknown number of total calls: prints the number of calls every
+	 * COUNTER_STEP calls.
+	 */
+	private void drawCounter(String additionalText) {
+		if (getCallNumber() % COUNTER_STEP != 0) {
+			return;
+		}
+		String text = getCallNumber() + " processed" + (additionalText != null && (additionalText.length() > 0) ? " " + additionalText : "");
+		if (useSimpleStyle) {
+			System.out.println(text);
+		} else {
+			System.out.print("\r\033[K" + text);
+		}
+	}
+
 	/**
 	 * Determines if ANSI compliance console commands can be used, based on java
 	 * version, os type and outputStream Type.
@@ -0,0 +1,88 @@
+package fingerprinters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
+import de.zbit.jcmapper.fingerprinters.FingerPrinterFactory;
+import de.zbit.jcmapper.fingerprinters.FingerPrinterFactory.FingerprintType;
+import de.zbit.jcmapper.fingerprinters.features.IFeature;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+
+public class ConcurrentFingerprintTest {
+	static final int THREADS = 4;
+	static final int MOLECULES = 8;
+	static RandomAccessMDLReader reader;
+	static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"), false);
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		executor.shutdownNow();
+		reader.close();
+	}
+
+	@Test
+	public void checkSharedFingerprinters() throws Exception {
+		for (FingerprintType type : FingerprintType.values()) {
+			final EncodingFingerprint fingerprinter = FingerPrinterFactory.getFingerprinter(type);
+			Assert.assertTrue(type.toString(), fingerprinter.isThreadSafe());
+			final List<String> expected = new ArrayList<String>();
+			for (int i = 0; i < MOLECULES; i++) {
+				expected.add(toString(fingerprinter.getFingerprint(reader.getMol(i))));
+			}
+
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for (int t = 0; t < THREADS; t++) {
+				// every thread works on its own copies, starting at a different molecule
+				final IAtomContainer[] mols = new IAtomContainer[MOLECULES];
+				for (int i = 0; i < MOLECULES; i++) {
+					mols[(i + t) % MOLECULES] = reader.getMol(i);
+				}
+				final int offset = t;
+				results.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						final String[] fingerprints = new String[MOLECULES];
+						for (int i = 0; i < MOLECULES; i++) {
+							fingerprints[(MOLECULES + i - offset) % MOLECULES] = ConcurrentFingerprintTest.toString(fingerprinter
+									.getFingerprint(mols[i]));
+						}
+						List<String> result = new ArrayList<String>();
+						for (String fingerprint : fingerprints) {
+							result.add(fingerprint);
+						}
+						return result;
+					}
+				}));
+			}
+			for (Future<List<String>> result : results) {
+				Assert.assertEquals(type.toString(), expected, result.get());
+			}
+		}
+	}
+
+	static String toString(List<IFeature> features) {
+		StringBuilder sb = new StringBuilder();
+		for (IFeature feature : features) {
+			sb.append(feature.hashCode()).append(':').append(feature.getValue()).append(' ');
+		}
+		return sb.toString();
+	}
+}
@@ -22,6 +22,7 @@ import fingerprinters.topological.Pharmacophore2Point2DTest;
 import fingerprinters.topological.Pharmacophore3Point2DTest;
 import fingerprinters.topological.RadialDepthFirstSearchTest;
 import fingerprinters.topological.SHEDKeyTest;
+import fingerprinters.topological.TopologyContextTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses( { 
@@ -43,7 +44,9 @@ import fingerprinters.topological.SHEDKeyTest;
 	Molprint2DTest.class,
 	Pharmacophore2Point2DTest.class,
 	Pharmacophore3Point2DTest.class,
-	RadialDepthFirstSearchTest.class
+	RadialDepthFirstSearchTest.class,
+	TopologyContextTest.class,
+	ConcurrentFingerprintTest.class
 })
 public class FingerPrinterTestSuite {
 
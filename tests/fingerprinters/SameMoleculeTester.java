@@ -27,7 +27,7 @@ public class SameMoleculeTester {
 		this.fingerprinter = fingerPrinter;
 
 		try {
-			reader = new RandomAccessMDLReader(new File("./resources/Oxaceprol_MM.sdf"));
+			reader = new RandomAccessMDLReader(new File("./resources/Oxaceprol_MM.sdf"), false);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
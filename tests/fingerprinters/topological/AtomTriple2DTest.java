@@ -1,9 +1,17 @@
 package fingerprinters.topological;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
 
+import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DAtomTriple;
+import de.zbit.jcmapper.fingerprinters.topological.TopologyContext;
 
 import fingerprinters.SameMoleculeTester;
 
@@ -29,4 +37,34 @@ public class AtomTriple2DTest {
 	public void checkHashedFeatures() {
 		tester.checkHashedFeatures();
 	}
+
+	@Test
+	public void checkPatterns() throws Exception {
+		final Encoding2DAtomTriple fingerprinter = (Encoding2DAtomTriple) tester.fingerprinter;
+		final IAtomContainer mol = tester.reader.getMol(0);
+		final int[][] matrix = TopologyContext.getContext(mol).getDistanceMatrix();
+		final int cutoff = fingerprinter.getSearchDepth();
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < matrix.length; i++) {
+			for (int j = 0; j < matrix.length; j++) {
+				for (int k = 0; k < matrix.length; k++) {
+					if (i != j && j != k && k != i && matrix[i][j] <= cutoff && matrix[j][k] <= cutoff
+							&& matrix[k][i] <= cutoff) {
+						expected.add(fingerprinter.getAtomLabel(mol.getAtom(i)) + "-" + matrix[i][j] + "-"
+								+ fingerprinter.getAtomLabel(mol.getAtom(j)) + "-" + matrix[j][k] + "-"
+								+ fingerprinter.getAtomLabel(mol.getAtom(k)) + "-" + matrix[k][i]);
+					}
+				}
+			}
+		}
+		final List<String> patterns = new ArrayList<String>();
+		for (final IFeature feature : fingerprinter.getFingerprint(mol)) {
+			final String pattern = feature.featureToString(false);
+			Assert.assertEquals(pattern.hashCode(), feature.hashCode());
+			patterns.add(pattern);
+		}
+		Collections.sort(expected);
+		Collections.sort(patterns);
+		Assert.assertEquals(expected, patterns);
+	}
 }
@@ -20,7 +20,7 @@ public class CATS2DFingerprintTest {
 	public void runTest() {
 		RandomAccessMDLReader reader = null;
 		try {
-			reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"));
+			reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"), false);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
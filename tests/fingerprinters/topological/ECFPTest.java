@@ -1,9 +1,20 @@
 package fingerprinters.topological;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
 
+import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DECFP;
+import de.zbit.jcmapper.fingerprinters.topological.TopologyContext;
+import de.zbit.jcmapper.fingerprinters.topological.features.ECFPFeature;
 
 import fingerprinters.SameMoleculeTester;
 
@@ -30,5 +41,93 @@ public class ECFPTest {
 	public void checkHashedFeatures() {
 		tester.checkHashedFeatures();
 	}
-	
+
+	@Test
+	public void checkIdentifiers() throws Exception {
+		final Encoding2DECFP ecfp = new Encoding2DECFP();
+		final IAtomContainer mol = tester.reader.getMol(0);
+		final List<IFeature> features = ecfp.getFingerprint(mol);
+		final int[] identifiers = ecfp.getIdentifiers(mol);
+		Assert.assertEquals(features.size(), identifiers.length);
+		for (int i = 0; i < identifiers.length; i++) {
+			Assert.assertEquals(features.get(i).hashCode(), identifiers[i]);
+		}
+		final SortedMap<Integer, Integer> counts = ecfp.getIdentifierCounts(mol);
+		int total = 0;
+		for (int count : counts.values()) {
+			total += count;
+		}
+		Assert.assertEquals(identifiers.length, total);
+	}
+
+	@Test
+	public void checkSubstructures() {
+		final IAtomContainer mol = tester.reader.getMol(0);
+		final TopologyContext context = TopologyContext.getContext(mol);
+		for (IFeature feature : new Encoding2DECFP().getFingerprint(mol)) {
+			final ECFPFeature ecfpFeature = (ECFPFeature) feature;
+			final IAtomContainer substructure = ecfpFeature.representedSubstructure();
+			Assert.assertTrue(substructure.contains(ecfpFeature.getCoreAtom()));
+			// the atoms within the iteration number of bonds and their bonds
+			final int core = mol.getAtomNumber(ecfpFeature.getCoreAtom());
+			int atoms = 0;
+			for (int i = 0; i < mol.getAtomCount(); i++) {
+				if (context.getDistance(core, i) <= ecfpFeature.getIterationNumber()) {
+					Assert.assertTrue(substructure.contains(mol.getAtom(i)));
+					atoms++;
+				}
+			}
+			Assert.assertEquals(atoms, substructure.getAtomCount());
+		}
+	}
+
+	@Test
+	public void checkNoDuplicateSubstructures() {
+		final IAtomContainer mol = tester.reader.getMol(0);
+		final Encoding2DECFP ecfp = new Encoding2DECFP();
+		ecfp.setSearchDepth(6);
+		final Set<Set<IAtom>> substructures = new HashSet<Set<IAtom>>();
+		for (IFeature feature : ecfp.getFingerprint(mol)) {
+			final Set<IAtom> atoms = new HashSet<IAtom>();
+			for (IAtom atom : feature.representedAtoms()) {
+				atoms.add(atom);
+			}
+			Assert.assertTrue(substructures.add(atoms));
+		}
+	}
+
+	@Test
+	public void checkRadiusFingerprinters() {
+		final int[] depths = { 3, 1, 2 };
+		final Encoding2DECFP[] fingerprinters = new Encoding2DECFP().getRadiusFingerprinters(depths);
+		for (int m = 0; m < tester.reader.getSize(); m++) {
+			final IAtomContainer mol = tester.reader.getMol(m);
+			IFeature shared = null;
+			for (int i = 0; i < depths.length; i++) {
+				final Encoding2DECFP ecfp = new Encoding2DECFP();
+				ecfp.setSearchDepth(depths[i]);
+				final List<IFeature> expected = ecfp.getFingerprint(mol);
+				final List<IFeature> features = fingerprinters[i].getFingerprint(mol);
+				Assert.assertEquals(expected.size(), features.size());
+				for (int f = 0; f < features.size(); f++) {
+					Assert.assertEquals(expected.get(f).hashCode(), features.get(f).hashCode());
+					Assert.assertTrue(((ECFPFeature) features.get(f)).getIterationNumber() <= depths[i]);
+				}
+				// the features of one traversal
+				if (shared == null) {
+					shared = features.get(0);
+				}
+				Assert.assertSame(shared, features.get(0));
+			}
+		}
+	}
+
+	@Test
+	public void checkSubstructureHash() {
+		final Encoding2DECFP ecfp = new Encoding2DECFP();
+		ecfp.setSubstructureHash(true);
+		final SameMoleculeTester substructureTester = new SameMoleculeTester(ecfp);
+		substructureTester.checkLength();
+		substructureTester.checkFeatures();
+	}
 }
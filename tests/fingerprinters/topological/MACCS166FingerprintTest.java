@@ -59,7 +59,7 @@ public class MACCS166FingerprintTest {
 	public void runTestCdkFingerprint() throws CDKException {
 		RandomAccessMDLReader reader = null;
 		try {
-			reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"));
+			reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"), false);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -80,7 +80,7 @@ public class MACCS166FingerprintTest {
 		String mayaFingerprint1 = "000000000000000000000010000000000010000000000000110001000000000000000000001100100011100001110011001100010100011100001101111001011011000111010101011101101111111010111000";
 		RandomAccessMDLReader reader = null;
 		try {
-			reader = new RandomAccessMDLReader(new File("./resources/ACE1_MM.sdf"));
+			reader = new RandomAccessMDLReader(new File("./resources/ACE1_MM.sdf"), false);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
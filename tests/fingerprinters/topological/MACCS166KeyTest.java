@@ -1,9 +1,13 @@
 package fingerprinters.topological;
 
+import java.util.BitSet;
+
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 
+import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.MACCS166;
 import fingerprinters.SameMoleculeTester;
 
@@ -32,4 +36,18 @@ public class MACCS166KeyTest {
 		tester.checkHashedFeatures();
 	}
 
+	@Test
+	public void checkKeys() {
+		final MACCS166 maccs = (MACCS166) tester.fingerprinter;
+		for (int i = 0; i < tester.reader.getSize(); i++) {
+			final long[] keys = maccs.getKeys(tester.reader.getMol(i));
+			Assert.assertEquals(3, keys.length);
+			final BitSet expected = new BitSet();
+			for (final IFeature feature : tester.features.get(i)) {
+				expected.set(Integer.parseInt(feature.featureToString(false).substring("MACCS-".length())) - 1);
+			}
+			Assert.assertEquals(expected, BitSet.valueOf(keys));
+		}
+	}
+
 }
@@ -1,8 +1,13 @@
 package fingerprinters.topological;
 
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
 
+import de.zbit.jcmapper.fingerprinters.features.IFeature;
 import de.zbit.jcmapper.fingerprinters.topological.Encoding2DAllPaths;
 
 import fingerprinters.SameMoleculeTester;
@@ -29,4 +34,25 @@ public class RadialDepthFirstSearchTest {
 	public void checkHashedFeatures() {
 		tester.checkHashedFeatures();
 	}
+
+	/**
+	 * every path is enumerated once and counted once for each of its ends
+	 */
+	@Test
+	public void checkPathCounts() {
+		final Encoding2DAllPaths fingerprinter = new Encoding2DAllPaths();
+		fingerprinter.setSearchDepth(5);
+		for (int i = 0; i < tester.reader.getSize(); i++) {
+			final IAtomContainer mol = tester.reader.getMol(i);
+			int paths = 0;
+			for (IAtom atom : mol.atoms()) {
+				paths += PathTools.getPathsOfLengthUpto(mol, atom, 5).size();
+			}
+			double count = 0;
+			for (IFeature feature : fingerprinter.getFingerprint(mol)) {
+				count += feature.getValue();
+			}
+			Assert.assertEquals(paths, count, 0.0);
+		}
+	}
 }
@@ -0,0 +1,96 @@
+package fingerprinters.topological;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.graph.PathTools;
+import org.openscience.cdk.graph.SpanningTree;
+import org.openscience.cdk.graph.matrix.AdjacencyMatrix;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import de.zbit.jcmapper.fingerprinters.topological.TopologyContext;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+
+public class TopologyContextTest {
+	static RandomAccessMDLReader reader;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"), false);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		reader.close();
+	}
+
+	@Test
+	public void checkDistances() {
+		for (int m = 0; m < reader.getSize(); m++) {
+			final IAtomContainer mol = reader.getMol(m);
+			final int[][] expected = PathTools.computeFloydAPSP(AdjacencyMatrix.getMatrix(mol));
+			final TopologyContext context = TopologyContext.getContext(mol);
+			for (int i = 0; i < expected.length; i++) {
+				for (int j = 0; j < expected.length; j++) {
+					Assert.assertEquals(expected[i][j], context.getDistance(i, j));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void checkRings() throws Exception {
+		for (int m = 0; m < reader.getSize(); m++) {
+			final IAtomContainer mol = reader.getMol(m);
+			final IAtomContainer cyclic = new SpanningTree(mol).getCyclicFragmentsContainer();
+			final TopologyContext context = TopologyContext.getContext(mol);
+			for (int i = 0; i < mol.getAtomCount(); i++) {
+				Assert.assertEquals(cyclic.contains(mol.getAtom(i)), context.isRingAtom(i));
+			}
+			for (int b = 0; b < mol.getBondCount(); b++) {
+				Assert.assertEquals(cyclic.contains(mol.getBond(b)), context.isRingBond(b));
+			}
+		}
+	}
+
+	@Test
+	public void checkAdjacency() {
+		for (int m = 0; m < reader.getSize(); m++) {
+			final IAtomContainer mol = reader.getMol(m);
+			final TopologyContext context = TopologyContext.getContext(mol);
+			final int[] offsets = context.getOffsets();
+			for (int i = 0; i < mol.getAtomCount(); i++) {
+				final IAtom atom = mol.getAtom(i);
+				Assert.assertEquals(i, context.getAtomIndex(atom));
+				final List<IBond> bonds = mol.getConnectedBondsList(atom);
+				Assert.assertEquals(bonds.size(), context.getDegree(i));
+				for (int n = offsets[i]; n < offsets[i + 1]; n++) {
+					final IBond bond = bonds.get(n - offsets[i]);
+					final int neighbour = context.getAdjacentAtoms()[n];
+					Assert.assertEquals(mol.getBondNumber(bond), context.getAdjacentBonds()[n]);
+					Assert.assertSame(bond.getConnectedAtom(atom), mol.getAtom(neighbour));
+					Assert.assertEquals(context.getAdjacentBonds()[n], context.getBondIndex(i, neighbour));
+				}
+			}
+			Assert.assertEquals(-1, context.getBondIndex(0, 0));
+		}
+		Assert.assertEquals(-1, TopologyContext.getContext(reader.getMol(0)).getAtomIndex(new Atom("C")));
+	}
+
+	@Test
+	public void checkShared() {
+		final IAtomContainer mol = reader.getMol(0);
+		final TopologyContext context = TopologyContext.getContext(mol);
+		Assert.assertSame(context, TopologyContext.getContext(mol));
+		Assert.assertNotSame(context, TopologyContext.getContext(reader.getMol(0)));
+		mol.removeBond(0);
+		Assert.assertNotSame(context, TopologyContext.getContext(mol));
+	}
+}
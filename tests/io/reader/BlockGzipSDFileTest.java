@@ -0,0 +1,109 @@
+package io.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.zbit.jcmapper.io.reader.BlockGzipSDFWriter;
+import de.zbit.jcmapper.io.reader.BlockGzipSDFile;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+
+public class BlockGzipSDFileTest {
+	static final File sdf = new File("./resources/ACE_MM.sdf");
+	static RandomAccessMDLReader reference;
+	static File bgzf;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reference = new RandomAccessMDLReader(sdf, false);
+		bgzf = File.createTempFile("ACE_MM", ".sdf.gz");
+		BlockGzipSDFWriter.compress(sdf, bgzf);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		reference.close();
+		bgzf.delete();
+	}
+
+	@Test
+	public void checkGzipCompatible() throws Exception {
+		Assert.assertTrue(BlockGzipSDFile.isBlockCompressed(bgzf));
+		Assert.assertFalse(BlockGzipSDFile.isBlockCompressed(sdf));
+		Assert.assertArrayEquals(readFully(new FileInputStream(sdf)), readFully(new GZIPInputStream(new FileInputStream(bgzf))));
+	}
+
+	@Test
+	public void checkBlockAccess() throws Exception {
+		BlockGzipSDFile blocks = new BlockGzipSDFile(bgzf);
+		Assert.assertTrue(blocks.getBlockCount() > 1);
+		Assert.assertEquals(sdf.length(), blocks.length());
+		blocks.close();
+
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(bgzf, false);
+		checkRecords(reader);
+		reader.close();
+	}
+
+	@Test
+	public void checkMultiMemberGzip() throws Exception {
+		// two plain gzip members split in the middle of a record
+		byte[] bytes = readFully(new FileInputStream(sdf));
+		File gz = File.createTempFile("ACE_MM", ".sdf.gz");
+		OutputStream out = new FileOutputStream(gz);
+		int middle = bytes.length / 2;
+		for (int[] range : new int[][] { { 0, middle }, { middle, bytes.length } }) {
+			GZIPOutputStream member = new GZIPOutputStream(out) {
+				@Override
+				public void close() throws java.io.IOException {
+					this.finish();
+				}
+			};
+			member.write(bytes, range[0], range[1] - range[0]);
+			member.close();
+		}
+		out.close();
+
+		BlockGzipSDFile blocks = new BlockGzipSDFile(gz);
+		Assert.assertEquals(2, blocks.getBlockCount());
+		blocks.close();
+
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(gz, false);
+		checkRecords(reader);
+		reader.close();
+		gz.delete();
+	}
+
+	private void checkRecords(RandomAccessMDLReader reader) {
+		Assert.assertEquals(reference.getSize(), reader.getSize());
+		for (int i = reader.getSize() - 1; i >= 0; i -= 3) {
+			Assert.assertEquals(reference.getMDLMolString(i), reader.getMDLMolString(i));
+		}
+		for (int i = 0; i < reader.getSize(); i++) {
+			Assert.assertEquals(reference.getMDLMolString(i), reader.getMDLMolString(i));
+			Assert.assertEquals(reference.getLabel(i, "s_user_Label"), reader.getLabel(i, "s_user_Label"));
+		}
+		Assert.assertEquals(reference.getMol(7).getAtomCount(), reader.getMol(7).getAtomCount());
+	}
+
+	private static byte[] readFully(InputStream in) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			bytes.write(buffer, 0, read);
+		}
+		in.close();
+		return bytes.toByteArray();
+	}
+}
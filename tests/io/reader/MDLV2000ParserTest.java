@@ -0,0 +1,117 @@
+package io.reader;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import de.zbit.jcmapper.io.reader.MDLMolecule;
+import de.zbit.jcmapper.io.reader.MDLRecordParser;
+import de.zbit.jcmapper.io.reader.MDLV2000Parser;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+
+public class MDLV2000ParserTest {
+	static final File sdf = new File("./resources/ACE_MM.sdf");
+	static RandomAccessMDLReader reader;
+
+	static final String DEUTERIUM = "deuterated\n  test\n\n  3  2  0  0  0  0  0  0  0  0999 V2000\n"
+			+ "    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n"
+			+ "    1.0000    0.0000    0.0000 D   0  0  0  0  0  0  0  0  0  0  0  0\n"
+			+ "   -1.0000    0.0000    0.0000 N   0  3\n"
+			+ "  1  2  1  0\n  1  3  1  0\nM  CHG  1   3   1\nM  END\n> <ID>\nD1\n\n$$$$\n";
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reader = new RandomAccessMDLReader(sdf, false);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		reader.close();
+	}
+
+	@Test
+	public void checkSameAsCDKReader() throws Exception {
+		for (int i = 0; i < reader.getSize(); i++) {
+			ByteBuffer record = ByteBuffer.wrap(reader.getMDLMolString(i).getBytes("ISO-8859-1"));
+			MDLMolecule compact = MDLV2000Parser.parse(record);
+			Assert.assertNotNull(compact);
+			Assert.assertEquals(reader.getLabel(i, "s_user_Label"), compact.getProperty("s_user_Label"));
+			assertSameMolecule(MDLRecordParser.getRawMolecule(record), compact.toAtomContainer());
+		}
+	}
+
+	@Test
+	public void checkHydrogenIsotopes() throws Exception {
+		ByteBuffer record = ByteBuffer.wrap(DEUTERIUM.getBytes("ISO-8859-1"));
+		MDLMolecule compact = MDLV2000Parser.parse(record);
+		Assert.assertEquals("H", compact.getSymbol(1));
+		Assert.assertEquals(1, compact.getAtomicNumber(1));
+		Assert.assertEquals(2, compact.getMassNumber(1));
+		Assert.assertEquals(1, compact.getFormalCharge(2));
+		Assert.assertEquals("D1", compact.getProperty("ID"));
+		assertSameMolecule(MDLRecordParser.getRawMolecule(record), compact.toAtomContainer());
+
+		ByteBuffer crlf = ByteBuffer.wrap(DEUTERIUM.replace("\n", "\r\n").getBytes("ISO-8859-1"));
+		assertSameMolecule(MDLRecordParser.getRawMolecule(record), MDLV2000Parser.parse(crlf).toAtomContainer());
+	}
+
+	@Test
+	public void checkFallback() throws Exception {
+		String v3000 = "v3000\n\n\n  0  0  0     0  0            999 V3000\nM  END\n$$$$\n";
+		Assert.assertNull(MDLV2000Parser.parse(ByteBuffer.wrap(v3000.getBytes("ISO-8859-1"))));
+		String pseudoAtom = "r\n\n\n  1  0  0  0  0  0  0  0  0  0999 V2000\n    0.0000    0.0000    0.0000 R#  0  0\nM  END\n$$$$\n";
+		ByteBuffer record = ByteBuffer.wrap(pseudoAtom.getBytes("ISO-8859-1"));
+		Assert.assertNull(MDLV2000Parser.parse(record));
+		Assert.assertEquals(1, MDLRecordParser.getMol(record, true, true).getAtomCount());
+	}
+
+	@Test
+	public void checkReaderOption() throws Exception {
+		RandomAccessMDLReader fast = new RandomAccessMDLReader(sdf, false);
+		fast.setFastParser(true);
+		for (int i = 0; i < fast.getSize(); i += 7) {
+			AtomContainer expected = reader.getMol(i);
+			AtomContainer actual = fast.getMol(i);
+			Assert.assertEquals(expected.getAtomCount(), actual.getAtomCount());
+			Assert.assertEquals(expected.getBondCount(), actual.getBondCount());
+			for (int a = 0; a < expected.getAtomCount(); a++) {
+				Assert.assertEquals(expected.getAtom(a).getAtomTypeName(), actual.getAtom(a).getAtomTypeName());
+			}
+		}
+		fast.close();
+	}
+
+	private static void assertSameMolecule(AtomContainer expected, AtomContainer actual) {
+		Assert.assertEquals(expected.getProperties(), actual.getProperties());
+		Assert.assertEquals(expected.getAtomCount(), actual.getAtomCount());
+		Assert.assertEquals(expected.getBondCount(), actual.getBondCount());
+		for (int a = 0; a < expected.getAtomCount(); a++) {
+			IAtom x = expected.getAtom(a);
+			IAtom y = actual.getAtom(a);
+			Assert.assertEquals(x.getSymbol(), y.getSymbol());
+			Assert.assertEquals(x.getAtomicNumber(), y.getAtomicNumber());
+			Assert.assertEquals(x.getMassNumber(), y.getMassNumber());
+			Assert.assertEquals(x.getFormalCharge(), y.getFormalCharge());
+			Assert.assertEquals(x.getValency(), y.getValency());
+			Assert.assertEquals(x.getImplicitHydrogenCount(), y.getImplicitHydrogenCount());
+			Assert.assertEquals(x.getPoint2d(), y.getPoint2d());
+			Assert.assertEquals(x.getPoint3d(), y.getPoint3d());
+			Assert.assertEquals(x.getFlagValue(), y.getFlagValue());
+		}
+		for (int b = 0; b < expected.getBondCount(); b++) {
+			IBond x = expected.getBond(b);
+			IBond y = actual.getBond(b);
+			Assert.assertEquals(expected.getAtomNumber(x.getAtom(0)), actual.getAtomNumber(y.getAtom(0)));
+			Assert.assertEquals(expected.getAtomNumber(x.getAtom(1)), actual.getAtomNumber(y.getAtom(1)));
+			Assert.assertEquals(x.getOrder(), y.getOrder());
+			Assert.assertEquals(x.getStereo(), y.getStereo());
+		}
+	}
+}
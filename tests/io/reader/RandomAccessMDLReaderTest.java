@@ -0,0 +1,267 @@
+package io.reader;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IBond;
+
+import de.zbit.jcmapper.io.reader.BufferedRandomAccessFile;
+import de.zbit.jcmapper.io.reader.MDLRecordParser;
+import de.zbit.jcmapper.io.reader.MappedSDFile;
+import de.zbit.jcmapper.io.reader.ParallelSDFIndexer;
+import de.zbit.jcmapper.io.reader.PreparedMoleculeStore;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.SDFKeyIndex;
+import de.zbit.jcmapper.io.reader.SDFOffsetIndex;
+import de.zbit.jcmapper.io.reader.SDFRecordHelper;
+import de.zbit.jcmapper.io.reader.SDFTagColumn;
+
+public class RandomAccessMDLReaderTest {
+	static final File sdf = new File("./resources/ACE_MM.sdf");
+	static RandomAccessMDLReader buffered;
+	static RandomAccessMDLReader mapped;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		buffered = new RandomAccessMDLReader(sdf, false);
+		mapped = new RandomAccessMDLReader(sdf, false, true);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		buffered.close();
+		mapped.close();
+		SDFOffsetIndex.getIndexFile(sdf).delete();
+	}
+
+	@Test
+	public void checkSize() {
+		Assert.assertEquals(114, buffered.getSize());
+		Assert.assertEquals(buffered.getSize(), mapped.getSize());
+	}
+
+	@Test
+	public void checkIndexFile() throws IOException {
+		SDFOffsetIndex.getIndexFile(sdf).delete();
+		RandomAccessMDLReader first = new RandomAccessMDLReader(sdf);
+		first.close();
+		SDFOffsetIndex index = SDFOffsetIndex.load(sdf);
+		Assert.assertNotNull(index);
+		Assert.assertEquals(buffered.getSize(), index.getSize());
+		Assert.assertEquals(sdf.length(), index.getOffset(index.getSize()));
+
+		RandomAccessMDLReader second = new RandomAccessMDLReader(sdf);
+		for (int i = 0; i < second.getSize(); i++) {
+			Assert.assertEquals(buffered.getMDLMolString(i), second.getMDLMolString(i));
+		}
+		second.close();
+	}
+
+	@Test
+	public void checkMappedRecords() {
+		for (int i = 0; i < buffered.getSize(); i++) {
+			Assert.assertEquals(buffered.getMDLMolString(i), mapped.getMDLMolString(i));
+			Assert.assertEquals(buffered.getLabel(i, "s_user_Label"), mapped.getLabel(i, "s_user_Label"));
+			Assert.assertEquals(buffered.getMol(i).getAtomCount(), mapped.getMol(i).getAtomCount());
+		}
+		Assert.assertEquals("7.92", mapped.getLabel(0, "s_user_Label"));
+	}
+
+	@Test
+	public void checkSegmentBoundaries() throws IOException {
+		MappedSDFile small = new MappedSDFile(sdf, 12);
+		SDFOffsetIndex index = small.scan();
+		Assert.assertEquals(buffered.getSize(), index.getSize());
+		for (int i = 0; i < index.getSize(); i++) {
+			String record = SDFRecordHelper.toMolString(small.getRecord(index.getOffset(i), index.getOffset(i + 1)));
+			Assert.assertEquals(buffered.getMDLMolString(i), record);
+		}
+		small.close();
+	}
+
+	@Test
+	public void checkConcurrentAccess() throws Exception {
+		for (final RandomAccessMDLReader reader : new RandomAccessMDLReader[] { buffered, mapped }) {
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int r = 0; r < 3; r++) {
+				for (int i = reader.getSize() - 1; i >= 0; i--) {
+					final int index = i;
+					results.add(pool.submit(new Callable<String>() {
+						@Override
+						public String call() {
+							return reader.getMol(index).getAtomCount() + " " + reader.getMDLMolString(index);
+						}
+					}));
+				}
+			}
+			for (int r = 0; r < 3; r++) {
+				for (int i = reader.getSize() - 1; i >= 0; i--) {
+					String expected = buffered.getMol(i).getAtomCount() + " " + buffered.getMDLMolString(i);
+					Assert.assertEquals(expected, results.get(r * reader.getSize() + reader.getSize() - 1 - i).get());
+				}
+			}
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void checkTagColumn() throws IOException {
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(sdf, false, true);
+		List<String> labels = new ArrayList<String>();
+		Set<String> classes = new HashSet<String>();
+		for (int i = 0; i < reader.getSize(); i++) {
+			labels.add(reader.getLabel(i, "s_user_Label"));
+			classes.add(reader.getLabel(i, "s_user_Label"));
+		}
+		Assert.assertNull(reader.getTagColumn("s_user_Label"));
+		Assert.assertEquals(classes, reader.getAllLabelClasses("s_user_Label"));
+
+		SDFTagColumn column = reader.getTagColumn("s_user_Label");
+		Assert.assertEquals(reader.getSize(), column.getSize());
+		Assert.assertEquals(classes.size(), column.getDictionarySize());
+		for (int i = 0; i < reader.getSize(); i++) {
+			Assert.assertEquals(labels.get(i), reader.getLabel(i, "s_user_Label"));
+			Assert.assertEquals(labels.get(i), column.getDictionaryValue(column.getCode(i)));
+		}
+
+		reader.cacheTags("s_user_Label", "no_such_tag");
+		Assert.assertSame(column, reader.getTagColumn("s_user_Label"));
+		Assert.assertEquals(Collections.singleton(""), reader.getAllLabelClasses("no_such_tag"));
+		reader.close();
+	}
+
+	@Test
+	public void checkKeyIndex() throws IOException {
+		SDFKeyIndex.getKeyFile(sdf, "s_user_Label").delete();
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(sdf);
+		SDFKeyIndex built = reader.openKeyIndex("s_user_Label");
+		Assert.assertTrue(SDFKeyIndex.getKeyFile(sdf, "s_user_Label").isFile());
+		SDFKeyIndex loaded = SDFKeyIndex.load(sdf, "s_user_Label");
+		Assert.assertNotNull(loaded);
+		Assert.assertEquals(reader.getSize(), loaded.getSize());
+
+		for (int i = 0; i < reader.getSize(); i++) {
+			String id = reader.getLabel(i, "s_user_Label");
+			int first = 0;
+			while (!reader.getLabel(first, "s_user_Label").equals(id)) {
+				first++;
+			}
+			Assert.assertEquals(first, reader.getIndexById(id));
+			Assert.assertArrayEquals(built.getRecords(id), loaded.getRecords(id));
+			Assert.assertTrue(Arrays.binarySearch(loaded.getRecords(id), i) >= 0);
+		}
+		Assert.assertEquals(reader.getMDLMolString(0), reader.getMDLMolString(reader.getIndexById("7.92")));
+		Assert.assertEquals(reader.getMol(0).getAtomCount(), reader.getMolById("7.92").getAtomCount());
+		Assert.assertNull(reader.getMolById("no such id"));
+		Assert.assertEquals(0, loaded.getRecords("").length);
+		reader.close();
+		SDFKeyIndex.getKeyFile(sdf, "s_user_Label").delete();
+	}
+
+	@Test
+	public void checkMoleculeStore() throws IOException {
+		PreparedMoleculeStore.getStoreFile(sdf, true).delete();
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(sdf, false);
+		Assert.assertTrue(reader.openMoleculeStore());
+		Assert.assertTrue(PreparedMoleculeStore.getStoreFile(sdf, true).isFile());
+		PreparedMoleculeStore loaded = PreparedMoleculeStore.load(sdf, buffered.getIndex(), true);
+		Assert.assertNotNull(loaded);
+		Assert.assertNull(PreparedMoleculeStore.load(sdf, buffered.getIndex(), false));
+
+		for (int i = 0; i < buffered.getSize(); i++) {
+			AtomContainer expected = buffered.getMol(i);
+			AtomContainer actual = loaded.getMol(i);
+			Assert.assertEquals((String) expected.getProperty("s_user_Label"), (String) actual.getProperty("s_user_Label"));
+			Assert.assertEquals(expected.getAtomCount(), actual.getAtomCount());
+			Assert.assertEquals(expected.getBondCount(), actual.getBondCount());
+			for (int a = 0; a < expected.getAtomCount(); a++) {
+				IAtom x = expected.getAtom(a);
+				IAtom y = actual.getAtom(a);
+				Assert.assertEquals(x.getAtomTypeName(), y.getAtomTypeName());
+				Assert.assertEquals(x.getImplicitHydrogenCount(), y.getImplicitHydrogenCount());
+				Assert.assertEquals(x.getValency(), y.getValency());
+				Assert.assertEquals(x.getHybridization(), y.getHybridization());
+				Assert.assertEquals(x.getPoint3d(), y.getPoint3d());
+				Assert.assertEquals(x.getFlagValue(), y.getFlagValue());
+			}
+			for (int b = 0; b < expected.getBondCount(); b++) {
+				IBond x = expected.getBond(b);
+				IBond y = actual.getBond(b);
+				Assert.assertEquals(expected.getAtomNumber(x.getAtom(0)), actual.getAtomNumber(y.getAtom(0)));
+				Assert.assertEquals(expected.getAtomNumber(x.getAtom(1)), actual.getAtomNumber(y.getAtom(1)));
+				Assert.assertEquals(x.getOrder(), y.getOrder());
+				Assert.assertEquals(x.getFlagValue(), y.getFlagValue());
+			}
+			Assert.assertEquals(expected.getAtomCount(), reader.getMol(i).getAtomCount());
+		}
+		loaded.close();
+
+		// molecules with hydrogens are not served from the store
+		reader.setRemoveHydrogens(false);
+		Assert.assertEquals(MDLRecordParser.getMol(ByteBuffer.wrap(buffered.getMDLMolString(0).getBytes()), false)
+				.getAtomCount(), reader.getMol(0).getAtomCount());
+		reader.close();
+		PreparedMoleculeStore.getStoreFile(sdf, true).delete();
+	}
+
+	@Test
+	public void checkMoleculeStoreFallback() throws IOException {
+		File pseudo = File.createTempFile("pseudo", ".sdf");
+		FileWriter out = new FileWriter(pseudo);
+		out.write("r\n\n\n  1  0  0  0  0  0  0  0  0  0999 V2000\n    0.0000    0.0000    0.0000 R#  0  0\nM  END\n$$$$\n");
+		out.write(buffered.getMDLMolString(0));
+		out.write("$$$$\n");
+		out.close();
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(pseudo, false);
+		Assert.assertTrue(reader.openMoleculeStore());
+		PreparedMoleculeStore store = PreparedMoleculeStore.load(pseudo, reader.getIndex(), true);
+		Assert.assertNull(store.getMol(0));
+		Assert.assertNotNull(store.getMol(1));
+		store.close();
+		Assert.assertEquals(1, reader.getMol(0).getAtomCount());
+		Assert.assertEquals(buffered.getMol(0).getAtomCount(), reader.getMol(1).getAtomCount());
+		reader.close();
+
+		// a changed SD file invalidates the store
+		pseudo.setLastModified(pseudo.lastModified() - 10000);
+		Assert.assertNull(PreparedMoleculeStore.load(pseudo, reader.getIndex(), true));
+		PreparedMoleculeStore.getStoreFile(pseudo, true).delete();
+		pseudo.delete();
+	}
+
+	@Test
+	public void checkParallelIndex() throws IOException {
+		BufferedRandomAccessFile raf = new BufferedRandomAccessFile(sdf, "r");
+		SDFOffsetIndex lines = SDFOffsetIndex.scan(raf);
+		raf.close();
+
+		MappedSDFile file = new MappedSDFile(sdf, 12);
+		for (long rangeSize : new long[] { 1, 997, 4096, 65536 }) {
+			SDFOffsetIndex parallel = new ParallelSDFIndexer(4, rangeSize).scan(file);
+			Assert.assertEquals(lines.getSize(), parallel.getSize());
+			for (int i = 0; i <= lines.getSize(); i++) {
+				Assert.assertEquals(lines.getOffset(i), parallel.getOffset(i));
+			}
+		}
+		file.close();
+	}
+}
@@ -0,0 +1,67 @@
+package io.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.zbit.jcmapper.io.reader.IMDLReader;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.StreamingMDLReader;
+
+public class StreamingMDLReaderTest {
+	static final File sdf = new File("./resources/ACE_MM.sdf");
+	static RandomAccessMDLReader reference;
+	static byte[] gzipped;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reference = new RandomAccessMDLReader(sdf, false);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GZIPOutputStream out = new GZIPOutputStream(bytes);
+		InputStream in = new FileInputStream(sdf);
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		out.close();
+		gzipped = bytes.toByteArray();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		reference.close();
+	}
+
+	@Test
+	public void checkRecords() throws Exception {
+		for (InputStream in : new InputStream[] { new FileInputStream(sdf), new ByteArrayInputStream(gzipped) }) {
+			StreamingMDLReader reader = StreamingMDLReader.open(in);
+			Assert.assertEquals(IMDLReader.UNKNOWN_SIZE, reader.getSize());
+			int i = 0;
+			for (; reader.hasMol(i); i++) {
+				Assert.assertEquals(reference.getMDLMolString(i), reader.getMDLMolString(i));
+				Assert.assertEquals(reference.getLabel(i, "s_user_Label"), reader.getLabel(i, "s_user_Label"));
+				Assert.assertEquals(reference.getMol(i).getAtomCount(), reader.getMol(i).getAtomCount());
+			}
+			Assert.assertEquals(reference.getSize(), i);
+			reader.close();
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void checkOrder() throws Exception {
+		StreamingMDLReader reader = StreamingMDLReader.open(new ByteArrayInputStream(gzipped));
+		Assert.assertTrue(reader.hasMol(3));
+		reader.getMDLMolString(2);
+	}
+}
@@ -0,0 +1,71 @@
+package io.writer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
+import de.zbit.jcmapper.fingerprinters.FingerPrinterFactory;
+import de.zbit.jcmapper.fingerprinters.FingerPrinterFactory.FingerprintType;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.StreamingMDLReader;
+import de.zbit.jcmapper.io.writer.ExporterFactory;
+import de.zbit.jcmapper.io.writer.ExporterFactory.ExporterType;
+import de.zbit.jcmapper.io.writer.FingerprintFanOut;
+import de.zbit.jcmapper.io.writer.FingerprintPipeline;
+import de.zbit.jcmapper.io.writer.IExporter;
+
+public class FingerprintFanOutTest {
+	static final File sdf = new File("./resources/ACE_MM.sdf");
+	static final FingerprintType[] types = { FingerprintType.MACCS, FingerprintType.DFS, FingerprintType.ECFP,
+			FingerprintType.AP2D, FingerprintType.PHAP2POINT2D };
+
+	@After
+	public void tearDown() throws Exception {
+		FingerprintPipeline.setDefaultThreads(1);
+		FingerprintPipeline.setDefaultQueueDepth(0);
+	}
+
+	@Test
+	public void checkSameOutput() throws Exception {
+		FingerprintPipeline.setDefaultThreads(3);
+		EncodingFingerprint[] fingerprinters = new EncodingFingerprint[types.length];
+		IExporter[] exporters = new IExporter[types.length];
+		File[] outs = new File[types.length];
+		for (int f = 0; f < types.length; f++) {
+			fingerprinters[f] = FingerPrinterFactory.getFingerprinter(types[f]);
+			exporters[f] = ExporterFactory.getExporter(ExporterType.LIBSVM_SPARSE);
+			outs[f] = File.createTempFile("fanout", ".txt");
+			outs[f].deleteOnExit();
+		}
+		StreamingMDLReader reader = new StreamingMDLReader(new FileInputStream(sdf));
+		new FingerprintFanOut(reader, fingerprinters).export(exporters, "s_user_Label", outs, false);
+		reader.close();
+
+		for (int f = 0; f < types.length; f++) {
+			File out = File.createTempFile("single", ".txt");
+			out.deleteOnExit();
+			RandomAccessMDLReader single = new RandomAccessMDLReader(sdf, false);
+			ExporterFactory.getExporter(ExporterType.LIBSVM_SPARSE).export(single,
+					FingerPrinterFactory.getFingerprinter(types[f]), "s_user_Label", out, false);
+			single.close();
+			byte[] expected = read(out);
+			Assert.assertTrue(expected.length > 0);
+			Assert.assertTrue(types[f].toString(), Arrays.equals(expected, read(outs[f])));
+		}
+	}
+
+	private static byte[] read(File out) throws Exception {
+		RandomAccessFile file = new RandomAccessFile(out, "r");
+		byte[] bytes = new byte[(int) file.length()];
+		file.readFully(bytes);
+		file.close();
+		out.delete();
+		return bytes;
+	}
+}
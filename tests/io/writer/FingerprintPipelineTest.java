@@ -0,0 +1,103 @@
+package io.writer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.zbit.jcmapper.fingerprinters.EncodingFingerprint;
+import de.zbit.jcmapper.fingerprinters.topological.DepthFirstSearch;
+import de.zbit.jcmapper.fingerprinters.topological.MACCS166;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.io.reader.StreamingMDLReader;
+import de.zbit.jcmapper.io.writer.ExporterFactory;
+import de.zbit.jcmapper.io.writer.ExporterFactory.ExporterType;
+import de.zbit.jcmapper.io.writer.FingerprintPipeline;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSMatchBudget;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQueryRegistry;
+
+public class FingerprintPipelineTest {
+	static final File sdf = new File("./resources/ACE_MM.sdf");
+
+	@After
+	public void tearDown() throws Exception {
+		FingerprintPipeline.setDefaultThreads(1);
+		FingerprintPipeline.setDefaultQueueDepth(0);
+	}
+
+	@Test
+	public void checkOrder() throws Exception {
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(sdf, false);
+		FingerprintPipeline pipeline = new FingerprintPipeline(reader, new DepthFirstSearch(), 4, 3);
+		int i = 0;
+		try {
+			while (pipeline.hasNext()) {
+				FingerprintPipeline.Entry entry = pipeline.next();
+				Assert.assertEquals(i, entry.getIndex());
+				Assert.assertEquals(reader.getLabel(i, "s_user_Label"), entry.getMol().getProperty("s_user_Label"));
+				Assert.assertNotNull(entry.getFeatureMap());
+				i++;
+			}
+		} finally {
+			pipeline.close();
+		}
+		Assert.assertEquals(reader.getSize(), i);
+		reader.close();
+	}
+
+	@Test
+	public void checkExceeded() throws Exception {
+		final long steps = SMARTSQueryRegistry.getStepBudget();
+		SMARTSQueryRegistry.setStepBudget(10);
+		RandomAccessMDLReader reader = new RandomAccessMDLReader(sdf, false);
+		FingerprintPipeline pipeline = new FingerprintPipeline(reader, new EncodingFingerprint[] {
+				new DepthFirstSearch(), new MACCS166() }, 2, 0);
+		try {
+			while (pipeline.hasNext()) {
+				FingerprintPipeline.Entry entry = pipeline.next();
+				Assert.assertFalse(entry.isExceeded(0));
+				Assert.assertTrue(entry.isExceeded(1));
+				Assert.assertTrue(entry.getFeatureMap(1).getKeySet().isEmpty());
+				Assert.assertNull(entry.getMol().getProperty(SMARTSMatchBudget.EXCEEDED));
+			}
+		} finally {
+			pipeline.close();
+			SMARTSQueryRegistry.setStepBudget(steps);
+		}
+		reader.close();
+	}
+
+	@Test
+	public void checkSameOutput() throws Exception {
+		byte[] expected = export(1, false);
+		Assert.assertTrue(expected.length > 0);
+		Assert.assertTrue(Arrays.equals(expected, export(4, false)));
+		Assert.assertTrue(Arrays.equals(expected, export(3, true)));
+	}
+
+	private static byte[] export(int threads, boolean streaming) throws Exception {
+		FingerprintPipeline.setDefaultThreads(threads);
+		FingerprintPipeline.setDefaultQueueDepth(threads == 3 ? 1 : 0);
+		File out = File.createTempFile("pipeline", ".txt");
+		out.deleteOnExit();
+		if (streaming) {
+			StreamingMDLReader reader = new StreamingMDLReader(new FileInputStream(sdf));
+			ExporterFactory.getExporter(ExporterType.LIBSVM_SPARSE).export(reader, new DepthFirstSearch(), "s_user_Label", out, false);
+			reader.close();
+		} else {
+			RandomAccessMDLReader reader = new RandomAccessMDLReader(sdf, false);
+			ExporterFactory.getExporter(ExporterType.LIBSVM_SPARSE).export(reader, new DepthFirstSearch(), "s_user_Label", out, false);
+			reader.close();
+		}
+		RandomAccessFile file = new RandomAccessFile(out, "r");
+		byte[] bytes = new byte[(int) file.length()];
+		file.readFully(bytes);
+		file.close();
+		out.delete();
+		return bytes;
+	}
+}
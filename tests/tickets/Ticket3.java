@@ -25,7 +25,7 @@ public class Ticket3 {
 	
 	@Test
 	public void convertToStrings() throws IOException{
-		exporter.export(new RandomAccessMDLReader(new File("./resources/Oxaceprol_MM.sdf")),
+		exporter.export(new RandomAccessMDLReader(new File("./resources/Oxaceprol_MM.sdf"), false),
 						new Encoding2DECFP(), "s_m_entry_id",
 						new File(System.getProperty("java.io.tmpdir")+"/ticketXY.txt"),
 						true);
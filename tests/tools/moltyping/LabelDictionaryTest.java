@@ -0,0 +1,112 @@
+package tools.moltyping;
+
+import java.io.File;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.tools.moltyping.ExtendedAtomAndBondTyper;
+import de.zbit.jcmapper.tools.moltyping.LabelDictionary;
+import de.zbit.jcmapper.tools.moltyping.enumerations.EnumerationsAtomTypes.AtomLabelType;
+
+public class LabelDictionaryTest {
+	static RandomAccessMDLReader reader;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"), false);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		reader.close();
+	}
+
+	@Test
+	public void checkAtomLabelIds() throws Exception {
+		final AtomLabelType[] types = { AtomLabelType.CDK_ATOM_TYPES, AtomLabelType.ELEMENT_NEIGHBOR,
+				AtomLabelType.ELEMENT_NEIGHBOR_RING, AtomLabelType.ELEMENT_SYMBOL, AtomLabelType.DAYLIGHT_INVARIANT,
+				AtomLabelType.DAYLIGHT_INVARIANT_RING };
+		for (int m = 0; m < reader.getSize(); m++) {
+			final IAtomContainer mol = reader.getMol(m);
+			for (final AtomLabelType type : types) {
+				final ExtendedAtomAndBondTyper typer = new ExtendedAtomAndBondTyper(type);
+				final int[] ids = typer.getAtomLabelIds(mol);
+				Assert.assertEquals(mol.getAtomCount(), ids.length);
+				for (int i = 0; i < ids.length; i++) {
+					final String label = typer.getAtomLabel(mol.getAtom(i));
+					Assert.assertEquals(label, LabelDictionary.getLabel(ids[i]));
+					Assert.assertEquals(ids[i], LabelDictionary.getId(label));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void checkBondSymbolIds() {
+		for (int m = 0; m < reader.getSize(); m++) {
+			final IAtomContainer mol = reader.getMol(m);
+			final int[] ids = ExtendedAtomAndBondTyper.getBondSymbolIds(mol);
+			Assert.assertEquals(mol.getBondCount(), ids.length);
+			for (int b = 0; b < ids.length; b++) {
+				Assert.assertEquals(ExtendedAtomAndBondTyper.getBondSymbol(mol.getBond(b)), LabelDictionary.getLabel(ids[b]));
+			}
+		}
+	}
+
+	@Test
+	public void checkIds() {
+		final int id = LabelDictionary.getId("LabelDictionaryTest");
+		Assert.assertEquals(id, LabelDictionary.getId(new String("LabelDictionaryTest")));
+		Assert.assertEquals("LabelDictionaryTest", LabelDictionary.getLabel(id));
+		Assert.assertTrue(id < LabelDictionary.size());
+	}
+
+	@Test
+	public void checkConcurrentIds() throws Exception {
+		final int[][] ids = new int[4][500];
+		final Thread[] threads = new Thread[ids.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int[] own = ids[t];
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < own.length; i++) {
+						own[i] = LabelDictionary.getId("LabelDictionaryTest." + i);
+					}
+				}
+			});
+		}
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		for (int t = 1; t < ids.length; t++) {
+			Assert.assertArrayEquals(ids[0], ids[t]);
+		}
+		for (int i = 0; i < ids[0].length; i++) {
+			Assert.assertEquals("LabelDictionaryTest." + i, LabelDictionary.getLabel(ids[0][i]));
+		}
+	}
+
+	@Test
+	public void checkHashes() {
+		final int x = LabelDictionary.getId("C.3");
+		final int y = LabelDictionary.getId("-");
+		Assert.assertEquals("C.3".hashCode(), LabelDictionary.getHash(x));
+		Assert.assertEquals("C.3-".hashCode(), LabelDictionary.getHash(x) * LabelDictionary.getPower(y)
+				+ LabelDictionary.getHash(y));
+		final int xy = LabelDictionary.getId("C.3-");
+		Assert.assertEquals(LabelDictionary.getHash64(xy), LabelDictionary.getHash64(x) * LabelDictionary.getPower64(y)
+				+ LabelDictionary.getHash64(y));
+		Assert.assertEquals(LabelDictionary.getPower64(xy), LabelDictionary.getPower64(x) * LabelDictionary.getPower64(y));
+		Assert.assertEquals(0, LabelDictionary.getHash(LabelDictionary.getId("")));
+		Assert.assertEquals(1, LabelDictionary.getPower(LabelDictionary.getId("")));
+	}
+}
@@ -0,0 +1,101 @@
+package tools.moltyping.smarts;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openscience.cdk.DefaultChemObjectBuilder;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.smiles.smarts.SMARTSQueryTool;
+
+import de.zbit.jcmapper.fingerprinters.topological.MACCS166;
+import de.zbit.jcmapper.io.reader.RandomAccessMDLReader;
+import de.zbit.jcmapper.tools.moltyping.pharmacophore.PotentialPharmacophorePoint;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSMatchBudget;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQuery;
+import de.zbit.jcmapper.tools.moltyping.smarts.SMARTSQueryRegistry;
+
+public class SMARTSQueryRegistryTest {
+	static RandomAccessMDLReader reader;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		reader = new RandomAccessMDLReader(new File("./resources/ACE_MM.sdf"), false);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		reader.close();
+	}
+
+	@Test
+	public void checkMatches() throws Exception {
+		final List<PotentialPharmacophorePoint> ppps = SMARTSQueryRegistry.getPharmacophoreDefinitions();
+		Assert.assertFalse(ppps.isEmpty());
+		for (int m = 0; m < reader.getSize(); m++) {
+			final IAtomContainer mol = reader.getMol(m);
+			SMARTSQueryRegistry.prepare(mol);
+			final SMARTSMatchBudget budget = new SMARTSMatchBudget();
+			for (final PotentialPharmacophorePoint ppp : ppps) {
+				final SMARTSQueryTool sqt = new SMARTSQueryTool(ppp.getSMARTSPattern(),
+						DefaultChemObjectBuilder.getInstance());
+				final boolean matches = sqt.matches(mol);
+				final SMARTSQuery query = SMARTSQueryRegistry.getQuery(ppp.getSMARTSPattern());
+				Assert.assertEquals(sqt.getUniqueMatchingAtoms(), query.getUniqueMatchingAtoms(mol, budget));
+				Assert.assertEquals(matches, query.matches(mol, budget));
+			}
+			Assert.assertFalse(budget.isExceeded());
+		}
+	}
+
+	@Test
+	public void checkShared() {
+		final String smarts = SMARTSQueryRegistry.getPharmacophoreDefinitions().get(0).getSMARTSPattern();
+		Assert.assertSame(SMARTSQueryRegistry.getQuery(smarts), SMARTSQueryRegistry.getQuery(smarts));
+		Assert.assertSame(SMARTSQueryRegistry.getPharmacophoreDefinitions(),
+				SMARTSQueryRegistry.getPharmacophoreDefinitions());
+	}
+
+	@Test
+	public void checkBudget() throws Exception {
+		final IAtomContainer mol = reader.getMol(0);
+		SMARTSQueryRegistry.prepare(mol);
+		final SMARTSQuery query = SMARTSQueryRegistry.getQuery("*");
+		Assert.assertEquals(mol.getAtomCount(), query.getUniqueMatchingAtoms(mol, new SMARTSMatchBudget()).size());
+
+		final SMARTSMatchBudget budget = new SMARTSMatchBudget(0, 3);
+		Assert.assertEquals(3, query.getUniqueMatchingAtoms(mol, budget).size());
+		Assert.assertTrue(budget.isExceeded());
+		Assert.assertTrue(query.getUniqueMatchingAtoms(mol, budget).isEmpty());
+		Assert.assertFalse(query.matches(mol, budget));
+
+		// both mappings of each bond are steps, not only the unique matches
+		final SMARTSQuery bond = SMARTSQueryRegistry.getQuery("*~*");
+		final int bonds = mol.getBondCount();
+		SMARTSMatchBudget exact = new SMARTSMatchBudget(0, 2 * bonds);
+		Assert.assertEquals(bonds, bond.getUniqueMatchingAtoms(mol, exact).size());
+		Assert.assertFalse(exact.isExceeded());
+		exact = new SMARTSMatchBudget(0, 2 * bonds - 1);
+		bond.getUniqueMatchingAtoms(mol, exact);
+		Assert.assertTrue(exact.isExceeded());
+	}
+
+	@Test
+	public void checkExceededMolecule() throws Exception {
+		final long steps = SMARTSQueryRegistry.getStepBudget();
+		final IAtomContainer mol = reader.getMol(0);
+		try {
+			SMARTSQueryRegistry.setStepBudget(10);
+			Assert.assertTrue(new MACCS166().getFingerprint(mol).isEmpty());
+			Assert.assertEquals(Boolean.TRUE, mol.getProperty(SMARTSMatchBudget.EXCEEDED));
+		} finally {
+			SMARTSQueryRegistry.setStepBudget(steps);
+		}
+		mol.removeProperty(SMARTSMatchBudget.EXCEEDED);
+		Assert.assertFalse(new MACCS166().getFingerprint(mol).isEmpty());
+		Assert.assertNull(mol.getProperty(SMARTSMatchBudget.EXCEEDED));
+	}
+}